@@ -0,0 +1,105 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the garbage produced by writing to {@link SmoothlyDecayingRollingCounter}.
+ * Should be run with GC profiler, the expected "gc.alloc.rate.norm" is zero for both cases,
+ * including the case when each increment leads to chunk rotation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SmoothlyDecayingRollingCounterAllocationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CounterWithLongResettingPeriodState {
+        public final WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(3600), 7);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CounterWithRotationOnEachIncrementState {
+        private final Clock clock = new Clock() {
+            // this timer implementation will lead to invalidate each chunk after each increment
+            final AtomicLong timeMillis = new AtomicLong();
+            @Override
+            public long currentTimeMillis() {
+                return timeMillis.addAndGet(1000L);
+            }
+        };
+        public final WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(1), 10, clock);
+    }
+
+    @Benchmark
+    public void addWithoutRotation(CounterWithLongResettingPeriodState state) {
+        state.counter.add(1);
+    }
+
+    @Benchmark
+    public void addWithRotation(CounterWithRotationOnEachIncrementState state) {
+        state.counter.add(1);
+    }
+
+    public static class OneThread {
+        public static void main(String[] args) throws RunnerException {
+            Options opt = new OptionsBuilder()
+                    .include(((Class) SmoothlyDecayingRollingCounterAllocationBenchmark.class).getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(1)
+                    .forks(1)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            try {
+                new Runner(opt).run();
+            } catch (RunnerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static class FourThread {
+        public static void main(String[] args) throws RunnerException {
+            Options opt = new OptionsBuilder()
+                    .include(((Class) SmoothlyDecayingRollingCounterAllocationBenchmark.class).getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(4)
+                    .forks(1)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            try {
+                new Runner(opt).run();
+            } catch (RunnerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+}
@@ -35,6 +35,25 @@ public class SmoothlyDecayingRollingCounterBenchmark {
         public final WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofMillis(1000), 10);
     }
 
+    @State(Scope.Benchmark)
+    public static class ChunkCountState {
+
+        @Param({"10", "100", "1000"})
+        public int numberChunks;
+
+        public WindowCounter scanningCounter;
+        public WindowCounter runningTotalCounter;
+
+        @Setup
+        public void setup() {
+            Duration rollingWindow = Duration.ofSeconds(numberChunks);
+            scanningCounter = new SmoothlyDecayingRollingCounter(rollingWindow, numberChunks);
+            runningTotalCounter = new SmoothlyDecayingRollingCounter(rollingWindow, numberChunks, true);
+            scanningCounter.add(42);
+            runningTotalCounter.add(42);
+        }
+    }
+
     @Benchmark
     @Group("readSumWithContendedWrite")
     @GroupThreads(3)
@@ -49,6 +68,16 @@ public class SmoothlyDecayingRollingCounterBenchmark {
         return state.counter.getSum();
     }
 
+    @Benchmark
+    public long readSumByScan(ChunkCountState state) {
+        return state.scanningCounter.getSum();
+    }
+
+    @Benchmark
+    public long readSumFromRunningTotal(ChunkCountState state) {
+        return state.runningTotalCounter.getSum();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(((Class) SmoothlyDecayingRollingCounterBenchmark.class).getSimpleName())
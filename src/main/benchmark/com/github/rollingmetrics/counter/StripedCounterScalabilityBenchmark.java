@@ -0,0 +1,104 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scalability of writing to counters backed by single AtomicLong with their striped analogs.
+ * Run the nested classes to measure at 1, 4, 16 and 64 concurrent writers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StripedCounterScalabilityBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CounterState {
+        @Param({"ResetOnSnapshot", "StripedResetOnSnapshot",
+                "ResetPeriodically", "StripedResetPeriodically",
+                "SmoothlyDecayingRolling", "StripedSmoothlyDecayingRolling"})
+        public String counterType;
+
+        public WindowCounter counter;
+
+        @Setup
+        public void setup() {
+            switch (counterType) {
+                case "ResetOnSnapshot": counter = new ResetOnSnapshotCounter(); break;
+                case "StripedResetOnSnapshot": counter = new StripedResetOnSnapshotCounter(); break;
+                case "ResetPeriodically": counter = new ResetPeriodicallyCounter(Duration.ofSeconds(1)); break;
+                case "StripedResetPeriodically": counter = new StripedResetPeriodicallyCounter(Duration.ofSeconds(1)); break;
+                case "SmoothlyDecayingRolling": counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10); break;
+                case "StripedSmoothlyDecayingRolling": counter = new StripedSmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10); break;
+                default: throw new IllegalStateException("Unknown counter type " + counterType);
+            }
+        }
+    }
+
+    @Benchmark
+    public void add(CounterState state) {
+        state.counter.add(42);
+    }
+
+    private static void run(int threads) {
+        Options opt = new OptionsBuilder()
+                .include(StripedCounterScalabilityBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .threads(threads)
+                .forks(1)
+                .build();
+        try {
+            new Runner(opt).run();
+        } catch (RunnerException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class OneThread {
+        public static void main(String[] args) {
+            run(1);
+        }
+    }
+
+    public static class FourThreads {
+        public static void main(String[] args) {
+            run(4);
+        }
+    }
+
+    public static class SixteenThreads {
+        public static void main(String[] args) {
+            run(16);
+        }
+    }
+
+    public static class SixtyFourThreads {
+        public static void main(String[] args) {
+            run(64);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link WindowCounterFamily} with the map of separated {@link SmoothlyDecayingRollingCounter}s.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WindowCounterFamilyBenchmark {
+
+    private static final int KEYS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class FamilyState {
+        public final WindowCounterFamily<Integer> family = new WindowCounterFamily<>(Duration.ofSeconds(60), 10, KEYS);
+        public final Map<Integer, WindowCounter> counters = new ConcurrentHashMap<>();
+
+        @Setup
+        public void setup() {
+            for (int key = 0; key < KEYS; key++) {
+                family.add(key, 1);
+                counters.computeIfAbsent(key, k -> new SmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10)).add(1);
+            }
+        }
+    }
+
+    @Benchmark
+    public void addToFamily(FamilyState state) {
+        state.family.add(ThreadLocalRandom.current().nextInt(KEYS), 42);
+    }
+
+    @Benchmark
+    public void addToMapOfCounters(FamilyState state) {
+        state.counters.computeIfAbsent(ThreadLocalRandom.current().nextInt(KEYS), k -> new SmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10)).add(42);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> topKFromFamily(FamilyState state) {
+        return state.family.topK(10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(((Class) WindowCounterFamilyBenchmark.class).getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .threads(4)
+                .forks(1)
+                .build();
+        try {
+            new Runner(opt).run();
+        } catch (RunnerException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -39,6 +39,10 @@ public class CountAtPercentileExtractionBenchmark {
         Histogram histogram = new Histogram(1000, 3600L * 1_000_000_000L, 2);
         static double[] DEFAULT_PERCENTILES_7 = new double[]{0.5, 0.75, 0.9, 0.95, 0.98, 0.99, 0.999};
         static double[] DEFAULT_PERCENTILES_1 = new double[]{0.999};
+        static double[] PERCENTILES_5 = new double[]{0.5, 0.75, 0.9, 0.99, 0.999};
+        static double[] PERCENTILES_10 = new double[]{0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.98, 0.99, 0.999, 0.9999};
+        static double[] PERCENTILES_20 = new double[]{0.05, 0.1, 0.15, 0.2, 0.25, 0.3, 0.35, 0.4, 0.45, 0.5,
+                0.55, 0.6, 0.65, 0.7, 0.75, 0.8, 0.9, 0.95, 0.99, 0.999};
 
         @Setup
         public void setup() {
@@ -62,6 +66,51 @@ public class CountAtPercentileExtractionBenchmark {
         return HdrReservoir.takeSmartSnapshot(HistogramState.DEFAULT_PERCENTILES_1, state.histogram);
     }
 
+    @Benchmark
+    public Snapshot calculatePercentile_5(HistogramState state) {
+        return HdrReservoir.takeSmartSnapshot(HistogramState.PERCENTILES_5, state.histogram);
+    }
+
+    @Benchmark
+    public Snapshot calculatePercentile_10(HistogramState state) {
+        return HdrReservoir.takeSmartSnapshot(HistogramState.PERCENTILES_10, state.histogram);
+    }
+
+    @Benchmark
+    public Snapshot calculatePercentile_20(HistogramState state) {
+        return HdrReservoir.takeSmartSnapshot(HistogramState.PERCENTILES_20, state.histogram);
+    }
+
+    @Benchmark
+    public Snapshot calculatePercentileByHdrHistogram_5(HistogramState state) {
+        return takeSnapshotByHdrHistogram(HistogramState.PERCENTILES_5, state.histogram);
+    }
+
+    @Benchmark
+    public Snapshot calculatePercentileByHdrHistogram_10(HistogramState state) {
+        return takeSnapshotByHdrHistogram(HistogramState.PERCENTILES_10, state.histogram);
+    }
+
+    @Benchmark
+    public Snapshot calculatePercentileByHdrHistogram_20(HistogramState state) {
+        return takeSnapshotByHdrHistogram(HistogramState.PERCENTILES_20, state.histogram);
+    }
+
+    // each of methods below walks over counts array of histogram
+    private static Snapshot takeSnapshotByHdrHistogram(double[] predefinedQuantiles, Histogram histogram) {
+        final long max = histogram.getMaxValue();
+        final long min = histogram.getMinValue();
+        final double mean = histogram.getMean();
+        final double median = histogram.getValueAtPercentile(50.0);
+        final double stdDeviation = histogram.getStdDeviation();
+
+        final double[] values = new double[predefinedQuantiles.length];
+        for (int i = 0; i < predefinedQuantiles.length; i++) {
+            values[i] = histogram.getValueAtPercentile(predefinedQuantiles[i] * 100.0);
+        }
+        return HdrReservoir.createSmartSnapshot(predefinedQuantiles, max, min, mean, median, stdDeviation, values);
+    }
+
     public static class OneThread {
         public static void main(String[] args) throws RunnerException {
             Options opt = new OptionsBuilder()
@@ -19,9 +19,10 @@ package com.github.rollingmetrics.histogram.accumulator;
 
 import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Histogram;
+import com.github.rollingmetrics.histogram.ExtendedReservoir;
 import com.github.rollingmetrics.histogram.HdrBuilder;
 import com.github.rollingmetrics.histogram.OverflowResolver;
-import com.github.rollingmetrics.histogram.OverflowResolver;
+import com.github.rollingmetrics.util.RotationScheduler;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -43,6 +44,11 @@ public class HistogramRecordingBenchmark {
                 .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
                 .buildHistogram();
 
+        final Histogram scheduledChunkedHistogram = new HdrBuilder()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withRotationScheduler(new RotationScheduler())
+                .buildHistogram();
+
         final Histogram upperLimitedChunkedHistogram = new HdrBuilder()
                 .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
                 .withLowestDiscernibleValue(TimeUnit.MICROSECONDS.toNanos(1))
@@ -71,6 +77,37 @@ public class HistogramRecordingBenchmark {
 
     }
 
+    public static final int BATCH_SIZE = 64;
+
+    @State(Scope.Benchmark)
+    public static class ReservoirState {
+
+        final ExtendedReservoir chunkedReservoir = new HdrBuilder()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .buildExtendedReservoir();
+
+        final ExtendedReservoir upperLimitedChunkedReservoir = new HdrBuilder()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withLowestDiscernibleValue(TimeUnit.MICROSECONDS.toNanos(1))
+                .withHighestTrackableValue(TimeUnit.MINUTES.toNanos(5), OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                .buildExtendedReservoir();
+
+    }
+
+    @State(Scope.Thread)
+    public static class BatchState {
+
+        final long[] values = new long[BATCH_SIZE];
+
+        @Setup(Level.Invocation)
+        public void fillBatch() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getRandomValue();
+            }
+        }
+
+    }
+
     @Benchmark
     public long baseLine() {
         return getRandomValue();
@@ -101,11 +138,44 @@ public class HistogramRecordingBenchmark {
         state.chunkedHistogram.update(getRandomValue());
     }
 
+    @Benchmark
+    public void updateScheduledChunkedHistogram(HistogramState state) {
+        state.scheduledChunkedHistogram.update(getRandomValue());
+    }
+
     @Benchmark
     public void updateChunkedUpperLimitedHistogram(HistogramState state) {
         state.upperLimitedChunkedHistogram.update(getRandomValue());
     }
 
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateChunkedReservoirPerValue(ReservoirState state, BatchState batch) {
+        for (long value : batch.values) {
+            state.chunkedReservoir.update(value);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateChunkedReservoirByBatch(ReservoirState state, BatchState batch) {
+        state.chunkedReservoir.update(batch.values, 0, BATCH_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateChunkedUpperLimitedReservoirPerValue(ReservoirState state, BatchState batch) {
+        for (long value : batch.values) {
+            state.upperLimitedChunkedReservoir.update(value);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateChunkedUpperLimitedReservoirByBatch(ReservoirState state, BatchState batch) {
+        state.upperLimitedChunkedReservoir.update(batch.values, 0, BATCH_SIZE);
+    }
+
     private static long getRandomValue() {
         return ThreadLocalRandom.current().nextLong(15_000_000) + 5_000_000;
     }
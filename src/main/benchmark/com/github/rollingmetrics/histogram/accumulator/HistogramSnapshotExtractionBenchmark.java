@@ -20,8 +20,10 @@ package com.github.rollingmetrics.histogram.accumulator;
 import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.histogram.ExtendedReservoir;
 import com.github.rollingmetrics.histogram.HdrBuilder;
 import com.github.rollingmetrics.histogram.OverflowResolver;
+import com.github.rollingmetrics.histogram.SnapshotBuffer;
 import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.histogram.HdrBuilder;
 import com.github.rollingmetrics.histogram.OverflowResolver;
@@ -33,7 +35,9 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -118,6 +122,71 @@ public class HistogramSnapshotExtractionBenchmark {
         }
     }
 
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class ReportingState {
+
+        static final int RESERVOIR_COUNT = 1000;
+        static final double[] PERCENTILES = new double[] {0.5, 0.75, 0.9, 0.95, 0.98, 0.99, 0.999};
+
+        final AtomicLong currentTimeMillis = new AtomicLong(System.currentTimeMillis());
+        final Clock clock = Clock.mock(currentTimeMillis);
+
+        final List<ExtendedReservoir> reservoirs = new ArrayList<>();
+        final SnapshotBuffer buffer = new SnapshotBuffer(PERCENTILES);
+        SnapshotBuffer[] buffers;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < RESERVOIR_COUNT; i++) {
+                reservoirs.add(new HdrBuilder(clock)
+                        .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                        .withLowestDiscernibleValue(TimeUnit.MICROSECONDS.toNanos(1))
+                        .withHighestTrackableValue(TimeUnit.MINUTES.toNanos(5), OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                        .buildExtendedReservoir());
+            }
+            for (int j = 0; j < 1024; j++) {
+                // generate latency between 5ms and 20ms
+                long randomNanos = ThreadLocalRandom.current().nextLong(15_000_000) + 5_000_000;
+                reservoirs.get(j % RESERVOIR_COUNT).update(randomNanos);
+                reservoirs.get(0).update(randomNanos);
+            }
+        }
+    }
+
+    @Benchmark
+    public double getChunkedReservoirSnapshot(ReportingState state) {
+        Snapshot snapshot = state.reservoirs.get(0).getSnapshot();
+        return snapshot.get99thPercentile() + snapshot.getMean();
+    }
+
+    @Benchmark
+    public double getChunkedReservoirSnapshotIntoBuffer(ReportingState state) {
+        Snapshot snapshot = state.reservoirs.get(0).getSnapshot(state.buffer);
+        return snapshot.get99thPercentile() + snapshot.getMean();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ReportingState.RESERVOIR_COUNT)
+    public double getSnapshotsOfManyReservoirs(ReportingState state) {
+        double sum = 0.0;
+        for (ExtendedReservoir reservoir : state.reservoirs) {
+            sum += reservoir.getSnapshot().get99thPercentile();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ReportingState.RESERVOIR_COUNT)
+    public double getSnapshotsOfManyReservoirsIntoBuffers(ReportingState state) {
+        SnapshotBuffer[] buffers = SnapshotBuffer.takeSnapshots(state.reservoirs, state.buffers, ReportingState.PERCENTILES);
+        state.buffers = buffers;
+        double sum = 0.0;
+        for (int i = 0; i < ReportingState.RESERVOIR_COUNT; i++) {
+            sum += buffers[i].get99thPercentile();
+        }
+        return sum;
+    }
+
     @Benchmark
     public Map<String, Object> getMetricsCoreHistogramSnapshot(StateWithRealClock state) {
         return getSnaphsotRepresentation(state.metricsCoreHistogram);
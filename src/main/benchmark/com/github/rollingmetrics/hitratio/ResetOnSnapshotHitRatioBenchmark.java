@@ -32,6 +32,8 @@ public class ResetOnSnapshotHitRatioBenchmark {
     @org.openjdk.jmh.annotations.State(Scope.Benchmark)
     public static class State {
         public final HitRatio hitRatio = new ResetOnSnapshotHitRatio();
+        public final HitRatio wideHitRatio = new WideResetOnSnapshotHitRatio();
+        public final HitRatio stripedHitRatio = new StripedResetOnSnapshotHitRatio();
     }
 
     @Benchmark
@@ -48,6 +50,34 @@ public class ResetOnSnapshotHitRatioBenchmark {
         return state.hitRatio.getHitRatio();
     }
 
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateWide(State state) {
+        state.wideHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readWideRatio(State state) {
+        return state.wideHitRatio.getHitRatio();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateStriped(State state) {
+        state.stripedHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readStripedRatio(State state) {
+        return state.stripedHitRatio.getHitRatio();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(ResetOnSnapshotHitRatioBenchmark.class.getSimpleName())
@@ -33,6 +33,8 @@ public class ResetPeriodicalyHitRatioBenchmark {
     @org.openjdk.jmh.annotations.State(Scope.Benchmark)
     public static class State {
         public final HitRatio hitRatio = new ResetPeriodicallyHitRatio(Duration.ofSeconds(1));
+        public final HitRatio wideHitRatio = new WideResetPeriodicallyHitRatio(Duration.ofSeconds(1));
+        public final HitRatio stripedHitRatio = new StripedResetPeriodicallyHitRatio(Duration.ofSeconds(1));
     }
 
     @Benchmark
@@ -49,6 +51,34 @@ public class ResetPeriodicalyHitRatioBenchmark {
         return state.hitRatio.getHitRatio();
     }
 
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateWide(State state) {
+        state.wideHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readWideRatio(State state) {
+        return state.wideHitRatio.getHitRatio();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateStriped(State state) {
+        state.stripedHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readStripedRatio(State state) {
+        return state.stripedHitRatio.getHitRatio();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(ResetPeriodicalyHitRatioBenchmark.class.getSimpleName())
@@ -33,6 +33,8 @@ public class SmoothlyDecayingHitRatioBenchmark {
     @org.openjdk.jmh.annotations.State(Scope.Benchmark)
     public static class State {
         public final HitRatio hitRatio = new SmoothlyDecayingRollingHitRatio(Duration.ofSeconds(1), 100);
+        public final HitRatio wideHitRatio = new WideSmoothlyDecayingRollingHitRatio(Duration.ofSeconds(1), 100);
+        public final HitRatio stripedHitRatio = new StripedSmoothlyDecayingRollingHitRatio(Duration.ofSeconds(1), 100);
     }
 
     @Benchmark
@@ -49,6 +51,34 @@ public class SmoothlyDecayingHitRatioBenchmark {
         return state.hitRatio.getHitRatio();
     }
 
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateWide(State state) {
+        state.wideHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readWideRatio(State state) {
+        return state.wideHitRatio.getHitRatio();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateStriped(State state) {
+        state.stripedHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readStripedRatio(State state) {
+        return state.stripedHitRatio.getHitRatio();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(SmoothlyDecayingHitRatioBenchmark.class.getSimpleName())
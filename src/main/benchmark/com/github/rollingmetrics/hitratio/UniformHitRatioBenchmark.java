@@ -32,6 +32,8 @@ public class UniformHitRatioBenchmark {
     @org.openjdk.jmh.annotations.State(Scope.Benchmark)
     public static class State {
         public final HitRatio hitRatio = new UniformHitRatio();
+        public final HitRatio wideHitRatio = new WideUniformHitRatio();
+        public final HitRatio stripedHitRatio = new StripedUniformHitRatio();
     }
 
     @Benchmark
@@ -48,6 +50,34 @@ public class UniformHitRatioBenchmark {
         return state.hitRatio.getHitRatio();
     }
 
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateWide(State state) {
+        state.wideHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("wideReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readWideRatio(State state) {
+        return state.wideHitRatio.getHitRatio();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(3)
+    public void updateStriped(State state) {
+        state.stripedHitRatio.incrementHitCount();
+    }
+
+    @Benchmark
+    @Group("stripedReadSumWithContendedWrite")
+    @GroupThreads(1)
+    public double readStripedRatio(State state) {
+        return state.stripedHitRatio.getHitRatio();
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(UniformHitRatioBenchmark.class.getSimpleName())
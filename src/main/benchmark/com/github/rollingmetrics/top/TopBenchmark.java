@@ -75,6 +75,30 @@ public class TopBenchmark {
                 .neverResetPositions()
                 .withSnapshotCachingDuration(Duration.ZERO)
                 .build();
+
+        final Top chunkedCompactTop_10 = Top.builder(10)
+                .resetPositionsPeriodicallyByChunks(Duration.ofSeconds(4), 4)
+                .withCompactPositionStorage()
+                .withSnapshotCachingDuration(Duration.ZERO)
+                .build();
+
+        final Top periodicallyCompactTop_10 = Top.builder(10)
+                .resetAllPositionsPeriodically(Duration.ofSeconds(1))
+                .withCompactPositionStorage()
+                .withSnapshotCachingDuration(Duration.ZERO)
+                .build();
+
+        final Top resetOnSnapshotCompactTop_10 = Top.builder(10)
+                .resetAllPositionsOnSnapshot()
+                .withCompactPositionStorage()
+                .withSnapshotCachingDuration(Duration.ZERO)
+                .build();
+
+        final Top uniformCompactTop_10 = Top.builder(10)
+                .neverResetPositions()
+                .withCompactPositionStorage()
+                .withSnapshotCachingDuration(Duration.ZERO)
+                .build();
     }
 
     @Benchmark
@@ -194,6 +218,62 @@ public class TopBenchmark {
         return state.uniformTop_10.getPositionsInDescendingOrder();
     }
 
+    @Group("chunkedCompactTop_10")
+    @GroupThreads(3)
+    @Benchmark
+    public void update_chunkedCompactTop_10(TopState state) {
+        state.chunkedCompactTop_10.update(0, getRandomValue(), TimeUnit.NANOSECONDS, () -> "Some query to something");
+    }
+
+    @Group("chunkedCompactTop_10")
+    @GroupThreads(1)
+    @Benchmark
+    public List<Position> getSnapshot_chunkedCompactTop_10(TopState state) {
+        return state.chunkedCompactTop_10.getPositionsInDescendingOrder();
+    }
+
+    @Group("periodicallyCompactTop_10")
+    @GroupThreads(3)
+    @Benchmark
+    public void update_periodicallyCompactTop_10(TopState state) {
+        state.periodicallyCompactTop_10.update(0, getRandomValue(), TimeUnit.NANOSECONDS, () -> "Some query to something");
+    }
+
+    @Group("periodicallyCompactTop_10")
+    @GroupThreads(1)
+    @Benchmark
+    public List<Position> getSnapshot_periodicallyCompactTop_10(TopState state) {
+        return state.periodicallyCompactTop_10.getPositionsInDescendingOrder();
+    }
+
+    @Group("resetOnSnapshotCompactTop_10")
+    @GroupThreads(3)
+    @Benchmark
+    public void update_resetOnSnapshotCompactTop_10(TopState state) {
+        state.resetOnSnapshotCompactTop_10.update(0, getRandomValue(), TimeUnit.NANOSECONDS, () -> "Some query to something");
+    }
+
+    @Group("resetOnSnapshotCompactTop_10")
+    @GroupThreads(1)
+    @Benchmark
+    public List<Position> getSnapshot_resetOnSnapshotCompactTop_10(TopState state) {
+        return state.resetOnSnapshotCompactTop_10.getPositionsInDescendingOrder();
+    }
+
+    @Group("uniformCompactTop_10")
+    @GroupThreads(3)
+    @Benchmark
+    public void update_uniformCompactTop_10(TopState state) {
+        state.uniformCompactTop_10.update(0, getRandomValue(), TimeUnit.NANOSECONDS, () -> "Some query to something");
+    }
+
+    @Group("uniformCompactTop_10")
+    @GroupThreads(1)
+    @Benchmark
+    public List<Position> getSnapshot_uniformCompactTop_10(TopState state) {
+        return state.uniformCompactTop_10.getPositionsInDescendingOrder();
+    }
+
     private static long getRandomValue() {
         return ThreadLocalRandom.current().nextLong(15_000_000) + 5_000_000;
     }
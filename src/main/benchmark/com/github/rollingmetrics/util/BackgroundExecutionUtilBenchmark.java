@@ -26,6 +26,7 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -40,6 +41,29 @@ public class BackgroundExecutionUtilBenchmark {
                                       new DaemonThreadFactory(""));
     }
 
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class UserExecutorState {
+        // the executor provided by user via withBackgroundExecutor, direct execution isolates the cost of submission
+        public final Executor userExecutor = Runnable::run;
+        final AtomicInteger executedTasks = new AtomicInteger();
+        final Runnable task = executedTasks::incrementAndGet;
+        final ReusableTask reusableTask = new ReusableTask(task);
+    }
+
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class BurstState {
+        // emulates the rotation of many chunked metrics at the same boundary
+        static final int BURST_SIZE = 1000;
+
+        public final Executor executor = ResilientExecutionUtil.getInstance().getBackgroundExecutor();
+        public final Executor jdkExecutor = new ThreadPoolExecutor(1, 1,
+                0L,TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory(""));
+        final AtomicInteger executedTasks = new AtomicInteger();
+        final Runnable task = executedTasks::incrementAndGet;
+    }
+
     @Benchmark
     public void baseLine() {
         Blackhole.consumeCPU(1000);
@@ -71,6 +95,40 @@ public class BackgroundExecutionUtilBenchmark {
         while (!executed.get());
     }
 
+    @Benchmark
+    public int submissionToUserExecutor(UserExecutorState state) {
+        ResilientExecutionUtil.getInstance().execute(state.userExecutor, state.task);
+        return state.executedTasks.get();
+    }
+
+    @Benchmark
+    public int submissionOfReusableTaskToUserExecutor(UserExecutorState state) {
+        ResilientExecutionUtil.getInstance().execute(state.userExecutor, state.reusableTask);
+        return state.executedTasks.get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BurstState.BURST_SIZE)
+    public void burst(BurstState state) {
+        executeBurst(state.executor, state);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BurstState.BURST_SIZE)
+    public void burstOnJdkExecutor(BurstState state) {
+        executeBurst(state.jdkExecutor, state);
+    }
+
+    private static void executeBurst(Executor executor, BurstState state) {
+        int expectedCount = state.executedTasks.get() + BurstState.BURST_SIZE;
+        for (int i = 0; i < BurstState.BURST_SIZE; i++) {
+            executor.execute(state.task);
+        }
+        while (state.executedTasks.get() < expectedCount) {
+            Thread.yield();
+        }
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(BackgroundExecutionUtilBenchmark.class.getSimpleName())
@@ -0,0 +1,104 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import com.github.rollingmetrics.counter.SmoothlyDecayingRollingCounter;
+import com.github.rollingmetrics.counter.WindowCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quantifies the per-event saving of {@link Clock#cachedMillis(Duration)} in comparison with {@link Clock#defaultClock()}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CachedClockBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ClockState {
+        public final Clock defaultClock = Clock.defaultClock();
+        public final Clock cachedClock = Clock.cachedMillis(Duration.ofMillis(10));
+    }
+
+    @State(Scope.Benchmark)
+    public static class CounterState {
+        public final WindowCounter counterWithDefaultClock = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10, Clock.defaultClock());
+        public final WindowCounter counterWithCachedClock = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10, Clock.cachedMillis(Duration.ofMillis(10)));
+    }
+
+    @Benchmark
+    public long readDefaultClock(ClockState state) {
+        return state.defaultClock.currentTimeMillis();
+    }
+
+    @Benchmark
+    public long readCachedClock(ClockState state) {
+        return state.cachedClock.currentTimeMillis();
+    }
+
+    @Benchmark
+    public void addToCounterWithDefaultClock(CounterState state) {
+        state.counterWithDefaultClock.add(1);
+    }
+
+    @Benchmark
+    public void addToCounterWithCachedClock(CounterState state) {
+        state.counterWithCachedClock.add(1);
+    }
+
+    public static class OneThread {
+        public static void main(String[] args) throws RunnerException {
+            Options opt = new OptionsBuilder()
+                    .include(((Class) CachedClockBenchmark.class).getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(1)
+                    .forks(1)
+                    .build();
+            try {
+                new Runner(opt).run();
+            } catch (RunnerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static class FourThread {
+        public static void main(String[] args) throws RunnerException {
+            Options opt = new OptionsBuilder()
+                    .include(((Class) CachedClockBenchmark.class).getSimpleName())
+                    .warmupIterations(5)
+                    .measurementIterations(5)
+                    .threads(4)
+                    .forks(1)
+                    .build();
+            try {
+                new Runner(opt).run();
+            } catch (RunnerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+}
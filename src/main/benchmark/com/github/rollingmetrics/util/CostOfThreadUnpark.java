@@ -42,6 +42,8 @@ public class CostOfThreadUnpark {
         {
             thread.start();
         }
+
+        public volatile boolean parked;
     }
 
     @Benchmark
@@ -49,6 +51,14 @@ public class CostOfThreadUnpark {
         LockSupport.unpark(state.thread);
     }
 
+    // the price which SingleThreadExecutor pays on each execution instead of unpark when worker thread is not parked
+    @Benchmark
+    public void unparkOnlyWhenParked(State state) {
+        if (state.parked) {
+            LockSupport.unpark(state.thread);
+        }
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(CostOfThreadUnpark.class.getSimpleName())
@@ -0,0 +1,114 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.rollingmetrics.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emulates the rotation storm, when chunks of many metrics become obsolete at the same time
+ * and each metric submits its pre-allocated rotation task to the background executor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RotationStormBenchmark {
+
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class StormState {
+
+        @Param({"100000"})
+        public int metrics;
+
+        // virtualThreadPerTask is excluded by main method when JVM does not support virtual threads
+        @Param({"singleThread", "sharded-4", "virtualThreadPerTask"})
+        public String strategy;
+
+        final ResilientExecutionUtil util = new ResilientExecutionUtil();
+        final AtomicInteger rotatedMetrics = new AtomicInteger();
+        Executor executor;
+        ReusableTask[] rotationTasks;
+
+        @Setup
+        public void setup() {
+            if (strategy.equals("virtualThreadPerTask")) {
+                if (!VirtualThreadPerTaskExecutor.isSupported()) {
+                    throw new IllegalStateException("virtualThreadPerTask strategy requires JDK 21+, exclude it by -p strategy=singleThread,sharded-4");
+                }
+                util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.virtualThreadPerTask());
+            } else if (strategy.startsWith("sharded-")) {
+                int workerCount = Integer.parseInt(strategy.substring("sharded-".length()));
+                util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.sharded(workerCount));
+            } else {
+                util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.singleThread());
+            }
+            executor = util.getBackgroundExecutor();
+
+            rotationTasks = new ReusableTask[metrics];
+            for (int i = 0; i < metrics; i++) {
+                // the rotation of chunk costs about microsecond
+                rotationTasks[i] = new ReusableTask(() -> {
+                    Blackhole.consumeCPU(1000);
+                    rotatedMetrics.incrementAndGet();
+                });
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            util.shutdownBackgroundExecutor();
+        }
+    }
+
+    @Benchmark
+    public int rotationStorm(StormState state) {
+        int expectedCount = state.rotatedMetrics.get() + state.metrics;
+        for (ReusableTask task : state.rotationTasks) {
+            state.util.execute(state.executor, task);
+        }
+        while (state.rotatedMetrics.get() < expectedCount) {
+            Thread.yield();
+        }
+        return expectedCount;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        if (!VirtualThreadPerTaskExecutor.isSupported()) {
+            builder.param("strategy", "singleThread", "sharded-4");
+        }
+        Options opt = builder
+                .include(RotationStormBenchmark.class.getSimpleName())
+                .build();
+        try {
+            new Runner(opt).run();
+        } catch (RunnerException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.ForwardDecayingAccumulator;
+
+import java.time.Duration;
+
+/**
+ * The counter which exponentially decays its sum, the weight of each added value becomes two times smaller each time when half-life is elapsed.
+ *
+ * <p>
+ * In opposite to {@link SmoothlyDecayingRollingCounter} which linearly decays only oldest chunk and needs to scan all chunks on reading,
+ * this counter consumes constant amount of memory independent from desired precision and both writing and reading are O(1).
+ * Decaying is implemented via forward decay: each added value is scaled relatively to landmark timestamp,
+ * and landmark is moved forward each {@link ForwardDecayingAccumulator#RENORMALIZATION_HALF_LIVES} half-lives.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free, writers never wait for renormalization.</li>
+ *     <li>Sum reading is lock-free, except short moment of renormalization when reader waits while sum is transferred to new landmark.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When you need in "recent activity" semantic, but strict boundary of rolling time window is not required.
+ *     The value added {@code halfLife * 10} ago still contributes about 0.1% of its weight, and never disappears completely before it becomes less than rounding error.</li>
+ * </ul>
+ *
+ * <p> Example of usage:
+ * <pre><code>
+ *         // constructs the counter which halves weight of added values each 10 seconds
+ *         WindowCounter counter = new ExponentiallyDecayingCounter(Duration.ofSeconds(10));
+ *         counter.add(42);
+ *     </code>
+ * </pre>
+ *
+ * @see SmoothlyDecayingRollingCounter
+ * @see com.github.rollingmetrics.hitratio.ExponentiallyDecayingHitRatio
+ */
+public class ExponentiallyDecayingCounter implements WindowCounter {
+
+    private final Clock clock;
+    private final ForwardDecayingAccumulator accumulator;
+
+    /**
+     * Constructs the counter which halves weight of added values each time when {@code halfLife} is elapsed.
+     *
+     * @param halfLife the duration after which weight of added value becomes two times smaller, should be at least 1 millisecond
+     */
+    public ExponentiallyDecayingCounter(Duration halfLife) {
+        this(halfLife, Clock.defaultClock());
+    }
+
+    public ExponentiallyDecayingCounter(Duration halfLife, Clock clock) {
+        this.clock = clock;
+        this.accumulator = new ForwardDecayingAccumulator(halfLife, 1, clock.currentTimeMillis());
+    }
+
+    /**
+     * @return the half-life of this counter
+     */
+    public Duration getHalfLife() {
+        return accumulator.getHalfLife();
+    }
+
+    @Override
+    public void add(long delta) {
+        accumulator.add(0, delta, clock.currentTimeMillis());
+    }
+
+    @Override
+    public long getSum() {
+        double[] snapshot = new double[1];
+        accumulator.readInto(snapshot, clock.currentTimeMillis());
+        return Math.round(snapshot[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "ExponentiallyDecayingCounter{" +
+                "clock=" + clock +
+                ", accumulator=" + accumulator +
+                '}';
+    }
+
+}
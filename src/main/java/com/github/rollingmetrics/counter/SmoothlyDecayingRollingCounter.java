@@ -17,13 +17,11 @@
 
 package com.github.rollingmetrics.counter;
 
-import com.github.rollingmetrics.util.Clock;
-import com.github.rollingmetrics.histogram.util.Printer;
 import com.github.rollingmetrics.util.Clock;
 
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * The rolling time window counter implementation which resets its state by chunks.
@@ -31,7 +29,8 @@ import java.util.concurrent.atomic.AtomicReference;
  * The unique properties which makes this counter probably the best "rolling time window" implementation are following:
  * <ul>
  *     <li>Sufficient performance about tens of millions concurrent writes and reads per second.</li>
- *     <li>Predictable and low memory consumption, the memory which consumed by counter does not depend from amount and frequency of writes.</li>
+ *     <li>Predictable and low memory consumption, the memory which consumed by counter does not depend from amount and frequency of writes.
+ *     The state of all chunks is preallocated, so neither writing nor chunk rotation allocate anything.</li>
  *     <li>Perfectly user experience, the continuous observation does not see the sudden changes of sum.
  *     This property achieved by smoothly decaying of oldest chunk of counter.
  *     </li>
@@ -40,7 +39,7 @@ import java.util.concurrent.atomic.AtomicReference;
  * <p>
  * Concurrency properties:
  * <ul>
- *     <li>Writing is lock-free.
+ *     <li>Writing is lock-free, except the short moment of chunk rotation, when writers of rotated chunk wait until the thread which rotates it resets the sum.
  *     <li>Sum reading is lock-free.
  * </ul>
  *
@@ -57,6 +56,10 @@ import java.util.concurrent.atomic.AtomicReference;
  *     <li>The writing depends only from level of contention between writers(internally counter implemented across AtomicLong).</li>
  *     <li>The huge count of chunk leads to the slower calculation of their sum. So precision of sum conflicts with latency of sum. You need to choose meaningful values.
  *     For example 10 chunks will guarantee at least 90% accuracy and ten million reads per second.</li>
+ *     <li>When sum is read significantly more often than chunk interval elapses, for example many counters with big amount of chunks are polled by dashboard,
+ *     consider to enable running total mode via {@link #SmoothlyDecayingRollingCounter(Duration, int, boolean)}.
+ *     In this mode counter additionally maintains the total sum of all chunks which is adjusted on chunk invalidation,
+ *     so reading costs O(1) amortized instead of O(numberChunks), at the price of one more atomic addition per write.</li>
  * </ul>
  *
  * <p> Example of usage:
@@ -77,8 +80,17 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
     private final long intervalBetweenResettingMillis;
     private final Clock clock;
     private final long creationTimestamp;
+    private final int chunkCount;
+
+    // Preallocated state of all chunks, the sum of chunk with index i is stored at 2*i,
+    // and the timestamp when this sum should be invalidated is stored at 2*i+1.
+    // The Long.MAX_VALUE in place of timestamp means that chunk is being rotated right now.
+    private final AtomicLongArray chunks;
 
-    private final Chunk[] chunks;
+    // the sum of all chunks which are not reset yet, null when running total mode is disabled
+    private final AtomicLong runningTotal;
+    // the latest interval for which chunk expired at beginning of interval is already reset
+    private final AtomicLong caughtUpIntervalRef;
 
     /**
      * Constructs the chunked counter divided by {@code numberChunks}.
@@ -102,21 +114,38 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
         this(rollingWindow, numberChunks, Clock.defaultClock());
     }
 
+    /**
+     * Constructs the chunked counter divided by {@code numberChunks}, optionally in running total mode.
+     * In running total mode the counter maintains the total sum of chunks, which is adjusted on chunk invalidation,
+     * so {@link #getSum()} does not depend from {@code numberChunks}.
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split counter
+     * @param maintainRunningTotal whether counter should maintain running total
+     */
+    public SmoothlyDecayingRollingCounter(Duration rollingWindow, int numberChunks, boolean maintainRunningTotal) {
+        this(rollingWindow, numberChunks, Clock.defaultClock(), maintainRunningTotal);
+    }
+
     /**
      * @return the rolling window duration for this counter
      */
     public Duration getRollingWindow() {
-        return Duration.ofMillis((chunks.length - 1) * intervalBetweenResettingMillis);
+        return Duration.ofMillis((chunkCount - 1) * intervalBetweenResettingMillis);
     }
 
     /**
      * @return the number of chunks
      */
     public int getChunkCount() {
-        return chunks.length - 1;
+        return chunkCount - 1;
     }
 
     public SmoothlyDecayingRollingCounter(Duration rollingWindow, int numberChunks, Clock clock) {
+        this(rollingWindow, numberChunks, clock, false);
+    }
+
+    public SmoothlyDecayingRollingCounter(Duration rollingWindow, int numberChunks, Clock clock, boolean maintainRunningTotal) {
         if (numberChunks < 2) {
             throw new IllegalArgumentException("numberChunks should be >= 2");
         }
@@ -134,10 +163,28 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
         this.clock = clock;
         this.creationTimestamp = clock.currentTimeMillis();
 
-        this.chunks = new Chunk[numberChunks + 1];
-        for (int i = 0; i < chunks.length; i++) {
-            this.chunks[i] = new Chunk(i);
+        this.chunkCount = numberChunks + 1;
+        this.chunks = new AtomicLongArray(chunkCount * 2);
+        for (int i = 0; i < chunkCount; i++) {
+            long invalidationTimestamp = creationTimestamp + (chunkCount + i) * intervalBetweenResettingMillis;
+            this.chunks.set(timestampIndex(i), invalidationTimestamp);
         }
+
+        if (maintainRunningTotal) {
+            this.runningTotal = new AtomicLong();
+            // chunk with index i is expired first time at beginning of interval chunkCount + i
+            this.caughtUpIntervalRef = new AtomicLong(chunkCount - 1);
+        } else {
+            this.runningTotal = null;
+            this.caughtUpIntervalRef = null;
+        }
+    }
+
+    /**
+     * @return true if counter maintains running total
+     */
+    public boolean isRunningTotalMaintained() {
+        return runningTotal != null;
     }
 
     @Override
@@ -145,87 +192,131 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
         long nowMillis = clock.currentTimeMillis();
         long millisSinceCreation = nowMillis - creationTimestamp;
         long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
-        int chunkIndex = (int) intervalsSinceCreation % chunks.length;
-        chunks[chunkIndex].add(delta, nowMillis);
+        int chunkIndex = (int) (intervalsSinceCreation % chunkCount);
+        addToChunk(chunkIndex, delta, nowMillis, intervalsSinceCreation);
     }
 
     @Override
     public long getSum() {
+        if (runningTotal != null) {
+            return getSumFromRunningTotal();
+        }
         long currentTimeMillis = clock.currentTimeMillis();
 
         // To get as fresh value as possible we need to calculate sum in order from oldest to newest
         long millisSinceCreation = currentTimeMillis - creationTimestamp;
         long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
-        int newestChunkIndex = (int) intervalsSinceCreation % chunks.length;
+        int newestChunkIndex = (int) (intervalsSinceCreation % chunkCount);
 
         long sum = 0;
-        for (int i = newestChunkIndex + 1, iteration = 0; iteration < chunks.length; i++, iteration++) {
-            if (i == chunks.length) {
+        for (int i = newestChunkIndex + 1, iteration = 0; iteration < chunkCount; i++, iteration++) {
+            if (i == chunkCount) {
                 i = 0;
             }
-            Chunk chunk = chunks[i];
-            sum += chunk.getSum(currentTimeMillis);
+            sum += getChunkSum(i, currentTimeMillis);
         }
         return sum;
     }
 
-    private final class Chunk {
+    private long getSumFromRunningTotal() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        long millisSinceCreation = currentTimeMillis - creationTimestamp;
+        long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+        catchUp(intervalsSinceCreation, currentTimeMillis);
 
-        final AtomicReference<Phase> currentPhaseRef;
+        long sum = runningTotal.get();
 
-        Chunk(int chunkIndex) {
-            long invalidationTimestamp = creationTimestamp + (chunks.length + chunkIndex) * intervalBetweenResettingMillis;
-            this.currentPhaseRef = new AtomicReference<>(new Phase(invalidationTimestamp));
+        // all chunks except oldest are fully valuable, so only part of oldest chunk which is decayed should be subtracted
+        int oldestChunkIndex = (int) ((intervalsSinceCreation + 1) % chunkCount);
+        long proposedInvalidationTimestamp = chunks.get(timestampIndex(oldestChunkIndex));
+        long oldestSum = chunks.get(sumIndex(oldestChunkIndex));
+        if (proposedInvalidationTimestamp == Long.MAX_VALUE || currentTimeMillis >= proposedInvalidationTimestamp) {
+            return sum;
         }
-
-        long getSum(long currentTimeMillis) {
-            return currentPhaseRef.get().getSum(currentTimeMillis);
+        long beforeInvalidateMillis = proposedInvalidationTimestamp - currentTimeMillis;
+        if (beforeInvalidateMillis < intervalBetweenResettingMillis) {
+            double decayingCoefficient = (double) beforeInvalidateMillis / (double) intervalBetweenResettingMillis;
+            sum -= oldestSum - (long) ((double) oldestSum * decayingCoefficient);
         }
+        return sum;
+    }
 
-        void add(long delta, long currentTimeMillis) {
-            Phase currentPhase = currentPhaseRef.get();
-            while (currentTimeMillis >= currentPhase.proposedInvalidationTimestamp) {
-                long millisSinceCreation = currentTimeMillis - creationTimestamp;
-                long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
-                long nextProposedInvalidationTimestamp = creationTimestamp + (intervalsSinceCreation + chunks.length) * intervalBetweenResettingMillis;
-                Phase replacement = new Phase(nextProposedInvalidationTimestamp);
-                if (currentPhaseRef.compareAndSet(currentPhase, replacement)) {
-                    currentPhase = replacement;
-                } else {
-                    currentPhase = currentPhaseRef.get();
-                }
+    // resets the chunks which were expired since previous catch up and were not reset by writers, so their sums are subtracted from running total
+    private void catchUp(long intervalsSinceCreation, long currentTimeMillis) {
+        long caughtUpInterval = caughtUpIntervalRef.get();
+        if (intervalsSinceCreation <= caughtUpInterval) {
+            return;
+        }
+        // each chunk is expired once per chunkCount intervals, so there is no sense to check more than chunkCount intervals
+        long firstInterval = Math.max(caughtUpInterval + 1, intervalsSinceCreation - chunkCount + 1);
+        for (long interval = firstInterval; interval <= intervalsSinceCreation; interval++) {
+            int chunkIndex = (int) (interval % chunkCount);
+            if (chunks.get(timestampIndex(chunkIndex)) <= currentTimeMillis) {
+                // resetting is idempotent, if concurrent thread already reset the chunk then timestamp will be in future
+                addToChunk(chunkIndex, 0, currentTimeMillis, interval);
             }
-
-            currentPhase.sum.addAndGet(delta);
         }
-
-        @Override
-        public String toString() {
-            final StringBuilder sb = new StringBuilder("Chunk{");
-            sb.append("currentPhaseRef=").append(currentPhaseRef);
-            sb.append('}');
-            return sb.toString();
+        while (caughtUpInterval < intervalsSinceCreation && !caughtUpIntervalRef.compareAndSet(caughtUpInterval, intervalsSinceCreation)) {
+            caughtUpInterval = caughtUpIntervalRef.get();
         }
     }
 
-    private final class Phase {
-
-        final AtomicLong sum;
-        final long proposedInvalidationTimestamp;
+    private void addToChunk(int chunkIndex, long delta, long currentTimeMillis, long intervalsSinceCreation) {
+        int sumIndex = sumIndex(chunkIndex);
+        int timestampIndex = timestampIndex(chunkIndex);
+        while (true) {
+            long proposedInvalidationTimestamp = chunks.get(timestampIndex);
+            if (proposedInvalidationTimestamp == Long.MAX_VALUE) {
+                // The chunk is being reset by concurrent writer, the increment should be added only after resetting,
+                // otherwise it would be erased together with outdated sum. Resetting takes a few atomic operations, so just wait for it.
+                Thread.yield();
+                continue;
+            }
+            if (currentTimeMillis < proposedInvalidationTimestamp) {
+                if (delta != 0) {
+                    chunks.addAndGet(sumIndex, delta);
+                    if (runningTotal != null) {
+                        runningTotal.addAndGet(delta);
+                    }
+                }
+                return;
+            }
 
-        Phase(long proposedInvalidationTimestamp) {
-            this.sum = new AtomicLong();
-            this.proposedInvalidationTimestamp = proposedInvalidationTimestamp;
+            // The chunk is expired, try to become the thread which resets it.
+            // Instead of replacing the state, the sum is swapped in place, so nothing is allocated.
+            if (chunks.compareAndSet(timestampIndex, proposedInvalidationTimestamp, Long.MAX_VALUE)) {
+                long nextProposedInvalidationTimestamp = creationTimestamp + (intervalsSinceCreation + chunkCount) * intervalBetweenResettingMillis;
+                // the outdated sum is read only after chunk is claimed and atomically with resetting,
+                // concurrent writers wait until new timestamp is published, so their increments are not erased
+                long outdatedSum = chunks.getAndSet(sumIndex, delta);
+                if (runningTotal != null) {
+                    runningTotal.addAndGet(delta - outdatedSum);
+                }
+                chunks.set(timestampIndex, nextProposedInvalidationTimestamp);
+                return;
+            }
         }
+    }
 
-        long getSum(long currentTimeMillis) {
-            long proposedInvalidationTimestamp = this.proposedInvalidationTimestamp;
+    private long getChunkSum(int chunkIndex, long currentTimeMillis) {
+        int sumIndex = sumIndex(chunkIndex);
+        int timestampIndex = timestampIndex(chunkIndex);
+        while (true) {
+            long proposedInvalidationTimestamp = chunks.get(timestampIndex);
             if (currentTimeMillis >= proposedInvalidationTimestamp) {
                 // The chunk was unused by writers for a long time
                 return 0;
             }
+            if (proposedInvalidationTimestamp == Long.MAX_VALUE) {
+                // The chunk is being reset by writer right now, so it is the newest chunk which does not contain anything valuable yet
+                return 0;
+            }
 
-            long sum = this.sum.get();
+            long sum = chunks.get(sumIndex);
+            if (chunks.get(timestampIndex) != proposedInvalidationTimestamp) {
+                // the chunk was rotated concurrently, need to re-read the sum together with timestamp
+                continue;
+            }
 
             // if this is oldest chunk then we need to reduce its weight
             long beforeInvalidateMillis = proposedInvalidationTimestamp - currentTimeMillis;
@@ -236,15 +327,26 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
 
             return sum;
         }
+    }
+
+    private static int sumIndex(int chunkIndex) {
+        return chunkIndex * 2;
+    }
+
+    private static int timestampIndex(int chunkIndex) {
+        return chunkIndex * 2 + 1;
+    }
 
-        @Override
-        public String toString() {
-            final StringBuilder sb = new StringBuilder("Phase{");
-            sb.append("sum=").append(sum);
-            sb.append(", proposedInvalidationTimestamp=").append(proposedInvalidationTimestamp);
-            sb.append('}');
-            return sb.toString();
+    private String printChunks() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < chunkCount; i++) {
+            sb.append("\nchunk[").append(i).append("]=Chunk{")
+                    .append("sum=").append(chunks.get(sumIndex(i)))
+                    .append(", proposedInvalidationTimestamp=").append(chunks.get(timestampIndex(i)))
+                    .append('}');
         }
+        sb.append("\n}");
+        return sb.toString();
     }
 
     @Override
@@ -253,7 +355,8 @@ public class SmoothlyDecayingRollingCounter implements WindowCounter {
                 ", intervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
                 ", clock=" + clock +
                 ", creationTimestamp=" + creationTimestamp +
-                ", chunks=" + Printer.printArray(chunks, "chunk") +
+                ", runningTotal=" + runningTotal +
+                ", chunks=" + printChunks() +
                 '}';
     }
 
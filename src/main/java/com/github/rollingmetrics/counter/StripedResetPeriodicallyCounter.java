@@ -0,0 +1,124 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The striped analog of {@link ResetPeriodicallyCounter} which reset its state to zero each time when configured interval is elapsed.
+ *
+ * <p>
+ * Instead of single {@link AtomicLong} the value is stored in {@link LongAdder},
+ * so concurrent writers are spread across the set of cells which padded against false sharing
+ * and expanded on contention, and the sum is calculated by folding all cells.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free and practically contention-free, the only shared state touched by writer out of rotation is volatile read of next resetting time.</li>
+ *     <li>Sum reading is lock-free.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When counter is updated by many threads concurrently. For low contention prefer {@link ResetPeriodicallyCounter} which consumes less memory.</li>
+ *     <li>When you do not need in "rolling time window" semantic. Else use {@link StripedSmoothlyDecayingRollingCounter}</li>
+ *     <li>When you want to limit time which each increment takes affect to counter sum in order to avoid reporting of obsolete measurements.</li>
+ *     <li>Only if you accept the fact that several increments can be never observed by reader(because rotation to zero can happen before reader seen the written values).</li>
+ * </ul>
+ *
+ * @see ResetPeriodicallyCounter
+ * @see StripedSmoothlyDecayingRollingCounter
+ */
+public class StripedResetPeriodicallyCounter implements WindowCounter {
+
+    private final LongAdder value = new LongAdder();
+    private final long resetIntervalMillis;
+    private final Clock clock;
+    private final AtomicLong nextResetTimeMillisRef;
+
+    /**
+     * Constructs the counter which reset its state to zero each time when {@code resetInterval} is elapsed.
+     *
+     * @param resetInterval the interval between counter resetting
+     */
+    public StripedResetPeriodicallyCounter(Duration resetInterval) {
+        this(resetInterval, Clock.defaultClock());
+    }
+
+    public StripedResetPeriodicallyCounter(Duration resetInterval, Clock clock) {
+        if (resetInterval.isNegative() || resetInterval.isZero()) {
+            throw new IllegalArgumentException("intervalBetweenChunkResetting must be a positive duration");
+        }
+        this.resetIntervalMillis = resetInterval.toMillis();
+        this.clock = clock;
+        this.nextResetTimeMillisRef = new AtomicLong(clock.currentTimeMillis() + resetIntervalMillis);
+    }
+
+    @Override
+    public void add(long delta) {
+        while (true) {
+            long nextResetTimeMillis = nextResetTimeMillisRef.get();
+            long currentTimeMillis = clock.currentTimeMillis();
+            if (currentTimeMillis < nextResetTimeMillis) {
+                value.add(delta);
+                return;
+            }
+            long currentValue = value.sum();
+            if (nextResetTimeMillisRef.compareAndSet(nextResetTimeMillis, Long.MAX_VALUE)) {
+                value.add(delta - currentValue);
+                nextResetTimeMillisRef.set(currentTimeMillis + resetIntervalMillis);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long getSum() {
+        while (true) {
+            long nextResetTimeMillis = nextResetTimeMillisRef.get();
+            long currentValue = value.sum();
+            long currentTimeMillis = clock.currentTimeMillis();
+            if (currentTimeMillis < nextResetTimeMillis) {
+                return currentValue;
+            }
+
+            if (nextResetTimeMillisRef.compareAndSet(nextResetTimeMillis, Long.MAX_VALUE)) {
+                value.add(-currentValue);
+                nextResetTimeMillisRef.set(currentTimeMillis + resetIntervalMillis);
+                return value.sum();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StripedResetPeriodicallyCounter{" +
+                "value=" + value +
+                ", resetIntervalMillis=" + resetIntervalMillis +
+                ", clock=" + clock +
+                ", nextResetTimeMillisRef=" + nextResetTimeMillisRef +
+                '}';
+    }
+
+}
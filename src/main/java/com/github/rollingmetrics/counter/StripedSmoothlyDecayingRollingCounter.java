@@ -0,0 +1,246 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.histogram.util.Printer;
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The striped analog of {@link SmoothlyDecayingRollingCounter}, the rolling time window counter implementation which resets its state by chunks.
+ *
+ * <p>
+ * The sum of each chunk is stored in {@link LongAdder} instead of single {@link java.util.concurrent.atomic.AtomicLong},
+ * so concurrent writers are spread across the set of cells which padded against false sharing
+ * and expanded on contention, and the sum of chunk is calculated by folding all its cells.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free and practically contention-free.
+ *     <li>Sum reading is lock-free.
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>Only when you need in "rolling time window" semantic.</li>
+ *     <li>When counter is updated by many threads concurrently. For low contention prefer {@link SmoothlyDecayingRollingCounter} which consumes less memory.</li>
+ * </ul>
+ *
+ * <p>
+ * Performance considerations:
+ * <ul>
+ *     <li>The write latency does not depend from count of chunk, frequency of chunk rotation and level of contention between writers.</li>
+ *     <li>The memory consumed by each chunk grows with level of contention, up to the number of cores multiplied to cache line size.</li>
+ *     <li>The sum calculation costs more than in {@link SmoothlyDecayingRollingCounter} because of folding the cells of each chunk,
+ *     so huge count of chunks should be avoided even more carefully.</li>
+ * </ul>
+ *
+ * <p> Example of usage:
+ * <pre><code>
+ *         // constructs the counter which divided by 10 chunks with 60 seconds time window.
+ *         // one chunk will be reset to zero after each 6 second,
+ *         WindowCounter counter = new StripedSmoothlyDecayingRollingCounter(Duration.ofSeconds(60), 10);
+ *         counter.add(42);
+ *     </code>
+ * </pre>
+ *
+ * @see SmoothlyDecayingRollingCounter
+ */
+public class StripedSmoothlyDecayingRollingCounter implements WindowCounter {
+
+    private final long intervalBetweenResettingMillis;
+    private final Clock clock;
+    private final long creationTimestamp;
+
+    private final Chunk[] chunks;
+
+    /**
+     * Constructs the chunked counter divided by {@code numberChunks}.
+     * The counter will invalidate one chunk each time when {@code rollingWindow/numberChunks} millis has elapsed,
+     * except oldest chunk which invalidated continuously.
+     * The memory consumed by counter and latency of sum calculation depend directly from {@code numberChunks}
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split counter
+     */
+    public StripedSmoothlyDecayingRollingCounter(Duration rollingWindow, int numberChunks) {
+        this(rollingWindow, numberChunks, Clock.defaultClock());
+    }
+
+    public StripedSmoothlyDecayingRollingCounter(Duration rollingWindow, int numberChunks, Clock clock) {
+        if (numberChunks < 2) {
+            throw new IllegalArgumentException("numberChunks should be >= 2");
+        }
+
+        if (numberChunks > SmoothlyDecayingRollingCounter.MAX_CHUNKS) {
+            throw new IllegalArgumentException("number of chunks should be <=" + SmoothlyDecayingRollingCounter.MAX_CHUNKS);
+        }
+
+        long rollingWindowMillis = rollingWindow.toMillis();
+        this.intervalBetweenResettingMillis = rollingWindowMillis / numberChunks;
+        if (intervalBetweenResettingMillis < SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS) {
+            throw new IllegalArgumentException("intervalBetweenResettingMillis should be >=" + SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS);
+        }
+
+        this.clock = clock;
+        this.creationTimestamp = clock.currentTimeMillis();
+
+        this.chunks = new Chunk[numberChunks + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            this.chunks[i] = new Chunk(i);
+        }
+    }
+
+    /**
+     * @return the rolling window duration for this counter
+     */
+    public Duration getRollingWindow() {
+        return Duration.ofMillis((chunks.length - 1) * intervalBetweenResettingMillis);
+    }
+
+    /**
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return chunks.length - 1;
+    }
+
+    @Override
+    public void add(long delta) {
+        long nowMillis = clock.currentTimeMillis();
+        long millisSinceCreation = nowMillis - creationTimestamp;
+        long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+        int chunkIndex = (int) intervalsSinceCreation % chunks.length;
+        chunks[chunkIndex].add(delta, nowMillis);
+    }
+
+    @Override
+    public long getSum() {
+        long currentTimeMillis = clock.currentTimeMillis();
+
+        // To get as fresh value as possible we need to calculate sum in order from oldest to newest
+        long millisSinceCreation = currentTimeMillis - creationTimestamp;
+        long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+        int newestChunkIndex = (int) intervalsSinceCreation % chunks.length;
+
+        long sum = 0;
+        for (int i = newestChunkIndex + 1, iteration = 0; iteration < chunks.length; i++, iteration++) {
+            if (i == chunks.length) {
+                i = 0;
+            }
+            Chunk chunk = chunks[i];
+            sum += chunk.getSum(currentTimeMillis);
+        }
+        return sum;
+    }
+
+    private final class Chunk {
+
+        final AtomicReference<Phase> currentPhaseRef;
+
+        Chunk(int chunkIndex) {
+            long invalidationTimestamp = creationTimestamp + (chunks.length + chunkIndex) * intervalBetweenResettingMillis;
+            this.currentPhaseRef = new AtomicReference<>(new Phase(invalidationTimestamp));
+        }
+
+        long getSum(long currentTimeMillis) {
+            return currentPhaseRef.get().getSum(currentTimeMillis);
+        }
+
+        void add(long delta, long currentTimeMillis) {
+            Phase currentPhase = currentPhaseRef.get();
+            while (currentTimeMillis >= currentPhase.proposedInvalidationTimestamp) {
+                long millisSinceCreation = currentTimeMillis - creationTimestamp;
+                long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+                long nextProposedInvalidationTimestamp = creationTimestamp + (intervalsSinceCreation + chunks.length) * intervalBetweenResettingMillis;
+                Phase replacement = new Phase(nextProposedInvalidationTimestamp);
+                if (currentPhaseRef.compareAndSet(currentPhase, replacement)) {
+                    currentPhase = replacement;
+                } else {
+                    currentPhase = currentPhaseRef.get();
+                }
+            }
+
+            currentPhase.sum.add(delta);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Chunk{");
+            sb.append("currentPhaseRef=").append(currentPhaseRef);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    private final class Phase {
+
+        // cells of LongAdder are allocated lazily, so phase which was not contended costs the same as AtomicLong
+        final LongAdder sum;
+        final long proposedInvalidationTimestamp;
+
+        Phase(long proposedInvalidationTimestamp) {
+            this.sum = new LongAdder();
+            this.proposedInvalidationTimestamp = proposedInvalidationTimestamp;
+        }
+
+        long getSum(long currentTimeMillis) {
+            long proposedInvalidationTimestamp = this.proposedInvalidationTimestamp;
+            if (currentTimeMillis >= proposedInvalidationTimestamp) {
+                // The chunk was unused by writers for a long time
+                return 0;
+            }
+
+            long sum = this.sum.sum();
+
+            // if this is oldest chunk then we need to reduce its weight
+            long beforeInvalidateMillis = proposedInvalidationTimestamp - currentTimeMillis;
+            if (beforeInvalidateMillis < intervalBetweenResettingMillis) {
+                double decayingCoefficient = (double) beforeInvalidateMillis / (double) intervalBetweenResettingMillis;
+                sum = (long) ((double) sum * decayingCoefficient);
+            }
+
+            return sum;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Phase{");
+            sb.append("sum=").append(sum);
+            sb.append(", proposedInvalidationTimestamp=").append(proposedInvalidationTimestamp);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StripedSmoothlyDecayingRollingCounter{" +
+                "intervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
+                ", clock=" + clock +
+                ", creationTimestamp=" + creationTimestamp +
+                ", chunks=" + Printer.printArray(chunks, "chunk") +
+                '}';
+    }
+
+}
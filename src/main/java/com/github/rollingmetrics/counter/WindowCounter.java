@@ -23,6 +23,7 @@ package com.github.rollingmetrics.counter;
  * @see SmoothlyDecayingRollingCounter
  * @see ResetOnSnapshotCounter
  * @see ResetPeriodicallyCounter
+ * @see ExponentiallyDecayingCounter
  */
 public interface WindowCounter {
 
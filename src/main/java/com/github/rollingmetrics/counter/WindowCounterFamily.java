@@ -0,0 +1,479 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.ReusableTask;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The family of rolling time window counters distinguished by key, for example by tenant or by endpoint.
+ * Each counter of family has the same semantic as {@link SmoothlyDecayingRollingCounter}.
+ *
+ * <p>
+ * In opposite to map of {@link SmoothlyDecayingRollingCounter}s the values of all keys are stored in the shared primitive array,
+ * and chunks are rotated once per family instead of once per key, so memory footprint does not depend from amount of writes,
+ * and there are no per key objects except the mapping of key to its slot in the array.
+ *
+ * <p>
+ * Memory consumption is bounded by {@code maxKeys}:
+ * <ul>
+ *     <li>When all slots are occupied, the values of new keys are accumulated in the single overflow bucket, see {@link #getOverflowSum()}.</li>
+ *     <li>The key which was not updated during rolling window is evicted, its slot is reused for other key after one more rolling window.
+ *     The delay guarantees that writer which resolved the slot before eviction does not affect the sum of other key, unless writer was paused for longer than rolling window.</li>
+ * </ul>
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing of existing key is lock-free, the registration of new key takes the lock of {@link ConcurrentHashMap} bin.
+ *     The same is true for keys which are accounted in overflow bucket, so {@code maxKeys} should be chosen with reserve.</li>
+ *     <li>Reading is lock-free.</li>
+ *     <li>Write which happens concurrently with eviction of its key can be lost.</li>
+ *     <li>Write which happens while its chunk is rotated is deferred, and becomes visible for reading when rotation completes.</li>
+ * </ul>
+ *
+ * <p>
+ * Performance considerations:
+ * <ul>
+ *     <li>Writing costs one map lookup and one atomic addition.</li>
+ *     <li>Chunk rotation costs O(maxKeys) and happens once per {@code rollingWindow/numberChunks} for whole family,
+ *     the rotation and eviction of idle keys are executed in background, so writer which detects the rotation just submits pre-allocated task.</li>
+ *     <li>{@link #getSum(Object)} costs O(numberChunks), {@link #topK(int)} costs O(keys * numberChunks).</li>
+ * </ul>
+ *
+ * <p> Example of usage:
+ * <pre><code>
+ *         // constructs the family which tracks requests per tenant during last minute and tracks at most 10_000 tenants individually
+ *         WindowCounterFamily&lt;String&gt; requests = new WindowCounterFamily&lt;&gt;(Duration.ofSeconds(60), 10, 10_000);
+ *         requests.add(tenantId, 1);
+ *         Map&lt;String, Long&gt; heaviestTenants = requests.topK(10);
+ *     </code>
+ * </pre>
+ *
+ * @param <K> the type of key
+ */
+public class WindowCounterFamily<K> {
+
+    private final long intervalBetweenResettingMillis;
+    private final Clock clock;
+    private final Executor backgroundExecutor;
+    private final long creationTimestamp;
+    private final int chunkCount;
+    private final int maxKeys;
+    private final int overflowSlot;
+
+    // value of slot s in chunk c is stored at c * (maxKeys + 1) + s, so rotation of chunk touches the contiguous region
+    private final AtomicLongArray values;
+    // the timestamp when chunk should be invalidated, the Long.MAX_VALUE means that chunk is being rotated right now
+    private final AtomicLongArray invalidationTimestamps;
+    // the next invalidation timestamp of chunk which is claimed for rotation, zero means that chunk is not claimed
+    private final AtomicLongArray claimedInvalidationTimestamps;
+    // the writes which happen while chunk is rotated, they are moved to the fresh chunk when rotation completes
+    private final AtomicLongArray deferredValues;
+    private final ReusableTask rotationTask = new ReusableTask(this, this::rotate);
+
+    private final ConcurrentHashMap<K, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger neverUsedSlots = new AtomicInteger();
+    private final ConcurrentLinkedQueue<ReleasedSlot> releasedSlots = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs the family of counters divided by {@code numberChunks}.
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split counters
+     * @param maxKeys the maximum amount of keys which are tracked individually
+     */
+    public WindowCounterFamily(Duration rollingWindow, int numberChunks, int maxKeys) {
+        this(rollingWindow, numberChunks, maxKeys, Clock.defaultClock());
+    }
+
+    public WindowCounterFamily(Duration rollingWindow, int numberChunks, int maxKeys, Clock clock) {
+        this(rollingWindow, numberChunks, maxKeys, clock, ResilientExecutionUtil.getInstance().getBackgroundExecutor());
+    }
+
+    /**
+     * Constructs the family of counters divided by {@code numberChunks}, which rotates chunks on {@code backgroundExecutor}.
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split counters
+     * @param maxKeys the maximum amount of keys which are tracked individually
+     * @param clock the clock
+     * @param backgroundExecutor the executor which rotates chunks and evicts idle keys, by default {@link ResilientExecutionUtil#getBackgroundExecutor()}
+     */
+    public WindowCounterFamily(Duration rollingWindow, int numberChunks, int maxKeys, Clock clock, Executor backgroundExecutor) {
+        if (numberChunks < 2) {
+            throw new IllegalArgumentException("numberChunks should be >= 2");
+        }
+        if (numberChunks > SmoothlyDecayingRollingCounter.MAX_CHUNKS) {
+            throw new IllegalArgumentException("number of chunks should be <=" + SmoothlyDecayingRollingCounter.MAX_CHUNKS);
+        }
+        long rollingWindowMillis = rollingWindow.toMillis();
+        this.intervalBetweenResettingMillis = rollingWindowMillis / numberChunks;
+        if (intervalBetweenResettingMillis < SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS) {
+            throw new IllegalArgumentException("intervalBetweenResettingMillis should be >=" + SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS);
+        }
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("maxKeys should be positive");
+        }
+
+        this.clock = clock;
+        this.backgroundExecutor = Objects.requireNonNull(backgroundExecutor);
+        this.creationTimestamp = clock.currentTimeMillis();
+        this.chunkCount = numberChunks + 1;
+        this.maxKeys = maxKeys;
+        this.overflowSlot = maxKeys;
+        this.values = new AtomicLongArray(chunkCount * (maxKeys + 1));
+        this.invalidationTimestamps = new AtomicLongArray(chunkCount);
+        this.claimedInvalidationTimestamps = new AtomicLongArray(chunkCount);
+        this.deferredValues = new AtomicLongArray(maxKeys + 1);
+        for (int i = 0; i < chunkCount; i++) {
+            invalidationTimestamps.set(i, creationTimestamp + (chunkCount + i) * intervalBetweenResettingMillis);
+        }
+    }
+
+    /**
+     * Increments the counter of {@code key} by {@code delta}.
+     * If all slots are occupied by other keys, then {@code delta} is added to overflow bucket.
+     *
+     * @param key the key of counter
+     * @param delta the amount by which the counter will be increased
+     */
+    public void add(K key, long delta) {
+        if (key == null) {
+            throw new IllegalArgumentException("key should not be null");
+        }
+        long nowMillis = clock.currentTimeMillis();
+        long intervalsSinceCreation = (nowMillis - creationTimestamp) / intervalBetweenResettingMillis;
+        int chunkIndex = (int) (intervalsSinceCreation % chunkCount);
+        rotateIfNeeded(chunkIndex, nowMillis, intervalsSinceCreation);
+
+        int slotIndex = resolveSlot(key, nowMillis);
+        while (true) {
+            long proposedInvalidationTimestamp = invalidationTimestamps.get(chunkIndex);
+            if (proposedInvalidationTimestamp == Long.MAX_VALUE) {
+                deferredValues.addAndGet(slotIndex, delta);
+                return;
+            }
+            if (nowMillis < proposedInvalidationTimestamp) {
+                values.addAndGet(valueIndex(chunkIndex, slotIndex), delta);
+                return;
+            }
+            rotateIfNeeded(chunkIndex, nowMillis, intervalsSinceCreation);
+        }
+    }
+
+    /**
+     * Returns the current value of counter for {@code key}, the keys which were never seen or were accounted in overflow bucket have zero value.
+     *
+     * @param key the key of counter
+     *
+     * @return the current value of counter for {@code key}
+     */
+    public long getSum(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key should not be null");
+        }
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            return 0;
+        }
+        return sumOfSlot(slot.index, chunkWeights(clock.currentTimeMillis()));
+    }
+
+    /**
+     * @return the current value of bucket which accumulates values of keys which were not tracked individually because of {@code maxKeys} limit
+     */
+    public long getOverflowSum() {
+        return sumOfSlot(overflowSlot, chunkWeights(clock.currentTimeMillis()));
+    }
+
+    /**
+     * Returns the keys with biggest values.
+     *
+     * @param k the maximum amount of keys to return
+     *
+     * @return the keys with biggest values ordered by value descending, keys with zero value are not included
+     */
+    public Map<K, Long> topK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k should be positive");
+        }
+        double[] weights = chunkWeights(clock.currentTimeMillis());
+        PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<K, Slot> entry : slots.entrySet()) {
+            long sum = sumOfSlot(entry.getValue().index, weights);
+            if (sum == 0) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), sum));
+            } else if (heap.peek().getValue() < sum) {
+                heap.poll();
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), sum));
+            }
+        }
+        List<Map.Entry<K, Long>> sorted = new ArrayList<>(heap);
+        sorted.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        Map<K, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<K, Long> entry : sorted) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the view of counter for {@code key}, which can be used in places where {@link WindowCounter} is expected.
+     *
+     * @param key the key of counter
+     *
+     * @return the view of counter for {@code key}
+     */
+    public WindowCounter asCounter(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key should not be null");
+        }
+        return new WindowCounter() {
+            @Override
+            public void add(long delta) {
+                WindowCounterFamily.this.add(key, delta);
+            }
+
+            @Override
+            public long getSum() {
+                return WindowCounterFamily.this.getSum(key);
+            }
+        };
+    }
+
+    /**
+     * @return the amount of keys which are tracked individually right now
+     */
+    public int getKeyCount() {
+        return slots.size();
+    }
+
+    /**
+     * @return the maximum amount of keys which are tracked individually
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @return the rolling window duration for this family
+     */
+    public Duration getRollingWindow() {
+        return Duration.ofMillis((chunkCount - 1) * intervalBetweenResettingMillis);
+    }
+
+    /**
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount - 1;
+    }
+
+    private int resolveSlot(K key, long nowMillis) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(key, k -> allocateSlot(nowMillis));
+            if (slot == null) {
+                return overflowSlot;
+            }
+        }
+        if (slot.lastUpdateMillis != nowMillis) {
+            slot.lastUpdateMillis = nowMillis;
+        }
+        return slot.index;
+    }
+
+    private Slot allocateSlot(long nowMillis) {
+        ReleasedSlot released = releasedSlots.peek();
+        if (released != null && nowMillis - released.releaseTimestamp >= rollingWindowMillis() && releasedSlots.remove(released)) {
+            return new Slot(released.index, nowMillis);
+        }
+        while (true) {
+            int index = neverUsedSlots.get();
+            if (index >= maxKeys) {
+                return null;
+            }
+            if (neverUsedSlots.compareAndSet(index, index + 1)) {
+                return new Slot(index, nowMillis);
+            }
+        }
+    }
+
+    private void rotateIfNeeded(int chunkIndex, long currentTimeMillis, long intervalsSinceCreation) {
+        long proposedInvalidationTimestamp = invalidationTimestamps.get(chunkIndex);
+        if (currentTimeMillis < proposedInvalidationTimestamp) {
+            // the chunk is actual or concurrent writer already rotates it
+            return;
+        }
+        if (!invalidationTimestamps.compareAndSet(chunkIndex, proposedInvalidationTimestamp, Long.MAX_VALUE)) {
+            // concurrent writer already rotates this chunk
+            return;
+        }
+        // Current thread is responsible to rotate the chunk, the O(maxKeys) work is done in background.
+        long nextProposedInvalidationTimestamp = creationTimestamp + (intervalsSinceCreation + chunkCount) * intervalBetweenResettingMillis;
+        claimedInvalidationTimestamps.set(chunkIndex, nextProposedInvalidationTimestamp);
+        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, rotationTask);
+    }
+
+    private void rotate() {
+        // The single execution rotates all claimed chunks, so it does not matter whether task was armed by several claims or not.
+        int freshChunkIndex = -1;
+        long freshInvalidationTimestamp = 0;
+        for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+            long nextProposedInvalidationTimestamp = claimedInvalidationTimestamps.getAndSet(chunkIndex, 0);
+            if (nextProposedInvalidationTimestamp == 0) {
+                continue;
+            }
+            // writers do not touch the chunk until new invalidation timestamp is published, so it can be reset in place
+            int offset = chunkIndex * (maxKeys + 1);
+            for (int slot = 0; slot <= maxKeys; slot++) {
+                values.lazySet(offset + slot, 0);
+            }
+            invalidationTimestamps.set(chunkIndex, nextProposedInvalidationTimestamp);
+            if (nextProposedInvalidationTimestamp > freshInvalidationTimestamp) {
+                freshInvalidationTimestamp = nextProposedInvalidationTimestamp;
+                freshChunkIndex = chunkIndex;
+            }
+        }
+        if (freshChunkIndex == -1) {
+            return;
+        }
+
+        // move the writes which happened during rotation to the fresh chunk,
+        // the write which is deferred after the slot was drained is moved by next rotation
+        int offset = freshChunkIndex * (maxKeys + 1);
+        for (int slot = 0; slot <= maxKeys; slot++) {
+            if (deferredValues.get(slot) != 0) {
+                values.addAndGet(offset + slot, deferredValues.getAndSet(slot, 0));
+            }
+        }
+        evictIdleKeys(clock.currentTimeMillis());
+    }
+
+    private void evictIdleKeys(long currentTimeMillis) {
+        // all values written by idle key belong to expired chunks, so nothing is lost by eviction
+        long rollingWindowMillis = rollingWindowMillis();
+        for (Map.Entry<K, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            if (currentTimeMillis - slot.lastUpdateMillis >= rollingWindowMillis && slots.remove(entry.getKey(), slot)) {
+                releasedSlots.add(new ReleasedSlot(slot.index, currentTimeMillis));
+            }
+        }
+    }
+
+    private double[] chunkWeights(long currentTimeMillis) {
+        double[] weights = new double[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long proposedInvalidationTimestamp = invalidationTimestamps.get(i);
+            if (currentTimeMillis >= proposedInvalidationTimestamp || proposedInvalidationTimestamp == Long.MAX_VALUE) {
+                // the chunk is expired, or it is being reset right now so it is the newest chunk which does not contain anything valuable yet
+                continue;
+            }
+            long beforeInvalidateMillis = proposedInvalidationTimestamp - currentTimeMillis;
+            if (beforeInvalidateMillis < intervalBetweenResettingMillis) {
+                // the oldest chunk loses its weight continuously
+                weights[i] = (double) beforeInvalidateMillis / (double) intervalBetweenResettingMillis;
+            } else {
+                weights[i] = 1.0;
+            }
+        }
+        return weights;
+    }
+
+    private long sumOfSlot(int slotIndex, double[] weights) {
+        long sum = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            double weight = weights[i];
+            if (weight == 0.0) {
+                continue;
+            }
+            long value = values.get(valueIndex(i, slotIndex));
+            sum += weight == 1.0 ? value : (long) ((double) value * weight);
+        }
+        return sum;
+    }
+
+    private int valueIndex(int chunkIndex, int slotIndex) {
+        return chunkIndex * (maxKeys + 1) + slotIndex;
+    }
+
+    private long rollingWindowMillis() {
+        return chunkCount * intervalBetweenResettingMillis;
+    }
+
+    private static final class Slot {
+
+        final int index;
+        volatile long lastUpdateMillis;
+
+        Slot(int index, long lastUpdateMillis) {
+            this.index = index;
+            this.lastUpdateMillis = lastUpdateMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Slot{" +
+                    "index=" + index +
+                    ", lastUpdateMillis=" + lastUpdateMillis +
+                    '}';
+        }
+    }
+
+    private static final class ReleasedSlot {
+
+        final int index;
+        final long releaseTimestamp;
+
+        ReleasedSlot(int index, long releaseTimestamp) {
+            this.index = index;
+            this.releaseTimestamp = releaseTimestamp;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WindowCounterFamily{" +
+                "intervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
+                ", clock=" + clock +
+                ", creationTimestamp=" + creationTimestamp +
+                ", maxKeys=" + maxKeys +
+                ", slots=" + slots +
+                '}';
+    }
+
+}
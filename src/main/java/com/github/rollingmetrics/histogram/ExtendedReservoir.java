@@ -0,0 +1,75 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Reservoir;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link Reservoir} extended by operations which are not expressible via Dropwizard API,
+ * but can be implemented efficiently by reservoirs backed by {@link org.HdrHistogram.Recorder}.
+ *
+ * <p>
+ * The instances of this interface can be constructed via {@link HdrBuilder#buildExtendedReservoir()}.
+ *
+ * @see HdrBuilder#buildExtendedReservoir()
+ */
+public interface ExtendedReservoir extends Reservoir {
+
+    /**
+     * Records the batch of values.
+     * The result is the same as invocation of {@link #update(long)} for each value from batch,
+     * but the cost of validation and time measuring is paid once per batch instead of once per value.
+     *
+     * @param values the array which contains values to record
+     * @param offset the index of first value to record
+     * @param length the count of values to record
+     */
+    void update(long[] values, int offset, int length);
+
+    /**
+     * Encodes the values which are actual at the moment into compressed binary format of HdrHistogram,
+     * the result can be decoded via {@link org.HdrHistogram.Histogram#decodeFromCompressedByteBuffer(ByteBuffer, long)}
+     * or shipped as entry of HdrHistogram interval log.
+     *
+     * <p>
+     * In opposite to {@link com.codahale.metrics.Snapshot#dump(java.io.OutputStream)} the distribution is not expanded to list of values,
+     * and the histogram is encoded directly from internal state of reservoir without intermediate copy,
+     * so exporting of full distribution costs a few kilobytes.
+     * The bytes are written to {@code reusableBuffer} when it is heap buffer with enough capacity,
+     * otherwise the new heap buffer is allocated, so the caller should keep the returned buffer in order to reuse it for next invocation.
+     *
+     * @param reusableBuffer the buffer to reuse, can be null
+     * @return the buffer which contains encoded histogram between zero position and limit
+     */
+    ByteBuffer encodeIntoCompressedByteBuffer(ByteBuffer reusableBuffer);
+
+    /**
+     * Takes the snapshot into provided buffer instead of allocating new snapshot,
+     * the values at quantiles predefined by {@code buffer} are extracted independently of percentiles configured for this reservoir.
+     * The snapshot caching configured via {@link HdrBuilder#withSnapshotCachingDuration(java.time.Duration)} is not applied.
+     *
+     * @param buffer the buffer to fill
+     * @return the same {@code buffer}
+     *
+     * @see SnapshotBuffer#takeSnapshots(java.util.List, SnapshotBuffer[], double[])
+     */
+    SnapshotBuffer getSnapshot(SnapshotBuffer buffer);
+
+}
@@ -21,7 +21,10 @@ import com.codahale.metrics.*;
 import com.github.rollingmetrics.histogram.accumulator.Accumulator;
 import com.github.rollingmetrics.histogram.accumulator.ResetByChunksAccumulator;
 import com.github.rollingmetrics.histogram.accumulator.ResetOnSnapshotAccumulator;
+import com.github.rollingmetrics.histogram.accumulator.SmoothlyDecayingAccumulator;
+import com.github.rollingmetrics.histogram.accumulator.ThreadLocalBufferingAccumulator;
 import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.RotationScheduler;
 import com.github.rollingmetrics.histogram.accumulator.UniformAccumulator;
 import org.HdrHistogram.Recorder;
 
@@ -31,7 +34,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
-import java.util.function.Supplier;
 
 /**
  * The builder for creation and registration histograms, timers and reservoirs.
@@ -70,6 +72,7 @@ public class HdrBuilder {
     // meaningful limits to disallow user to kill performance(or memory footprint) by mistake
     static final int MAX_CHUNKS = 60;
     static final long MIN_CHUNK_RESETTING_INTERVAL_MILLIS = 1000;
+    static final int MAX_THREAD_LOCAL_BUFFER_SIZE = 64 * 1024;
 
     static int DEFAULT_NUMBER_OF_SIGNIFICANT_DIGITS = 2;
     static AccumulationFactory DEFAULT_ACCUMULATION_STRATEGY = AccumulationFactory.UNIFORM;
@@ -151,6 +154,39 @@ public class HdrBuilder {
         return resetReservoirPeriodicallyByChunks(resettingPeriodMillis, numberChunks);
     }
 
+    /**
+     * Reservoir configured with this strategy will be divided to <tt>numberChunks + 1</tt> parts,
+     * one chunk will be cleared after each <tt>rollingTimeWindow / numberChunks</tt> elapsed,
+     * and instead of expiring the oldest chunk at once its counts are proportionally down-weighted at snapshot time,
+     * in same way as {@link com.github.rollingmetrics.counter.SmoothlyDecayingRollingCounter} decays the sum of oldest chunk.
+     * <p>
+     * In opposite to <tt>resetReservoirPeriodicallyByChunks</tt> the percentiles do not jump at each chunk boundary,
+     * so smooth curves are achieved with few chunks, for example 4-6 chunks provide the same user experience as tens of chunks
+     * for <tt>resetReservoirPeriodicallyByChunks</tt>, at a fraction of memory footprint.
+     * The price is the snapshot extraction which iterates over recorded values of oldest chunk.
+     * </p>
+     *
+     * @param rollingTimeWindow the total rolling time window
+     * @param numberChunks    specifies number of chunks by which reservoir will be slitted
+     * @return this builder instance
+     * @see #resetReservoirPeriodicallyByChunks(Duration, int)
+     */
+    public HdrBuilder resetReservoirSmoothlyByChunks(Duration rollingTimeWindow, int numberChunks) {
+        if (numberChunks < 2) {
+            throw new IllegalArgumentException("numberChunks should be >= 2");
+        }
+        if (numberChunks > MAX_CHUNKS) {
+            throw new IllegalArgumentException("numberChunks should be <= " + MAX_CHUNKS);
+        }
+        long resettingPeriodMillis = rollingTimeWindow.toMillis() / numberChunks;
+        if (resettingPeriodMillis < MIN_CHUNK_RESETTING_INTERVAL_MILLIS) {
+            throw new IllegalArgumentException("Interval between resetting must be >= " + MIN_CHUNK_RESETTING_INTERVAL_MILLIS + " millis");
+        }
+
+        accumulationFactory = builder -> new SmoothlyDecayingAccumulator(builder.buildRecorder(), numberChunks, resettingPeriodMillis, builder.clock, builder.getExecutor(), builder.rotationScheduler.orElse(null));
+        return this;
+    }
+
     /**
      * Reservoir configured with this strategy will store all values since the reservoir was created.
      *
@@ -252,6 +288,56 @@ public class HdrBuilder {
         return this;
     }
 
+    /**
+     * Configures the reservoir to collect values into the buffer private for each writer thread,
+     * the buffered values are moved to reservoir by batches when buffer is full or snapshot is taken.
+     *
+     * <p>
+     * Thread-local buffering nearly eliminates contention between writers, but introduces the staleness:
+     * up to {@code bufferSize} values per writer thread stay invisible until next snapshot or buffer overflow,
+     * and in case of chunked reservoirs these values are attributed to the chunk which is current at moment of moving from buffer.
+     * Use this option only for very hot metrics updated by many threads, for other cases it just wastes memory.
+     *
+     * <p>
+     * Values written by threads which died before snapshot are not lost, because buffers are registered inside reservoir,
+     * the buffers of dead threads are drained and released at next snapshot.
+     *
+     * @param bufferSize the count of values which can be buffered by each writer thread, should be between 1 and {@value #MAX_THREAD_LOCAL_BUFFER_SIZE}
+     *
+     * @return this builder instance
+     */
+    public HdrBuilder withThreadLocalBuffering(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize should be positive");
+        }
+        if (bufferSize > MAX_THREAD_LOCAL_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize should be <= " + MAX_THREAD_LOCAL_BUFFER_SIZE);
+        }
+        this.threadLocalBufferSize = Optional.of(bufferSize);
+        return this;
+    }
+
+    /**
+     * Configures the reservoir to store archived chunks outside of Java heap.
+     *
+     * <p>
+     * This option has effect only for reservoirs configured via {@link #resetReservoirPeriodicallyByChunks(Duration, int)}:
+     * all history chunks are stored as counts of buckets, one long per bucket, in single direct {@link java.nio.ByteBuffer} allocated once per reservoir,
+     * so only histograms required for concurrent recording and snapshot extraction stay on the heap.
+     * The chunk is loaded into the histogram used for snapshot extraction only when it enters or leaves the rolling window,
+     * so snapshot latency is not affected by this option.
+     *
+     * <p>
+     * Off-heap storage requires fixed size of histogram, so {@link #withHighestTrackableValue(long, OverflowResolver)} must be configured too.
+     * Use {@link #getEstimatedHeapFootprintInBytes()} and {@link #getEstimatedOffHeapFootprintInBytes()} to estimate the effect.
+     *
+     * @return this builder instance
+     */
+    public HdrBuilder withOffHeapStorage() {
+        this.offHeapStorage = true;
+        return this;
+    }
+
     /**
      * Configures the period for which taken snapshot will be cached.
      *
@@ -267,6 +353,35 @@ public class HdrBuilder {
         } else {
             this.snapshotCachingDurationMillis = Optional.of(duration.toMillis());
         }
+        this.snapshotMaxStalenessMillis = Optional.empty();
+        return this;
+    }
+
+    /**
+     * Configures the period for which taken snapshot will be cached, and the period for which expired snapshot can be served
+     * while new snapshot is taken in background.
+     *
+     * <p>
+     * In contrast to {@link #withSnapshotCachingDuration(Duration)}, the readers are not blocked while snapshot is being refreshed:
+     * the first reader which observes expired snapshot submits refreshing to background executor configured via {@link #withBackgroundExecutor(Executor)},
+     * and all readers get the expired snapshot until new one is taken.
+     * So the latency of reading stays flat even when taking of snapshot is expensive, for example when reservoir has many chunks.
+     * When snapshot is older than {@code duration + maxStaleness} it is never served, even if refreshing is still in progress:
+     * the reader takes snapshot in its own thread, and concurrent readers wait until it is done.
+     *
+     * @param duration the period for which taken snapshot will be cached, should be a positive duration.
+     * @param maxStaleness the period after expiration during which expired snapshot can be served, should be a positive duration.
+     * @return this builder instance
+     */
+    public HdrBuilder withSnapshotCachingDuration(Duration duration, Duration maxStaleness) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(duration + " is not positive");
+        }
+        if (maxStaleness.isNegative() || maxStaleness.isZero()) {
+            throw new IllegalArgumentException("maxStaleness " + maxStaleness + " is not positive");
+        }
+        this.snapshotCachingDurationMillis = Optional.of(duration.toMillis());
+        this.snapshotMaxStalenessMillis = Optional.of(maxStaleness.toMillis());
         return this;
     }
 
@@ -336,13 +451,65 @@ public class HdrBuilder {
         return this;
     }
 
+    /**
+     * Configures the scheduler which will rotate chunks of reservoirs configured via {@link #resetReservoirPeriodically(Duration)} or {@link #resetReservoirPeriodicallyByChunks(Duration, int)}.
+     *
+     * <p>
+     * By default chunks are rotated lazily by the writer which first observes that chunk is expired,
+     * so each write reads the clock and the writer which crosses the boundary pays for submission of rotation task.
+     * When scheduler is configured, writers never check the time and never rotate chunks,
+     * instead the scheduler rotates chunks of all registered reservoirs in background, even if reservoir is idle.
+     * </p>
+     *
+     * @param rotationScheduler the scheduler which is shared between metrics
+     * @return this builder instance
+     *
+     * @see RotationScheduler
+     */
+    public HdrBuilder withRotationScheduler(RotationScheduler rotationScheduler) {
+        if (rotationScheduler == null) {
+            throw new IllegalArgumentException("rotationScheduler must not be null");
+        }
+        this.rotationScheduler = Optional.of(rotationScheduler);
+        return this;
+    }
+
+    /**
+     * Replaces default clock.
+     *
+     * <p>
+     * Besides of unit testing, this method can be used to reduce the cost of time measuring on recording path of chunked reservoirs
+     * via passing the clock returned by {@link com.github.rollingmetrics.util.Clock#cachedMillis(Duration)}.
+     *
+     * @param clock the abstraction over time
+     *
+     * @return this builder instance
+     */
+    public HdrBuilder withClock(com.github.rollingmetrics.util.Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        this.clock = clock;
+        return this;
+    }
+
     /**
      * Builds reservoir which can be useful for building monitoring primitives with higher level of abstraction.
      *
      * @return an instance of {@link com.codahale.metrics.Reservoir}
      */
     public Reservoir buildReservoir() {
-        Reservoir reservoir = buildHdrReservoir();
+        return buildExtendedReservoir();
+    }
+
+    /**
+     * Builds reservoir which in addition to {@link Reservoir} API supports the operations described by {@link ExtendedReservoir},
+     * like recording of values by batches.
+     *
+     * @return an instance of {@link ExtendedReservoir}
+     */
+    public ExtendedReservoir buildExtendedReservoir() {
+        ExtendedReservoir reservoir = buildHdrReservoir();
         reservoir = wrapAroundByDecorators(reservoir);
         return reservoir;
     }
@@ -396,7 +563,50 @@ public class HdrBuilder {
     }
 
     /**
-     * Provide a (conservatively high) estimate of the Reservoir's total footprint in bytes
+     * Builds the family of histograms distinguished by key, which members share the chunk clock and the pool of histograms.
+     *
+     * <p>
+     * The family can be built only when reservoir is configured via {@link #resetReservoirPeriodically(Duration)} or {@link #resetReservoirPeriodicallyByChunks(Duration, int)},
+     * thread local buffering and off-heap storage are not supported for members of family.
+     *
+     * @param maxKeys the maximum amount of keys which are tracked individually
+     * @param <K> the type of key
+     * @return an instance of {@link HistogramFamily}
+     *
+     * @see HistogramFamily
+     */
+    public <K> HistogramFamily<K> buildHistogramFamily(int maxKeys) {
+        validateParameters();
+        if (!(accumulationFactory instanceof ChunkedAccumulationFactory)) {
+            throw new IllegalStateException("HistogramFamily requires reservoir to be reset periodically by chunks");
+        }
+        if (threadLocalBufferSize.isPresent()) {
+            throw new IllegalStateException("thread local buffering is not supported by HistogramFamily");
+        }
+        if (offHeapStorage) {
+            throw new IllegalStateException("offHeapStorage is not supported by HistogramFamily");
+        }
+        ChunkedAccumulationFactory chunkedFactory = (ChunkedAccumulationFactory) accumulationFactory;
+
+        // builder is mutable, so the settings are captured at the moment of building
+        HdrBuilder settings = deepCopy();
+        return new HistogramFamily<>(
+                settings::buildRecorder,
+                accumulator -> settings.wrapAroundByDecorators(new HdrReservoir(accumulator, settings.predefinedPercentiles, settings.highestTrackableValue, settings.overflowResolver, settings.expectedIntervalBetweenValueSamples)),
+                highestTrackableValue.orElse(Long.MAX_VALUE),
+                overflowResolver.orElse(null),
+                expectedIntervalBetweenValueSamples.orElse(0L),
+                chunkedFactory.numberHistoryChunks,
+                chunkedFactory.resettingPeriodMillis,
+                maxKeys,
+                clock,
+                getExecutor(),
+                rotationScheduler.orElse(null)
+        );
+    }
+
+    /**
+     * Provide a (conservatively high) estimate of the Reservoir's total footprint in bytes, including off-heap memory
      *
      * @return a (conservatively high) estimate of the Reservoir's total footprint in bytes
      */
@@ -405,6 +615,28 @@ public class HdrBuilder {
         return hdrReservoir.getEstimatedFootprintInBytes();
     }
 
+    /**
+     * Provide a (conservatively high) estimate of the part of Reservoir's footprint which is allocated on Java heap
+     *
+     * @return a (conservatively high) estimate of the Reservoir's heap footprint in bytes
+     * @see #withOffHeapStorage()
+     */
+    public int getEstimatedHeapFootprintInBytes() {
+        HdrReservoir hdrReservoir = buildHdrReservoir();
+        return hdrReservoir.getEstimatedFootprintInBytes() - hdrReservoir.getEstimatedOffHeapFootprintInBytes();
+    }
+
+    /**
+     * Provide a (conservatively high) estimate of the part of Reservoir's footprint which is allocated outside of Java heap
+     *
+     * @return a (conservatively high) estimate of the Reservoir's off-heap footprint in bytes
+     * @see #withOffHeapStorage()
+     */
+    public int getEstimatedOffHeapFootprintInBytes() {
+        HdrReservoir hdrReservoir = buildHdrReservoir();
+        return hdrReservoir.getEstimatedOffHeapFootprintInBytes();
+    }
+
     /**
      * Creates full copy of this builder.
      *
@@ -412,7 +644,7 @@ public class HdrBuilder {
      */
     public HdrBuilder deepCopy() {
         return new HdrBuilder(clock, accumulationFactory, numberOfSignificantValueDigits, predefinedPercentiles, lowestDiscernibleValue,
-                highestTrackableValue, overflowResolver, snapshotCachingDurationMillis, expectedIntervalBetweenValueSamples, backgroundExecutor);
+                highestTrackableValue, overflowResolver, snapshotCachingDurationMillis, snapshotMaxStalenessMillis, expectedIntervalBetweenValueSamples, backgroundExecutor, rotationScheduler, threadLocalBufferSize, offHeapStorage);
     }
 
     @Override
@@ -424,7 +656,11 @@ public class HdrBuilder {
                 ", highestTrackableValue=" + highestTrackableValue +
                 ", overflowResolver=" + overflowResolver +
                 ", snapshotCachingDurationMillis=" + snapshotCachingDurationMillis +
+                ", snapshotMaxStalenessMillis=" + snapshotMaxStalenessMillis +
                 ", predefinedPercentiles=" + Arrays.toString(predefinedPercentiles.orElse(new double[0])) +
+                ", rotationScheduler=" + rotationScheduler +
+                ", threadLocalBufferSize=" + threadLocalBufferSize +
+                ", offHeapStorage=" + offHeapStorage +
                 '}';
     }
 
@@ -434,14 +670,18 @@ public class HdrBuilder {
     private Optional<Long> highestTrackableValue;
     private Optional<OverflowResolver> overflowResolver;
     private Optional<Long> snapshotCachingDurationMillis;
+    private Optional<Long> snapshotMaxStalenessMillis;
     private Optional<double[]> predefinedPercentiles;
     private Optional<Long> expectedIntervalBetweenValueSamples;
     private Optional<Executor> backgroundExecutor;
+    private Optional<RotationScheduler> rotationScheduler;
+    private Optional<Integer> threadLocalBufferSize;
+    private boolean offHeapStorage;
 
     private com.github.rollingmetrics.util.Clock clock;
 
     public HdrBuilder(com.github.rollingmetrics.util.Clock clock) {
-        this(clock, DEFAULT_ACCUMULATION_STRATEGY, DEFAULT_NUMBER_OF_SIGNIFICANT_DIGITS, Optional.of(DEFAULT_PERCENTILES), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        this(clock, DEFAULT_ACCUMULATION_STRATEGY, DEFAULT_NUMBER_OF_SIGNIFICANT_DIGITS, Optional.of(DEFAULT_PERCENTILES), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), false);
     }
 
     private HdrBuilder(com.github.rollingmetrics.util.Clock clock,
@@ -452,8 +692,12 @@ public class HdrBuilder {
                        Optional<Long> highestTrackableValue,
                        Optional<OverflowResolver> overflowResolver,
                        Optional<Long> snapshotCachingDurationMillis,
+                       Optional<Long> snapshotMaxStalenessMillis,
                        Optional<Long> expectedIntervalBetweenValueSamples,
-                       Optional<Executor> backgroundExecutor) {
+                       Optional<Executor> backgroundExecutor,
+                       Optional<RotationScheduler> rotationScheduler,
+                       Optional<Integer> threadLocalBufferSize,
+                       boolean offHeapStorage) {
         this.clock = clock;
         this.accumulationFactory = accumulationFactory;
         this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
@@ -461,9 +705,13 @@ public class HdrBuilder {
         this.highestTrackableValue = highestTrackableValue;
         this.overflowResolver = overflowResolver;
         this.snapshotCachingDurationMillis = snapshotCachingDurationMillis;
+        this.snapshotMaxStalenessMillis = snapshotMaxStalenessMillis;
         this.predefinedPercentiles = predefinedPercentiles;
         this.expectedIntervalBetweenValueSamples = expectedIntervalBetweenValueSamples;
         this.backgroundExecutor = backgroundExecutor;
+        this.rotationScheduler = rotationScheduler;
+        this.threadLocalBufferSize = threadLocalBufferSize;
+        this.offHeapStorage = offHeapStorage;
     }
 
     private HdrBuilder resetReservoirPeriodicallyByChunks(long resettingPeriodMillis, int numberHistoryChunks) {
@@ -474,7 +722,7 @@ public class HdrBuilder {
             throw new IllegalArgumentException("Interval between resetting must be >= " + MIN_CHUNK_RESETTING_INTERVAL_MILLIS + " millis");
         }
 
-        accumulationFactory = (recorder, clock) -> new ResetByChunksAccumulator(recorder, numberHistoryChunks, resettingPeriodMillis, clock, getExecutor());
+        accumulationFactory = new ChunkedAccumulationFactory(resettingPeriodMillis, numberHistoryChunks);
         return this;
     }
 
@@ -484,7 +732,10 @@ public class HdrBuilder {
 
     private HdrReservoir buildHdrReservoir() {
         validateParameters();
-        Accumulator accumulator = accumulationFactory.createAccumulator(this::buildRecorder, clock);
+        Accumulator accumulator = accumulationFactory.createAccumulator(this);
+        if (threadLocalBufferSize.isPresent()) {
+            accumulator = new ThreadLocalBufferingAccumulator(accumulator, threadLocalBufferSize.get());
+        }
         return new HdrReservoir(accumulator, predefinedPercentiles, highestTrackableValue, overflowResolver, expectedIntervalBetweenValueSamples);
     }
 
@@ -496,6 +747,16 @@ public class HdrBuilder {
         if (lowestDiscernibleValue.isPresent() && !highestTrackableValue.isPresent()) {
             throw new IllegalStateException("lowestDiscernibleValue is specified but highestTrackableValue undefined");
         }
+
+        if (offHeapStorage && isHistoryStoredByChunks() && !highestTrackableValue.isPresent()) {
+            throw new IllegalStateException("offHeapStorage is specified but highestTrackableValue undefined");
+        }
+    }
+
+    // off-heap storage has effect only for chunks of history, so other strategies should not be rejected because of it
+    private boolean isHistoryStoredByChunks() {
+        return accumulationFactory instanceof ChunkedAccumulationFactory
+                && ((ChunkedAccumulationFactory) accumulationFactory).numberHistoryChunks > 0;
     }
 
     private Recorder buildRecorder() {
@@ -508,10 +769,14 @@ public class HdrBuilder {
         return new Recorder(numberOfSignificantValueDigits);
     }
 
-    private Reservoir wrapAroundByDecorators(Reservoir reservoir) {
+    private ExtendedReservoir wrapAroundByDecorators(ExtendedReservoir reservoir) {
         // wrap around by decorator if snapshotCachingDurationMillis was specified
         if (snapshotCachingDurationMillis.isPresent()) {
-            reservoir = new SnapshotCachingReservoir(reservoir, snapshotCachingDurationMillis.get(), clock);
+            if (snapshotMaxStalenessMillis.isPresent()) {
+                reservoir = new SnapshotCachingReservoir(reservoir, snapshotCachingDurationMillis.get(), snapshotMaxStalenessMillis.get(), clock, getExecutor());
+            } else {
+                reservoir = new SnapshotCachingReservoir(reservoir, snapshotCachingDurationMillis.get(), clock);
+            }
         }
         return reservoir;
     }
@@ -524,11 +789,32 @@ public class HdrBuilder {
 
     interface AccumulationFactory {
 
-        AccumulationFactory UNIFORM = (recorderSupplier, clock) -> new UniformAccumulator(recorderSupplier.get());
+        AccumulationFactory UNIFORM = builder -> new UniformAccumulator(builder.buildRecorder());
+
+        AccumulationFactory RESET_ON_SNAPSHOT = builder -> new ResetOnSnapshotAccumulator(builder.buildRecorder());
 
-        AccumulationFactory RESET_ON_SNAPSHOT = (recorderSupplier, clock) -> new ResetOnSnapshotAccumulator(recorderSupplier.get());
+        /**
+         * Creates accumulator configured by the builder which is building the reservoir.
+         * The factory should not capture the builder which created it, because it is shared between copies of builder.
+         */
+        Accumulator createAccumulator(HdrBuilder builder);
 
-        Accumulator createAccumulator(Supplier<Recorder> recorderSupplier, com.github.rollingmetrics.util.Clock clock);
+    }
+
+    private static final class ChunkedAccumulationFactory implements AccumulationFactory {
+
+        private final long resettingPeriodMillis;
+        private final int numberHistoryChunks;
+
+        private ChunkedAccumulationFactory(long resettingPeriodMillis, int numberHistoryChunks) {
+            this.resettingPeriodMillis = resettingPeriodMillis;
+            this.numberHistoryChunks = numberHistoryChunks;
+        }
+
+        @Override
+        public Accumulator createAccumulator(HdrBuilder builder) {
+            return new ResetByChunksAccumulator(builder::buildRecorder, numberHistoryChunks, resettingPeriodMillis, builder.clock, builder.getExecutor(), builder.offHeapStorage, builder.rotationScheduler.orElse(null));
+        }
 
     }
 
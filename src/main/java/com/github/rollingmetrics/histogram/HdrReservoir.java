@@ -18,13 +18,16 @@
 
 package com.github.rollingmetrics.histogram;
 
-import com.codahale.metrics.Reservoir;
 import com.codahale.metrics.Snapshot;
 import com.github.rollingmetrics.histogram.accumulator.Accumulator;
+import com.github.rollingmetrics.histogram.util.EmptySnapshot;
+import com.github.rollingmetrics.histogram.util.HistogramUtil;
+import com.github.rollingmetrics.histogram.util.PercentileExtractor;
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramIterationValue;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.Function;
@@ -38,7 +41,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  *
  * @see HdrBuilder
  */
-class HdrReservoir implements Reservoir {
+class HdrReservoir implements ExtendedReservoir {
 
     private final Accumulator accumulator;
     private final Function<Histogram, Snapshot> snapshotTaker;
@@ -52,12 +55,14 @@ class HdrReservoir implements Reservoir {
         this.overflowResolver = overflowResolver.orElse(null);
         this.expectedIntervalBetweenValueSamples = expectedIntervalBetweenValueSamples.orElse(0L);
 
+        Function<Histogram, Snapshot> nonEmptySnapshotTaker;
         if (predefinedPercentiles.isPresent()) {
             double[] percentiles = predefinedPercentiles.get();
-            snapshotTaker = histogram -> takeSmartSnapshot(percentiles, histogram);
+            nonEmptySnapshotTaker = histogram -> takeSmartSnapshot(percentiles, histogram);
         } else {
-            snapshotTaker = HdrReservoir::takeFullSnapshot;
+            nonEmptySnapshotTaker = HdrReservoir::takeFullSnapshot;
         }
+        snapshotTaker = histogram -> HistogramUtil.takeSnapshot(histogram, nonEmptySnapshotTaker, EmptySnapshot.INSTANCE);
     }
 
     @Override
@@ -77,11 +82,75 @@ class HdrReservoir implements Reservoir {
         accumulator.recordSingleValueWithExpectedInterval(value, expectedIntervalBetweenValueSamples);
     }
 
+    @Override
+    public void update(long[] values, int offset, int length) {
+        if (values == null) {
+            throw new IllegalArgumentException("values must not be null");
+        }
+        if (offset < 0 || length < 0 || offset > values.length - length) {
+            throw new IllegalArgumentException("offset=" + offset + " and length=" + length + " are out of bounds of array with length " + values.length);
+        }
+        if (length == 0) {
+            return;
+        }
+        if (overflowResolver == null || overflowResolver == OverflowResolver.PASS_THRU) {
+            accumulator.recordValues(values, offset, length, expectedIntervalBetweenValueSamples);
+            return;
+        }
+
+        // record the batch by ranges of trackable values in order to not copy the array supplied by user
+        int rangeStart = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (values[i] <= highestTrackableValue) {
+                continue;
+            }
+            if (i > rangeStart) {
+                accumulator.recordValues(values, rangeStart, i - rangeStart, expectedIntervalBetweenValueSamples);
+            }
+            if (overflowResolver == OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE) {
+                accumulator.recordSingleValueWithExpectedInterval(highestTrackableValue, expectedIntervalBetweenValueSamples);
+            }
+            rangeStart = i + 1;
+        }
+        if (end > rangeStart) {
+            accumulator.recordValues(values, rangeStart, end - rangeStart, expectedIntervalBetweenValueSamples);
+        }
+    }
+
     @Override
     public Snapshot getSnapshot() {
         return accumulator.getSnapshot(snapshotTaker);
     }
 
+    @Override
+    public SnapshotBuffer getSnapshot(SnapshotBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer should not be null");
+        }
+        return accumulator.getSnapshot(buffer.getFiller());
+    }
+
+    @Override
+    public ByteBuffer encodeIntoCompressedByteBuffer(ByteBuffer reusableBuffer) {
+        return accumulator.getSnapshot(histogram -> encodeIntoCompressedByteBuffer(histogram, reusableBuffer));
+    }
+
+    static ByteBuffer encodeIntoCompressedByteBuffer(Histogram histogram, ByteBuffer reusableBuffer) {
+        // the capacity of uncompressed form is the same bound which is used by HistogramLogWriter,
+        // the HdrHistogram deflates directly into the array of heap buffer and silently truncates the output which does not fit
+        int neededCapacity = histogram.getNeededByteBufferCapacity();
+        ByteBuffer buffer = reusableBuffer;
+        if (buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0 || buffer.capacity() < neededCapacity) {
+            buffer = ByteBuffer.allocate(neededCapacity);
+        }
+        buffer.clear();
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        buffer.position(0);
+        buffer.limit(length);
+        return buffer;
+    }
+
     /**
      * Provide a (conservatively high) estimate of the Reservoir's total footprint in bytes
      *
@@ -91,21 +160,24 @@ class HdrReservoir implements Reservoir {
         return accumulator.getEstimatedFootprintInBytes();
     }
 
+    /**
+     * Provide a (conservatively high) estimate of the part of Reservoir's footprint which is allocated outside of Java heap
+     *
+     * @return a (conservatively high) estimate of the Reservoir's off-heap footprint in bytes
+     */
+    public int getEstimatedOffHeapFootprintInBytes() {
+        return accumulator.getEstimatedOffHeapFootprintInBytes();
+    }
+
     static Snapshot takeSmartSnapshot(final double[] predefinedQuantiles, Histogram histogram) {
         final long max = histogram.getMaxValue();
         final long min = histogram.getMinValue();
-        final double mean = histogram.getMean();
-        final double median = histogram.getValueAtPercentile(50.0);
-        final double stdDeviation = histogram.getStdDeviation();
-
         final double[] values = new double[predefinedQuantiles.length];
-        for (int i = 0; i < predefinedQuantiles.length; i++) {
-            double quantile = predefinedQuantiles[i];
-            double percentile = quantile * 100.0;
-            values[i] = histogram.getValueAtPercentile(percentile);
-        }
 
-        return createSmartSnapshot(predefinedQuantiles, max, min, mean, median, stdDeviation, values);
+        PercentileExtractor extractor = new PercentileExtractor();
+        extractor.extract(histogram, predefinedQuantiles, values);
+
+        return createSmartSnapshot(predefinedQuantiles, max, min, extractor.getMean(), extractor.getMedian(), extractor.getStdDeviation(), values);
     }
 
     static Snapshot createSmartSnapshot(final double[] predefinedQuantiles, final long max, final long min, final double mean, final double median, final double stdDeviation, final double[] values) {
@@ -0,0 +1,565 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.github.rollingmetrics.histogram.accumulator.Accumulator;
+import com.github.rollingmetrics.histogram.util.HistogramUtil;
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.ReusableTask;
+import com.github.rollingmetrics.util.RotationScheduler;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The family of rolling time window histograms distinguished by key, for example by endpoint.
+ * Each member of family has the same semantic as reservoir configured via {@link HdrBuilder#resetReservoirPeriodicallyByChunks(java.time.Duration, int)}.
+ *
+ * <p>
+ * In opposite to map of histograms built by {@link HdrBuilder#buildHistogram()} the members of family share the chunk clock,
+ * so chunks of all members are rotated in single pass instead of separate rotation per member,
+ * and histograms for chunks are allocated only for members which received the values:
+ * <ul>
+ *     <li>The member is created on first write and holds only {@link Recorder}.</li>
+ *     <li>The histograms for chunks are borrowed from the pool shared by whole family at rotation when member has the values to store, and returned to the pool when chunk expires.</li>
+ *     <li>The member which does not hold any value is evicted at rotation, so the histograms of idle members are reused by other members.
+ *     The recorder of evicted member is returned to the pool after last sampling and reused by members which are created later.</li>
+ * </ul>
+ *
+ * <p>
+ * Memory consumption is bounded by {@code maxKeys}, when all places are occupied the values of new keys are accumulated in the single overflow member, see {@link #getOverflowSnapshot()}.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing of existing member is wait-free, the registration of new member takes the lock of {@link ConcurrentHashMap} bin.</li>
+ *     <li>Rotation and snapshot extraction are serialized by the monitor of family.</li>
+ *     <li>The writer which resolved the member before its eviction does not lose the value,
+ *     because evicted member is sampled one more time at next rotation and its values are transferred to the actual member of same key,
+ *     unless writer was paused for longer than chunk interval, in such case the value can be lost or accounted by the member which reused the recorder.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>The boundaries of chunks are respected with precision of rotation latency,
+ *     values which are recorded after boundary but before rotation are accounted in the chunk which is being rotated.</li>
+ *     <li>Cache the result of {@link #asHistogram(Object)} or {@link #asTimer(Object)} if you need to register member in {@link com.codahale.metrics.MetricRegistry},
+ *     the returned metric is just a view which resolves the member on each write, so it remains valid after eviction of member.</li>
+ * </ul>
+ *
+ * <p> Example of usage:
+ * <pre><code>
+ *         // constructs the family which tracks latencies per endpoint during last minute and tracks at most 10_000 endpoints individually
+ *         HistogramFamily&lt;String&gt; latencies = new HdrBuilder()
+ *              .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(60), 6)
+ *              .buildHistogramFamily(10_000);
+ *         latencies.update(endpoint, latencyMillis);
+ *         Snapshot snapshot = latencies.getSnapshot(endpoint);
+ *     </code>
+ * </pre>
+ *
+ * @param <K> the type of key
+ *
+ * @see HdrBuilder#buildHistogramFamily(int)
+ */
+public class HistogramFamily<K> {
+
+    private final Supplier<Recorder> recorderSupplier;
+    private final Function<Accumulator, ExtendedReservoir> reservoirFactory;
+    private final long highestTrackableValue;
+    private final OverflowResolver overflowResolver;
+    private final long expectedIntervalBetweenValueSamples;
+    private final int numberHistoryChunks;
+    private final long intervalBetweenResettingMillis;
+    private final int maxKeys;
+    private final Clock clock;
+    private final long creationTimestamp;
+    private final Executor backgroundExecutor;
+
+    private final ConcurrentHashMap<K, Member> members = new ConcurrentHashMap<>();
+    private final AtomicInteger memberCount = new AtomicInteger();
+    private final Member overflowMember;
+    private final ExtendedReservoir overflowReservoir;
+    // recorders of evicted members which are already sampled last time
+    private final ConcurrentLinkedQueue<Recorder> recorderPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger createdRecorderCount = new AtomicInteger();
+
+    // the writer which observes that this timestamp is passed submits rotation, Long.MAX_VALUE means that rotation is already submitted
+    private final AtomicLong nextRotationTimestamp;
+    private final ReusableTask rotationTask = new ReusableTask(this, this::rotate);
+
+    // not null only when rotation is performed by scheduler, the scheduler holds only weak reference to it
+    private final RotationScheduler.Rotatable scheduledRotation;
+
+    // following fields are guarded by monitor of family
+    private final long[] archiveInvalidationTimestamps;
+    private final ArrayDeque<org.HdrHistogram.Histogram> pool = new ArrayDeque<>();
+    private final ArrayList<Member> evictedMembers = new ArrayList<>();
+    private final org.HdrHistogram.Histogram prototypeHistogram;
+    private final org.HdrHistogram.Histogram intervalHistogram;
+    private final org.HdrHistogram.Histogram temporarySnapshotHistogram;
+    private long currentChunkNumber;
+    private int createdHistogramCount;
+
+    HistogramFamily(Supplier<Recorder> recorderSupplier,
+                    Function<Accumulator, ExtendedReservoir> reservoirFactory,
+                    long highestTrackableValue,
+                    OverflowResolver overflowResolver,
+                    long expectedIntervalBetweenValueSamples,
+                    int numberHistoryChunks,
+                    long intervalBetweenResettingMillis,
+                    int maxKeys,
+                    Clock clock,
+                    Executor backgroundExecutor,
+                    RotationScheduler rotationScheduler) {
+        if (maxKeys < 1) {
+            throw new IllegalArgumentException("maxKeys should be >= 1");
+        }
+        this.recorderSupplier = recorderSupplier;
+        this.reservoirFactory = reservoirFactory;
+        this.highestTrackableValue = highestTrackableValue;
+        this.overflowResolver = overflowResolver;
+        this.expectedIntervalBetweenValueSamples = expectedIntervalBetweenValueSamples;
+        this.numberHistoryChunks = numberHistoryChunks;
+        this.intervalBetweenResettingMillis = intervalBetweenResettingMillis;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+        this.creationTimestamp = clock.currentTimeMillis();
+        this.backgroundExecutor = backgroundExecutor;
+
+        this.overflowMember = new Member(null, borrowRecorder());
+        this.overflowReservoir = reservoirFactory.apply(new MemberAccumulator(null));
+        this.prototypeHistogram = HistogramUtil.createNonConcurrentCopy(recorderSupplier.get().getIntervalHistogram());
+        this.intervalHistogram = newHistogram();
+        this.temporarySnapshotHistogram = newHistogram();
+        this.archiveInvalidationTimestamps = new long[numberHistoryChunks];
+        this.nextRotationTimestamp = new AtomicLong(creationTimestamp + intervalBetweenResettingMillis);
+
+        if (rotationScheduler != null) {
+            this.scheduledRotation = this::rotateIfNeeded;
+            // registration should be last action of constructor, because scheduler thread can rotate chunks immediately
+            rotationScheduler.register(scheduledRotation);
+        } else {
+            this.scheduledRotation = null;
+        }
+    }
+
+    /**
+     * Records the value for the key.
+     *
+     * @param key the key
+     * @param value the value to record
+     */
+    public void update(K key, long value) {
+        if (value > highestTrackableValue) {
+            switch (overflowResolver) {
+                case SKIP: return;
+                case PASS_THRU: break;
+                case REDUCE_TO_HIGHEST_TRACKABLE: value = highestTrackableValue;
+            }
+        }
+        record(key, value, expectedIntervalBetweenValueSamples);
+    }
+
+    /**
+     * Returns the snapshot of values recorded for the key during rolling time window.
+     *
+     * <p>
+     * The empty snapshot is returned if key was not updated during rolling window or if values of key are accounted in overflow member.
+     *
+     * @param key the key
+     *
+     * @return the snapshot of member
+     */
+    public Snapshot getSnapshot(K key) {
+        return asReservoir(key).getSnapshot();
+    }
+
+    /**
+     * @return the snapshot of values which were recorded for keys which did not fit into {@code maxKeys}
+     */
+    public Snapshot getOverflowSnapshot() {
+        return overflowReservoir.getSnapshot();
+    }
+
+    /**
+     * Returns the view of member as reservoir, the view resolves the member on each write and remains valid after eviction of member.
+     * The view is created once per member, so repeated calls for tracked key return the same view and share its snapshot cache.
+     *
+     * @param key the key
+     *
+     * @return the reservoir which reads and writes the values of key
+     */
+    public ExtendedReservoir asReservoir(K key) {
+        checkKey(key);
+        Member member = members.get(key);
+        if (member != null) {
+            return member.getReservoir();
+        }
+        // the key is not tracked, view is not cached in order to not occupy memory by keys which are never updated
+        return reservoirFactory.apply(new MemberAccumulator(key));
+    }
+
+    /**
+     * @param key the key
+     *
+     * @return the histogram which reads and writes the values of key
+     *
+     * @see #asReservoir(Object)
+     */
+    public Histogram asHistogram(K key) {
+        return new Histogram(asReservoir(key));
+    }
+
+    /**
+     * @param key the key
+     *
+     * @return the timer which reads and writes the values of key
+     *
+     * @see #asReservoir(Object)
+     */
+    public Timer asTimer(K key) {
+        return new Timer(asReservoir(key));
+    }
+
+    /**
+     * @return the amount of keys which are tracked individually right now
+     */
+    public int getKeyCount() {
+        return members.size();
+    }
+
+    /**
+     * @return the maximum amount of keys which are tracked individually
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @return the amount of histograms which were ever allocated for chunks of members
+     */
+    synchronized int getCreatedHistogramCount() {
+        return createdHistogramCount;
+    }
+
+    /**
+     * @return the amount of histograms which are free for reusing
+     */
+    synchronized int getPooledHistogramCount() {
+        return pool.size();
+    }
+
+    /**
+     * @return the amount of recorders which were ever allocated for members
+     */
+    int getCreatedRecorderCount() {
+        return createdRecorderCount.get();
+    }
+
+    private void record(K key, long value, long expectedIntervalBetweenValueSamples) {
+        checkKey(key);
+        if (scheduledRotation == null) {
+            long currentTimeMillis = clock.currentTimeMillis();
+            long nextRotation = nextRotationTimestamp.get();
+            if (currentTimeMillis >= nextRotation && nextRotationTimestamp.compareAndSet(nextRotation, Long.MAX_VALUE)) {
+                // Current thread is responsible to rotate chunks.
+                ResilientExecutionUtil.getInstance().execute(backgroundExecutor, rotationTask);
+            }
+        }
+        resolveMember(key).record(value, expectedIntervalBetweenValueSamples);
+    }
+
+    private Member resolveMember(K key) {
+        if (key == null) {
+            return overflowMember;
+        }
+        Member member = members.get(key);
+        if (member != null) {
+            return member;
+        }
+        if (memberCount.incrementAndGet() > maxKeys) {
+            memberCount.decrementAndGet();
+            return overflowMember;
+        }
+        Member created = new Member(key, borrowRecorder());
+        Member previous = members.putIfAbsent(key, created);
+        if (previous != null) {
+            memberCount.decrementAndGet();
+            recorderPool.offer(created.recorder);
+            return previous;
+        }
+        return created;
+    }
+
+    private long rotateIfNeeded() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        long nextRotation = nextRotationTimestamp.get();
+        if (currentTimeMillis < nextRotation) {
+            return nextRotation - currentTimeMillis;
+        }
+        rotate();
+        return nextRotationTimestamp.get() - currentTimeMillis;
+    }
+
+    private synchronized void rotate() {
+        rotate(clock.currentTimeMillis());
+    }
+
+    private void rotate(long currentTimeMillis) {
+        long chunkNumber = (currentTimeMillis - creationTimestamp) / intervalBetweenResettingMillis;
+        if (chunkNumber <= currentChunkNumber) {
+            nextRotationTimestamp.set(creationTimestamp + (currentChunkNumber + 1) * intervalBetweenResettingMillis);
+            return;
+        }
+
+        // the writers which resolved the member before eviction had enough time to finish recording
+        for (int i = 0; i < evictedMembers.size(); i++) {
+            Member evicted = evictedMembers.get(i);
+            evicted.recorder.getIntervalHistogramInto(intervalHistogram);
+            if (intervalHistogram.getTotalCount() > 0) {
+                resolveMember(evicted.key).addToCurrentChunk(intervalHistogram);
+            }
+            // recorder is empty after last sampling, so it can be reused by other member
+            recorderPool.offer(evicted.recorder);
+        }
+        evictedMembers.clear();
+
+        for (Member member : members.values()) {
+            if (member.rotate(currentChunkNumber, chunkNumber)) {
+                members.remove(member.key, member);
+                memberCount.decrementAndGet();
+                evictedMembers.add(member);
+            }
+        }
+        overflowMember.rotate(currentChunkNumber, chunkNumber);
+
+        for (long chunk = Math.max(currentChunkNumber, chunkNumber - numberHistoryChunks); chunk < chunkNumber; chunk++) {
+            archiveInvalidationTimestamps[(int) (chunk % numberHistoryChunks)] = creationTimestamp + (chunk + 1 + numberHistoryChunks) * intervalBetweenResettingMillis;
+        }
+        currentChunkNumber = chunkNumber;
+        nextRotationTimestamp.set(creationTimestamp + (chunkNumber + 1) * intervalBetweenResettingMillis);
+    }
+
+    private synchronized <T> T getSnapshot(K key, Function<org.HdrHistogram.Histogram, T> snapshotTaker) {
+        long currentTimeMillis = clock.currentTimeMillis();
+        rotate(currentTimeMillis);
+
+        HistogramUtil.reset(temporarySnapshotHistogram);
+        Member member = key == null ? overflowMember : members.get(key);
+        if (member == null) {
+            return snapshotTaker.apply(temporarySnapshotHistogram);
+        }
+        member.sample();
+
+        if (member.currentChunk != null) {
+            temporarySnapshotHistogram.add(member.currentChunk);
+        }
+        for (int i = 0; i < numberHistoryChunks; i++) {
+            org.HdrHistogram.Histogram archived = member.archive[i];
+            if (archived != null && archiveInvalidationTimestamps[i] > currentTimeMillis) {
+                temporarySnapshotHistogram.add(archived);
+            }
+        }
+        return snapshotTaker.apply(temporarySnapshotHistogram);
+    }
+
+    private Recorder borrowRecorder() {
+        Recorder recorder = recorderPool.poll();
+        if (recorder == null) {
+            createdRecorderCount.incrementAndGet();
+            recorder = recorderSupplier.get();
+        }
+        return recorder;
+    }
+
+    private org.HdrHistogram.Histogram borrowHistogram() {
+        org.HdrHistogram.Histogram histogram = pool.poll();
+        if (histogram == null) {
+            createdHistogramCount++;
+            histogram = newHistogram();
+        }
+        return histogram;
+    }
+
+    private void returnHistogram(org.HdrHistogram.Histogram histogram) {
+        if (histogram != null) {
+            HistogramUtil.reset(histogram);
+            pool.push(histogram);
+        }
+    }
+
+    private org.HdrHistogram.Histogram newHistogram() {
+        return new org.HdrHistogram.Histogram(prototypeHistogram);
+    }
+
+    private static void checkKey(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key should not be null");
+        }
+    }
+
+    private final class Member {
+
+        private final K key;
+        private final Recorder recorder;
+        private volatile boolean dirty;
+        private volatile ExtendedReservoir reservoir;
+
+        // following fields are guarded by monitor of family
+        private org.HdrHistogram.Histogram currentChunk;
+        private final org.HdrHistogram.Histogram[] archive;
+
+        private Member(K key, Recorder recorder) {
+            this.key = key;
+            this.recorder = recorder;
+            this.archive = new org.HdrHistogram.Histogram[numberHistoryChunks];
+        }
+
+        private ExtendedReservoir getReservoir() {
+            ExtendedReservoir reservoir = this.reservoir;
+            if (reservoir == null) {
+                // concurrent creation of two views is harmless, each of them reads the same member
+                reservoir = reservoirFactory.apply(new MemberAccumulator(key));
+                this.reservoir = reservoir;
+            }
+            return reservoir;
+        }
+
+        private void record(long value, long expectedIntervalBetweenValueSamples) {
+            recorder.recordValueWithExpectedInterval(value, expectedIntervalBetweenValueSamples);
+            // flag is set after recording, so the value is never missed by sampling which clears the flag
+            if (!dirty) {
+                dirty = true;
+            }
+        }
+
+        private void sample() {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            recorder.getIntervalHistogramInto(intervalHistogram);
+            addToCurrentChunk(intervalHistogram);
+        }
+
+        private void addToCurrentChunk(org.HdrHistogram.Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return;
+            }
+            if (currentChunk == null) {
+                currentChunk = borrowHistogram();
+            }
+            currentChunk.add(histogram);
+        }
+
+        /**
+         * @return true if member does not hold any value after rotation and should be evicted
+         */
+        private boolean rotate(long previousChunkNumber, long chunkNumber) {
+            sample();
+            org.HdrHistogram.Histogram finishedChunk = currentChunk;
+            currentChunk = null;
+            boolean empty = finishedChunk == null;
+
+            if (chunkNumber - previousChunkNumber > numberHistoryChunks) {
+                // the finished chunk and whole archive are already expired
+                returnHistogram(finishedChunk);
+                for (int i = 0; i < numberHistoryChunks; i++) {
+                    returnHistogram(archive[i]);
+                    archive[i] = null;
+                }
+                // member which received values during the last chunk is kept in order to avoid recreation of recorder on each rotation
+                return empty || chunkNumber - previousChunkNumber > 1;
+            }
+
+            for (long chunk = previousChunkNumber; chunk < chunkNumber; chunk++) {
+                int index = (int) (chunk % numberHistoryChunks);
+                returnHistogram(archive[index]);
+                archive[index] = chunk == previousChunkNumber ? finishedChunk : null;
+            }
+            for (int i = 0; i < numberHistoryChunks; i++) {
+                if (archive[i] != null) {
+                    return false;
+                }
+            }
+            return empty;
+        }
+
+    }
+
+    private final class MemberAccumulator implements Accumulator {
+
+        // null means the overflow member
+        private final K key;
+
+        private MemberAccumulator(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples) {
+            if (key == null) {
+                throw new UnsupportedOperationException("Overflow member can not be updated directly");
+            }
+            record(key, value, expectedIntervalBetweenValueSamples);
+        }
+
+        @Override
+        public <T> T getSnapshot(Function<org.HdrHistogram.Histogram, T> snapshotTaker) {
+            return HistogramFamily.this.getSnapshot(key, snapshotTaker);
+        }
+
+        @Override
+        public int getEstimatedFootprintInBytes() {
+            // recorder holds two histograms, and each chunk holds one histogram when member has the values
+            return prototypeHistogram.getEstimatedFootprintInBytes() * (3 + numberHistoryChunks);
+        }
+
+        @Override
+        public String toString() {
+            return "HistogramFamily.MemberAccumulator{" +
+                    "key=" + key +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramFamily{" +
+                "intervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
+                ", numberHistoryChunks=" + numberHistoryChunks +
+                ", maxKeys=" + maxKeys +
+                ", keyCount=" + members.size() +
+                '}';
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.histogram.util.PercentileExtractor;
+import org.HdrHistogram.Histogram;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The mutable snapshot which can be filled again and again by {@link ExtendedReservoir#getSnapshot(SnapshotBuffer)},
+ * so periodic reporting of many histograms does not allocate neither snapshot objects nor arrays for percentiles.
+ *
+ * <p>
+ * The buffer has the same semantic as snapshot which is taken by reservoir configured via {@link HdrBuilder#withPredefinedPercentiles(double[])}:
+ * only values at predefined quantiles are stored, {@link #getValue(double)} returns the value at nearest predefined quantile which is greater or equal to requested.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>The buffer is not thread-safe, it is intended to be owned by single reporter thread.</li>
+ *     <li>Filling of buffer is performed under the same lock which protects the snapshot extraction of reservoir.</li>
+ * </ul>
+ *
+ * <p> Example of usage:
+ * <pre><code>
+ *         SnapshotBuffer buffer = new SnapshotBuffer(new double[] {0.5, 0.99});
+ *         // on each report
+ *         reservoir.getSnapshot(buffer);
+ *         report(buffer.getValueAt(0), buffer.getValueAt(1), buffer.getMax());
+ *     </code>
+ * </pre>
+ *
+ * @see ExtendedReservoir#getSnapshot(SnapshotBuffer)
+ * @see #takeSnapshots(List, SnapshotBuffer[], double[])
+ */
+public class SnapshotBuffer extends Snapshot {
+
+    private final double[] quantiles;
+    private final double[] values;
+    private final Function<Histogram, SnapshotBuffer> filler = this::fill;
+    private final PercentileExtractor extractor = new PercentileExtractor();
+
+    private long totalCount;
+    private long max;
+    private long min;
+    private double mean;
+    private double median;
+    private double stdDeviation;
+
+    /**
+     * Creates the buffer for {@link HdrBuilder#DEFAULT_PERCENTILES}.
+     */
+    public SnapshotBuffer() {
+        this(HdrBuilder.DEFAULT_PERCENTILES);
+    }
+
+    /**
+     * Creates the buffer for predefined quantiles.
+     *
+     * @param quantiles list of quantiles which need to be extracted, should be not empty array of doubles between {@literal 0..1}
+     */
+    public SnapshotBuffer(double[] quantiles) {
+        this.quantiles = validateAndSort(quantiles);
+        this.values = new double[this.quantiles.length];
+    }
+
+    /**
+     * Takes the snapshots of all reservoirs, the snapshot of reservoir with index {@code i} is stored into buffer with index {@code i}.
+     * The buffers from {@code reusableBuffers} are reused, and new buffers are allocated only when array is null or shorter than list of reservoirs,
+     * so the caller should keep the returned array in order to reuse it for next invocation.
+     *
+     * @param reservoirs the reservoirs to take snapshot
+     * @param reusableBuffers the buffers which were returned by previous invocation, can be null
+     * @param quantiles the quantiles for newly allocated buffers
+     *
+     * @return the array of buffers which length is greater or equal to size of {@code reservoirs}
+     */
+    public static SnapshotBuffer[] takeSnapshots(List<? extends ExtendedReservoir> reservoirs, SnapshotBuffer[] reusableBuffers, double[] quantiles) {
+        SnapshotBuffer[] buffers = reusableBuffers;
+        if (buffers == null) {
+            buffers = new SnapshotBuffer[reservoirs.size()];
+        } else if (buffers.length < reservoirs.size()) {
+            buffers = Arrays.copyOf(buffers, reservoirs.size());
+        }
+        for (int i = 0; i < reservoirs.size(); i++) {
+            if (buffers[i] == null) {
+                buffers[i] = new SnapshotBuffer(quantiles);
+            }
+            reservoirs.get(i).getSnapshot(buffers[i]);
+        }
+        return buffers;
+    }
+
+    /**
+     * @return the count of predefined quantiles
+     */
+    public int getQuantileCount() {
+        return quantiles.length;
+    }
+
+    /**
+     * @param index the index of predefined quantile
+     * @return the predefined quantile, quantiles are sorted in ascending order
+     */
+    public double getQuantileAt(int index) {
+        return quantiles[index];
+    }
+
+    /**
+     * @param index the index of predefined quantile
+     * @return the value at predefined quantile
+     */
+    public double getValueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the count of values which were recorded into reservoir at the moment of snapshot
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        for (int i = 0; i < quantiles.length; i++) {
+            if (quantile <= quantiles[i]) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long[] getValues() {
+        long[] toReturn = new long[size()];
+        for (int i = 0; i < toReturn.length; i++) {
+            toReturn[i] = (long) values[i];
+        }
+        return toReturn;
+    }
+
+    @Override
+    public int size() {
+        return totalCount == 0 ? 0 : values.length;
+    }
+
+    @Override
+    public double getMedian() {
+        return median;
+    }
+
+    @Override
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public double getMean() {
+        return mean;
+    }
+
+    @Override
+    public long getMin() {
+        return min;
+    }
+
+    @Override
+    public double getStdDev() {
+        return stdDeviation;
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+        try (PrintWriter p = new PrintWriter(new OutputStreamWriter(output, UTF_8))) {
+            for (int i = 0; i < size(); i++) {
+                p.printf("%f%n", values[i]);
+            }
+        }
+    }
+
+    Function<Histogram, SnapshotBuffer> getFiller() {
+        return filler;
+    }
+
+    private SnapshotBuffer fill(Histogram histogram) {
+        totalCount = histogram.getTotalCount();
+        if (totalCount == 0) {
+            max = 0;
+            min = 0;
+            mean = 0.0;
+            median = 0.0;
+            stdDeviation = 0.0;
+            Arrays.fill(values, 0.0);
+            return this;
+        }
+        max = histogram.getMaxValue();
+        min = histogram.getMinValue();
+        extractor.extract(histogram, quantiles, values);
+        mean = extractor.getMean();
+        median = extractor.getMedian();
+        stdDeviation = extractor.getStdDeviation();
+        return this;
+    }
+
+    private static double[] validateAndSort(double[] quantiles) {
+        quantiles = Objects.requireNonNull(quantiles, "quantiles array should not be null");
+        if (quantiles.length == 0) {
+            throw new IllegalArgumentException("quantiles.length is zero");
+        }
+        for (double quantile : quantiles) {
+            if (quantile < 0.0 || quantile > 1.0) {
+                throw new IllegalArgumentException("Illegal quantiles " + Arrays.toString(quantiles) + " - all values must be between 0 and 1");
+            }
+        }
+        double[] sortedQuantiles = Arrays.copyOf(quantiles, quantiles.length);
+        Arrays.sort(sortedQuantiles);
+        return sortedQuantiles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder distribution = new StringBuilder();
+        for (int i = 0; i < quantiles.length; i++) {
+            distribution.append(quantiles[i] * 100).append("%:").append(values[i]).append("; ");
+        }
+        return "SnapshotBuffer{" +
+                "totalCount=" + totalCount +
+                ", max=" + max +
+                ", min=" + min +
+                ", mean=" + mean +
+                ", stdDeviation=" + stdDeviation +
+                ", distribution=" + distribution +
+                '}';
+    }
+
+}
@@ -18,24 +18,31 @@
 package com.github.rollingmetrics.histogram;
 
 import com.github.rollingmetrics.util.CachingSupplier;
-import com.github.rollingmetrics.util.Clock;
-import com.codahale.metrics.Reservoir;
 import com.codahale.metrics.Snapshot;
 import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.NonBlockingCachingSupplier;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
-class SnapshotCachingReservoir implements Reservoir {
+class SnapshotCachingReservoir implements ExtendedReservoir {
 
-    private final CachingSupplier<Snapshot> cachingSupplier;
-    private final Reservoir target;
+    private final Supplier<Snapshot> cachingSupplier;
+    private final ExtendedReservoir target;
 
-    SnapshotCachingReservoir(Reservoir target, long cachingDurationMillis, Clock clock) {
+    SnapshotCachingReservoir(ExtendedReservoir target, long cachingDurationMillis, Clock clock) {
         this.cachingSupplier = new CachingSupplier<>(cachingDurationMillis, clock, target::getSnapshot);
         this.target = target;
     }
 
+    SnapshotCachingReservoir(ExtendedReservoir target, long cachingDurationMillis, long maxStalenessMillis, Clock clock, Executor backgroundExecutor) {
+        this.cachingSupplier = new NonBlockingCachingSupplier<>(cachingDurationMillis, maxStalenessMillis, clock, backgroundExecutor, target::getSnapshot);
+        this.target = target;
+    }
+
     @Override
     public int size() {
         throw new UnsupportedOperationException("You should not use this method https://github.com/dropwizard/metrics/issues/874");
@@ -46,9 +53,24 @@ class SnapshotCachingReservoir implements Reservoir {
         target.update(value);
     }
 
+    @Override
+    public void update(long[] values, int offset, int length) {
+        target.update(values, offset, length);
+    }
+
     @Override
     public Snapshot getSnapshot() {
         return cachingSupplier.get();
     }
 
+    @Override
+    public SnapshotBuffer getSnapshot(SnapshotBuffer buffer) {
+        return target.getSnapshot(buffer);
+    }
+
+    @Override
+    public ByteBuffer encodeIntoCompressedByteBuffer(ByteBuffer reusableBuffer) {
+        return target.encodeIntoCompressedByteBuffer(reusableBuffer);
+    }
+
 }
@@ -17,7 +17,6 @@
 
 package com.github.rollingmetrics.histogram.accumulator;
 
-import com.codahale.metrics.Snapshot;
 import org.HdrHistogram.Histogram;
 
 import java.util.function.Function;
@@ -31,8 +30,30 @@ public interface Accumulator {
 
     void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples);
 
-    Snapshot getSnapshot(Function<Histogram, Snapshot> snapshotTaker);
+    default void recordValues(long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+        for (int i = offset; i < offset + length; i++) {
+            recordSingleValueWithExpectedInterval(values[i], expectedIntervalBetweenValueSamples);
+        }
+    }
+
+    /**
+     * Merges the values which are actual at the moment into single histogram and passes it to {@code snapshotTaker}.
+     * The histogram can be empty, and it is valid only during invocation of {@code snapshotTaker},
+     * so the taker must copy everything what it needs, for example percentiles or encoded bytes.
+     *
+     * @param snapshotTaker the function which extracts the result from merged histogram
+     * @param <T> the type of result
+     * @return the result of {@code snapshotTaker}
+     */
+    <T> T getSnapshot(Function<Histogram, T> snapshotTaker);
 
     int getEstimatedFootprintInBytes();
 
+    /**
+     * @return the part of {@link #getEstimatedFootprintInBytes()} which is allocated outside of Java heap
+     */
+    default int getEstimatedOffHeapFootprintInBytes() {
+        return 0;
+    }
+
 }
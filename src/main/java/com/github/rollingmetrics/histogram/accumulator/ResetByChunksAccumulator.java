@@ -19,14 +19,17 @@ package com.github.rollingmetrics.histogram.accumulator;
 
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
 import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.ReusableTask;
 import com.github.rollingmetrics.util.Clock;
-import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.util.RotationScheduler;
 import com.github.rollingmetrics.histogram.util.Printer;
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
 import com.github.rollingmetrics.util.Clock;
+import org.HdrHistogram.AllValuesIterator;
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.Recorder;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -34,10 +37,15 @@ import java.util.function.Supplier;
 
 public class ResetByChunksAccumulator implements Accumulator {
 
+    // each bucket of chunk stored off-heap occupies one long: count, the value is defined by position of bucket
+    private static final int OFF_HEAP_BUCKET_SIZE_BYTES = Long.BYTES;
+
     private final Executor backgroundExecutor;
     private final long intervalBetweenResettingMillis;
     private final long creationTimestamp;
     private final ArchivedHistogram[] archive;
+    private final Histogram archiveSumHistogram;
+    private final ByteBuffer offHeapArena;
     private final boolean historySupported;
     private final Clock clock;
     private final Histogram temporarySnapshotHistogram;
@@ -47,7 +55,21 @@ public class ResetByChunksAccumulator implements Accumulator {
     private final Phase[] phases;
     private final AtomicReference<Phase> currentPhaseRef;
 
+    // not null only when rotation is performed by scheduler, the scheduler holds only weak reference to it
+    private final RotationScheduler.Rotatable scheduledRotation;
+
     public ResetByChunksAccumulator(Supplier<Recorder> recorderSupplier, int numberHistoryChunks, long intervalBetweenResettingMillis, Clock clock, Executor backgroundExecutor) {
+        this(recorderSupplier, numberHistoryChunks, intervalBetweenResettingMillis, clock, backgroundExecutor, false);
+    }
+
+    public ResetByChunksAccumulator(Supplier<Recorder> recorderSupplier, int numberHistoryChunks, long intervalBetweenResettingMillis, Clock clock, Executor backgroundExecutor, boolean offHeapStorage) {
+        this(recorderSupplier, numberHistoryChunks, intervalBetweenResettingMillis, clock, backgroundExecutor, offHeapStorage, null);
+    }
+
+    /**
+     * @param rotationScheduler if not null then phases are rotated by scheduler instead of writers, and backgroundExecutor is not used
+     */
+    public ResetByChunksAccumulator(Supplier<Recorder> recorderSupplier, int numberHistoryChunks, long intervalBetweenResettingMillis, Clock clock, Executor backgroundExecutor, boolean offHeapStorage, RotationScheduler rotationScheduler) {
         this.intervalBetweenResettingMillis = intervalBetweenResettingMillis;
         this.clock = clock;
         this.creationTimestamp = clock.currentTimeMillis();
@@ -62,19 +84,58 @@ public class ResetByChunksAccumulator implements Accumulator {
         this.historySupported = numberHistoryChunks > 0;
         if (historySupported) {
             this.archive = new ArchivedHistogram[numberHistoryChunks];
-            for (int i = 0; i < numberHistoryChunks; i++) {
-                Histogram archivedHistogram = HistogramUtil.createNonConcurrentCopy(left.intervalHistogram);
-                this.archive[i] = new ArchivedHistogram(archivedHistogram, Long.MIN_VALUE);
+            if (offHeapStorage) {
+                // all chunks are stored in the single direct buffer, each chunk occupies the slot which is enough to store all buckets in worst case
+                Histogram histogram = HistogramUtil.createNonConcurrentCopy(left.intervalHistogram);
+                if (histogram.isAutoResize()) {
+                    throw new IllegalArgumentException("Off-heap storage requires histogram with fixed highestTrackableValue");
+                }
+                int slotCapacity = getOffHeapSlotCapacity(histogram);
+                long arenaCapacity = (long) slotCapacity * numberHistoryChunks;
+                if (arenaCapacity > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Off-heap storage of " + numberHistoryChunks + " chunks requires " + arenaCapacity
+                            + " bytes, which exceeds the maximum capacity of direct buffer " + Integer.MAX_VALUE);
+                }
+                this.offHeapArena = ByteBuffer.allocateDirect((int) arenaCapacity);
+                for (int i = 0; i < numberHistoryChunks; i++) {
+                    ByteBuffer slot = offHeapArena.duplicate();
+                    slot.position(i * slotCapacity);
+                    slot.limit((i + 1) * slotCapacity);
+                    this.archive[i] = new ArchivedHistogram(null, slot.slice(), Long.MIN_VALUE);
+                }
+            } else {
+                this.offHeapArena = null;
+                for (int i = 0; i < numberHistoryChunks; i++) {
+                    Histogram archivedHistogram = HistogramUtil.createNonConcurrentCopy(left.intervalHistogram);
+                    this.archive[i] = new ArchivedHistogram(archivedHistogram, null, Long.MIN_VALUE);
+                }
             }
+            this.archiveSumHistogram = HistogramUtil.createNonConcurrentCopy(left.intervalHistogram);
         } else {
             this.archive = null;
+            this.archiveSumHistogram = null;
+            this.offHeapArena = null;
         }
 
         this.temporarySnapshotHistogram = HistogramUtil.createNonConcurrentCopy(left.intervalHistogram);
+
+        if (rotationScheduler != null) {
+            this.scheduledRotation = this::rotateIfNeeded;
+            // registration should be last action of constructor, because scheduler thread can rotate phases immediately
+            rotationScheduler.register(scheduledRotation);
+        } else {
+            this.scheduledRotation = null;
+        }
     }
 
     @Override
     public void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples) {
+        if (scheduledRotation != null) {
+            // phases are rotated by scheduler, so there is no need to check the time
+            currentPhaseRef.get().recorder.recordValueWithExpectedInterval(value, expectedIntervalBetweenValueSamples);
+            return;
+        }
+
         long currentTimeMillis = clock.currentTimeMillis();
         Phase currentPhase = currentPhaseRef.get();
         if (currentTimeMillis < currentPhase.proposedInvalidationTimestamp) {
@@ -91,8 +152,56 @@ public class ResetByChunksAccumulator implements Accumulator {
         }
 
         // Current thread is responsible to rotate phases.
-        Runnable phaseRotation = () -> rotate(currentTimeMillis, currentPhase, nextPhase);
-        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, phaseRotation);
+        currentPhase.rotationTimestampMillis = currentTimeMillis;
+        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, currentPhase.rotationTask);
+    }
+
+    @Override
+    public void recordValues(long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+        if (scheduledRotation != null) {
+            recordValues(currentPhaseRef.get().recorder, values, offset, length, expectedIntervalBetweenValueSamples);
+            return;
+        }
+
+        // the clock is read and the phase is resolved once for whole batch
+        long currentTimeMillis = clock.currentTimeMillis();
+        Phase currentPhase = currentPhaseRef.get();
+        if (currentTimeMillis < currentPhase.proposedInvalidationTimestamp) {
+            recordValues(currentPhase.recorder, values, offset, length, expectedIntervalBetweenValueSamples);
+            return;
+        }
+
+        Phase nextPhase = currentPhase == left ? right : left;
+        recordValues(nextPhase.recorder, values, offset, length, expectedIntervalBetweenValueSamples);
+
+        if (!currentPhaseRef.compareAndSet(currentPhase, nextPhase)) {
+            // another writer achieved progress and must submit rotation task to backgroundExecutor
+            return;
+        }
+
+        // Current thread is responsible to rotate phases.
+        currentPhase.rotationTimestampMillis = currentTimeMillis;
+        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, currentPhase.rotationTask);
+    }
+
+    private static void recordValues(Recorder recorder, long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+        for (int i = offset; i < offset + length; i++) {
+            recorder.recordValueWithExpectedInterval(values[i], expectedIntervalBetweenValueSamples);
+        }
+    }
+
+    private long rotateIfNeeded() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        Phase currentPhase = currentPhaseRef.get();
+        if (currentTimeMillis < currentPhase.proposedInvalidationTimestamp) {
+            return currentPhase.proposedInvalidationTimestamp - currentTimeMillis;
+        }
+
+        // writers never switch phases in scheduled mode, so CAS is not needed
+        Phase nextPhase = currentPhase == left ? right : left;
+        currentPhaseRef.set(nextPhase);
+        rotate(currentTimeMillis, currentPhase, nextPhase);
+        return nextPhase.proposedInvalidationTimestamp - currentTimeMillis;
     }
 
     private synchronized void rotate(long currentTimeMillis, Phase currentPhase, Phase nextPhase) {
@@ -104,9 +213,10 @@ public class ResetByChunksAccumulator implements Accumulator {
                 long currentPhaseNumber = (currentPhase.proposedInvalidationTimestamp - creationTimestamp) / intervalBetweenResettingMillis;
                 int correspondentArchiveIndex = (int) (currentPhaseNumber - 1) % archive.length;
                 ArchivedHistogram correspondentArchivedHistogram = archive[correspondentArchiveIndex];
-                HistogramUtil.reset(correspondentArchivedHistogram.histogram);
-                HistogramUtil.addSecondToFirst(correspondentArchivedHistogram.histogram, currentPhase.totalsHistogram);
+                correspondentArchivedHistogram.excludeFromSum();
+                correspondentArchivedHistogram.store(currentPhase.totalsHistogram, currentPhase.totalsBuckets);
                 correspondentArchivedHistogram.proposedInvalidationTimestamp = currentPhase.proposedInvalidationTimestamp + archive.length * intervalBetweenResettingMillis;
+                correspondentArchivedHistogram.includeToSum();
             }
             HistogramUtil.reset(currentPhase.totalsHistogram);
         } finally {
@@ -118,10 +228,19 @@ public class ResetByChunksAccumulator implements Accumulator {
     }
 
     @Override
-    public final synchronized Snapshot getSnapshot(Function<Histogram, Snapshot> snapshotTaker) {
-        HistogramUtil.reset(temporarySnapshotHistogram);
+    public final synchronized <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
         long currentTimeMillis = clock.currentTimeMillis();
+        if (historySupported) {
+            // the sum of archive is maintained incrementally, so only expired chunks need to be touched,
+            // it should be done before building of snapshot, because off-heap chunks are loaded into temporary snapshot histogram
+            for (ArchivedHistogram archivedHistogram : archive) {
+                if (archivedHistogram.includedToSum && archivedHistogram.proposedInvalidationTimestamp <= currentTimeMillis) {
+                    archivedHistogram.excludeFromSum();
+                }
+            }
+        }
 
+        HistogramUtil.reset(temporarySnapshotHistogram);
         for (Phase phase : phases) {
             if (phase.isNeedToBeReportedToSnapshot(currentTimeMillis)) {
                 phase.intervalHistogram = phase.recorder.getIntervalHistogram(phase.intervalHistogram);
@@ -130,14 +249,10 @@ public class ResetByChunksAccumulator implements Accumulator {
             }
         }
         if (historySupported) {
-            for (ArchivedHistogram archivedHistogram : archive) {
-                if (archivedHistogram.proposedInvalidationTimestamp > currentTimeMillis) {
-                    HistogramUtil.addSecondToFirst(temporarySnapshotHistogram, archivedHistogram.histogram);
-                }
-            }
+            HistogramUtil.addSecondToFirst(temporarySnapshotHistogram, archiveSumHistogram);
         }
 
-        return HistogramUtil.getSnapshot(temporarySnapshotHistogram, snapshotTaker);
+        return snapshotTaker.apply(temporarySnapshotHistogram);
     }
 
     @Override
@@ -147,25 +262,108 @@ public class ResetByChunksAccumulator implements Accumulator {
 
         // 4 - two recorders with two histogram
         // 2 - two histogram for storing accumulated values from current phase
-        // 1 - temporary histogram used for snapshot extracting
-        return oneHistogramPessimisticFootprint * ((archive != null? archive.length : 0) + 4 + 2 + 1);
+        // 1 - temporary histogram used for snapshot extracting and for loading of chunks stored off-heap
+        // 1 - histogram for storing sum of archive
+        int heapFootprint = oneHistogramPessimisticFootprint * ((archive != null? 1 : 0) + 4 + 2 + 1);
+        if (archive != null && offHeapArena == null) {
+            heapFootprint += oneHistogramPessimisticFootprint * archive.length;
+        }
+        return heapFootprint + getEstimatedOffHeapFootprintInBytes();
+    }
+
+    @Override
+    public int getEstimatedOffHeapFootprintInBytes() {
+        return offHeapArena == null ? 0 : offHeapArena.capacity();
+    }
+
+    /**
+     * The chunk stored off-heap is the sequence of counts of all buckets in the same order as buckets are placed in the histogram,
+     * so it is stored and loaded through public API of histogram without allocation of temporary histograms.
+     *
+     * @param histogram the histogram with fixed highestTrackableValue
+     * @return the capacity of slot which is enough to store the counts of all buckets of histogram
+     */
+    static int getOffHeapSlotCapacity(Histogram histogram) {
+        int bucketCount = 0;
+        AllValuesIterator iterator = new AllValuesIterator(histogram);
+        while (iterator.hasNext()) {
+            iterator.next();
+            bucketCount++;
+        }
+        return bucketCount * OFF_HEAP_BUCKET_SIZE_BYTES;
     }
 
     private final class ArchivedHistogram {
 
+        // exactly one of histogram and offHeapSlot is not null
         private final Histogram histogram;
+        private final ByteBuffer offHeapSlot;
         private volatile long proposedInvalidationTimestamp;
+        private boolean includedToSum;
+        private boolean empty = true;
 
-        public ArchivedHistogram(Histogram histogram, long proposedInvalidationTimestamp) {
+        public ArchivedHistogram(Histogram histogram, ByteBuffer offHeapSlot, long proposedInvalidationTimestamp) {
             this.histogram = histogram;
+            this.offHeapSlot = offHeapSlot;
             this.proposedInvalidationTimestamp = proposedInvalidationTimestamp;
         }
 
+        void store(Histogram source, AllValuesIterator sourceBuckets) {
+            empty = source.getTotalCount() == 0;
+            if (histogram != null) {
+                HistogramUtil.reset(histogram);
+                HistogramUtil.addSecondToFirst(histogram, source);
+            } else if (!empty) {
+                // content of empty chunk is never loaded, so there is no need to clear the slot
+                sourceBuckets.reset();
+                for (int position = 0; sourceBuckets.hasNext(); position += OFF_HEAP_BUCKET_SIZE_BYTES) {
+                    offHeapSlot.putLong(position, sourceBuckets.next().getCountAtValueIteratedTo());
+                }
+            }
+        }
+
+        // should be called under monitor of accumulator and never during building of snapshot,
+        // because off-heap chunks are loaded into temporary snapshot histogram
+        Histogram load() {
+            if (histogram != null) {
+                return histogram;
+            }
+            HistogramUtil.reset(temporarySnapshotHistogram);
+            // the buckets are walked in the same order as they were stored, each step moves to the lowest value of next bucket
+            long value = 0;
+            for (int position = 0; position < offHeapSlot.capacity(); position += OFF_HEAP_BUCKET_SIZE_BYTES) {
+                long count = offHeapSlot.getLong(position);
+                if (count != 0) {
+                    temporarySnapshotHistogram.recordValueWithCount(value, count);
+                }
+                value = temporarySnapshotHistogram.nextNonEquivalentValue(value);
+            }
+            return temporarySnapshotHistogram;
+        }
+
+        void includeToSum() {
+            if (!empty) {
+                HistogramUtil.addSecondToFirst(archiveSumHistogram, load());
+            }
+            includedToSum = true;
+        }
+
+        void excludeFromSum() {
+            if (includedToSum) {
+                if (!empty) {
+                    HistogramUtil.subtractSecondFromFirst(archiveSumHistogram, load());
+                }
+                includedToSum = false;
+            }
+        }
+
         @Override
         public String toString() {
             return "ArchivedHistogram{" +
                     "\n, proposedInvalidationTimestamp=" + proposedInvalidationTimestamp +
-                    "\n, histogram=" + Printer.histogramToString(histogram) +
+                    "\n, includedToSum=" + includedToSum +
+                    "\n, offHeap=" + (offHeapSlot != null) +
+                    "\n, histogram=" + (empty ? "empty" : histogram != null ? Printer.histogramToString(histogram) : "buckets=" + offHeapSlot.capacity() / OFF_HEAP_BUCKET_SIZE_BYTES) +
                     "\n}";
         }
     }
@@ -176,11 +374,19 @@ public class ResetByChunksAccumulator implements Accumulator {
         final Histogram totalsHistogram;
         Histogram intervalHistogram;
         volatile long proposedInvalidationTimestamp;
+        // reusable iterator over all buckets of totals, which is used for storing totals off-heap
+        final AllValuesIterator totalsBuckets;
+
+        // pre-allocated task which rotates from this phase to another, the timestamp is published to task by submission,
+        // tasks of both phases use the owner as shard key, so they are executed in order of submission by sharded executor
+        long rotationTimestampMillis;
+        final ReusableTask rotationTask = new ReusableTask(ResetByChunksAccumulator.this, () -> rotate(rotationTimestampMillis, this, this == left ? right : left));
 
         Phase(Supplier<Recorder> recorderSupplier, long proposedInvalidationTimestamp) {
             this.recorder = recorderSupplier.get();
             this.intervalHistogram = recorder.getIntervalHistogram();
             this.totalsHistogram = intervalHistogram.copy();
+            this.totalsBuckets = new AllValuesIterator(totalsHistogram);
             this.proposedInvalidationTimestamp = proposedInvalidationTimestamp;
         }
 
@@ -216,6 +422,7 @@ public class ResetByChunksAccumulator implements Accumulator {
                 ",\n left=" + left +
                 ",\n right=" + right +
                 ",\n currentPhase=" + (currentPhaseRef.get() == left? "left": "right") +
+                ",\n scheduledRotation=" + (scheduledRotation != null) +
                 ",\n temporarySnapshotHistogram=" + Printer.histogramToString(temporarySnapshotHistogram)  +
                 '}';
     }
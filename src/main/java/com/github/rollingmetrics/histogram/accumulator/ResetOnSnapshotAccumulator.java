@@ -17,7 +17,6 @@
 
 package com.github.rollingmetrics.histogram.accumulator;
 
-import com.codahale.metrics.Snapshot;
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
 import com.github.rollingmetrics.histogram.util.Printer;
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
@@ -42,9 +41,9 @@ public class ResetOnSnapshotAccumulator implements Accumulator {
     }
 
     @Override
-    synchronized public final Snapshot getSnapshot(Function<Histogram, Snapshot> snapshotTaker) {
+    synchronized public final <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
         intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
-        return HistogramUtil.getSnapshot(intervalHistogram, snapshotTaker);
+        return snapshotTaker.apply(intervalHistogram);
     }
 
     @Override
@@ -0,0 +1,233 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.accumulator;
+
+import com.github.rollingmetrics.histogram.util.HistogramUtil;
+import com.github.rollingmetrics.histogram.util.Printer;
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.ReusableTask;
+import com.github.rollingmetrics.util.RotationScheduler;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The accumulator which has the same semantic as {@link com.github.rollingmetrics.counter.SmoothlyDecayingRollingCounter}:
+ * the values are stored in {@code numberChunks + 1} chunks, and instead of expiring the oldest chunk at once,
+ * its counts are proportionally down-weighted at snapshot time according to the time which remains before its invalidation.
+ * So percentiles do not jump at chunk boundaries, and smooth curves are achieved with few chunks.
+ *
+ * <p>
+ * Writers record values into single {@link Recorder}, the values are moved from recorder to chunk of current interval
+ * by rotation which is submitted to background executor by the first writer which observes the chunk boundary,
+ * and by each snapshot extraction. The boundaries of chunks are respected with precision of rotation latency,
+ * values which are recorded after boundary but before rotation are accounted in the chunk of interval which is being finished.
+ *
+ * This class is not the part of metrics-core-hdr public API and should not be used by user directly.
+ */
+public class SmoothlyDecayingAccumulator implements Accumulator {
+
+    private final Recorder recorder;
+    private final long intervalBetweenResettingMillis;
+    private final Clock clock;
+    private final long creationTimestamp;
+    private final Executor backgroundExecutor;
+    private final int chunkCount;
+
+    // the writer which observes that this timestamp is passed submits rotation, Long.MAX_VALUE means that rotation is already submitted
+    private final AtomicLong nextRotationTimestamp;
+    private final ReusableTask rotationTask = new ReusableTask(this, this::rotate);
+
+    // not null only when rotation is performed by scheduler, the scheduler holds only weak reference to it
+    private final RotationScheduler.Rotatable scheduledRotation;
+
+    // following fields are guarded by monitor of accumulator
+    private final Histogram[] chunks;
+    private final long[] invalidationTimestamps;
+    private final Histogram temporarySnapshotHistogram;
+    private Histogram intervalHistogram;
+    private long currentInterval;
+
+    public SmoothlyDecayingAccumulator(Recorder recorder, int numberChunks, long intervalBetweenResettingMillis, Clock clock, Executor backgroundExecutor, RotationScheduler rotationScheduler) {
+        this.recorder = recorder;
+        this.intervalBetweenResettingMillis = intervalBetweenResettingMillis;
+        this.clock = clock;
+        this.creationTimestamp = clock.currentTimeMillis();
+        this.backgroundExecutor = backgroundExecutor;
+
+        this.intervalHistogram = recorder.getIntervalHistogram();
+        this.temporarySnapshotHistogram = HistogramUtil.createNonConcurrentCopy(intervalHistogram);
+        this.chunkCount = numberChunks + 1;
+        this.chunks = new Histogram[chunkCount];
+        this.invalidationTimestamps = new long[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = HistogramUtil.createNonConcurrentCopy(intervalHistogram);
+            invalidationTimestamps[i] = creationTimestamp + (chunkCount + i) * intervalBetweenResettingMillis;
+        }
+        this.nextRotationTimestamp = new AtomicLong(creationTimestamp + intervalBetweenResettingMillis);
+
+        if (rotationScheduler != null) {
+            this.scheduledRotation = this::rotateIfNeeded;
+            // registration should be last action of constructor, because scheduler thread can rotate chunks immediately
+            rotationScheduler.register(scheduledRotation);
+        } else {
+            this.scheduledRotation = null;
+        }
+    }
+
+    @Override
+    public void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples) {
+        if (scheduledRotation == null) {
+            submitRotationIfNeeded();
+        }
+        recorder.recordValueWithExpectedInterval(value, expectedIntervalBetweenValueSamples);
+    }
+
+    @Override
+    public void recordValues(long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+        // the clock is read once for whole batch
+        if (scheduledRotation == null) {
+            submitRotationIfNeeded();
+        }
+        for (int i = offset; i < offset + length; i++) {
+            recorder.recordValueWithExpectedInterval(values[i], expectedIntervalBetweenValueSamples);
+        }
+    }
+
+    @Override
+    public synchronized <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
+        long currentTimeMillis = clock.currentTimeMillis();
+        rotate(currentTimeMillis);
+
+        HistogramUtil.reset(temporarySnapshotHistogram);
+        for (int i = 0; i < chunkCount; i++) {
+            Histogram chunk = chunks[i];
+            long beforeInvalidateMillis = invalidationTimestamps[i] - currentTimeMillis;
+            if (beforeInvalidateMillis <= 0 || chunk.getTotalCount() == 0) {
+                continue;
+            }
+            if (beforeInvalidateMillis >= intervalBetweenResettingMillis) {
+                temporarySnapshotHistogram.add(chunk);
+            } else {
+                // this is oldest chunk, so its weight should be reduced
+                double decayingCoefficient = (double) beforeInvalidateMillis / (double) intervalBetweenResettingMillis;
+                addDecayed(temporarySnapshotHistogram, chunk, decayingCoefficient);
+            }
+        }
+        return snapshotTaker.apply(temporarySnapshotHistogram);
+    }
+
+    @Override
+    public int getEstimatedFootprintInBytes() {
+        // each histogram has equivalent pessimistic estimation
+        int oneHistogramPessimisticFootprint = temporarySnapshotHistogram.getEstimatedFootprintInBytes();
+
+        // 2 - recorder with two histograms, one of them is recycled on extracting values from recorder
+        // 1 - temporary histogram used for snapshot extracting
+        return oneHistogramPessimisticFootprint * (chunkCount + 2 + 1);
+    }
+
+    static void addDecayed(Histogram target, Histogram source, double decayingCoefficient) {
+        // the fractional parts of scaled counts are carried to next bucket,
+        // so total count is reduced exactly proportionally and the shape of distribution is preserved
+        double carry = 0.0;
+        for (HistogramIterationValue value : source.recordedValues()) {
+            double scaledCount = value.getCountAtValueIteratedTo() * decayingCoefficient + carry;
+            long count = (long) scaledCount;
+            carry = scaledCount - count;
+            if (count > 0) {
+                target.recordValueWithCount(value.getValueIteratedTo(), count);
+            }
+        }
+    }
+
+    private void submitRotationIfNeeded() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        long nextRotation = nextRotationTimestamp.get();
+        if (currentTimeMillis >= nextRotation && nextRotationTimestamp.compareAndSet(nextRotation, Long.MAX_VALUE)) {
+            // Current thread is responsible to rotate chunks.
+            ResilientExecutionUtil.getInstance().execute(backgroundExecutor, rotationTask);
+        }
+    }
+
+    private long rotateIfNeeded() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        long nextRotation = nextRotationTimestamp.get();
+        if (currentTimeMillis < nextRotation) {
+            return nextRotation - currentTimeMillis;
+        }
+        rotate();
+        return nextRotationTimestamp.get() - currentTimeMillis;
+    }
+
+    private synchronized void rotate() {
+        rotate(clock.currentTimeMillis());
+    }
+
+    private void rotate(long currentTimeMillis) {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        // the writer marks the boundary as observed before recording, so marker is visible if any drained value was written after boundary
+        boolean writtenAfterBoundary = nextRotationTimestamp.get() == Long.MAX_VALUE;
+
+        long intervalsSinceCreation = (currentTimeMillis - creationTimestamp) / intervalBetweenResettingMillis;
+        if (intervalsSinceCreation <= currentInterval) {
+            HistogramUtil.addSecondToFirst(chunks[(int) (currentInterval % chunkCount)], intervalHistogram);
+            nextRotationTimestamp.set(creationTimestamp + (currentInterval + 1) * intervalBetweenResettingMillis);
+            return;
+        }
+        // each chunk is reused once per chunkCount intervals, so there is no sense to reset more than chunkCount chunks
+        for (long interval = Math.max(currentInterval + 1, intervalsSinceCreation - chunkCount + 1); interval <= intervalsSinceCreation; interval++) {
+            int chunkIndex = (int) (interval % chunkCount);
+            HistogramUtil.reset(chunks[chunkIndex]);
+            invalidationTimestamps[chunkIndex] = creationTimestamp + (interval + chunkCount) * intervalBetweenResettingMillis;
+        }
+
+        // Values recorded since previous rotation are accounted in the chunk of interval which is being finished,
+        // because rotation is triggered by the first writer which observes the boundary.
+        if (intervalsSinceCreation - currentInterval < chunkCount) {
+            HistogramUtil.addSecondToFirst(chunks[(int) (currentInterval % chunkCount)], intervalHistogram);
+        } else if (writtenAfterBoundary) {
+            // The chunk of finished interval is already reset because of long idle period,
+            // but the values which were written after idle period should not be lost, so they are accounted in the fresh chunk.
+            HistogramUtil.addSecondToFirst(chunks[(int) (intervalsSinceCreation % chunkCount)], intervalHistogram);
+        }
+
+        currentInterval = intervalsSinceCreation;
+        nextRotationTimestamp.set(creationTimestamp + (intervalsSinceCreation + 1) * intervalBetweenResettingMillis);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("SmoothlyDecayingAccumulator{" +
+                "\nintervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
+                ",\n creationTimestamp=" + creationTimestamp +
+                ",\n currentInterval=" + currentInterval +
+                ",\n scheduledRotation=" + (scheduledRotation != null));
+        for (int i = 0; i < chunkCount; i++) {
+            builder.append(",\n chunk[").append(i).append("]={invalidationTimestamp=").append(invalidationTimestamps[i])
+                    .append(", histogram=").append(Printer.histogramToString(chunks[i])).append('}');
+        }
+        return builder.append('}').toString();
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.accumulator;
+
+import org.HdrHistogram.Histogram;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The decorator for {@link Accumulator} which collects values into the buffer private for each writer thread,
+ * and moves values from buffer to target accumulator by batches when buffer is full or snapshot is taken.
+ *
+ * <p>
+ * Each buffer is registered in the registry owned by accumulator, so values written by threads which already died are not lost,
+ * the buffers of dead threads are drained and removed from registry at next snapshot.
+ *
+ * <p>
+ * Buffer does not hold reference to accumulator, and accumulator holds the registry of buffers,
+ * so when accumulator is not used anymore it is collectable even if the writer threads are still alive(for example pooled threads).
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free, the writer stores value into own buffer and publishes the write index by lazySet.
+ *     The monitor of buffer is acquired only when buffer is full or expected interval is changed.</li>
+ *     <li>Snapshot taking visits buffers of all threads, so its cost grows with the count of writer threads.</li>
+ * </ul>
+ *
+ * <p>
+ * The price of low contention is staleness: value stays invisible to target accumulator until buffer is drained,
+ * so for rolling accumulators the value can be attributed to the time window of draining instead of time window of recording.
+ *
+ * This class is not the part of metrics-core-hdr public API and should not be used by user directly.
+ */
+public class ThreadLocalBufferingAccumulator implements Accumulator {
+
+    private final Accumulator target;
+    private final int bufferSize;
+    private final Set<Buffer> registry = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Buffer> localBuffer = ThreadLocal.withInitial(this::registerBuffer);
+
+    public ThreadLocalBufferingAccumulator(Accumulator target, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize should be positive");
+        }
+        this.target = target;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples) {
+        localBuffer.get().add(value, expectedIntervalBetweenValueSamples, target);
+    }
+
+    @Override
+    public void recordValues(long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+        localBuffer.get().addAll(values, offset, length, expectedIntervalBetweenValueSamples, target);
+    }
+
+    @Override
+    public <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
+        drainBuffers();
+        return target.getSnapshot(snapshotTaker);
+    }
+
+    @Override
+    public int getEstimatedFootprintInBytes() {
+        // 8 bytes per buffered value plus pessimistic 64 bytes for headers of buffer and array
+        return target.getEstimatedFootprintInBytes() + registry.size() * (bufferSize * 8 + 64);
+    }
+
+    @Override
+    public int getEstimatedOffHeapFootprintInBytes() {
+        return target.getEstimatedOffHeapFootprintInBytes();
+    }
+
+    private void drainBuffers() {
+        Iterator<Buffer> iterator = registry.iterator();
+        while (iterator.hasNext()) {
+            Buffer buffer = iterator.next();
+            buffer.drain(target);
+            if (!buffer.isOwnerAlive()) {
+                // owner will never write to this buffer anymore, and all values already moved to target
+                iterator.remove();
+            }
+        }
+    }
+
+    private Buffer registerBuffer() {
+        Buffer buffer = new Buffer(Thread.currentThread(), bufferSize);
+        registry.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * The buffer is static and does not reference the accumulator, because it is strongly reachable from ThreadLocalMap of owner thread,
+     * the reference to accumulator would prevent collecting of accumulator and its thread local key as long as owner thread is alive.
+     *
+     * <p>
+     * Values are written only by owner thread to the slots after write index, then write index is published by lazySet,
+     * so drainer which reads write index observes all values before it. Drainer moves values between read index and write index to target,
+     * the slots are reused only after owner resets both indexes, resetting and draining are done under monitor of buffer.
+     */
+    private static final class Buffer {
+
+        private final WeakReference<Thread> ownerRef;
+        private final long[] values;
+        private final AtomicInteger writeIndex = new AtomicInteger();
+        // guarded by monitor of buffer
+        private int readIndex;
+        // changed by owner only under monitor of buffer, when nothing is buffered
+        private long expectedIntervalBetweenValueSamples;
+
+        Buffer(Thread owner, int bufferSize) {
+            this.ownerRef = new WeakReference<>(owner);
+            this.values = new long[bufferSize];
+        }
+
+        void add(long value, long expectedIntervalBetweenValueSamples, Accumulator target) {
+            if (this.expectedIntervalBetweenValueSamples != expectedIntervalBetweenValueSamples) {
+                changeExpectedInterval(expectedIntervalBetweenValueSamples, target);
+            }
+            int index = writeIndex.get();
+            values[index++] = value;
+            writeIndex.lazySet(index);
+            if (index == values.length) {
+                drainAndReset(target);
+            }
+        }
+
+        void addAll(long[] batch, int offset, int length, long expectedIntervalBetweenValueSamples, Accumulator target) {
+            if (this.expectedIntervalBetweenValueSamples != expectedIntervalBetweenValueSamples) {
+                changeExpectedInterval(expectedIntervalBetweenValueSamples, target);
+            }
+            int index = writeIndex.get();
+            if (index > 0 && index + length > values.length) {
+                drainAndReset(target);
+                index = 0;
+            }
+            if (length >= values.length) {
+                // there is no sense to copy big batch to buffer
+                target.recordValues(batch, offset, length, expectedIntervalBetweenValueSamples);
+                return;
+            }
+            System.arraycopy(batch, offset, values, index, length);
+            index += length;
+            writeIndex.lazySet(index);
+            if (index == values.length) {
+                drainAndReset(target);
+            }
+        }
+
+        synchronized void drain(Accumulator target) {
+            int count = writeIndex.get() - readIndex;
+            if (count == 0) {
+                return;
+            }
+            int from = readIndex;
+            // move read index before recording, in order to not record same values twice when target throws exception
+            readIndex += count;
+            target.recordValues(values, from, count, expectedIntervalBetweenValueSamples);
+        }
+
+        // should be called only by owner
+        private synchronized void drainAndReset(Accumulator target) {
+            try {
+                drain(target);
+            } finally {
+                readIndex = 0;
+                writeIndex.set(0);
+            }
+        }
+
+        // should be called only by owner
+        private synchronized void changeExpectedInterval(long expectedIntervalBetweenValueSamples, Accumulator target) {
+            drainAndReset(target);
+            this.expectedIntervalBetweenValueSamples = expectedIntervalBetweenValueSamples;
+        }
+
+        boolean isOwnerAlive() {
+            Thread owner = ownerRef.get();
+            return owner != null && owner.isAlive();
+        }
+
+        @Override
+        synchronized public String toString() {
+            return "Buffer{" +
+                    "owner=" + ownerRef.get() +
+                    ", size=" + (writeIndex.get() - readIndex) +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadLocalBufferingAccumulator{" +
+                "\nbufferSize=" + bufferSize +
+                ",\n buffers=" + registry +
+                ",\n target=" + target +
+                '}';
+    }
+
+}
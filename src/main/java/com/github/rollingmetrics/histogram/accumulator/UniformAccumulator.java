@@ -17,7 +17,6 @@
 
 package com.github.rollingmetrics.histogram.accumulator;
 
-import com.codahale.metrics.Snapshot;
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
 import com.github.rollingmetrics.histogram.util.Printer;
 import com.github.rollingmetrics.histogram.util.HistogramUtil;
@@ -45,10 +44,10 @@ public class UniformAccumulator implements Accumulator {
     }
 
     @Override
-    public final synchronized Snapshot getSnapshot(Function<Histogram, Snapshot> snapshotTaker) {
+    public final synchronized <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
         intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
         HistogramUtil.addSecondToFirst(uniformHistogram, intervalHistogram);
-        return HistogramUtil.getSnapshot(uniformHistogram, snapshotTaker);
+        return snapshotTaker.apply(uniformHistogram);
     }
 
     @Override
@@ -39,11 +39,25 @@ public class HistogramUtil {
         }
     }
 
+    public static void subtractSecondFromFirst(Histogram first, Histogram second) {
+        if (second.getTotalCount() > 0) {
+            first.subtract(second);
+        }
+    }
+
+    /**
+     * @deprecated accumulators pass the histogram to taker even if it is empty, use {@link #takeSnapshot(Histogram, Function, Object)} instead
+     */
+    @Deprecated
     public static Snapshot getSnapshot(Histogram histogram, Function<Histogram, Snapshot> snapshotTaker) {
+        return takeSnapshot(histogram, snapshotTaker, EmptySnapshot.INSTANCE);
+    }
+
+    public static <T> T takeSnapshot(Histogram histogram, Function<Histogram, T> nonEmptySnapshotTaker, T emptySnapshot) {
         if (histogram.getTotalCount() > 0) {
-            return snapshotTaker.apply(histogram);
+            return nonEmptySnapshotTaker.apply(histogram);
         } else {
-            return EmptySnapshot.INSTANCE;
+            return emptySnapshot;
         }
     }
 
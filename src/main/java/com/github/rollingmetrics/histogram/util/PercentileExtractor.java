@@ -0,0 +1,127 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.util;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Computes mean, standard deviation, median and values at predefined quantiles by single walk over the buckets of histogram,
+ * instead of walking over whole counts array by each of {@link Histogram#getMean()}, {@link Histogram#getStdDeviation()}
+ * and {@link Histogram#getValueAtPercentile(double)}.
+ *
+ * <p>
+ * The walk is limited by minimum and maximum recorded values and stops as soon as total count is reached.
+ * Values at quantiles are calculated by the same formula which is used by {@link Histogram#getValueAtPercentile(double)},
+ * the mean is calculated by the same formula which is used by {@link Histogram#getMean()},
+ * the standard deviation is calculated by weighted Welford's method, so it can differ from {@link Histogram#getStdDeviation()} only by rounding error.
+ *
+ * <p>
+ * The extractor is not thread-safe, the instance can be reused for many extractions in order to avoid allocation.
+ *
+ * This class is not the part of metrics-core-hdr public API and should not be used by user directly.
+ */
+public class PercentileExtractor {
+
+    private double mean;
+    private double stdDeviation;
+    private double median;
+
+    /**
+     * Extracts statistics from histogram, the results are available via getters until next extraction.
+     *
+     * @param histogram the histogram which should not be empty
+     * @param sortedQuantiles the quantiles between {@literal 0..1} sorted in ascending order
+     * @param values the array to store the values at quantiles, the value at {@code sortedQuantiles[i]} is stored to {@code values[i]}
+     */
+    public void extract(Histogram histogram, double[] sortedQuantiles, double[] values) {
+        final long totalCount = histogram.getTotalCount();
+        final long max = histogram.getMaxValue();
+
+        final long medianCount = countAtPercentile(50.0, totalCount);
+        boolean medianFound = false;
+        int quantileIndex = 0;
+        long quantileCount = nextQuantileCount(sortedQuantiles, quantileIndex, totalCount);
+
+        long countToCurrentValue = 0;
+        double totalValue = 0.0;
+        double runningMean = 0.0;
+        double squaredDeviations = 0.0;
+        for (long value = histogram.lowestEquivalentValue(histogram.getMinValue());
+             value >= 0 && value <= max && countToCurrentValue < totalCount;
+             value = histogram.nextNonEquivalentValue(value)) {
+            long count = histogram.getCountAtValue(value);
+            if (count == 0) {
+                continue;
+            }
+            countToCurrentValue += count;
+
+            long medianEquivalentValue = histogram.medianEquivalentValue(value);
+            totalValue += medianEquivalentValue * count;
+            double deviation = medianEquivalentValue - runningMean;
+            runningMean += deviation * count / countToCurrentValue;
+            squaredDeviations += deviation * (medianEquivalentValue - runningMean) * count;
+
+            if (!medianFound && countToCurrentValue >= medianCount) {
+                median = histogram.highestEquivalentValue(value);
+                medianFound = true;
+            }
+            while (countToCurrentValue >= quantileCount) {
+                values[quantileIndex] = sortedQuantiles[quantileIndex] == 0.0 ?
+                        histogram.lowestEquivalentValue(value) : histogram.highestEquivalentValue(value);
+                quantileIndex++;
+                quantileCount = nextQuantileCount(sortedQuantiles, quantileIndex, totalCount);
+            }
+        }
+
+        // the same as Histogram#getValueAtPercentile returns when sum of counts is less than total count
+        if (!medianFound) {
+            median = 0.0;
+        }
+        for (; quantileIndex < sortedQuantiles.length; quantileIndex++) {
+            values[quantileIndex] = 0.0;
+        }
+        mean = totalValue / totalCount;
+        stdDeviation = Math.sqrt(squaredDeviations / totalCount);
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStdDeviation() {
+        return stdDeviation;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    private static long nextQuantileCount(double[] sortedQuantiles, int index, long totalCount) {
+        if (index == sortedQuantiles.length) {
+            return Long.MAX_VALUE;
+        }
+        return countAtPercentile(sortedQuantiles[index] * 100.0, totalCount);
+    }
+
+    private static long countAtPercentile(double percentile, long totalCount) {
+        double requestedPercentile = Math.min(percentile, 100.0);
+        long countAtPercentile = (long) (((requestedPercentile / 100.0) * totalCount) + 0.5);
+        return Math.max(countAtPercentile, 1);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.ForwardDecayingAccumulator;
+
+import java.time.Duration;
+
+/**
+ * The hit-ratio which exponentially decays its state, the weight of each registered result becomes two times smaller each time when half-life is elapsed.
+ *
+ * <p>
+ * In opposite to {@link SmoothlyDecayingRollingHitRatio} which linearly decays only oldest chunk and needs to scan all chunks on reading,
+ * this hit-ratio consumes constant amount of memory and both writing and reading are O(1).
+ * Decaying is implemented via forward decay: each registered result is scaled relatively to landmark timestamp,
+ * and landmark is moved forward each {@link ForwardDecayingAccumulator#RENORMALIZATION_HALF_LIVES} half-lives.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free, writers never wait for renormalization.</li>
+ *     <li>Ratio calculation is lock-free, except short moment of renormalization when reader waits while state is transferred to new landmark.</li>
+ *     <li>Writers add total count before hit count and readers read hit count before total count, so ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When you need in "recent activity" semantic, but strict boundary of rolling time window is not required.</li>
+ *     <li>Note that hit-ratio never returns NaN after first update, because old results lose their weight but never disappear completely.</li>
+ * </ul>
+ *
+ * @see SmoothlyDecayingRollingHitRatio
+ * @see com.github.rollingmetrics.counter.ExponentiallyDecayingCounter
+ */
+public class ExponentiallyDecayingHitRatio implements HitRatio {
+
+    private static final int HIT_INDEX = 0;
+    private static final int TOTAL_INDEX = 1;
+
+    private final Clock clock;
+    private final ForwardDecayingAccumulator accumulator;
+
+    /**
+     * Constructs the hit-ratio which halves weight of registered results each time when {@code halfLife} is elapsed.
+     *
+     * @param halfLife the duration after which weight of registered result becomes two times smaller, should be at least 1 millisecond
+     */
+    public ExponentiallyDecayingHitRatio(Duration halfLife) {
+        this(halfLife, Clock.defaultClock());
+    }
+
+    public ExponentiallyDecayingHitRatio(Duration halfLife, Clock clock) {
+        this.clock = clock;
+        this.accumulator = new ForwardDecayingAccumulator(halfLife, 2, clock.currentTimeMillis());
+    }
+
+    /**
+     * @return the half-life of this hit-ratio
+     */
+    public Duration getHalfLife() {
+        return accumulator.getHalfLife();
+    }
+
+    @Override
+    public void update(int hitCount, int totalCount) {
+        update((long) hitCount, (long) totalCount);
+    }
+
+    @Override
+    public void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        long nowMillis = clock.currentTimeMillis();
+        accumulator.add(TOTAL_INDEX, totalCount, nowMillis);
+        if (hitCount > 0) {
+            accumulator.add(HIT_INDEX, hitCount, nowMillis);
+        }
+    }
+
+    @Override
+    public double getHitRatio() {
+        double[] snapshot = new double[2];
+        accumulator.readInto(snapshot, clock.currentTimeMillis());
+        return Math.min(1.0, snapshot[HIT_INDEX] / snapshot[TOTAL_INDEX]);
+    }
+
+    @Override
+    public String toString() {
+        return "ExponentiallyDecayingHitRatio{" +
+                "clock=" + clock +
+                ", accumulator=" + accumulator +
+                '}';
+    }
+
+}
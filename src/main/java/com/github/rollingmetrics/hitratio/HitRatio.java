@@ -24,6 +24,15 @@ package com.github.rollingmetrics.hitratio;
  * @see ResetOnSnapshotHitRatio
  * @see ResetPeriodicallyHitRatio
  * @see UniformHitRatio
+ * @see WideSmoothlyDecayingRollingHitRatio
+ * @see WideResetOnSnapshotHitRatio
+ * @see WideResetPeriodicallyHitRatio
+ * @see WideUniformHitRatio
+ * @see StripedSmoothlyDecayingRollingHitRatio
+ * @see StripedResetOnSnapshotHitRatio
+ * @see StripedResetPeriodicallyHitRatio
+ * @see StripedUniformHitRatio
+ * @see ExponentiallyDecayingHitRatio
  */
 public interface HitRatio {
 
@@ -85,6 +94,33 @@ public interface HitRatio {
      */
     void update(int hitCount, int totalCount);
 
+    /**
+     * Registers an result of bulk operations which counts do not fit into int.
+     *
+     * <p>
+     * The default implementation is intended for implementations which store counts as 32-bit integers,
+     * it shifts both counts right until {@code totalCount} fits into int, so the ratio of update is preserved but its weight is reduced.
+     * The implementations with 64-bit counters, like {@link WideUniformHitRatio}, override this method and store counts without loss of precision.
+     *
+     * @param hitCount
+     * @param totalCount
+     *
+     * @throws IllegalArgumentException In case of:<ul>
+     *     <li>{@code hitCount < 0}</li>
+     *     <li>{@code totalCount < 1}</li>
+     *     <li>{@code hitCount > totalCount}</li>
+     * </ul>
+     */
+    default void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        if (totalCount > Integer.MAX_VALUE) {
+            int shift = 64 - Long.numberOfLeadingZeros(totalCount) - 31;
+            hitCount >>= shift;
+            totalCount >>= shift;
+        }
+        update((int) hitCount, (int) totalCount);
+    }
+
     /**
      * Returns the ratio between hits and misses
      *
@@ -31,6 +31,31 @@ public class HitRatioUtil {
     }
 
     static long updateRatio(AtomicLong compositeRatioRef, int hitCount, int totalCount) {
+        checkArguments(hitCount, totalCount);
+        while (true) {
+            long compositeRatio = compositeRatioRef.get();
+            long newCompositeRatio = accumulate(compositeRatio, hitCount, totalCount);
+            if (compositeRatioRef.compareAndSet(compositeRatio, newCompositeRatio)) {
+                return newCompositeRatio;
+            }
+        }
+    }
+
+    static long accumulate(long compositeRatio, int hitCount, int totalCount) {
+        long accumulatedHit = getHitFromCompositeRatio(compositeRatio);
+        accumulatedHit += hitCount;
+        long accumulatedTotal = getTotalCountFromCompositeRatio(compositeRatio);
+        accumulatedTotal += totalCount;
+
+        if (accumulatedTotal > Integer.MAX_VALUE) {
+            accumulatedHit /= 2;
+            accumulatedTotal /= 2;
+        }
+
+        return toLong((int) accumulatedHit, (int) accumulatedTotal);
+    }
+
+    static void checkArguments(long hitCount, long totalCount) {
         if (hitCount > totalCount) {
             throw new IllegalArgumentException("hitCount should be <= totalCount");
         }
@@ -40,23 +65,6 @@ public class HitRatioUtil {
         if (hitCount < 0) {
             throw new IllegalArgumentException("hitCount should be >= 0");
         }
-        while (true) {
-            long compositeRatio = compositeRatioRef.get();
-            long accumulatedHit = getHitFromCompositeRatio(compositeRatio);
-            accumulatedHit += hitCount;
-            long accumulatedTotal = getTotalCountFromCompositeRatio(compositeRatio);
-            accumulatedTotal += totalCount;
-
-            if (accumulatedTotal > Integer.MAX_VALUE) {
-                accumulatedHit /= 2;
-                accumulatedTotal /= 2;
-            }
-
-            long newCompositeRatio = toLong((int) accumulatedHit, (int) accumulatedTotal);
-            if (compositeRatioRef.compareAndSet(compositeRatio, newCompositeRatio)) {
-                return newCompositeRatio;
-            }
-        }
     }
 
     static int getHitFromCompositeRatio(long compositeRatio) {
@@ -0,0 +1,55 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+/**
+ * The hit-ratio which reset its state to zero after each invocation of {@link #getHitRatio()} and stores hits and misses in separated {@link java.util.concurrent.atomic.LongAdder}s.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is wait-free and contention-free.</li>
+ *     <li>Reading is lock-free, its latency grows with amount of CPU cores.</li>
+ *     <li>Hits and misses are summed from their cells one after another without locking, so each sum reflects slightly different instant.
+ *     The error of observed ratio is bounded by the updates which were performed concurrently with reading:
+ *     such update can be visible in one sum and invisible in another, but updates completed before reading started are always observed,
+ *     and ratio always belongs to {@code [0, 1]}.</li>
+ *     <li>Resetting is performed by subtraction of the read sums from counters, so update which concurrently happens with reading is never lost.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When hit-ratio is updated from many threads and writes significantly dominate reads.</li>
+ *     <li>Only if one kind of reader interests in value of hit-ratio.
+ *     Usage of this implementation for case of multiple readers will be a bad idea because of readers will steal data from each other.
+ *     </li>
+ * </ul>
+ *
+ * @see StripedSmoothlyDecayingRollingHitRatio
+ * @see StripedResetPeriodicallyHitRatio
+ * @see StripedUniformHitRatio
+ * @see WideResetOnSnapshotHitRatio
+ */
+public class StripedResetOnSnapshotHitRatio extends WideResetOnSnapshotHitRatio {
+
+    public StripedResetOnSnapshotHitRatio() {
+        super(WideRatio::striped);
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+
+/**
+ * The hit-ratio which reset its state to zero each time when configured interval is elapsed and stores hits and misses in separated {@link java.util.concurrent.atomic.LongAdder}s.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free, writers do not contend with each other except the moment of resetting.</li>
+ *     <li>Ratio calculation is lock-free, its latency grows with amount of CPU cores.</li>
+ *     <li>Hits and misses are summed from their cells one after another without locking, so each sum reflects slightly different instant.
+ *     The error of observed ratio is bounded by the updates which were performed concurrently with reading:
+ *     such update can be visible in one sum and invisible in another, but updates completed before reading started are always observed,
+ *     and ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When hit-ratio is updated from many threads and writes significantly dominate reads.</li>
+ *     <li>Only if you accept the fact that several increments can be never observed by reader(because rotation to zero can happen before reader seen the written values).</li>
+ * </ul>
+ *
+ * @see StripedSmoothlyDecayingRollingHitRatio
+ * @see StripedResetOnSnapshotHitRatio
+ * @see StripedUniformHitRatio
+ * @see WideResetPeriodicallyHitRatio
+ */
+public class StripedResetPeriodicallyHitRatio extends WideResetPeriodicallyHitRatio {
+
+    /**
+     * Constructs the hit-ratio which reset its state to zero each time when {@code resetInterval} is elapsed.
+     *
+     * @param resetInterval the interval between counter resetting
+     */
+    public StripedResetPeriodicallyHitRatio(Duration resetInterval) {
+        this(resetInterval, Clock.defaultClock());
+    }
+
+    public StripedResetPeriodicallyHitRatio(Duration resetInterval, Clock clock) {
+        super(resetInterval, clock, WideRatio::striped);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+
+/**
+ * The rolling time window hit-ratio implementation which resets its state by chunks and stores hits and misses of each chunk in separated {@link java.util.concurrent.atomic.LongAdder}s.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free, writers do not contend with each other except the moment of chunk rotation.</li>
+ *     <li>Ratio calculation is lock-free, its latency grows with amount of chunks and amount of CPU cores.</li>
+ *     <li>Hits and misses are summed from their cells one after another without locking, so each sum reflects slightly different instant.
+ *     The error of observed ratio is bounded by the updates which were performed concurrently with reading:
+ *     such update can be visible in one sum and invisible in another, but updates completed before reading started are always observed,
+ *     and ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>Only when you need in "rolling time window" semantic.</li>
+ *     <li>When hit-ratio is updated from many threads and writes significantly dominate reads.
+ *     Each chunk lazily allocates cells for contended threads, so memory footprint grows with amount of writers and chunks.</li>
+ * </ul>
+ *
+ * @see StripedResetOnSnapshotHitRatio
+ * @see StripedResetPeriodicallyHitRatio
+ * @see StripedUniformHitRatio
+ * @see WideSmoothlyDecayingRollingHitRatio
+ */
+public class StripedSmoothlyDecayingRollingHitRatio extends WideSmoothlyDecayingRollingHitRatio {
+
+    /**
+     * Constructs the chunked hit-ratio divided by {@code numberChunks}.
+     * The hit-ratio will invalidate one chunk each time when {@code rollingWindow/numberChunks} millis has elapsed,
+     * except oldest chunk which invalidated continuously.
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split
+     */
+    public StripedSmoothlyDecayingRollingHitRatio(Duration rollingWindow, int numberChunks) {
+        this(rollingWindow, numberChunks, Clock.defaultClock());
+    }
+
+    public StripedSmoothlyDecayingRollingHitRatio(Duration rollingWindow, int numberChunks, Clock clock) {
+        super(rollingWindow, numberChunks, clock, WideRatio::striped);
+    }
+
+}
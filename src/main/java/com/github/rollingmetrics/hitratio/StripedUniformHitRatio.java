@@ -0,0 +1,56 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+/**
+ * The hit-ratio which never evicts collected values and stores hits and misses in separated {@link java.util.concurrent.atomic.LongAdder}s.
+ *
+ * <p>
+ * In opposite to {@link UniformHitRatio} and {@link WideUniformHitRatio} writers from different threads do not contend on the same memory location,
+ * so this implementation scales with amount of writers, at the price of slower and less consistent reading.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is wait-free and contention-free.</li>
+ *     <li>Reading is wait-free, its latency grows with amount of CPU cores.</li>
+ *     <li>Hits and misses are summed from their cells one after another without locking, so each sum reflects slightly different instant.
+ *     The error of observed ratio is bounded by the updates which were performed concurrently with reading:
+ *     such update can be visible in one sum and invisible in another, but updates completed before reading started are always observed,
+ *     and ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When hit-ratio is updated from many threads and writes significantly dominate reads.</li>
+ *     <li>When you do not need in "rolling time window" semantic. Else use {@link StripedSmoothlyDecayingRollingHitRatio}</li>
+ * </ul>
+ *
+ * @see StripedSmoothlyDecayingRollingHitRatio
+ * @see StripedResetPeriodicallyHitRatio
+ * @see StripedResetOnSnapshotHitRatio
+ * @see WideUniformHitRatio
+ */
+public class StripedUniformHitRatio extends WideUniformHitRatio {
+
+    public StripedUniformHitRatio() {
+        super(WideRatio::striped);
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is not part of public API.
+ *
+ * The pair of independent 64-bit counters for hits and total count.
+ * Writers add to counters without CAS retry loop, so writers never fail and never retry.
+ * The pair is not updated atomically, so reader can observe part of concurrent update,
+ * but each implementation guarantees that observed ratio always belongs to {@code [0, 1]}.
+ */
+abstract class WideRatio {
+
+    /**
+     * Creates the pair of AtomicLongs for hits and misses.
+     * Because hits and misses are never negative the observed ratio always belongs to {@code [0, 1]},
+     * even when update which happens concurrently with reading is observed partially.
+     */
+    static WideRatio atomic() {
+        return new Atomic();
+    }
+
+    /**
+     * Creates the pair of {@link LongAdder}s for hits and misses, so writers from different threads touch different cells.
+     * Each sum is folded from cells non-atomically, so update which happens concurrently with reading
+     * can be observed partially, but because hits and misses are never negative the ratio always belongs to {@code [0, 1]}.
+     */
+    static WideRatio striped() {
+        return new Striped();
+    }
+
+    abstract void update(long hitCount, long totalCount);
+
+    /**
+     * Reads both counters into {@code snapshot}, hits at index 0 and total at index 1.
+     */
+    abstract void readInto(long[] snapshot);
+
+    /**
+     * Reads both counters into {@code snapshot}, hits at index 0 and total at index 1, and subtracts the read values from counters.
+     * Each counter is reset independently and atomically, so each update is observed by exactly one reading,
+     * but the hits and misses of update which happens concurrently with reading can be observed by different readings.
+     */
+    abstract void readAndResetInto(long[] snapshot);
+
+    double getRatio() {
+        long[] snapshot = new long[2];
+        readInto(snapshot);
+        return (double) snapshot[0] / (double) snapshot[1];
+    }
+
+    private static final class Atomic extends WideRatio {
+
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+
+        @Override
+        void update(long hitCount, long totalCount) {
+            if (hitCount > 0) {
+                this.hitCount.addAndGet(hitCount);
+            }
+            long missCount = totalCount - hitCount;
+            if (missCount > 0) {
+                this.missCount.addAndGet(missCount);
+            }
+        }
+
+        @Override
+        void readInto(long[] snapshot) {
+            long hits = hitCount.get();
+            snapshot[0] = hits;
+            snapshot[1] = hits + missCount.get();
+        }
+
+        @Override
+        void readAndResetInto(long[] snapshot) {
+            long hits = hitCount.getAndSet(0L);
+            snapshot[0] = hits;
+            snapshot[1] = hits + missCount.getAndSet(0L);
+        }
+
+        @Override
+        double getRatio() {
+            long hits = hitCount.get();
+            long misses = missCount.get();
+            return (double) hits / (double) (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            long hits = hitCount.get();
+            return "WideRatio{" +
+                    "hitCount=" + hits +
+                    ", totalCount=" + (hits + missCount.get()) +
+                    '}';
+        }
+    }
+
+    private static final class Striped extends WideRatio {
+
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+
+        @Override
+        void update(long hitCount, long totalCount) {
+            if (hitCount > 0) {
+                this.hitCount.add(hitCount);
+            }
+            long missCount = totalCount - hitCount;
+            if (missCount > 0) {
+                this.missCount.add(missCount);
+            }
+        }
+
+        @Override
+        void readInto(long[] snapshot) {
+            long hits = hitCount.sum();
+            snapshot[0] = hits;
+            snapshot[1] = hits + missCount.sum();
+        }
+
+        @Override
+        void readAndResetInto(long[] snapshot) {
+            // LongAdder#sumThenReset loses the updates which happen concurrently with resetting,
+            // so the read sums are subtracted instead
+            long hits = hitCount.sum();
+            long misses = missCount.sum();
+            hitCount.add(-hits);
+            missCount.add(-misses);
+            snapshot[0] = hits;
+            snapshot[1] = hits + misses;
+        }
+
+        @Override
+        double getRatio() {
+            long hits = hitCount.sum();
+            long misses = missCount.sum();
+            return (double) hits / (double) (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return "StripedRatio{" +
+                    "hitCount=" + hitCount +
+                    ", missCount=" + missCount +
+                    '}';
+        }
+    }
+
+}
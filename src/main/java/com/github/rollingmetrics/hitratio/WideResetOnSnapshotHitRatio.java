@@ -0,0 +1,87 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import java.util.function.Supplier;
+
+/**
+ * The hit-ratio which reset its state to zero after each invocation of {@link #getHitRatio()} and stores hit and total counts as independent 64-bit counters.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is wait-free. Writers do not block writers and readers.</li>
+ *     <li>Reading is lock-free. Readers do not block writers and readers.</li>
+ *     <li>Resetting is performed by subtraction of the read values from counters, so each update is reported exactly once,
+ *     but hits and misses of update which concurrently happens with reading can be reported by different readings.
+ *     Ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When you do not need in "rolling time window" semantic. Else use {@link WideSmoothlyDecayingRollingHitRatio}</li>
+ *     <li>When amount of measurements between readings can exceed {@link Integer#MAX_VALUE}.</li>
+ *     <li>Only if one kind of reader interests in value of hit-ratio.
+ *     Usage of this implementation for case of multiple readers will be a bad idea because of readers will steal data from each other.
+ *     </li>
+ * </ul>
+ *
+ * @see WideSmoothlyDecayingRollingHitRatio
+ * @see WideResetPeriodicallyHitRatio
+ * @see WideUniformHitRatio
+ * @see ResetOnSnapshotHitRatio
+ */
+public class WideResetOnSnapshotHitRatio implements HitRatio {
+
+    private final WideRatio ratio;
+
+    public WideResetOnSnapshotHitRatio() {
+        this(WideRatio::atomic);
+    }
+
+    WideResetOnSnapshotHitRatio(Supplier<WideRatio> ratioFactory) {
+        this.ratio = ratioFactory.get();
+    }
+
+    @Override
+    public void update(int hitCount, int totalCount) {
+        update((long) hitCount, (long) totalCount);
+    }
+
+    @Override
+    public void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        ratio.update(hitCount, totalCount);
+    }
+
+    @Override
+    public double getHitRatio() {
+        long[] snapshot = new long[2];
+        ratio.readAndResetInto(snapshot);
+        return (double) snapshot[0] / (double) snapshot[1];
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "ratio=" + ratio +
+                '}';
+    }
+
+}
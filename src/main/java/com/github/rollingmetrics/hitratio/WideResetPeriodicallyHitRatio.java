@@ -0,0 +1,125 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The hit-ratio which reset its state to zero each time when configured interval is elapsed and stores hit and total counts as independent 64-bit counters.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free.</li>
+ *     <li>Ratio calculation is lock-free.</li>
+ *     <li>Hits and total are not read atomically, so reader can observe total count of concurrent update without its hit count,
+ *     but never observes hit count without total count, so ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When you do not need in "rolling time window" semantic. Else use {@link WideSmoothlyDecayingRollingHitRatio}</li>
+ *     <li>When amount of measurements per interval can exceed {@link Integer#MAX_VALUE}.</li>
+ *     <li>Only if you accept the fact that several increments can be never observed by reader(because rotation to zero can happen before reader seen the written values).</li>
+ * </ul>
+ *
+ * @see WideSmoothlyDecayingRollingHitRatio
+ * @see WideResetOnSnapshotHitRatio
+ * @see WideUniformHitRatio
+ * @see ResetPeriodicallyHitRatio
+ */
+public class WideResetPeriodicallyHitRatio implements HitRatio {
+
+    private final Supplier<WideRatio> ratioFactory;
+    private final AtomicReference<WideRatio> ratioRef;
+    private final long resetIntervalMillis;
+    private final Clock clock;
+    private final AtomicLong nextResetTimeMillisRef;
+
+    /**
+     * Constructs the hit-ratio which reset its state to zero each time when {@code resetInterval} is elapsed.
+     *
+     * @param resetInterval the interval between counter resetting
+     */
+    public WideResetPeriodicallyHitRatio(Duration resetInterval) {
+        this(resetInterval, Clock.defaultClock());
+    }
+
+    public WideResetPeriodicallyHitRatio(Duration resetInterval, Clock clock) {
+        this(resetInterval, clock, WideRatio::atomic);
+    }
+
+    WideResetPeriodicallyHitRatio(Duration resetInterval, Clock clock, Supplier<WideRatio> ratioFactory) {
+        if (resetInterval.isNegative() || resetInterval.isZero()) {
+            throw new IllegalArgumentException("intervalBetweenChunkResetting must be a positive duration");
+        }
+        this.resetIntervalMillis = resetInterval.toMillis();
+        this.clock = clock;
+        this.ratioFactory = ratioFactory;
+        this.ratioRef = new AtomicReference<>(ratioFactory.get());
+        this.nextResetTimeMillisRef = new AtomicLong(clock.currentTimeMillis() + resetIntervalMillis);
+    }
+
+    @Override
+    public void update(int hitCount, int totalCount) {
+        update((long) hitCount, (long) totalCount);
+    }
+
+    @Override
+    public void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        resetIfNeeded(clock.currentTimeMillis());
+        ratioRef.get().update(hitCount, totalCount);
+    }
+
+    @Override
+    public double getHitRatio() {
+        if (resetIfNeeded(clock.currentTimeMillis())) {
+            return Double.NaN;
+        }
+        return ratioRef.get().getRatio();
+    }
+
+    private boolean resetIfNeeded(long currentTimeMillis) {
+        long nextResetTimeMillis = nextResetTimeMillisRef.get();
+        if (currentTimeMillis < nextResetTimeMillis) {
+            return false;
+        }
+        if (nextResetTimeMillisRef.compareAndSet(nextResetTimeMillis, Long.MAX_VALUE)) {
+            ratioRef.set(ratioFactory.get());
+            nextResetTimeMillisRef.set(currentTimeMillis + resetIntervalMillis);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "ratio=" + ratioRef.get() +
+                ", resetIntervalMillis=" + resetIntervalMillis +
+                ", nextResetTimeMillis=" + nextResetTimeMillisRef.get() +
+                '}';
+    }
+
+}
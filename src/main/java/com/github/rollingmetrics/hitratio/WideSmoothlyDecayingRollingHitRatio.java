@@ -0,0 +1,250 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.histogram.util.Printer;
+import com.github.rollingmetrics.util.Clock;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The rolling time window hit-ratio implementation which resets its state by chunks and stores hit and total counts of each chunk as independent 64-bit counters.
+ *
+ * <p>
+ * In opposite to {@link SmoothlyDecayingRollingHitRatio} which packs both counts of chunk into single long and halves them when total count exceeds {@link Integer#MAX_VALUE},
+ * this implementation does not lose precision on high-throughput workloads, and writers do not need in CAS retry loop.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is lock-free.</li>
+ *     <li>Ratio calculation is lock-free.</li>
+ *     <li>Hits and total are not read atomically, so reader can observe total count of concurrent update without its hit count,
+ *     but never observes hit count without total count, so ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>Only when you need in "rolling time window" semantic.</li>
+ *     <li>When amount of measurements per chunk can exceed {@link Integer#MAX_VALUE}, else {@link SmoothlyDecayingRollingHitRatio} consumes less memory.</li>
+ * </ul>
+ *
+ * @see SmoothlyDecayingRollingHitRatio
+ * @see WideResetOnSnapshotHitRatio
+ * @see WideResetPeriodicallyHitRatio
+ * @see WideUniformHitRatio
+ */
+public class WideSmoothlyDecayingRollingHitRatio implements HitRatio {
+
+    private final long intervalBetweenResettingMillis;
+    private final Clock clock;
+    private final long creationTimestamp;
+    private final Supplier<WideRatio> ratioFactory;
+
+    private final Chunk[] chunks;
+
+    /**
+     * Constructs the chunked hit-ratio divided by {@code numberChunks}.
+     * The hit-ratio will invalidate one chunk each time when {@code rollingWindow/numberChunks} millis has elapsed,
+     * except oldest chunk which invalidated continuously.
+     * The memory consumed by hit-ratio and latency of ratio calculation depend directly from {@code numberChunks}
+     *
+     * @param rollingWindow the rolling time window duration
+     * @param numberChunks The count of chunk to split
+     */
+    public WideSmoothlyDecayingRollingHitRatio(Duration rollingWindow, int numberChunks) {
+        this(rollingWindow, numberChunks, Clock.defaultClock());
+    }
+
+    public WideSmoothlyDecayingRollingHitRatio(Duration rollingWindow, int numberChunks, Clock clock) {
+        this(rollingWindow, numberChunks, clock, WideRatio::atomic);
+    }
+
+    WideSmoothlyDecayingRollingHitRatio(Duration rollingWindow, int numberChunks, Clock clock, Supplier<WideRatio> ratioFactory) {
+        if (numberChunks < 2) {
+            throw new IllegalArgumentException("numberChunks should be >= 2");
+        }
+
+        if (numberChunks > SmoothlyDecayingRollingHitRatio.MAX_CHUNKS) {
+            throw new IllegalArgumentException("number of chunks should be <=" + SmoothlyDecayingRollingHitRatio.MAX_CHUNKS);
+        }
+
+        long rollingWindowMillis = rollingWindow.toMillis();
+        if (rollingWindowMillis < SmoothlyDecayingRollingHitRatio.MIN_ROLLING_WINDOW_MILLIS) {
+            throw new IllegalArgumentException("rollingWindowMillis should be >=" + SmoothlyDecayingRollingHitRatio.MIN_ROLLING_WINDOW_MILLIS);
+        }
+        this.intervalBetweenResettingMillis = rollingWindowMillis / numberChunks;
+
+        this.clock = clock;
+        this.creationTimestamp = clock.currentTimeMillis();
+        this.ratioFactory = ratioFactory;
+
+        this.chunks = new Chunk[numberChunks + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            this.chunks[i] = new Chunk(i);
+        }
+    }
+
+    /**
+     * @return the rolling window duration for this hit-ratio
+     */
+    public Duration getRollingWindow() {
+        return Duration.ofMillis((chunks.length - 1) * intervalBetweenResettingMillis);
+    }
+
+    /**
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return chunks.length - 1;
+    }
+
+    @Override
+    public void update(int hitCount, int totalCount) {
+        update((long) hitCount, (long) totalCount);
+    }
+
+    @Override
+    public void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        long nowMillis = clock.currentTimeMillis();
+        long millisSinceCreation = nowMillis - creationTimestamp;
+        long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+        int chunkIndex = (int) intervalsSinceCreation % chunks.length;
+        chunks[chunkIndex].update(hitCount, totalCount, nowMillis);
+    }
+
+    @Override
+    public double getHitRatio() {
+        long currentTimeMillis = clock.currentTimeMillis();
+
+        // To get as fresh value as possible we need to calculate ratio in order from oldest to newest
+        long millisSinceCreation = currentTimeMillis - creationTimestamp;
+        long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+        int newestChunkIndex = (int) intervalsSinceCreation % chunks.length;
+
+        long[] phaseSnapshot = new long[2];
+        double[] snapshot = new double[2];
+        for (int i = newestChunkIndex + 1, iteration = 0; iteration < chunks.length; i++, iteration++) {
+            if (i == chunks.length) {
+                i = 0;
+            }
+            Chunk chunk = chunks[i];
+            chunk.addToSnapshot(snapshot, phaseSnapshot, currentTimeMillis);
+        }
+        return snapshot[0] / snapshot[1];
+    }
+
+    private final class Chunk {
+
+        final AtomicReference<Phase> currentPhaseRef;
+
+        Chunk(int chunkIndex) {
+            long invalidationTimestamp = creationTimestamp + (chunks.length + chunkIndex) * intervalBetweenResettingMillis;
+            this.currentPhaseRef = new AtomicReference<>(new Phase(invalidationTimestamp));
+        }
+
+        void addToSnapshot(double[] snapshot, long[] phaseSnapshot, long currentTimeMillis) {
+            currentPhaseRef.get().addToSnapshot(snapshot, phaseSnapshot, currentTimeMillis);
+        }
+
+        void update(long hitCount, long totalCount, long currentTimeMillis) {
+            Phase currentPhase = currentPhaseRef.get();
+            while (currentTimeMillis >= currentPhase.proposedInvalidationTimestamp) {
+                long millisSinceCreation = currentTimeMillis - creationTimestamp;
+                long intervalsSinceCreation = millisSinceCreation / intervalBetweenResettingMillis;
+                long nextProposedInvalidationTimestamp = creationTimestamp + (intervalsSinceCreation + chunks.length) * intervalBetweenResettingMillis;
+                Phase replacement = new Phase(nextProposedInvalidationTimestamp);
+                if (currentPhaseRef.compareAndSet(currentPhase, replacement)) {
+                    currentPhase = replacement;
+                } else {
+                    currentPhase = currentPhaseRef.get();
+                }
+            }
+            currentPhase.ratio.update(hitCount, totalCount);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Chunk{");
+            sb.append("currentPhaseRef=").append(currentPhaseRef);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    private final class Phase {
+
+        final WideRatio ratio;
+        final long proposedInvalidationTimestamp;
+
+        Phase(long proposedInvalidationTimestamp) {
+            this.ratio = ratioFactory.get();
+            this.proposedInvalidationTimestamp = proposedInvalidationTimestamp;
+        }
+
+        void addToSnapshot(double[] snapshot, long[] phaseSnapshot, long currentTimeMillis) {
+            long proposedInvalidationTimestamp = this.proposedInvalidationTimestamp;
+            if (currentTimeMillis >= proposedInvalidationTimestamp) {
+                // The chunk was unused by writers for a long time
+                return;
+            }
+
+            ratio.readInto(phaseSnapshot);
+            double hitCount = phaseSnapshot[0];
+            double totalCount = phaseSnapshot[1];
+            if (totalCount == 0) {
+                return;
+            }
+
+            // if this is oldest chunk then we need to reduce its weight
+            long beforeInvalidateMillis = proposedInvalidationTimestamp - currentTimeMillis;
+            if (beforeInvalidateMillis < intervalBetweenResettingMillis) {
+                double decayingCoefficient = (double) beforeInvalidateMillis / (double) intervalBetweenResettingMillis;
+                hitCount *= decayingCoefficient;
+                totalCount *= decayingCoefficient;
+            }
+
+            snapshot[0] += hitCount;
+            snapshot[1] += totalCount;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Phase{");
+            sb.append("ratio=").append(ratio);
+            sb.append(", proposedInvalidationTimestamp=").append(proposedInvalidationTimestamp);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "intervalBetweenResettingMillis=" + intervalBetweenResettingMillis +
+                ", clock=" + clock +
+                ", creationTimestamp=" + creationTimestamp +
+                ", chunks=" + Printer.printArray(chunks, "chunk") +
+                '}';
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import java.util.function.Supplier;
+
+/**
+ * The hit-ratio which never evicts collected values and stores hit and total counts as independent 64-bit counters.
+ *
+ * <p>
+ * In opposite to {@link UniformHitRatio} which packs both counts into single long and halves them when total count exceeds {@link Integer#MAX_VALUE},
+ * this implementation does not lose precision until total count exceeds {@link Long#MAX_VALUE},
+ * and writers do not need in CAS retry loop.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>Writing is wait-free. Writers do not block writers and readers.</li>
+ *     <li>Reading is wait-free. Readers do not block writers and readers.</li>
+ *     <li>Hits and total are not read atomically, so reader can observe total count of concurrent update without its hit count,
+ *     but never observes hit count without total count, so ratio always belongs to {@code [0, 1]}.</li>
+ * </ul>
+ *
+ * <p>
+ * Usage recommendations:
+ * <ul>
+ *     <li>When you do not need in "rolling time window" semantic. Else use {@link WideSmoothlyDecayingRollingHitRatio}</li>
+ *     <li>When amount of measurements can exceed {@link Integer#MAX_VALUE}, or when you need to register results of bulk operations which are larger than int.</li>
+ * </ul>
+ *
+ * @see WideSmoothlyDecayingRollingHitRatio
+ * @see WideResetPeriodicallyHitRatio
+ * @see WideResetOnSnapshotHitRatio
+ * @see UniformHitRatio
+ */
+public class WideUniformHitRatio implements HitRatio {
+
+    private final WideRatio ratio;
+
+    public WideUniformHitRatio() {
+        this(WideRatio::atomic);
+    }
+
+    WideUniformHitRatio(Supplier<WideRatio> ratioFactory) {
+        this.ratio = ratioFactory.get();
+    }
+
+    @Override
+    public void update(int hitCount, int totalCount) {
+        update((long) hitCount, (long) totalCount);
+    }
+
+    @Override
+    public void update(long hitCount, long totalCount) {
+        HitRatioUtil.checkArguments(hitCount, totalCount);
+        ratio.update(hitCount, totalCount);
+    }
+
+    @Override
+    public double getHitRatio() {
+        return ratio.getRatio();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "ratio=" + ratio +
+                '}';
+    }
+
+}
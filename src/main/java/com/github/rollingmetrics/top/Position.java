@@ -27,9 +27,13 @@ public class Position implements Comparable<Position> {
 
     private final long latencyTime;
     private final TimeUnit latencyUnit;
-    private final String description;
     private final long timestamp;
     private long latencyInNanoseconds;
+    private final int maxDescriptionLength;
+
+    // not null until description is materialized, the write of null publishes the description
+    private volatile Supplier<String> descriptionSupplier;
+    private String description;
 
     public Position(long timestamp, long latencyTime, TimeUnit latencyUnit, Supplier<String> descriptionSupplier, int maxDescriptionLengt) {
         this(timestamp, latencyTime, latencyUnit, combineDescriptionWithLatency(latencyTime, latencyUnit, descriptionSupplier, maxDescriptionLengt));
@@ -41,15 +45,65 @@ public class Position implements Comparable<Position> {
         this.description = description;
         this.timestamp = timestamp;
         this.latencyInNanoseconds = latencyUnit.toNanos(latencyTime);
+        this.maxDescriptionLength = Integer.MAX_VALUE;
+    }
+
+    private Position(long timestamp, long latencyTime, TimeUnit latencyUnit, int maxDescriptionLength, Supplier<String> descriptionSupplier) {
+        this.latencyTime = latencyTime;
+        this.latencyUnit = latencyUnit;
+        this.timestamp = timestamp;
+        this.latencyInNanoseconds = latencyUnit.toNanos(latencyTime);
+        this.maxDescriptionLength = maxDescriptionLength;
+        this.descriptionSupplier = descriptionSupplier;
+    }
+
+    /**
+     * Creates position which does not call {@code descriptionSupplier} until description is requested first time,
+     * so the cost of description building is paid by the thread which reads the top instead of thread which records the latency.
+     * The supplier is called at most once, and reference to supplier is released after call.
+     *
+     * <p>
+     * In opposite to {@link #Position(long, long, TimeUnit, Supplier, int)} the {@code null} returned by supplier
+     * can not be reported to the caller which recorded the latency, so it is materialized as empty description.
+     *
+     * @param timestamp timestamp in milliseconds when latency taken
+     * @param latencyTime query duration
+     * @param latencyUnit resolution of latency time
+     * @param descriptionSupplier lazy supplier for query description
+     * @param maxDescriptionLength the description will be truncated to this length
+     *
+     * @return position with lazy description
+     */
+    public static Position withLazyDescription(long timestamp, long latencyTime, TimeUnit latencyUnit, Supplier<String> descriptionSupplier, int maxDescriptionLength) {
+        return new Position(timestamp, latencyTime, latencyUnit, maxDescriptionLength, descriptionSupplier);
     }
 
     /**
      * @return user friendly query description. For example SQL or HTTP URL.
      */
     public String getQueryDescription() {
+        if (descriptionSupplier != null) {
+            materializeDescription();
+        }
         return description;
     }
 
+    private synchronized void materializeDescription() {
+        Supplier<String> supplier = descriptionSupplier;
+        if (supplier == null) {
+            // already materialized by another thread
+            return;
+        }
+        String queryDescription = supplier.get();
+        if (queryDescription == null) {
+            queryDescription = "";
+        } else if (queryDescription.length() > maxDescriptionLength) {
+            queryDescription = queryDescription.substring(0, maxDescriptionLength);
+        }
+        description = queryDescription;
+        descriptionSupplier = null;
+    }
+
     /**
      * @return the latency of query, resolution of latency time unit can be get via {@link #getLatencyUnit()}
      */
@@ -88,7 +142,7 @@ public class Position implements Comparable<Position> {
         if (timestamp != other.timestamp) {
             return Long.compare(timestamp, other.timestamp);
         }
-        return description.compareTo(other.description);
+        return getQueryDescription().compareTo(other.getQueryDescription());
     }
 
     @Override
@@ -100,13 +154,13 @@ public class Position implements Comparable<Position> {
 
         if (timestamp != position.timestamp) return false;
         if (latencyInNanoseconds != position.latencyInNanoseconds) return false;
-        return description.equals(position.description);
+        return getQueryDescription().equals(position.getQueryDescription());
 
     }
 
     @Override
     public int hashCode() {
-        int result = description.hashCode();
+        int result = getQueryDescription().hashCode();
         result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
         result = 31 * result + (int) (latencyInNanoseconds ^ (latencyInNanoseconds >>> 32));
         return result;
@@ -117,7 +171,7 @@ public class Position implements Comparable<Position> {
         return "Position{" +
                 "latencyTime=" + latencyTime +
                 ", latencyUnit=" + latencyUnit +
-                ", description='" + description + '\'' +
+                ", description='" + getQueryDescription() + '\'' +
                 ", timestamp=" + timestamp +
                 ", latencyInNanoseconds=" + latencyInNanoseconds +
                 '}';
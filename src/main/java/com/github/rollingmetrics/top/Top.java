@@ -44,6 +44,18 @@ public interface Top {
      * Registers latency of query. To avoid unnecessary memory allocation for Strings the descriptionSupplier will be called only if latency is greater then "SlowQueryThreshold"
      * and latency is greater than any other query in the top.
      *
+     * <p>
+     * The description is materialized lazily: the top retains the supplier while position stays in the top,
+     * and the supplier is called at most once, when description of position is requested first time
+     * after position was returned by {@link #getPositionsInDescendingOrder()}.
+     * So the supplier should follow the contract:
+     * </p>
+     * <ul>
+     *     <li>It can be called by any thread which reads the top, at any time after this method returned, or never.</li>
+     *     <li>It should capture only immutable state which is enough to build description, because state captured by supplier stays reachable until position leaves the top.</li>
+     *     <li>It should not return null, the null is materialized as empty description.</li>
+     * </ul>
+     *
      * @param timestamp timestamp in milliseconds when latency taken
      * @param latencyTime query duration
      * @param latencyUnit resolution of latency time
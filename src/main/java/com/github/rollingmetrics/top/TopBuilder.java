@@ -21,8 +21,10 @@ import com.github.rollingmetrics.top.impl.ResetByChunksTop;
 import com.github.rollingmetrics.top.impl.ResetOnSnapshotConcurrentTop;
 import com.github.rollingmetrics.top.impl.SnapshotCachingTop;
 import com.github.rollingmetrics.top.impl.UniformTop;
+import com.github.rollingmetrics.top.impl.recorder.PositionRecorderFactory;
 import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.RotationScheduler;
 import com.github.rollingmetrics.top.impl.ResetOnSnapshotConcurrentTop;
 import com.github.rollingmetrics.top.impl.SnapshotCachingTop;
 import com.github.rollingmetrics.top.impl.UniformTop;
@@ -61,24 +63,32 @@ public class TopBuilder {
     public static final Duration DEFAULT_SNAPSHOT_CACHING_DURATION = Duration.ofSeconds(1);
 
     private static final Executor DEFAULT_BACKGROUND_EXECUTOR = null;
+    private static final RotationScheduler DEFAULT_ROTATION_SCHEDULER = null;
     private static final TopFactory DEFAULT_TOP_FACTORY = TopFactory.UNIFORM;
+    private static final PositionRecorderFactory DEFAULT_RECORDER_FACTORY = PositionRecorderFactory.SKIP_LIST;
 
     private int size;
     private Duration latencyThreshold;
     private Duration snapshotCachingDuration;
+    private Duration snapshotMaxStaleness;
     private int maxDescriptionLength;
     private Clock clock;
     private Executor backgroundExecutor;
+    private RotationScheduler rotationScheduler;
     private TopFactory factory;
+    private PositionRecorderFactory recorderFactory;
 
-    private TopBuilder(int size, Duration latencyThreshold, Duration snapshotCachingDuration, int maxDescriptionLength, Clock clock, Executor backgroundExecutor, TopFactory factory) {
+    private TopBuilder(int size, Duration latencyThreshold, Duration snapshotCachingDuration, Duration snapshotMaxStaleness, int maxDescriptionLength, Clock clock, Executor backgroundExecutor, RotationScheduler rotationScheduler, TopFactory factory, PositionRecorderFactory recorderFactory) {
         this.size = size;
         this.latencyThreshold = latencyThreshold;
         this.snapshotCachingDuration = snapshotCachingDuration;
+        this.snapshotMaxStaleness = snapshotMaxStaleness;
         this.maxDescriptionLength = maxDescriptionLength;
         this.clock = clock;
         this.backgroundExecutor = backgroundExecutor;
+        this.rotationScheduler = rotationScheduler;
         this.factory = factory;
+        this.recorderFactory = recorderFactory;
     }
 
     /**
@@ -87,9 +97,14 @@ public class TopBuilder {
      * @return new {@link Top} instance
      */
     public Top build() {
-        Top top = factory.create(size, latencyThreshold, maxDescriptionLength, clock);
+        Top top = factory.create(size, latencyThreshold, maxDescriptionLength, clock, recorderFactory);
         if (!snapshotCachingDuration.isZero()) {
-            top = new SnapshotCachingTop(top, snapshotCachingDuration.toMillis(), clock);
+            if (snapshotMaxStaleness.isZero()) {
+                top = new SnapshotCachingTop(top, snapshotCachingDuration.toMillis(), clock);
+            } else {
+                Executor executor = backgroundExecutor != null ? backgroundExecutor : ResilientExecutionUtil.getInstance().getBackgroundExecutor();
+                top = new SnapshotCachingTop(top, snapshotCachingDuration.toMillis(), snapshotMaxStaleness.toMillis(), clock, executor);
+            }
         }
         return top;
     }
@@ -102,7 +117,7 @@ public class TopBuilder {
      */
     public static TopBuilder newBuilder(int size) {
         validateSize(size);
-        return new TopBuilder(size, DEFAULT_LATENCY_THRESHOLD, DEFAULT_SNAPSHOT_CACHING_DURATION, DEFAULT_MAX_LENGTH_OF_QUERY_DESCRIPTION, Clock.defaultClock(), DEFAULT_BACKGROUND_EXECUTOR, DEFAULT_TOP_FACTORY);
+        return new TopBuilder(size, DEFAULT_LATENCY_THRESHOLD, DEFAULT_SNAPSHOT_CACHING_DURATION, Duration.ZERO, DEFAULT_MAX_LENGTH_OF_QUERY_DESCRIPTION, Clock.defaultClock(), DEFAULT_BACKGROUND_EXECUTOR, DEFAULT_ROTATION_SCHEDULER, DEFAULT_TOP_FACTORY, DEFAULT_RECORDER_FACTORY);
     }
 
     /**
@@ -156,6 +171,40 @@ public class TopBuilder {
             throw new IllegalArgumentException("snapshotCachingDuration can not be negative");
         }
         this.snapshotCachingDuration = snapshotCachingDuration;
+        this.snapshotMaxStaleness = Duration.ZERO;
+        return this;
+    }
+
+    /**
+     * Configures the duration for caching the results of invocation of {@link Top#getPositionsInDescendingOrder()},
+     * and the duration for which expired result can be returned while new result is taken in background.
+     *
+     * <p>
+     * In contrast to {@link #withSnapshotCachingDuration(Duration)}, readers are not blocked while result is being refreshed:
+     * the first reader which observes expired result submits refreshing to background executor, and all readers get the expired result until new one is taken.
+     * When result is older than {@code snapshotCachingDuration + maxStaleness} it is never returned, even if refreshing is still in progress:
+     * the reader takes result in its own thread, and concurrent readers wait until it is done.
+     * </p>
+     *
+     * @param snapshotCachingDuration the duration for caching, should be positive
+     * @param maxStaleness the duration after expiration during which expired result can be returned, should be positive
+     * @return this builder instance
+     */
+    public TopBuilder withSnapshotCachingDuration(Duration snapshotCachingDuration, Duration maxStaleness) {
+        if (snapshotCachingDuration == null) {
+            throw new IllegalArgumentException("snapshotCachingDuration should not be null");
+        }
+        if (snapshotCachingDuration.isNegative() || snapshotCachingDuration.isZero()) {
+            throw new IllegalArgumentException("snapshotCachingDuration should be positive");
+        }
+        if (maxStaleness == null) {
+            throw new IllegalArgumentException("maxStaleness should not be null");
+        }
+        if (maxStaleness.isNegative() || maxStaleness.isZero()) {
+            throw new IllegalArgumentException("maxStaleness should be positive");
+        }
+        this.snapshotCachingDuration = snapshotCachingDuration;
+        this.snapshotMaxStaleness = maxStaleness;
         return this;
     }
 
@@ -182,7 +231,10 @@ public class TopBuilder {
 
     /**
      * Replaces default clock.
-     * Most likely you should never use this method, because replacing time measuring has sense only for unit testing.
+     *
+     * <p>
+     * Besides of unit testing, this method can be used to reduce the cost of time measuring on recording path of chunked tops
+     * via passing the clock returned by {@link Clock#cachedMillis(Duration)}.
      *
      * @param clock the abstraction over time
      *
@@ -218,6 +270,48 @@ public class TopBuilder {
         return this;
     }
 
+    /**
+     * Configures the top to store positions in primitive arrays instead of {@link java.util.concurrent.ConcurrentSkipListMap}.
+     *
+     * <p>
+     * By default each update which enters into top allocates the position and the key of skip-list.
+     * Compact storage keeps latencies and timestamps in primitive arrays and creates {@link Position} objects only when top is read.
+     * Note that compact storage is guarded by lock: writers whose latency is less than minimal position of full top are rejected without locking,
+     * but other updates, and all updates until top is filled after reset, acquire the lock and scan all positions of top.
+     * So this option reduces allocation rate, but it does not improve throughput of top which is updated concurrently by many threads,
+     * especially for chunked tops which are reset on each rotation of chunk.
+     * This option has effect only for tops with size greater than 1, because top with single position is always stored compactly.
+     * </p>
+     *
+     * @return this builder instance
+     */
+    public TopBuilder withCompactPositionStorage() {
+        this.recorderFactory = PositionRecorderFactory.COMPACT;
+        return this;
+    }
+
+    /**
+     * Configures the scheduler which will rotate chunks of tops constructed with {@link #resetAllPositionsPeriodically(Duration)} or {@link #resetPositionsPeriodicallyByChunks(Duration, int)}.
+     *
+     * <p>
+     * By default chunks are rotated lazily by the writer which first observes that chunk is expired.
+     * When scheduler is configured, writers never check the time and never rotate chunks,
+     * instead the scheduler rotates chunks of all registered tops in background, even if top is idle.
+     * </p>
+     *
+     * @param rotationScheduler the scheduler which is shared between metrics
+     * @return this builder instance
+     *
+     * @see RotationScheduler
+     */
+    public TopBuilder withRotationScheduler(RotationScheduler rotationScheduler) {
+        if (rotationScheduler == null) {
+            throw new IllegalArgumentException("rotationScheduler should not be null");
+        }
+        this.rotationScheduler = rotationScheduler;
+        return this;
+    }
+
     /**
      * Top configured with this strategy will store all values since the top was created.
      *
@@ -330,19 +424,19 @@ public class TopBuilder {
 
     private interface TopFactory {
 
-        Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock);
+        Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock, PositionRecorderFactory recorderFactory);
 
         TopFactory UNIFORM = new TopFactory() {
             @Override
-            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock) {
-                return new UniformTop(size, latencyThreshold.toNanos(), maxDescriptionLength);
+            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock, PositionRecorderFactory recorderFactory) {
+                return new UniformTop(size, latencyThreshold.toNanos(), maxDescriptionLength, recorderFactory);
             }
         };
 
         TopFactory RESET_ON_SNAPSHOT = new TopFactory() {
             @Override
-            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock) {
-                return new ResetOnSnapshotConcurrentTop(size, latencyThreshold.toNanos(), maxDescriptionLength);
+            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock, PositionRecorderFactory recorderFactory) {
+                return new ResetOnSnapshotConcurrentTop(size, latencyThreshold.toNanos(), maxDescriptionLength, recorderFactory);
             }
         };
 
@@ -360,8 +454,8 @@ public class TopBuilder {
     private TopFactory resetByChunks(final long intervalBetweenResettingMillis, int numberOfHistoryChunks) {
         return new TopFactory() {
             @Override
-            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock) {
-                return new ResetByChunksTop(size, latencyThreshold.toNanos(), maxDescriptionLength, intervalBetweenResettingMillis, numberOfHistoryChunks, clock, getExecutor());
+            public Top create(int size, Duration latencyThreshold, int maxDescriptionLength, Clock clock, PositionRecorderFactory recorderFactory) {
+                return new ResetByChunksTop(size, latencyThreshold.toNanos(), maxDescriptionLength, intervalBetweenResettingMillis, numberOfHistoryChunks, clock, getExecutor(), rotationScheduler, recorderFactory);
             }
         };
     }
@@ -23,9 +23,12 @@ import com.github.rollingmetrics.top.Position;
 import com.github.rollingmetrics.top.Top;
 import com.github.rollingmetrics.top.impl.collector.PositionCollector;
 import com.github.rollingmetrics.top.impl.recorder.PositionRecorder;
+import com.github.rollingmetrics.top.impl.recorder.PositionRecorderFactory;
 import com.github.rollingmetrics.top.impl.recorder.TwoPhasePositionRecorder;
 import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.util.ResilientExecutionUtil;
+import com.github.rollingmetrics.util.ReusableTask;
+import com.github.rollingmetrics.util.RotationScheduler;
 import com.github.rollingmetrics.histogram.util.Printer;
 import com.github.rollingmetrics.top.Position;
 import com.github.rollingmetrics.top.Top;
@@ -56,13 +59,24 @@ public class ResetByChunksTop implements Top {
     private final Phase[] phases;
     private final AtomicReference<Phase> currentPhaseRef;
 
+    // not null only when rotation is performed by scheduler, the scheduler holds only weak reference to it
+    private final RotationScheduler.Rotatable scheduledRotation;
+
     public ResetByChunksTop(int size, long latencyThresholdNanos, int maxDescriptionLength, long intervalBetweenResettingMillis, int numberHistoryChunks, Clock clock, Executor backgroundExecutor) {
+        this(size, latencyThresholdNanos, maxDescriptionLength, intervalBetweenResettingMillis, numberHistoryChunks, clock, backgroundExecutor, null, PositionRecorderFactory.SKIP_LIST);
+    }
+
+    /**
+     * @param rotationScheduler if not null then phases are rotated by scheduler instead of writers, and backgroundExecutor is not used
+     * @param recorderFactory the factory of recorders which hold positions of each phase
+     */
+    public ResetByChunksTop(int size, long latencyThresholdNanos, int maxDescriptionLength, long intervalBetweenResettingMillis, int numberHistoryChunks, Clock clock, Executor backgroundExecutor, RotationScheduler rotationScheduler, PositionRecorderFactory recorderFactory) {
         this.intervalBetweenResettingMillis = intervalBetweenResettingMillis;
         this.clock = clock;
         this.creationTimestamp = clock.currentTimeMillis();
         this.backgroundExecutor = backgroundExecutor;
 
-        Supplier<TwoPhasePositionRecorder> recorderSupplier = () -> new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+        Supplier<TwoPhasePositionRecorder> recorderSupplier = () -> new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength, recorderFactory);
         this.left = new Phase(recorderSupplier.get(), creationTimestamp + intervalBetweenResettingMillis);
         this.right = new Phase(recorderSupplier.get(), Long.MAX_VALUE);
         this.phases = new Phase[] {left, right};
@@ -79,10 +93,24 @@ public class ResetByChunksTop implements Top {
             archive = null;
         }
         this.temporarySnapshotCollector = collectorSupplier.get();
+
+        if (rotationScheduler != null) {
+            this.scheduledRotation = this::rotateIfNeeded;
+            // registration should be last action of constructor, because scheduler thread can rotate phases immediately
+            rotationScheduler.register(scheduledRotation);
+        } else {
+            this.scheduledRotation = null;
+        }
     }
 
     @Override
     public void update(long timestamp, long latencyTime, TimeUnit latencyUnit, Supplier<String> descriptionSupplier) {
+        if (scheduledRotation != null) {
+            // phases are rotated by scheduler, so there is no need to check the time
+            currentPhaseRef.get().recorder.update(timestamp, latencyTime, latencyUnit, descriptionSupplier);
+            return;
+        }
+
         long currentTimeMillis = clock.currentTimeMillis();
         Phase currentPhase = currentPhaseRef.get();
         if (currentTimeMillis < currentPhase.proposedInvalidationTimestamp) {
@@ -99,8 +127,8 @@ public class ResetByChunksTop implements Top {
         }
 
         // Current thread is responsible to rotate phases.
-        Runnable phaseRotation = () -> rotate(currentTimeMillis, currentPhase, nextPhase);
-        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, phaseRotation);
+        currentPhase.rotationTimestampMillis = currentTimeMillis;
+        ResilientExecutionUtil.getInstance().execute(backgroundExecutor, currentPhase.rotationTask);
     }
 
     @Override
@@ -132,6 +160,20 @@ public class ResetByChunksTop implements Top {
         return left.intervalRecorder.getSize();
     }
 
+    private long rotateIfNeeded() {
+        long currentTimeMillis = clock.currentTimeMillis();
+        Phase currentPhase = currentPhaseRef.get();
+        if (currentTimeMillis < currentPhase.proposedInvalidationTimestamp) {
+            return currentPhase.proposedInvalidationTimestamp - currentTimeMillis;
+        }
+
+        // writers never switch phases in scheduled mode, so CAS is not needed
+        Phase nextPhase = currentPhase == left ? right : left;
+        currentPhaseRef.set(nextPhase);
+        rotate(currentTimeMillis, currentPhase, nextPhase);
+        return nextPhase.proposedInvalidationTimestamp - currentTimeMillis;
+    }
+
     private synchronized void rotate(long currentTimeMillis, Phase currentPhase, Phase nextPhase) {
         try {
             currentPhase.intervalRecorder = currentPhase.recorder.getIntervalRecorder(currentPhase.intervalRecorder);
@@ -180,6 +222,11 @@ public class ResetByChunksTop implements Top {
         PositionRecorder intervalRecorder;
         volatile long proposedInvalidationTimestamp;
 
+        // pre-allocated task which rotates from this phase to another, the timestamp is published to task by submission,
+        // tasks of both phases use the owner as shard key, so they are executed in order of submission by sharded executor
+        long rotationTimestampMillis;
+        final ReusableTask rotationTask = new ReusableTask(ResetByChunksTop.this, () -> rotate(rotationTimestampMillis, this, this == left ? right : left));
+
         Phase(TwoPhasePositionRecorder recorder, long proposedInvalidationTimestamp) {
             this.recorder = recorder;
             this.intervalRecorder = recorder.getIntervalRecorder();
@@ -219,6 +266,7 @@ public class ResetByChunksTop implements Top {
                 ",\n left=" + left +
                 ",\n right=" + right +
                 ",\n currentPhase=" + (currentPhaseRef.get() == left? "left": "right") +
+                ",\n scheduledRotation=" + (scheduledRotation != null) +
                 ",\n temporarySnapshotCollector=" + temporarySnapshotCollector  +
                 '}';
     }
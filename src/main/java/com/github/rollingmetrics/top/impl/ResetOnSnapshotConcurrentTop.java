@@ -21,6 +21,7 @@ package com.github.rollingmetrics.top.impl;
 import com.github.rollingmetrics.top.Position;
 import com.github.rollingmetrics.top.Top;
 import com.github.rollingmetrics.top.impl.recorder.PositionRecorder;
+import com.github.rollingmetrics.top.impl.recorder.PositionRecorderFactory;
 import com.github.rollingmetrics.top.impl.recorder.TwoPhasePositionRecorder;
 
 import java.util.List;
@@ -33,7 +34,11 @@ public class ResetOnSnapshotConcurrentTop implements Top {
     private PositionRecorder intervalRecorder;
 
     public ResetOnSnapshotConcurrentTop(int size, long latencyThresholdNanos, int maxDescriptionLength) {
-        this.recorder = new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+        this(size, latencyThresholdNanos, maxDescriptionLength, PositionRecorderFactory.SKIP_LIST);
+    }
+
+    public ResetOnSnapshotConcurrentTop(int size, long latencyThresholdNanos, int maxDescriptionLength, PositionRecorderFactory recorderFactory) {
+        this.recorder = new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength, recorderFactory);
         this.intervalRecorder = recorder.getIntervalRecorder();
     }
 
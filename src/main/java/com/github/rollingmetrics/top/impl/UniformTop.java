@@ -21,6 +21,7 @@ import com.github.rollingmetrics.top.Position;
 import com.github.rollingmetrics.top.Top;
 import com.github.rollingmetrics.top.impl.collector.PositionCollector;
 import com.github.rollingmetrics.top.impl.recorder.PositionRecorder;
+import com.github.rollingmetrics.top.impl.recorder.PositionRecorderFactory;
 import com.github.rollingmetrics.top.impl.recorder.TwoPhasePositionRecorder;
 import com.github.rollingmetrics.top.Top;
 import com.github.rollingmetrics.top.impl.recorder.TwoPhasePositionRecorder;
@@ -37,7 +38,11 @@ public class UniformTop implements Top {
     private PositionRecorder intervalRecorder;
 
     public UniformTop(int size, long latencyThresholdNanos, int maxDescriptionLength) {
-        this.phasedRecorder = new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+        this(size, latencyThresholdNanos, maxDescriptionLength, PositionRecorderFactory.SKIP_LIST);
+    }
+
+    public UniformTop(int size, long latencyThresholdNanos, int maxDescriptionLength, PositionRecorderFactory recorderFactory) {
+        this.phasedRecorder = new TwoPhasePositionRecorder(size, latencyThresholdNanos, maxDescriptionLength, recorderFactory);
         intervalRecorder = phasedRecorder.getIntervalRecorder();
         this.uniformCollector = PositionCollector.createCollector(size);
     }
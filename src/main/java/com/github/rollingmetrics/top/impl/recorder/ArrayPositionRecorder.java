@@ -0,0 +1,191 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.top.impl.recorder;
+
+import com.github.rollingmetrics.top.Position;
+import com.github.rollingmetrics.top.impl.collector.PositionCollector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Is not a part of public API, this class just used as building block for other QueryTop implementations.
+ *
+ * Compact alternative to {@link MultiPositionRecorder} which stores positions in primitive arrays
+ * and creates {@link Position} objects only when top is read.
+ * Descriptions are materialized lazily by {@link Position}, so supplier of description is never called by writer
+ * except the rare case when positions with same latency and timestamp need to be distinguished.
+ * The recorder is lock-based: each update which can enter into the top acquires the monitor of recorder
+ * and scans the recorded positions to detect duplicates.
+ * Writers check the latency against volatile admission threshold without locking,
+ * but the threshold is known only when top is full, so until then every update acquires the monitor.
+ * Top is empty after each reset, for example after each rotation of chunk,
+ * so this recorder saves allocations, but it is not faster than {@link MultiPositionRecorder} for contended writers.
+ */
+class ArrayPositionRecorder extends PositionRecorder {
+
+    private final long[] latenciesNanos;
+    private final long[] latencyTimes;
+    private final TimeUnit[] latencyUnits;
+    private final long[] timestamps;
+    private final Supplier<String>[] descriptionSuppliers;
+    // positions are created only when top is read, and reused by next reads until slot is overwritten
+    private final Position[] positions;
+
+    // following fields are guarded by monitor of recorder
+    private int count;
+    private int minimumIndex;
+
+    // the latency of minimal position when top is full, writers with lesser latency do not need to take the lock,
+    // it is Long.MIN_VALUE while top is not full, so all writers take the lock until top is filled after reset
+    private volatile long admissionLatencyNanos = Long.MIN_VALUE;
+
+    @SuppressWarnings("unchecked")
+    ArrayPositionRecorder(int size, long latencyThresholdNanos, int maxDescriptionLength) {
+        super(size, latencyThresholdNanos, maxDescriptionLength);
+        this.latenciesNanos = new long[size];
+        this.latencyTimes = new long[size];
+        this.latencyUnits = new TimeUnit[size];
+        this.timestamps = new long[size];
+        this.descriptionSuppliers = (Supplier<String>[]) new Supplier<?>[size];
+        this.positions = new Position[size];
+    }
+
+    @Override
+    protected void updateConcurrently(long timestamp, long latencyTime, TimeUnit latencyUnit, Supplier<String> descriptionSupplier, long latencyNanos) {
+        if (latencyNanos < admissionLatencyNanos) {
+            return;
+        }
+        add(timestamp, latencyTime, latencyUnit, descriptionSupplier, latencyNanos);
+    }
+
+    private synchronized void add(long timestamp, long latencyTime, TimeUnit latencyUnit, Supplier<String> descriptionSupplier, long latencyNanos) {
+        int index;
+        if (count < size) {
+            index = count;
+        } else {
+            if (!isNeedToAdd(timestamp, latencyNanos, minimumIndex)) {
+                return;
+            }
+            index = minimumIndex;
+        }
+
+        Position candidate = null;
+        for (int i = 0; i < count; i++) {
+            if (latenciesNanos[i] == latencyNanos && timestamps[i] == timestamp) {
+                // exactly same position can be already recorded, descriptions need to be compared only in this rare case
+                if (candidate == null) {
+                    candidate = Position.withLazyDescription(timestamp, latencyTime, latencyUnit, descriptionSupplier, maxDescriptionLength);
+                }
+                if (getPosition(i).getQueryDescription().equals(candidate.getQueryDescription())) {
+                    return;
+                }
+            }
+        }
+
+        latenciesNanos[index] = latencyNanos;
+        latencyTimes[index] = latencyTime;
+        latencyUnits[index] = latencyUnit;
+        timestamps[index] = timestamp;
+        descriptionSuppliers[index] = descriptionSupplier;
+        positions[index] = candidate;
+        if (count < size) {
+            count++;
+            if (count < size) {
+                return;
+            }
+        }
+
+        minimumIndex = 0;
+        for (int i = 1; i < size; i++) {
+            if (!isNeedToAdd(timestamps[i], latenciesNanos[i], minimumIndex)) {
+                minimumIndex = i;
+            }
+        }
+        admissionLatencyNanos = latenciesNanos[minimumIndex];
+    }
+
+    private boolean isNeedToAdd(long newTimestamp, long newLatencyNanos, int currentMinimumIndex) {
+        long minimalLatencyNanos = latenciesNanos[currentMinimumIndex];
+        if (newLatencyNanos > minimalLatencyNanos) {
+            return true;
+        }
+        return newLatencyNanos == minimalLatencyNanos && newTimestamp > timestamps[currentMinimumIndex];
+    }
+
+    private Position getPosition(int index) {
+        Position position = positions[index];
+        if (position == null) {
+            position = Position.withLazyDescription(timestamps[index], latencyTimes[index], latencyUnits[index], descriptionSuppliers[index], maxDescriptionLength);
+            positions[index] = position;
+            // since now supplier is referenced only by position which releases it after materialization
+            descriptionSuppliers[index] = null;
+        }
+        return position;
+    }
+
+    @Override
+    public synchronized List<Position> getPositionsInDescendingOrder() {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<Position> descendingTop = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            descendingTop.add(getPosition(i));
+        }
+        descendingTop.sort(Collections.reverseOrder());
+        return descendingTop;
+    }
+
+    @Override
+    public synchronized void reset() {
+        count = 0;
+        admissionLatencyNanos = Long.MIN_VALUE;
+        // release references to descriptions
+        Arrays.fill(descriptionSuppliers, null);
+        Arrays.fill(positions, null);
+        Arrays.fill(latencyUnits, null);
+    }
+
+    @Override
+    public void addInto(PositionCollector collector) {
+        for (Position position : getPositionsInDescendingOrder()) {
+            if (!collector.add(position)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public PositionRecorder createEmptyCopy() {
+        return new ArrayPositionRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ArrayPositionRecorder{" +
+                "positions=" + getPositionsInDescendingOrder() +
+                ", admissionLatencyNanos=" + admissionLatencyNanos +
+                '}';
+    }
+
+}
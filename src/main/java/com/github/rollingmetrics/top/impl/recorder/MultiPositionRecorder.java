@@ -63,7 +63,7 @@ class MultiPositionRecorder extends PositionRecorder {
         if (!isNeedToAdd(timestamp, latencyNanos, firstPosition, firstKey, currentPhase)) {
             return;
         }
-        Position position = new Position(timestamp, latencyTime, latencyUnit, descriptionSupplier, maxDescriptionLength);
+        Position position = Position.withLazyDescription(timestamp, latencyTime, latencyUnit, descriptionSupplier, maxDescriptionLength);
         if (positions.putIfAbsent(new PositionKey(currentPhase, position), position) == null) {
             positions.pollFirstEntry();
         }
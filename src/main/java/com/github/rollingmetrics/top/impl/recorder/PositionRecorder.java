@@ -61,6 +61,14 @@ public abstract class PositionRecorder {
         }
     }
 
+    public static PositionRecorder createCompactRecorder(int size, long latencyThresholdNanos, int maxDescriptionLength) {
+        if (size == 1) {
+            return new SinglePositionRecorder(latencyThresholdNanos, maxDescriptionLength);
+        } else {
+            return new ArrayPositionRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+        }
+    }
+
     public PositionRecorder createEmptyCopy() {
         return createRecorder(size, latencyThresholdNanos, maxDescriptionLength);
     }
@@ -0,0 +1,38 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.top.impl.recorder;
+
+/**
+ * Is not a part of public API, this class just used as building block for different QueryTop implementations.
+ */
+@FunctionalInterface
+public interface PositionRecorderFactory {
+
+    PositionRecorder createRecorder(int size, long latencyThresholdNanos, int maxDescriptionLength);
+
+    /**
+     * Creates recorders which store positions in {@link java.util.concurrent.ConcurrentSkipListMap}.
+     */
+    PositionRecorderFactory SKIP_LIST = PositionRecorder::createRecorder;
+
+    /**
+     * Creates recorders which store positions in primitive arrays.
+     */
+    PositionRecorderFactory COMPACT = PositionRecorder::createCompactRecorder;
+
+}
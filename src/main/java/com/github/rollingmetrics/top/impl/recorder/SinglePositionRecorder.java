@@ -50,7 +50,7 @@ class SinglePositionRecorder extends PositionRecorder {
                 return;
             }
             if (newMax == null) {
-                newMax = new Position(timestamp, latencyTime, latencyUnit, descriptionSupplier, super.maxDescriptionLength);
+                newMax = Position.withLazyDescription(timestamp, latencyTime, latencyUnit, descriptionSupplier, super.maxDescriptionLength);
             }
             if (max.compareAndSet(previousMax, newMax)) {
                 return;
@@ -31,7 +31,11 @@ public class TwoPhasePositionRecorder {
     private PositionRecorder inactive;
 
     public TwoPhasePositionRecorder(int size, long latencyThresholdNanos, int maxDescriptionLength) {
-        this.active = PositionRecorder.createRecorder(size, latencyThresholdNanos, maxDescriptionLength);
+        this(size, latencyThresholdNanos, maxDescriptionLength, PositionRecorderFactory.SKIP_LIST);
+    }
+
+    public TwoPhasePositionRecorder(int size, long latencyThresholdNanos, int maxDescriptionLength, PositionRecorderFactory recorderFactory) {
+        this.active = recorderFactory.createRecorder(size, latencyThresholdNanos, maxDescriptionLength);
         this.inactive = null;
     }
 
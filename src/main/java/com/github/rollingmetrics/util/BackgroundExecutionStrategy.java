@@ -0,0 +1,134 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.rollingmetrics.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Defines how {@link ResilientExecutionUtil#getBackgroundExecutor()} executes background tasks like rotation of chunks.
+ *
+ * <ul>
+ *     <li>{@link #singleThread()} - one platform daemon thread for all metrics in the JVM, this is default strategy.
+ *     Use {@link #singleThread(int)} to change capacity of the pre-allocated queue of tasks.</li>
+ *     <li>{@link #sharded(int)} - several platform daemon threads, tasks of one metric are always executed by the same thread.
+ *     Use it when many thousands of metrics rotate at the same time and single thread becomes a bottleneck.</li>
+ *     <li>{@link #virtualThreadPerTask()} - new virtual thread per each task, requires Java 21+.
+ *     Use it in services which are built around virtual threads and do not want to keep platform thread for metrics.</li>
+ * </ul>
+ *
+ * @see ResilientExecutionUtil#setBackgroundExecutionStrategy(BackgroundExecutionStrategy)
+ */
+public abstract class BackgroundExecutionStrategy {
+
+    private static final BackgroundExecutionStrategy SINGLE_THREAD = new BackgroundExecutionStrategy() {
+        @Override
+        Executor createExecutor(ThreadFactory threadFactory) {
+            return new SingleThreadExecutor(threadFactory);
+        }
+
+        @Override
+        public String toString() {
+            return "BackgroundExecutionStrategy{singleThread}";
+        }
+    };
+
+    /**
+     * @return strategy which executes all tasks in one dedicated thread
+     */
+    public static BackgroundExecutionStrategy singleThread() {
+        return SINGLE_THREAD;
+    }
+
+    /**
+     * @param queueCapacity the capacity of pre-allocated queue of tasks, should be a power of two greater than one.
+     *                      The tasks which do not fit into queue are passed through linked queue which allocates a node per task.
+     *
+     * @return strategy which executes all tasks in one dedicated thread
+     */
+    public static BackgroundExecutionStrategy singleThread(int queueCapacity) {
+        if (queueCapacity < 2 || Integer.bitCount(queueCapacity) != 1) {
+            throw new IllegalArgumentException("queueCapacity should be a power of two greater than one");
+        }
+        return new BackgroundExecutionStrategy() {
+            @Override
+            Executor createExecutor(ThreadFactory threadFactory) {
+                return new SingleThreadExecutor(threadFactory, queueCapacity);
+            }
+
+            @Override
+            public String toString() {
+                return "BackgroundExecutionStrategy{singleThread, queueCapacity=" + queueCapacity + "}";
+            }
+        };
+    }
+
+    /**
+     * @param workerCount the count of dedicated threads
+     *
+     * @return strategy which spreads tasks across {@code workerCount} dedicated threads keyed by identity of metric which owns the task
+     */
+    public static BackgroundExecutionStrategy sharded(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount should be >= 1");
+        }
+        return new BackgroundExecutionStrategy() {
+            @Override
+            Executor createExecutor(ThreadFactory threadFactory) {
+                return new ShardedExecutor(threadFactory, workerCount);
+            }
+
+            @Override
+            public String toString() {
+                return "BackgroundExecutionStrategy{sharded, workerCount=" + workerCount + "}";
+            }
+        };
+    }
+
+    /**
+     * @return strategy which starts new virtual thread for each task
+     *
+     * @throws UnsupportedOperationException if current JVM does not support virtual threads
+     */
+    public static BackgroundExecutionStrategy virtualThreadPerTask() {
+        if (!VirtualThreadPerTaskExecutor.isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+");
+        }
+        return new BackgroundExecutionStrategy() {
+            @Override
+            Executor createExecutor(ThreadFactory threadFactory) {
+                // thread factory is ignored because virtual threads can not be created by custom factory
+                return new VirtualThreadPerTaskExecutor(ResilientExecutionUtil.BACKGROUND_THREAD_NAME + "-");
+            }
+
+            @Override
+            public String toString() {
+                return "BackgroundExecutionStrategy{virtualThreadPerTask}";
+            }
+        };
+    }
+
+    /**
+     * The constructor visibility is package-private because only strategies defined by this class are supported
+     */
+    BackgroundExecutionStrategy() {
+        // do nothing
+    }
+
+    abstract Executor createExecutor(ThreadFactory threadFactory);
+
+}
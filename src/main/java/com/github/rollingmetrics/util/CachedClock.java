@@ -0,0 +1,98 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clock which returns the time cached by background ticker instead of calling {@link System#currentTimeMillis()} on each invocation,
+ * so reading of time is reduced to the reading of single volatile field.
+ *
+ * <p>
+ * All cached clocks share the single daemon ticker thread.
+ * The clocks are cached per resolution, so there is only one ticking task for each distinct resolution, regardless of how many metrics use it.
+ *
+ * @see Clock#cachedMillis(Duration)
+ */
+final class CachedClock implements Clock {
+
+    private static final ConcurrentMap<Long, CachedClock> CLOCKS = new ConcurrentHashMap<>();
+
+    private final long resolutionMillis;
+    private volatile long currentTimeMillis;
+
+    static CachedClock getInstance(Duration resolution) {
+        if (resolution == null) {
+            throw new IllegalArgumentException("resolution should not be null");
+        }
+        if (resolution.isNegative() || resolution.isZero()) {
+            throw new IllegalArgumentException("resolution must be a positive duration");
+        }
+        long resolutionMillis = resolution.toMillis();
+        if (resolutionMillis < 1) {
+            throw new IllegalArgumentException("resolution should be >= 1 millisecond");
+        }
+        return CLOCKS.computeIfAbsent(resolutionMillis, CachedClock::new);
+    }
+
+    private CachedClock(long resolutionMillis) {
+        this.resolutionMillis = resolutionMillis;
+        this.currentTimeMillis = System.currentTimeMillis();
+        Ticker.EXECUTOR.scheduleAtFixedRate(this::tick, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    private void tick() {
+        currentTimeMillis = System.currentTimeMillis();
+    }
+
+    long getResolutionMillis() {
+        return resolutionMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedClock{" +
+                "resolutionMillis=" + resolutionMillis +
+                ", currentTimeMillis=" + currentTimeMillis +
+                '}';
+    }
+
+    // lazy holder, the ticker thread is not started until first cached clock is requested
+    private static final class Ticker {
+
+        static final ScheduledExecutorService EXECUTOR = createExecutor();
+
+        private static ScheduledExecutorService createExecutor() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("rolling-metrics-clock-ticker-%d"));
+            executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            return executor;
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package com.github.rollingmetrics.util;
 
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -35,6 +36,30 @@ public interface Clock {
         return DEFAULT_CLOCK;
     }
 
+    /**
+     * Returns the clock which reads the time cached by shared background ticker
+     * instead of calling {@link System#currentTimeMillis()} on each invocation.
+     *
+     * <p>
+     * The cached clock is useful for hot recording paths where each event reads the time,
+     * for example {@link com.github.rollingmetrics.counter.SmoothlyDecayingRollingCounter} or chunked reservoirs built by
+     * {@link com.github.rollingmetrics.histogram.HdrBuilder#withClock(Clock)}.
+     * The returned time lags behind the real time at most by {@code resolution},
+     * so the resolution should be significantly less than the intervals which measured by this clock,
+     * for example 10 milliseconds resolution is good choice for chunks which are reset each second.
+     *
+     * <p>
+     * The clocks are shared per resolution, so invocation of this method several times with the same resolution returns the same instance.
+     * All cached clocks are ticked by the single daemon thread which lives until JVM shutdown.
+     *
+     * @param resolution the interval between updates of cached time, should be at least one millisecond
+     *
+     * @return the clock which updated in background each {@code resolution}
+     */
+    static Clock cachedMillis(Duration resolution) {
+        return CachedClock.getInstance(resolution);
+    }
+
     static Clock mock(AtomicLong currentTime) {
         return currentTime::get;
     }
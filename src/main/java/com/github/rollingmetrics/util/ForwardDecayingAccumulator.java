@@ -0,0 +1,191 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This is not part of public API.
+ *
+ * The fixed-size vector of exponentially decaying sums, implemented via forward decay:
+ * instead of decaying already accumulated values, each written value is scaled up by {@code 2^(age/halfLife)},
+ * where age is measured from the landmark timestamp, and the accumulated sum is scaled down only at reading.
+ * So both writing and reading are O(1) and do not depend from rate of writes.
+ *
+ * <p>
+ * Because the scaling factor for writers grows exponentially, the landmark is moved forward each {@link #RENORMALIZATION_HALF_LIVES} half-lives,
+ * the thread which detects that landmark is outdated publishes new landmark and transfers rescaled sums into it.
+ * Writers never wait for renormalization, readers can spin for short time while sums are being transferred.
+ */
+public final class ForwardDecayingAccumulator {
+
+    /**
+     * The amount of half-lives after which the landmark is moved forward, so the scaling factor for writers never exceeds {@code 2^32}.
+     */
+    public static final int RENORMALIZATION_HALF_LIVES = 32;
+
+    // written into slot of outdated landmark in order to redirect writers to actual landmark,
+    // the non-canonical NaN is never produced by floating point arithmetic, so it can not be confused with sum
+    private static final long CLOSED = 0x7ff0_0000_0000_0001L;
+
+    private final long halfLifeMillis;
+    private final double decayRatePerMilli;
+    private final long renormalizationIntervalMillis;
+    private final int width;
+    private final AtomicReference<Landmark> landmarkRef;
+
+    /**
+     * @param halfLife the duration after which the weight of written value becomes two times smaller
+     * @param width the amount of sums
+     * @param currentTimeMillis the initial landmark
+     */
+    public ForwardDecayingAccumulator(Duration halfLife, int width, long currentTimeMillis) {
+        if (halfLife == null) {
+            throw new IllegalArgumentException("halfLife should not be null");
+        }
+        if (halfLife.isNegative() || halfLife.toMillis() < 1) {
+            throw new IllegalArgumentException("halfLife should be at least 1 millisecond");
+        }
+        if (width < 1) {
+            throw new IllegalArgumentException("width should be positive");
+        }
+        this.halfLifeMillis = halfLife.toMillis();
+        this.decayRatePerMilli = Math.log(2.0) / halfLifeMillis;
+        this.renormalizationIntervalMillis = halfLifeMillis > Long.MAX_VALUE / RENORMALIZATION_HALF_LIVES ? Long.MAX_VALUE : halfLifeMillis * RENORMALIZATION_HALF_LIVES;
+        this.width = width;
+        Landmark landmark = new Landmark(currentTimeMillis, width);
+        landmark.transferred = true;
+        this.landmarkRef = new AtomicReference<>(landmark);
+    }
+
+    /**
+     * @return the half-life of this accumulator
+     */
+    public Duration getHalfLife() {
+        return Duration.ofMillis(halfLifeMillis);
+    }
+
+    /**
+     * Adds {@code value} to the sum with index {@code index}.
+     */
+    public void add(int index, double value, long currentTimeMillis) {
+        while (true) {
+            Landmark landmark = landmarkRef.get();
+            long ageMillis = currentTimeMillis - landmark.timestampMillis;
+            if (ageMillis >= renormalizationIntervalMillis) {
+                renormalize(landmark, currentTimeMillis);
+                continue;
+            }
+            if (landmark.add(index, value * Math.exp(ageMillis * decayRatePerMilli))) {
+                return;
+            }
+            // landmark was closed by concurrent renormalization, the replacement is already published
+        }
+    }
+
+    /**
+     * Reads decayed sums into {@code snapshot} in order of indexes, all sums are read relatively to the same landmark.
+     */
+    public void readInto(double[] snapshot, long currentTimeMillis) {
+        while (true) {
+            Landmark landmark = landmarkRef.get();
+            if (!landmark.transferred) {
+                // the sums of previous landmark are being transferred right now
+                Thread.yield();
+                continue;
+            }
+            double decayingCoefficient = Math.exp(-(currentTimeMillis - landmark.timestampMillis) * decayRatePerMilli);
+            boolean closed = false;
+            for (int i = 0; i < width; i++) {
+                long bits = landmark.values.get(i);
+                if (bits == CLOSED) {
+                    closed = true;
+                    break;
+                }
+                snapshot[i] = Double.longBitsToDouble(bits) * decayingCoefficient;
+            }
+            if (!closed) {
+                return;
+            }
+        }
+    }
+
+    private void renormalize(Landmark outdated, long currentTimeMillis) {
+        Landmark replacement = new Landmark(currentTimeMillis, width);
+        if (!landmarkRef.compareAndSet(outdated, replacement)) {
+            // concurrent thread already renormalized
+            return;
+        }
+        double decayingCoefficient = Math.exp(-(currentTimeMillis - outdated.timestampMillis) * decayRatePerMilli);
+        // sums are transferred in reverse order, so reader which reads in order of indexes and writer which writes in reverse order
+        // observe the same ordering of updates as without renormalization
+        for (int i = width - 1; i >= 0; i--) {
+            long bits = outdated.values.getAndSet(i, CLOSED);
+            double value = Double.longBitsToDouble(bits) * decayingCoefficient;
+            if (value != 0.0) {
+                replacement.add(i, value);
+            }
+        }
+        replacement.transferred = true;
+    }
+
+    private static final class Landmark {
+
+        final long timestampMillis;
+        final AtomicLongArray values;
+        volatile boolean transferred;
+
+        Landmark(long timestampMillis, int width) {
+            this.timestampMillis = timestampMillis;
+            // zero bits are equal to 0.0d, so array does not need to be initialized
+            this.values = new AtomicLongArray(width);
+        }
+
+        boolean add(int index, double value) {
+            while (true) {
+                long bits = values.get(index);
+                if (bits == CLOSED) {
+                    return false;
+                }
+                long newBits = Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value);
+                if (values.compareAndSet(index, bits, newBits)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Landmark{" +
+                    "timestampMillis=" + timestampMillis +
+                    ", values=" + values +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ForwardDecayingAccumulator{" +
+                "halfLifeMillis=" + halfLifeMillis +
+                ", landmark=" + landmarkRef.get() +
+                '}';
+    }
+
+}
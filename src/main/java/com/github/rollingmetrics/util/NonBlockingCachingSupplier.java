@@ -0,0 +1,159 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The caching supplier which does not block readers when cached value is expired.
+ *
+ * <p>
+ * When cached value is older than {@code cachingDurationMillis}, but younger than {@code cachingDurationMillis + maxStalenessMillis},
+ * the first reader submits refreshing of value to background executor and all readers continue to get previous value until refreshing is done.
+ * When value is older than {@code cachingDurationMillis + maxStalenessMillis}, it is never served:
+ * the reader takes the value from target supplier in its own thread, even if refreshing is in progress in background,
+ * and concurrent readers wait until it is done instead of stampeding to target supplier.
+ *
+ * <p>
+ * Concurrency properties:
+ * <ul>
+ *     <li>At most one reader takes the value from target supplier at time,
+ *     and at most one refreshing is in progress in background executor.</li>
+ *     <li>Readers do not acquire any lock and never wait for each other, except the case when there is no value at all or value is too stale,
+ *     in such case concurrent readers wait until the first one takes the value.</li>
+ *     <li>The value is replaced only by value which was taken later, so slow taking of value never overwrites newer value.</li>
+ * </ul>
+ */
+public class NonBlockingCachingSupplier<T> implements Supplier<T> {
+
+    private final Supplier<T> targetSupplier;
+    private final long cachingDurationMillis;
+    private final long maxStalenessMillis;
+    private final Clock clock;
+    private final Executor backgroundExecutor;
+
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean();
+    private final ReusableTask refreshTask = new ReusableTask(this, this::refresh);
+    private final AtomicReference<CachedValue<T>> cachedValue = new AtomicReference<>();
+
+    public NonBlockingCachingSupplier(long cachingDurationMillis, long maxStalenessMillis, Clock clock, Executor backgroundExecutor, Supplier<T> targetSupplier) {
+        if (cachingDurationMillis >= Long.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too big cachingDurationMillis");
+        }
+        if (maxStalenessMillis <= 0) {
+            throw new IllegalArgumentException("maxStalenessMillis should be positive");
+        }
+        if (maxStalenessMillis >= Long.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too big maxStalenessMillis");
+        }
+        this.targetSupplier = Objects.requireNonNull(targetSupplier);
+        this.cachingDurationMillis = cachingDurationMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.clock = Objects.requireNonNull(clock);
+        this.backgroundExecutor = Objects.requireNonNull(backgroundExecutor);
+    }
+
+    @Override
+    public T get() {
+        long nowMillis = clock.currentTimeMillis();
+        CachedValue<T> cached = cachedValue.get();
+        if (cached == null) {
+            return takeValueByReader(nowMillis);
+        }
+        long ageMillis = nowMillis - cached.takeTimeMillis;
+        if (ageMillis < cachingDurationMillis) {
+            return cached.value;
+        }
+        if (ageMillis < cachingDurationMillis + maxStalenessMillis) {
+            if (refreshInProgress.compareAndSet(false, true)) {
+                // Current thread is responsible to submit refreshing
+                ResilientExecutionUtil.getInstance().execute(backgroundExecutor, refreshTask);
+            }
+            // previous value is served until refreshing is done
+            return cached.value;
+        }
+        // value is too stale to be served, refreshing can be in progress, but there is no guarantee when it will be done,
+        // so current thread takes the value by itself
+        return takeValueByReader(nowMillis);
+    }
+
+    private synchronized T takeValueByReader(long nowMillis) {
+        CachedValue<T> cached = cachedValue.get();
+        if (cached != null && nowMillis - cached.takeTimeMillis < cachingDurationMillis + maxStalenessMillis) {
+            // value was taken by concurrent reader or by refreshing while current thread waited for monitor
+            return cached.value;
+        }
+        return takeValue(nowMillis);
+    }
+
+    private void refresh() {
+        try {
+            takeValue(clock.currentTimeMillis());
+        } finally {
+            refreshInProgress.set(false);
+        }
+    }
+
+    private T takeValue(long nowMillis) {
+        T value = targetSupplier.get();
+        CachedValue<T> taken = new CachedValue<>(value, nowMillis);
+        while (true) {
+            CachedValue<T> cached = cachedValue.get();
+            if (cached != null && cached.takeTimeMillis > nowMillis) {
+                // the newer value is already published
+                return value;
+            }
+            if (cachedValue.compareAndSet(cached, taken)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NonBlockingCachingSupplier{" +
+                "cachingDurationMillis=" + cachingDurationMillis +
+                ", maxStalenessMillis=" + maxStalenessMillis +
+                ", cachedValue=" + cachedValue.get() +
+                '}';
+    }
+
+    private static final class CachedValue<T> {
+
+        private final T value;
+        private final long takeTimeMillis;
+
+        private CachedValue(T value, long takeTimeMillis) {
+            this.value = value;
+            this.takeTimeMillis = takeTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "CachedValue{" +
+                    "value=" + value +
+                    ", takeTimeMillis=" + takeTimeMillis +
+                    '}';
+        }
+    }
+
+}
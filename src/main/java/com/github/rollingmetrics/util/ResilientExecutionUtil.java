@@ -22,23 +22,28 @@ import com.github.rollingmetrics.histogram.accumulator.ResetByChunksAccumulator;
 
 import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Util class which should be used for execution tasks(like histogram rotation) in background.
  * Known clients: {@link ResetByChunksAccumulator}.
  *
  * For background execution this class maintains own implementation of executor {@link SingleThreadExecutor}
- * which extremely fast and has no blocking on task queueing.
+ * which extremely fast and has no blocking on task queueing. The executor passes tasks through pre-allocated queue
+ * with capacity 8192 tasks, and through unbounded linked queue when pre-allocated queue is full,
+ * the capacity can be changed via {@link BackgroundExecutionStrategy#singleThread(int)}.
+ * The way of background execution can be changed via {@link #setBackgroundExecutionStrategy(BackgroundExecutionStrategy)}.
  */
 public final class ResilientExecutionUtil {
 
-    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new DaemonThreadFactory("metrics-core-hdr-background-worker");
+    static final String BACKGROUND_THREAD_NAME = "metrics-core-hdr-background-worker";
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new DaemonThreadFactory(BACKGROUND_THREAD_NAME);
 
     private static final ResilientExecutionUtil INSTANCE = new ResilientExecutionUtil();
 
-    private volatile SingleThreadExecutor executorInstance;
+    private volatile Executor executorInstance;
     private ThreadFactory threadFactory = DEFAULT_THREAD_FACTORY;
+    private BackgroundExecutionStrategy executionStrategy = BackgroundExecutionStrategy.singleThread();
 
     /**
      * @return instance of {@link ResilientExecutionUtil}
@@ -61,7 +66,19 @@ public final class ResilientExecutionUtil {
      * @param task
      */
     public void execute(Executor executor, Runnable task) {
-        if (executor instanceof SingleThreadExecutor) {
+        execute(executor, new ReusableTask(task));
+    }
+
+    /**
+     * Executes pre-allocated task on executor. If executor is terminated or overloaded then executes task in current thread.
+     * In contrast to {@link #execute(Executor, Runnable)} this method does not allocate anything.
+     *
+     * @param executor
+     * @param task
+     */
+    public void execute(Executor executor, ReusableTask task) {
+        task.arm();
+        if (isOwnExecutor(executor)) {
             // we can trust to own executor implementation and schedule task without advanced control
             executor.execute(task);
             return;
@@ -69,24 +86,18 @@ public final class ResilientExecutionUtil {
 
         // We are having deal with unknown executor implementation in the unknown state.
         // So we need to execute task in current thread if executor failed to do it by itself,
-        // but to avoid of twice execution we need to wrap around the task by AtomicBoolean
-        AtomicBoolean alreadyExecuted = new AtomicBoolean(false);
-        Runnable oneShotRunnable = () -> {
-            if (alreadyExecuted.compareAndSet(false, true)) {
-                task.run();
-            }
-        };
+        // the armed task protects from twice execution.
         try {
-            executor.execute(oneShotRunnable);
+            executor.execute(task);
         } catch (Throwable e) {
             // The executor can be stopped or overloaded,
             // just execute task in current thread and ignore exception
-            oneShotRunnable.run();
+            task.run();
         }
     }
 
     /**
-     * @return instance of {@link SingleThreadExecutor}
+     * @return instance of executor created by configured {@link BackgroundExecutionStrategy}, by default {@link SingleThreadExecutor}
      */
     public Executor getBackgroundExecutor() {
         return getExecutorInstance();
@@ -96,8 +107,12 @@ public final class ResilientExecutionUtil {
      * If the {@link #getBackgroundExecutor} was called before, the this method perform shutdown of background execution thread.
      */
     public synchronized void shutdownBackgroundExecutor() {
-        if (executorInstance != null) {
-            executorInstance.stopExecutionThread();
+        if (executorInstance instanceof SingleThreadExecutor) {
+            ((SingleThreadExecutor) executorInstance).stopExecutionThread();
+        } else if (executorInstance instanceof ShardedExecutor) {
+            ((ShardedExecutor) executorInstance).stopExecutionThreads();
+        } else if (executorInstance instanceof VirtualThreadPerTaskExecutor) {
+            ((VirtualThreadPerTaskExecutor) executorInstance).stopExecutionThread();
         }
     }
 
@@ -126,13 +141,44 @@ public final class ResilientExecutionUtil {
         this.threadFactory = Objects.requireNonNull(threadFactory);
     }
 
-    private SingleThreadExecutor getExecutorInstance() {
-        SingleThreadExecutor executorInstance = this.executorInstance;
+    /**
+     * Sets the strategy which will be used for construction of background executor.
+     * <p>
+     * This method should be called strongly before first invocation of {@link #getBackgroundExecutor}.
+     * </p>
+     *
+     * <p>
+     * Normally, you should not use this method, because one background thread is quit enough.
+     * Consider to use {@link BackgroundExecutionStrategy#sharded(int)} when tens of thousands of chunked metrics rotate at the same time,
+     * or {@link BackgroundExecutionStrategy#virtualThreadPerTask()} when you do not want to keep platform thread for metrics.
+     * </p>
+     *
+     * @param executionStrategy
+     * @throws IllegalStateException if executor already created
+     */
+    public synchronized void setBackgroundExecutionStrategy(BackgroundExecutionStrategy executionStrategy) {
+        if (executorInstance != null) {
+            String msg = "The executor instance already created with " + this.executionStrategy +
+                    ", so it is impossible to replace executionStrategy." +
+                    " You should call setBackgroundExecutionStrategy strongly before first invocation of getBackgroundExecutor";
+            throw new IllegalStateException(msg);
+        }
+        this.executionStrategy = Objects.requireNonNull(executionStrategy);
+    }
+
+    private static boolean isOwnExecutor(Executor executor) {
+        return executor instanceof SingleThreadExecutor
+                || executor instanceof ShardedExecutor
+                || executor instanceof VirtualThreadPerTaskExecutor;
+    }
+
+    private Executor getExecutorInstance() {
+        Executor executorInstance = this.executorInstance;
         if (executorInstance == null) {
             synchronized (this) {
                 executorInstance = this.executorInstance;
                 if (executorInstance == null) {
-                    executorInstance = new SingleThreadExecutor(threadFactory);
+                    executorInstance = executionStrategy.createExecutor(threadFactory);
                     this.executorInstance = executorInstance;
                 }
             }
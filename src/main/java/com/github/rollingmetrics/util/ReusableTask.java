@@ -0,0 +1,79 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The task which is allocated once by its owner and submitted via {@link ResilientExecutionUtil#execute(Executor, ReusableTask)} many times,
+ * so submission of task to user provided executor does not allocate anything.
+ *
+ * <p>
+ * Each submission arms the task, and the target is executed only by first invocation of {@link #run()} after arming.
+ * So the target is executed exactly once per submission even if executor executes the task and then throws exception.
+ * Because arming is volatile write, all fields which were written by owner before submission are visible to the target.
+ *
+ * <p>
+ * The owner should not submit the task again until previous submission is executed,
+ * for rotation tasks this is guaranteed by CAS which elects single thread responsible for rotation.
+ *
+ * <p>
+ * The task is bound to shard key, by default the target itself, which is used by {@link ShardedExecutor} to choose the worker.
+ * The owner which has several tasks should pass itself as shard key, so all its tasks are executed by the same worker in order of submission.
+ */
+public final class ReusableTask implements Runnable {
+
+    private final Object shardKey;
+    private final Runnable target;
+    private final AtomicBoolean armed = new AtomicBoolean();
+
+    public ReusableTask(Runnable target) {
+        this(target, target);
+    }
+
+    public ReusableTask(Object shardKey, Runnable target) {
+        this.shardKey = Objects.requireNonNull(shardKey);
+        this.target = Objects.requireNonNull(target);
+    }
+
+    @Override
+    public void run() {
+        if (armed.compareAndSet(true, false)) {
+            target.run();
+        }
+    }
+
+    void arm() {
+        armed.set(true);
+    }
+
+    Object getShardKey() {
+        return shardKey;
+    }
+
+    @Override
+    public String toString() {
+        return "ReusableTask{" +
+                "target=" + target +
+                ", armed=" + armed +
+                '}';
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timer-wheel based scheduler which proactively rotates chunked metrics at their boundaries.
+ *
+ * <p>
+ * By default chunked metrics like {@link com.github.rollingmetrics.histogram.accumulator.ResetByChunksAccumulator}
+ * are rotated lazily by the first writer which observes that current chunk is expired,
+ * so writers should read the clock on each update and rotation is never happen while metric is idle.
+ * When metric is registered in the scheduler, writers just record values into current chunk,
+ * and rotations of all metrics which boundaries belong to same tick are performed by scheduler thread in single pass.
+ * </p>
+ *
+ * <p><br> Concurrency properties:</p>
+ * <ul>
+ *     <li>Registration is lock-free, the registered metric is picked up by scheduler thread on next tick.</li>
+ *     <li>Scheduler holds only weak references to registered metrics, so registration does not prevent metric from garbage collection.</li>
+ *     <li>Scheduler thread is created lazily on first registration.</li>
+ * </ul>
+ *
+ * <p><br> Usage recommendations:</p>
+ * <ul>
+ *     <li>Share one scheduler between all metrics of application, because each scheduler holds dedicated thread.</li>
+ *     <li>Boundaries of chunks are respected with precision of one tick, so tick duration should be significantly less than chunk interval.</li>
+ *     <li>Do not {@link #shutdown} scheduler while registered metrics are in use, because they are never rotated after shutdown.</li>
+ * </ul>
+ */
+public class RotationScheduler {
+
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(10);
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new DaemonThreadFactory("rolling-metrics-rotation-scheduler-%d");
+    private static final long RETRY_AFTER_FAILURE_MILLIS = 1000;
+
+    private static final Logger logger = Logger.getLogger(RotationScheduler.class.getName());
+
+    /**
+     * The metric which can be rotated by scheduler.
+     */
+    public interface Rotatable {
+
+        /**
+         * Rotates the metric if its current chunk is expired.
+         *
+         * @return amount of milliseconds after which this method should be invoked again
+         */
+        long rotateIfNeeded();
+
+    }
+
+    private final long tickNanos;
+    private final ThreadFactory threadFactory;
+    private final ConcurrentLinkedQueue<Entry> registrations = new ConcurrentLinkedQueue<>();
+
+    // following fields are accessed only from scheduler thread
+    private final ArrayList<Entry>[] wheel;
+    private ArrayList<Entry> spareBucket = new ArrayList<>();
+    private long currentTick;
+
+    private volatile Thread schedulerThread;
+    private volatile boolean stopped;
+    private volatile int scheduledCount;
+
+    /**
+     * Creates scheduler with {@link #DEFAULT_TICK_DURATION} and {@link #DEFAULT_WHEEL_SIZE}.
+     */
+    public RotationScheduler() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE, DEFAULT_THREAD_FACTORY);
+    }
+
+    /**
+     * Creates scheduler.
+     *
+     * @param tickDuration the precision of scheduler
+     * @param wheelSize the amount of buckets in the wheel, rotations which scheduled to more distant future than {@code tickDuration * wheelSize} cost additional pass per each revolution of wheel
+     * @param threadFactory the factory which will be used to create scheduler thread
+     */
+    @SuppressWarnings("unchecked")
+    public RotationScheduler(Duration tickDuration, int wheelSize, ThreadFactory threadFactory) {
+        if (tickDuration == null) {
+            throw new IllegalArgumentException("tickDuration should not be null");
+        }
+        if (tickDuration.isNegative() || tickDuration.toMillis() < 1) {
+            throw new IllegalArgumentException("tickDuration should be at least 1 millisecond");
+        }
+        if (wheelSize < 1) {
+            throw new IllegalArgumentException("wheelSize should be positive");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory should not be null");
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.threadFactory = threadFactory;
+        this.wheel = new ArrayList[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Registers metric for rotation. The first invocation of {@link Rotatable#rotateIfNeeded} happens on next tick.
+     *
+     * <p>
+     * Scheduler holds metric by weak reference, so caller is responsible to keep strong reference to {@code rotatable}
+     * as long as the metric is in use.
+     * </p>
+     *
+     * @param rotatable the metric to rotate
+     *
+     * @throws IllegalStateException if scheduler already stopped
+     */
+    public void register(Rotatable rotatable) {
+        if (rotatable == null) {
+            throw new IllegalArgumentException("rotatable should not be null");
+        }
+        if (stopped) {
+            throw new IllegalStateException("Scheduler already stopped");
+        }
+        registrations.add(new Entry(rotatable));
+        startIfNeeded();
+    }
+
+    /**
+     * Stops the scheduler thread. Registered metrics are never rotated after shutdown.
+     */
+    public void shutdown() {
+        stopped = true;
+        Thread thread = schedulerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return the amount of metrics which are tracked by scheduler thread, registrations which were not picked up yet are not counted
+     */
+    int getScheduledCount() {
+        return scheduledCount;
+    }
+
+    private void startIfNeeded() {
+        if (schedulerThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (schedulerThread == null) {
+                Thread thread = threadFactory.newThread(this::doLifeCycle);
+                thread.start();
+                schedulerThread = thread;
+            }
+        }
+    }
+
+    private void doLifeCycle() {
+        long startNanos = System.nanoTime();
+        while (!stopped) {
+            long sleepNanos = startNanos + (currentTick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            // when scheduler thread was delayed the missed ticks are processed one by one
+            currentTick++;
+            pickUpRegistrations();
+            expireBucket();
+        }
+    }
+
+    private void pickUpRegistrations() {
+        Entry entry;
+        while ((entry = registrations.poll()) != null) {
+            scheduledCount++;
+            rotateAndReschedule(entry);
+        }
+    }
+
+    private void expireBucket() {
+        int bucketIndex = (int) (currentTick % wheel.length);
+        ArrayList<Entry> bucket = wheel[bucketIndex];
+        // entries can be rescheduled into same bucket, so bucket is replaced by empty one before iteration
+        wheel[bucketIndex] = spareBucket;
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            if (entry.deadlineTick > currentTick) {
+                // will be expired on one of next revolutions of wheel
+                wheel[bucketIndex].add(entry);
+            } else {
+                rotateAndReschedule(entry);
+            }
+        }
+        bucket.clear();
+        spareBucket = bucket;
+    }
+
+    private void rotateAndReschedule(Entry entry) {
+        Rotatable rotatable = entry.get();
+        if (rotatable == null) {
+            // metric is not used anymore
+            scheduledCount--;
+            return;
+        }
+        long delayMillis;
+        try {
+            delayMillis = rotatable.rotateIfNeeded();
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, e, () -> "Fail to rotate " + rotatable + " because of " + e.getMessage());
+            delayMillis = RETRY_AFTER_FAILURE_MILLIS;
+        }
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        long delayTicks = Math.max(1, delayNanos / tickNanos + (delayNanos % tickNanos == 0 ? 0 : 1));
+        entry.deadlineTick = currentTick + delayTicks;
+        wheel[(int) (entry.deadlineTick % wheel.length)].add(entry);
+    }
+
+    private static final class Entry extends WeakReference<Rotatable> {
+
+        long deadlineTick;
+
+        Entry(Rotatable rotatable) {
+            super(rotatable);
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "RotationScheduler{" +
+                "tickNanos=" + tickNanos +
+                ", wheelSize=" + wheel.length +
+                ", scheduledCount=" + scheduledCount +
+                ", stopped=" + stopped +
+                '}';
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.rollingmetrics.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executor which spreads tasks across several {@link SingleThreadExecutor} workers.
+ * The worker is chosen by identity of shard key of {@link ReusableTask}, rotation tasks are pre-allocated by their metrics and use metric as shard key,
+ * so all tasks of one metric are executed by the same worker, and rotations of different metrics are executed in parallel.
+ * The worker for other tasks is chosen by identity of task.
+ *
+ * <p>
+ * The tasks of one metric are executed in order of submission only while they fit into bounded queue of worker.
+ * When the queue is full, the worker passes tasks through its overflow queue, which is drained after bounded queue,
+ * so since that moment the order of tasks of one metric is not preserved.
+ *
+ * <p>
+ * Like {@link SingleThreadExecutor} this executor never throws RejectedExecutionException,
+ * the task is executed in current caller thread when executor is stopped.
+ */
+public class ShardedExecutor implements Executor {
+
+    private final SingleThreadExecutor[] workers;
+
+    ShardedExecutor(ThreadFactory factory, int workerCount) {
+        this(factory, workerCount, SingleThreadExecutor.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    ShardedExecutor(ThreadFactory factory, int workerCount, int queueCapacity) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount should be >= 1");
+        }
+        this.workers = new SingleThreadExecutor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new SingleThreadExecutor(factory, queueCapacity);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Object shardKey = task instanceof ReusableTask ? ((ReusableTask) task).getShardKey() : task;
+        workers[workerIndex(shardKey, workers.length)].execute(task);
+    }
+
+    /**
+     * Stops all worker threads
+     */
+    public void stopExecutionThreads() {
+        for (SingleThreadExecutor worker : workers) {
+            worker.stopExecutionThread();
+        }
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    static int workerIndex(Object shardKey, int workerCount) {
+        int hash = System.identityHashCode(shardKey);
+        // spread the high bits because identity hash codes are not uniformly distributed in low bits on some JVMs
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, workerCount);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedExecutor{" +
+                "workerCount=" + workers.length +
+                '}';
+    }
+
+}
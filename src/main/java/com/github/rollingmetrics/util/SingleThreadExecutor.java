@@ -20,6 +20,8 @@ package com.github.rollingmetrics.util;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Level;
@@ -30,19 +32,35 @@ import java.util.logging.Logger;
  * This executor never throws RejectedExecutionException, because after it stopped by client,
  * it begin executes tasks in current caller thread.
  * This behavior provides graceful shutdown in complex applications when metrics can still be collected during shutdown.
+ *
+ * <p>
+ * The tasks are passed to worker thread through bounded array-based multi-producer single-consumer queue,
+ * so queueing of task does not allocate any memory. The worker thread drains all available tasks before parking,
+ * and producers unpark the worker only when it is parked.
+ * When queue is full, the task is passed through unbounded linked overflow queue, which allocates a node per task,
+ * so burst of tasks never forces execution of task in caller thread. The tasks from overflow queue are executed after tasks from bounded queue,
+ * so order of execution is not preserved during burst.
  */
 public class SingleThreadExecutor implements Executor {
 
-    private static final Runnable POISON = () -> {};
-    private static final Runnable PARK = () -> {};
+    static final int DEFAULT_QUEUE_CAPACITY = 1 << 13;
 
     private static final Logger logger = Logger.getLogger(SingleThreadExecutor.class.getName());
 
     private final StampedLock stampedLock = new StampedLock();
-    private final ConcurrentLinkedQueue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+    private final TaskQueue taskQueue;
+    private final ConcurrentLinkedQueue<Runnable> overflowQueue = new ConcurrentLinkedQueue<>();
     private final Thread workerThread;
 
+    private volatile boolean workerParked;
+    private volatile boolean stopped;
+
     SingleThreadExecutor(ThreadFactory factory) {
+        this(factory, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    SingleThreadExecutor(ThreadFactory factory, int queueCapacity) {
+        this.taskQueue = new TaskQueue(queueCapacity);
         this.workerThread = factory.newThread(this::doLifeCycle);
 
         // Leaking reference to "SingleOrSameThreadExecutor.this" from constructor though lambda does not lead to publication problem,
@@ -66,8 +84,13 @@ public class SingleThreadExecutor implements Executor {
             return;
         }
         try {
-            taskQueue.add(task);
-            LockSupport.unpark(workerThread);
+            if (!taskQueue.offer(task)) {
+                overflowQueue.offer(task);
+            }
+            // the queues are read by worker after publishing of flag, so either worker observes the task or producer observes the flag
+            if (workerParked) {
+                LockSupport.unpark(workerThread);
+            }
         } finally {
             stampedLock.unlockRead(stamp);
         }
@@ -86,35 +109,45 @@ public class SingleThreadExecutor implements Executor {
         stampedLock.writeLock();
 
         /*
-         * Because of concurrent queue follow first-in first-out semantic,
-          *we have guarantee that POISON will be a last task in the QUEUE.
+         * Because write lock is acquired only after all producers released read lock,
+         * the worker thread will execute all queued tasks before it observe the stop flag.
          */
-        taskQueue.add(POISON);
+        stopped = true;
         LockSupport.unpark(workerThread);
     }
 
     private void doLifeCycle() {
         while (true) {
             Thread.interrupted();
-            Runnable task = taskQueue.poll();
-            if (task == POISON) {
-                return;
+            if (drainQueue() > 0) {
+                continue;
             }
-            if (task == PARK) {
-                task = taskQueue.poll();
-                if (task == null) {
-                    LockSupport.park(SingleThreadExecutor.this);
-                    continue;
-                }
+            if (stopped) {
+                drainQueue();
+                return;
             }
-            if (task != null) {
-                executeAndLogErrors(task);
-            } else {
-                taskQueue.add(PARK);
+            workerParked = true;
+            if (taskQueue.isEmpty() && overflowQueue.isEmpty() && !stopped) {
+                LockSupport.park(SingleThreadExecutor.this);
             }
+            workerParked = false;
         }
     }
 
+    private int drainQueue() {
+        int executedTasks = 0;
+        Runnable task;
+        while ((task = taskQueue.poll()) != null) {
+            executeAndLogErrors(task);
+            executedTasks++;
+        }
+        while ((task = overflowQueue.poll()) != null) {
+            executeAndLogErrors(task);
+            executedTasks++;
+        }
+        return executedTasks;
+    }
+
     private static void executeAndLogErrors(Runnable task) {
         try {
             task.run();
@@ -123,4 +156,63 @@ public class SingleThreadExecutor implements Executor {
         }
     }
 
+    /**
+     * Bounded queue for many producers and single consumer.
+     * The producer claims the slot by CAS on producer index and only then stores the task into slot,
+     * so consumer which observes claimed but not yet filled slot waits for producer.
+     */
+    static final class TaskQueue {
+
+        private final AtomicReferenceArray<Runnable> buffer;
+        private final int mask;
+        private final AtomicLong producerIndex = new AtomicLong();
+        private final AtomicLong consumerIndex = new AtomicLong();
+
+        TaskQueue(int capacity) {
+            if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("capacity should be a power of two greater than one");
+            }
+            this.buffer = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(Runnable task) {
+            while (true) {
+                long index = producerIndex.get();
+                if (index - consumerIndex.get() > mask) {
+                    return false;
+                }
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    buffer.lazySet((int) (index & mask), task);
+                    return true;
+                }
+            }
+        }
+
+        // should be called only by consumer
+        Runnable poll() {
+            long index = consumerIndex.get();
+            int offset = (int) (index & mask);
+            Runnable task = buffer.get(offset);
+            if (task == null) {
+                if (index == producerIndex.get()) {
+                    return null;
+                }
+                // the slot is claimed by producer which has not stored the task yet
+                do {
+                    Thread.yield();
+                    task = buffer.get(offset);
+                } while (task == null);
+            }
+            buffer.lazySet(offset, null);
+            consumerIndex.lazySet(index + 1);
+            return task;
+        }
+
+        boolean isEmpty() {
+            return consumerIndex.get() == producerIndex.get();
+        }
+
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.rollingmetrics.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor which starts new virtual thread for each task, so it does not hold any platform thread between rotations.
+ * This executor requires Java 21+, virtual threads are obtained via reflection because library is compiled for Java 8.
+ *
+ * <p>
+ * Like {@link SingleThreadExecutor} this executor never throws RejectedExecutionException,
+ * the task is executed in current caller thread when executor is stopped or virtual thread can not be started.
+ */
+public class VirtualThreadPerTaskExecutor implements Executor {
+
+    private static final Logger logger = Logger.getLogger(VirtualThreadPerTaskExecutor.class.getName());
+
+    private final ThreadFactory virtualThreadFactory;
+    private volatile boolean stopped;
+
+    VirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        this.virtualThreadFactory = createVirtualThreadFactory(threadNamePrefix);
+    }
+
+    /**
+     * @return true if current JVM is able to start virtual threads
+     */
+    public static boolean isSupported() {
+        try {
+            createVirtualThreadFactory("");
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (stopped) {
+            task.run();
+            return;
+        }
+        try {
+            virtualThreadFactory.newThread(() -> executeAndLogErrors(task)).start();
+        } catch (RejectedExecutionException | IllegalStateException e) {
+            // the scheduler of virtual threads is shut down
+            task.run();
+        }
+    }
+
+    /**
+     * Stops the starting of virtual threads, tasks submitted after stopping are executed in current caller thread.
+     */
+    public void stopExecutionThread() {
+        stopped = true;
+    }
+
+    private static void executeAndLogErrors(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, e, () -> "Fail to execute " + task + " in async mode because of " + e.getMessage());
+        }
+    }
+
+    private static ThreadFactory createVirtualThreadFactory(String threadNamePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = ofVirtual.getReturnType();
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | IllegalAccessException | ClassCastException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+", e);
+        } catch (InvocationTargetException e) {
+            // virtual threads are preview feature on Java 19 and 20
+            throw new UnsupportedOperationException("Virtual threads require Java 21+", e.getCause());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadPerTaskExecutor{" +
+                "stopped=" + stopped +
+                '}';
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExponentiallyDecayingCounterTest {
+
+    @Test
+    public void testAddAndCalculateSum() throws Exception {
+        AtomicLong timeMillis = new AtomicLong();
+        Clock clock = Clock.mock(timeMillis);
+
+        WindowCounter counter = new ExponentiallyDecayingCounter(Duration.ofSeconds(1), clock);
+        assertEquals(0, counter.getSum());
+
+        counter.add(1000);
+        assertEquals(1000, counter.getSum());
+
+        timeMillis.set(1000);
+        assertEquals(500, counter.getSum());
+
+        timeMillis.set(2000);
+        assertEquals(250, counter.getSum());
+
+        counter.add(1000);
+        assertEquals(1250, counter.getSum());
+
+        timeMillis.set(3000);
+        assertEquals(625, counter.getSum());
+
+        counter.add(-625);
+        assertEquals(0, counter.getSum());
+    }
+
+    @Test
+    public void shouldKeepPrecisionAcrossRenormalizations() {
+        AtomicLong timeMillis = new AtomicLong();
+        Clock clock = Clock.mock(timeMillis);
+        WindowCounter counter = new ExponentiallyDecayingCounter(Duration.ofMillis(10), clock);
+
+        // 1000 half-lives, so landmark is moved forward many times
+        for (int i = 0; i < 10_000; i++) {
+            timeMillis.set(i);
+            counter.add(1000);
+        }
+        double expected = 1000 / (1 - Math.pow(2, -0.1));
+        assertEquals(Math.round(expected), counter.getSum());
+
+        // sum should be forgotten after long inactivity
+        timeMillis.addAndGet(TimeUnit.HOURS.toMillis(1));
+        assertEquals(0, counter.getSum());
+        counter.add(42);
+        assertEquals(42, counter.getSum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowZeroHalfLife() {
+        new ExponentiallyDecayingCounter(Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNegativeHalfLife() {
+        new ExponentiallyDecayingCounter(Duration.ofSeconds(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowHalfLifeLessThenMillisecond() {
+        new ExponentiallyDecayingCounter(Duration.ofNanos(999_999));
+    }
+
+    @Test
+    public void testGetHalfLife() {
+        ExponentiallyDecayingCounter counter = new ExponentiallyDecayingCounter(Duration.ofSeconds(10));
+        assertEquals(Duration.ofSeconds(10), counter.getHalfLife());
+    }
+
+    @Test
+    public void testToString() {
+        WindowCounter counter = new ExponentiallyDecayingCounter(Duration.ofSeconds(1));
+        System.out.println(counter.toString());
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        // landmark will be moved forward each 32 milliseconds
+        WindowCounter counter = new ExponentiallyDecayingCounter(Duration.ofMillis(1));
+        CounterTestUtil.runInParallel(counter, TimeUnit.SECONDS.toMillis(30));
+    }
+
+}
@@ -21,11 +21,16 @@ import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.util.Clock;
 import org.junit.Test;
 
+import java.lang.reflect.Field;
 import java.time.Duration;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class SmoothlyDecayingRollingCounterTest {
 
@@ -70,6 +75,103 @@ public class SmoothlyDecayingRollingCounterTest {
         assertEquals(0, counter.getSum());
     }
 
+    @Test
+    public void testAddAndCalculateSumWithRunningTotal() throws Exception {
+        AtomicLong timeMillis = new AtomicLong();
+        Clock clock = Clock.mock(timeMillis);
+
+        WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(2), 2, clock, true);
+
+        counter.add(100);
+        assertEquals(100, counter.getSum());
+
+        timeMillis.set(2600);
+        assertEquals(40, counter.getSum());
+
+        timeMillis.set(2980);
+        assertEquals(2, counter.getSum());
+
+        timeMillis.set(3000);
+        assertEquals(0, counter.getSum());
+
+        counter.add(200);
+        assertEquals(200, counter.getSum());
+
+        timeMillis.set(4000);
+        assertEquals(200, counter.getSum());
+
+        timeMillis.set(5000);
+        assertEquals(200, counter.getSum());
+        counter.add(300);
+        assertEquals(500, counter.getSum());
+
+        timeMillis.set(5500);
+        assertEquals(400, counter.getSum());
+
+        timeMillis.set(6000);
+        assertEquals(300, counter.getSum());
+
+        // clear counter
+        timeMillis.set(10_000);
+        assertEquals(0, counter.getSum());
+    }
+
+    @Test
+    public void runningTotalShouldBeEquivalentToScanOfChunks() {
+        AtomicLong timeMillis = new AtomicLong();
+        Clock clock = Clock.mock(timeMillis);
+        WindowCounter scanningCounter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(2), 10, clock);
+        WindowCounter runningTotalCounter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(2), 10, clock, true);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int action = random.nextInt(10);
+            if (action < 5) {
+                long delta = random.nextInt(1000) - 100;
+                scanningCounter.add(delta);
+                runningTotalCounter.add(delta);
+            } else if (action < 9) {
+                // mostly small steps, sometimes the counter stays idle for the several rolling windows
+                timeMillis.addAndGet(random.nextInt(100) == 0 ? random.nextInt(10_000) : random.nextInt(50));
+            }
+            assertEquals(scanningCounter.getSum(), runningTotalCounter.getSum());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void writeConcurrentWithRotationOfChunkShouldNotBeLost() throws Exception {
+        AtomicLong timeMillis = new AtomicLong(0);
+        Clock clock = Clock.mock(timeMillis);
+        SmoothlyDecayingRollingCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(3), 3, clock);
+        counter.add(7);
+
+        // chunk 0 expires at 4000, emulate the writer which claimed chunk 0 for rotation but has not reset it yet
+        timeMillis.set(4000);
+        Field chunksField = SmoothlyDecayingRollingCounter.class.getDeclaredField("chunks");
+        chunksField.setAccessible(true);
+        AtomicLongArray chunks = (AtomicLongArray) chunksField.get(counter);
+        assertTrue(chunks.compareAndSet(1, 4000, Long.MAX_VALUE));
+
+        Thread writer = new Thread(() -> counter.add(5));
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive());
+
+        // finish the rotation in the same way as claiming writer does
+        long outdatedSum = chunks.getAndSet(0, 0);
+        assertEquals(7, outdatedSum);
+        chunks.set(1, 8000);
+        writer.join();
+
+        assertEquals(5, counter.getSum());
+    }
+
+    @Test
+    public void testRunningTotalMode() {
+        assertTrue(new SmoothlyDecayingRollingCounter(Duration.ofSeconds(1), 3, true).isRunningTotalMaintained());
+        assertFalse(new SmoothlyDecayingRollingCounter(Duration.ofSeconds(1), 3).isRunningTotalMaintained());
+    }
+
     @Test
     public void testToString() {
         WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(1), 3);
@@ -89,6 +191,12 @@ public class SmoothlyDecayingRollingCounterTest {
         CounterTestUtil.runInParallel(counter, TimeUnit.SECONDS.toMillis(30));
     }
 
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHungWithRunningTotal() throws InterruptedException {
+        WindowCounter counter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(1), 3, true);
+        CounterTestUtil.runInParallel(counter, TimeUnit.SECONDS.toMillis(30));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldDisallowTooShortInvalidationPeriod() {
         new SmoothlyDecayingRollingCounter(Duration.ofMillis((SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS) - 1), 4);
@@ -0,0 +1,73 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedResetOnSnapshotCounterTest {
+
+    @Test
+    public void sumShouldBeClearedAtSnapshot() {
+        WindowCounter counter = new StripedResetOnSnapshotCounter();
+        counter.add(2);
+        assertEquals(2, counter.getSum());
+        assertEquals(0, counter.getSum());
+
+        counter.add(7);
+        counter.add(3);
+        assertEquals(10, counter.getSum());
+        assertEquals(0, counter.getSum());
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentIncrements() throws InterruptedException {
+        WindowCounter counter = new StripedResetOnSnapshotCounter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    counter.add(1);
+                }
+            });
+            threads[i].start();
+        }
+        long sum = 0;
+        for (Thread thread : threads) {
+            thread.join();
+            sum += counter.getSum();
+        }
+        sum += counter.getSum();
+        assertEquals(threads.length * 100_000L, sum);
+    }
+
+    @Test
+    public void testToString() {
+        System.out.println(new StripedResetOnSnapshotCounter());
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        WindowCounter counter = new StripedResetOnSnapshotCounter();
+        CounterTestUtil.runInParallel(counter, TimeUnit.SECONDS.toMillis(30));
+    }
+
+}
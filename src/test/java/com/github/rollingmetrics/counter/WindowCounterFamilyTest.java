@@ -0,0 +1,270 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.counter;
+
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.MockExecutor;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class WindowCounterFamilyTest {
+
+    private final AtomicLong timeMillis = new AtomicLong();
+    private final Clock clock = Clock.mock(timeMillis);
+
+    @Test
+    public void testAddAndCalculateSum() throws Exception {
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 10, clock, MockExecutor.INSTANCE);
+
+        family.add("a", 100);
+        family.add("b", 1);
+        assertEquals(100, family.getSum("a"));
+        assertEquals(1, family.getSum("b"));
+        assertEquals(0, family.getSum("c"));
+
+        timeMillis.set(2600);
+        assertEquals(40, family.getSum("a"));
+
+        timeMillis.set(2980);
+        assertEquals(2, family.getSum("a"));
+
+        timeMillis.set(3000);
+        assertEquals(0, family.getSum("a"));
+
+        family.add("a", 200);
+        assertEquals(200, family.getSum("a"));
+
+        timeMillis.set(4000);
+        assertEquals(200, family.getSum("a"));
+
+        timeMillis.set(5000);
+        assertEquals(200, family.getSum("a"));
+        family.add("a", 300);
+        assertEquals(500, family.getSum("a"));
+
+        timeMillis.set(5500);
+        assertEquals(400, family.getSum("a"));
+
+        timeMillis.set(6000);
+        assertEquals(300, family.getSum("a"));
+
+        // clear counter
+        timeMillis.set(10_000);
+        assertEquals(0, family.getSum("a"));
+    }
+
+    @Test
+    public void shouldBeEquivalentToSeparateCounters() {
+        WindowCounterFamily<Integer> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 10, 5, clock, MockExecutor.INSTANCE);
+        WindowCounter[] counters = new WindowCounter[5];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(2), 10, clock);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(counters.length);
+            long delta = random.nextInt(1000);
+            family.add(key, delta);
+            counters[key].add(delta);
+            timeMillis.addAndGet(random.nextInt(20));
+            for (int k = 0; k < counters.length; k++) {
+                assertEquals(counters[k].getSum(), family.getSum(k));
+            }
+        }
+    }
+
+    @Test
+    public void rotationShouldBeExecutedInBackgroundWithoutLosingConcurrentWrites() {
+        List<Runnable> submittedTasks = new ArrayList<>();
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 10, clock, submittedTasks::add);
+        family.add("a", 100);
+
+        // the writer which detects expired chunk just submits the rotation, writes during rotation are deferred
+        timeMillis.set(3000);
+        family.add("a", 1);
+        family.add("a", 2);
+        family.add("b", 3);
+        assertEquals(1, submittedTasks.size());
+        assertEquals(0, family.getSum("a"));
+
+        submittedTasks.get(0).run();
+        assertEquals(3, family.getSum("a"));
+        assertEquals(3, family.getSum("b"));
+
+        // the task is executed once per submission
+        submittedTasks.get(0).run();
+        assertEquals(3, family.getSum("a"));
+
+        family.add("a", 4);
+        assertEquals(7, family.getSum("a"));
+        assertEquals(1, submittedTasks.size());
+    }
+
+    @Test
+    public void testTopK() {
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 10, clock, MockExecutor.INSTANCE);
+        family.add("a", 10);
+        family.add("b", 30);
+        family.add("c", 20);
+        family.add("d", 5);
+        family.add("e", 0);
+
+        Map<String, Long> top = family.topK(3);
+        assertEquals(Arrays.asList("b", "c", "a"), new ArrayList<>(top.keySet()));
+        assertEquals(Arrays.asList(30L, 20L, 10L), new ArrayList<>(top.values()));
+
+        // keys with zero sum are not reported
+        assertEquals(Arrays.asList("b", "c", "a", "d"), new ArrayList<>(family.topK(10).keySet()));
+    }
+
+    @Test
+    public void keysAboveLimitShouldBeAccountedInOverflowBucket() {
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 2, clock, MockExecutor.INSTANCE);
+        family.add("a", 1);
+        family.add("b", 2);
+        family.add("c", 3);
+        family.add("d", 4);
+        family.add("a", 1);
+
+        assertEquals(2, family.getKeyCount());
+        assertEquals(2, family.getSum("a"));
+        assertEquals(2, family.getSum("b"));
+        assertEquals(0, family.getSum("c"));
+        assertEquals(7, family.getOverflowSum());
+
+        timeMillis.set(10_000);
+        assertEquals(0, family.getOverflowSum());
+    }
+
+    @Test
+    public void idleKeysShouldBeEvictedAndTheirSlotsReused() {
+        // rolling window with additional chunk is 3 seconds
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 1, clock, MockExecutor.INSTANCE);
+        family.add("a", 1);
+        family.add("b", 1);
+        assertEquals(1, family.getOverflowSum());
+
+        // "a" is idle during rolling window, so it is evicted on next rotation
+        timeMillis.set(3000);
+        family.add("b", 1);
+        assertEquals(0, family.getKeyCount());
+        assertEquals(0, family.getSum("a"));
+
+        // slot of "a" is not reused until it stays in quarantine for whole rolling window
+        family.add("b", 1);
+        assertEquals(0, family.getKeyCount());
+        assertEquals(2, family.getOverflowSum());
+
+        timeMillis.set(6000);
+        family.add("b", 10);
+        assertEquals(1, family.getKeyCount());
+        assertEquals(10, family.getSum("b"));
+    }
+
+    @Test
+    public void testAsCounter() {
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(2), 2, 10, clock, MockExecutor.INSTANCE);
+        WindowCounter counter = family.asCounter("a");
+        counter.add(42);
+        assertEquals(42, counter.getSum());
+        assertEquals(42, family.getSum("a"));
+    }
+
+    @Test
+    public void testGetters() {
+        WindowCounterFamily<String> family = new WindowCounterFamily<>(Duration.ofSeconds(10), 5, 100);
+        assertEquals(Duration.ofSeconds(10), family.getRollingWindow());
+        assertEquals(5, family.getChunkCount());
+        assertEquals(100, family.getMaxKeys());
+        System.out.println(family);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullKey() {
+        new WindowCounterFamily<String>(Duration.ofSeconds(1), 2, 10).add(null, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNonPositiveMaxKeys() {
+        new WindowCounterFamily<String>(Duration.ofSeconds(1), 2, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNonPositiveK() {
+        new WindowCounterFamily<String>(Duration.ofSeconds(1), 2, 10).topK(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowTooShortInvalidationPeriod() {
+        new WindowCounterFamily<String>(Duration.ofMillis(SmoothlyDecayingRollingCounter.MIN_CHUNK_RESETTING_INTERVAL_MILLIS * 2 - 1), 2, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisAllowTooManyChunk() {
+        new WindowCounterFamily<String>(Duration.ofSeconds(1), SmoothlyDecayingRollingCounter.MAX_CHUNKS + 1, 10);
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        WindowCounterFamily<Integer> family = new WindowCounterFamily<>(Duration.ofSeconds(1), 5, 100);
+        long durationMillis = TimeUnit.SECONDS.toMillis(30);
+        AtomicReference<Throwable> errorRef = new AtomicReference<>();
+        Thread[] threads = new Thread[Runtime.getRuntime().availableProcessors() * 2];
+        CountDownLatch latch = new CountDownLatch(threads.length);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    while (errorRef.get() == null && System.currentTimeMillis() - start < durationMillis) {
+                        for (int j = 1; j <= 10; j++) {
+                            // more keys than slots in order to exercise overflow and eviction
+                            family.add(ThreadLocalRandom.current().nextInt(200), j);
+                        }
+                        family.topK(10);
+                        family.getOverflowSum();
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    errorRef.set(e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        latch.await();
+        if (errorRef.get() != null) {
+            throw new RuntimeException(errorRef.get());
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.util.Clock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchRecordingTest {
+
+    private static final long[] VALUES = {5, 10, 101, 20, 30, 150, 40, 200, 1};
+
+    @Test
+    public void batchShouldBeRecordedSameWayAsSingleValuesForAllStrategies() {
+        checkEquivalence(() -> new HdrBuilder().neverResetReservoir());
+        checkEquivalence(() -> new HdrBuilder().resetReservoirOnSnapshot());
+        checkEquivalence(() -> new HdrBuilder().resetReservoirPeriodically(Duration.ofMinutes(1)));
+        checkEquivalence(() -> new HdrBuilder().resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 3));
+        checkEquivalence(() -> new HdrBuilder().withSnapshotCachingDuration(Duration.ofMinutes(1)));
+        checkEquivalence(() -> new HdrBuilder().withHighestTrackableValue(100, OverflowResolver.SKIP));
+        checkEquivalence(() -> new HdrBuilder().withHighestTrackableValue(100, OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE));
+        checkEquivalence(() -> new HdrBuilder().withHighestTrackableValue(1000, OverflowResolver.PASS_THRU));
+    }
+
+    @Test
+    public void testSkipBigValues() {
+        ExtendedReservoir reservoir = new HdrBuilder()
+                .withHighestTrackableValue(100, OverflowResolver.SKIP)
+                .withoutSnapshotOptimization()
+                .buildExtendedReservoir();
+        reservoir.update(VALUES, 0, VALUES.length);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(40, snapshot.getMax());
+        assertEquals(1, snapshot.getMin());
+        assertArrayEquals(new long[] {1, 5, 10, 20, 30, 40}, snapshot.getValues());
+    }
+
+    @Test
+    public void testReduceBigValuesToMax() {
+        ExtendedReservoir reservoir = new HdrBuilder()
+                .withHighestTrackableValue(100, OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                .withoutSnapshotOptimization()
+                .buildExtendedReservoir();
+        reservoir.update(VALUES, 0, VALUES.length);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100, snapshot.getMax());
+        assertEquals(VALUES.length, snapshot.size());
+    }
+
+    @Test
+    public void shouldRecordOnlySpecifiedRange() {
+        ExtendedReservoir reservoir = new HdrBuilder().withoutSnapshotOptimization().buildExtendedReservoir();
+        reservoir.update(VALUES, 3, 2);
+        assertArrayEquals(new long[] {20, 30}, reservoir.getSnapshot().getValues());
+
+        reservoir.update(VALUES, 0, 0);
+        assertArrayEquals(new long[] {20, 30}, reservoir.getSnapshot().getValues());
+    }
+
+    @Test
+    public void batchShouldBeRecordedToNewChunkAfterRotation() {
+        AtomicLong time = new AtomicLong(0);
+        ExtendedReservoir reservoir = new HdrBuilder(Clock.mock(time))
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withBackgroundExecutor(Runnable::run)
+                .withoutSnapshotOptimization()
+                .buildExtendedReservoir();
+
+        reservoir.update(new long[] {10, 20}, 0, 2);
+        time.set(1000);
+        reservoir.update(new long[] {30, 40}, 0, 2);
+        assertArrayEquals(new long[] {10, 20, 30, 40}, reservoir.getSnapshot().getValues());
+
+        time.set(4000);
+        assertArrayEquals(new long[] {30, 40}, reservoir.getSnapshot().getValues());
+
+        time.set(5000);
+        assertArrayEquals(new long[0], reservoir.getSnapshot().getValues());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullArray() {
+        new HdrBuilder().buildExtendedReservoir().update(null, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNegativeOffset() {
+        new HdrBuilder().buildExtendedReservoir().update(VALUES, -1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNegativeLength() {
+        new HdrBuilder().buildExtendedReservoir().update(VALUES, 0, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowRangeOutOfArray() {
+        new HdrBuilder().buildExtendedReservoir().update(VALUES, 1, VALUES.length);
+    }
+
+    private static void checkEquivalence(Supplier<HdrBuilder> builderSupplier) {
+        ExtendedReservoir batchReservoir = builderSupplier.get().withoutSnapshotOptimization().buildExtendedReservoir();
+        ExtendedReservoir singleReservoir = builderSupplier.get().withoutSnapshotOptimization().buildExtendedReservoir();
+
+        batchReservoir.update(VALUES, 1, VALUES.length - 1);
+        for (int i = 1; i < VALUES.length; i++) {
+            singleReservoir.update(VALUES[i]);
+        }
+
+        Snapshot batchSnapshot = batchReservoir.getSnapshot();
+        Snapshot singleSnapshot = singleReservoir.getSnapshot();
+        assertArrayEquals(singleSnapshot.getValues(), batchSnapshot.getValues());
+        assertEquals(singleSnapshot.getMax(), batchSnapshot.getMax());
+        assertEquals(singleSnapshot.getMin(), batchSnapshot.getMin());
+        assertEquals(singleSnapshot.getMean(), batchSnapshot.getMean(), 0.0);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.MockExecutor;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.*;
+
+public class CompressedEncodingTest {
+
+    @Test
+    public void encodedHistogramShouldBeDecodable() throws DataFormatException {
+        ExtendedReservoir reservoir = new HdrBuilder().buildExtendedReservoir();
+        for (int i = 1; i <= 1000; i++) {
+            reservoir.update(i);
+        }
+
+        ByteBuffer buffer = reservoir.encodeIntoCompressedByteBuffer(null);
+        assertEquals(0, buffer.position());
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(buffer, 0);
+
+        assertEquals(1000, decoded.getTotalCount());
+        assertEquals(1, decoded.getMinValue());
+        assertEquals(reservoir.getSnapshot().getMax(), decoded.getMaxValue());
+        assertEquals(reservoir.getSnapshot().get99thPercentile(), decoded.getValueAtPercentile(99.0), 0.0);
+    }
+
+    @Test
+    public void encodingShouldRespectRollingWindow() throws DataFormatException {
+        AtomicLong time = new AtomicLong();
+        ExtendedReservoir reservoir = new HdrBuilder(Clock.mock(time))
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .buildExtendedReservoir();
+        reservoir.update(10);
+        time.set(1000);
+        reservoir.update(20);
+
+        time.set(4000);
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(reservoir.encodeIntoCompressedByteBuffer(null), 0);
+        assertEquals(1, decoded.getTotalCount());
+        assertEquals(20, decoded.getMaxValue());
+    }
+
+    @Test
+    public void emptyReservoirShouldBeEncoded() throws DataFormatException {
+        ExtendedReservoir reservoir = new HdrBuilder().buildExtendedReservoir();
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(reservoir.encodeIntoCompressedByteBuffer(null), 0);
+        assertEquals(0, decoded.getTotalCount());
+    }
+
+    @Test
+    public void bufferShouldBeReused() {
+        ExtendedReservoir reservoir = new HdrBuilder().buildExtendedReservoir();
+        reservoir.update(42);
+
+        ByteBuffer buffer = reservoir.encodeIntoCompressedByteBuffer(null);
+        int length = buffer.limit();
+        reservoir.update(43);
+        assertSame(buffer, reservoir.encodeIntoCompressedByteBuffer(buffer));
+        assertTrue(buffer.limit() >= length);
+    }
+
+    @Test
+    public void unsuitableBufferShouldBeReplaced() throws DataFormatException {
+        ExtendedReservoir reservoir = new HdrBuilder().buildExtendedReservoir();
+        reservoir.update(42);
+
+        ByteBuffer small = ByteBuffer.allocate(1);
+        ByteBuffer encoded = reservoir.encodeIntoCompressedByteBuffer(small);
+        assertNotSame(small, encoded);
+        assertEquals(1, Histogram.decodeFromCompressedByteBuffer(encoded, 0).getTotalCount());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(1024 * 1024);
+        encoded = reservoir.encodeIntoCompressedByteBuffer(direct);
+        assertNotSame(direct, encoded);
+        assertEquals(1, Histogram.decodeFromCompressedByteBuffer(encoded, 0).getTotalCount());
+    }
+
+    @Test
+    public void snapshotCachingReservoirShouldEncodeActualValues() throws DataFormatException {
+        ExtendedReservoir reservoir = new HdrBuilder()
+                .withSnapshotCachingDuration(Duration.ofMinutes(1))
+                .buildExtendedReservoir();
+        reservoir.getSnapshot();
+        reservoir.update(42);
+
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(reservoir.encodeIntoCompressedByteBuffer(null), 0);
+        assertEquals(1, decoded.getTotalCount());
+    }
+
+    @Test
+    public void encodedDistributionShouldBeMuchSmallerThanDump() {
+        ExtendedReservoir reservoir = new HdrBuilder().withoutSnapshotOptimization().buildExtendedReservoir();
+        for (int i = 0; i < 100_000; i++) {
+            reservoir.update(i % 10_000);
+        }
+
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        reservoir.getSnapshot().dump(dump);
+        int encodedLength = reservoir.encodeIntoCompressedByteBuffer(null).limit();
+        assertTrue(encodedLength * 100 < dump.size());
+    }
+
+}
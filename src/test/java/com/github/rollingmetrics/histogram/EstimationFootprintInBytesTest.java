@@ -16,6 +16,7 @@
  */
 
 package com.github.rollingmetrics.histogram;
+import org.HdrHistogram.AllValuesIterator;
 import org.HdrHistogram.Recorder;
 import org.junit.Test;
 
@@ -36,7 +37,43 @@ public class EstimationFootprintInBytesTest {
         assertEquals(histogramEquivalentEstimate * 3, builder.neverResetReservoir().getEstimatedFootprintInBytes());
         assertEquals(histogramEquivalentEstimate * 2, builder.resetReservoirOnSnapshot().getEstimatedFootprintInBytes());
         assertEquals(histogramEquivalentEstimate * 7, builder.resetReservoirPeriodically(Duration.ofMinutes(1)).getEstimatedFootprintInBytes());
-        assertEquals(histogramEquivalentEstimate * (10 + 6 + 1), builder.resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 10).getEstimatedFootprintInBytes());
+        assertEquals(histogramEquivalentEstimate * (10 + 1 + 6 + 1), builder.resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 10).getEstimatedFootprintInBytes());
+    }
+
+    @Test
+    public void testEstimationOfOffHeapFootprint() {
+        assertEquals(0, builder.resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 10).getEstimatedOffHeapFootprintInBytes());
+
+        builder.withOffHeapStorage();
+        int slotCapacity = offHeapSlotCapacity();
+        assertEquals(histogramEquivalentEstimate * (1 + 6 + 1), builder.getEstimatedHeapFootprintInBytes());
+        assertEquals(slotCapacity * 10, builder.getEstimatedOffHeapFootprintInBytes());
+        assertEquals(histogramEquivalentEstimate * (1 + 6 + 1) + slotCapacity * 10, builder.getEstimatedFootprintInBytes());
+
+        // off-heap storage has no effect for strategies without history
+        assertEquals(0, builder.neverResetReservoir().getEstimatedOffHeapFootprintInBytes());
+    }
+
+    @Test
+    public void settingsChangedOnDeepCopyShouldBeApplied() {
+        builder.resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 10);
+        HdrBuilder copy = builder.deepCopy().withOffHeapStorage();
+
+        int slotCapacity = offHeapSlotCapacity();
+        assertEquals(slotCapacity * 10, copy.getEstimatedOffHeapFootprintInBytes());
+        // original builder should not be affected by copy
+        assertEquals(0, builder.getEstimatedOffHeapFootprintInBytes());
+    }
+
+    private static int offHeapSlotCapacity() {
+        // each bucket of chunk is stored off-heap as single long
+        int bucketCount = 0;
+        AllValuesIterator iterator = new AllValuesIterator(new Recorder(10, 3600, 3).getIntervalHistogram());
+        while (iterator.hasNext()) {
+            iterator.next();
+            bucketCount++;
+        }
+        return bucketCount * Long.BYTES;
     }
 
 }
@@ -79,6 +79,18 @@ public class HdrBuilderArgumentCheckingTest {
         new HdrBuilder().withLowestDiscernibleValue(10).buildReservoir();
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void shouldRequireHighestValueIfOffHeapStorageSpecified() {
+        new HdrBuilder().resetReservoirPeriodicallyByChunks(Duration.ofMinutes(1), 3).withOffHeapStorage().buildReservoir();
+    }
+
+    @Test
+    public void offHeapStorageShouldNotRequireHighestValueForStrategiesWithoutHistory() {
+        new HdrBuilder().withOffHeapStorage().buildReservoir();
+        new HdrBuilder().resetReservoirOnSnapshot().withOffHeapStorage().buildReservoir();
+        new HdrBuilder().resetReservoirPeriodically(Duration.ofMinutes(1)).withOffHeapStorage().buildReservoir();
+    }
+
     @Test(expected = NullPointerException.class)
     public void shouldNotAllowNullOverflowHandlingStrategy() {
         new HdrBuilder().withHighestTrackableValue(42, null);
@@ -138,6 +150,26 @@ public class HdrBuilderArgumentCheckingTest {
         new HdrBuilder().withBackgroundExecutor(null);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRotationSchedulerShouldBeDisallowed() {
+        new HdrBuilder().withRotationScheduler(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullClockShouldBeDeprecated() {
+        new HdrBuilder().withClock(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowZeroThreadLocalBufferSize() {
+        new HdrBuilder().withThreadLocalBuffering(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowTooBigThreadLocalBufferSize() {
+        new HdrBuilder().withThreadLocalBuffering(HdrBuilder.MAX_THREAD_LOCAL_BUFFER_SIZE + 1);
+    }
+
     @Test
     public void validateResetByChunksParametersTest() {
         new HdrBuilder().resetReservoirPeriodicallyByChunks(Duration.ofMillis(HdrBuilder.MIN_CHUNK_RESETTING_INTERVAL_MILLIS * HdrBuilder.MAX_CHUNKS), HdrBuilder.MAX_CHUNKS);
@@ -0,0 +1,300 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.histogram.accumulator.HistogramUtil;
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.MockExecutor;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class HistogramFamilyTest {
+
+    private final AtomicLong time = new AtomicLong(0);
+    private final Clock clock = Clock.mock(time);
+
+    @Test
+    public void membersShouldRespectChunks() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+
+        family.update("a", 10);
+        family.update("a", 20);
+        assertMinMax(10, 20, family.getSnapshot("a"));
+
+        time.getAndAdd(999); // 999
+        family.update("a", 9);
+        family.update("a", 60);
+        assertMinMax(9, 60, family.getSnapshot("a"));
+
+        time.getAndAdd(1); // 1000
+        family.update("a", 12);
+        family.update("a", 70);
+        assertMinMax(9, 70, family.getSnapshot("a"));
+
+        time.getAndAdd(2000); // 3000
+        assertMinMax(9, 70, family.getSnapshot("a"));
+
+        time.getAndAdd(1000); // 4000
+        assertMinMax(12, 70, family.getSnapshot("a"));
+
+        time.getAndAdd(1000); // 5000
+        assertEquals(0, family.getSnapshot("a").size());
+    }
+
+    @Test
+    public void membersShouldBeIndependent() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+
+        family.update("a", 10);
+        family.update("b", 100);
+        time.getAndAdd(1000);
+        family.update("b", 200);
+
+        assertMinMax(10, 10, family.getSnapshot("a"));
+        assertMinMax(100, 200, family.getSnapshot("b"));
+        assertEquals(0, family.getSnapshot("c").size());
+        assertEquals(2, family.getKeyCount());
+    }
+
+    @Test
+    public void shouldSupportResettingWithoutHistory() {
+        HistogramFamily<String> family = new HdrBuilder(clock)
+                .resetReservoirPeriodically(Duration.ofSeconds(1))
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .buildHistogramFamily(10);
+
+        family.update("a", 10);
+        assertMinMax(10, 10, family.getSnapshot("a"));
+
+        time.getAndAdd(1000);
+        assertEquals(0, family.getSnapshot("a").size());
+        family.update("a", 20);
+        assertMinMax(20, 20, family.getSnapshot("a"));
+    }
+
+    @Test
+    public void histogramsShouldBeAllocatedOnlyForMembersWithValues() {
+        HistogramFamily<Integer> family = chunkedBuilder().buildHistogramFamily(10_000);
+
+        for (int i = 0; i < 1000; i++) {
+            family.asReservoir(i);
+            family.getSnapshot(i);
+        }
+        assertEquals(0, family.getKeyCount());
+        assertEquals(0, family.getCreatedHistogramCount());
+
+        family.update(42, 1);
+        family.getSnapshot(42);
+        assertEquals(1, family.getKeyCount());
+        assertEquals(1, family.getCreatedHistogramCount());
+    }
+
+    @Test
+    public void histogramsOfIdleMembersShouldBeReused() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+
+        family.update("a", 10);
+        time.getAndAdd(1000);
+        family.update("a", 20);
+        family.getSnapshot("a");
+        assertEquals(2, family.getCreatedHistogramCount());
+
+        // all chunks of "a" are expired, so member is evicted and its histograms are returned to pool
+        time.getAndAdd(5000);
+        assertEquals(0, family.getSnapshot("a").size());
+        assertEquals(0, family.getKeyCount());
+        assertEquals(2, family.getPooledHistogramCount());
+
+        family.update("b", 30);
+        time.getAndAdd(1000);
+        family.update("c", 40);
+        assertMinMax(30, 30, family.getSnapshot("b"));
+        assertMinMax(40, 40, family.getSnapshot("c"));
+        assertEquals(2, family.getCreatedHistogramCount());
+        assertEquals(0, family.getPooledHistogramCount());
+    }
+
+    @Test
+    public void recordersOfEvictedMembersShouldBeReused() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+        // the overflow member holds one recorder
+        assertEquals(1, family.getCreatedRecorderCount());
+
+        family.update("a", 10);
+        assertEquals(2, family.getCreatedRecorderCount());
+
+        // "a" is evicted, and its recorder is returned to pool after last sampling on next rotation
+        time.getAndAdd(5000);
+        family.getSnapshot("a");
+        time.getAndAdd(1000);
+        family.getSnapshot("a");
+        assertEquals(0, family.getKeyCount());
+
+        family.update("b", 20);
+        assertMinMax(20, 20, family.getSnapshot("b"));
+        assertEquals(0, family.getSnapshot("a").size());
+        assertEquals(2, family.getCreatedRecorderCount());
+
+        family.update("c", 30);
+        assertEquals(3, family.getCreatedRecorderCount());
+    }
+
+    @Test
+    public void viewsShouldBeCreatedOncePerMember() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+        family.update("a", 10);
+
+        assertSame(family.asReservoir("a"), family.asReservoir("a"));
+    }
+
+    @Test
+    public void snapshotOfMemberShouldBeCached() {
+        HistogramFamily<String> family = chunkedBuilder()
+                .withSnapshotCachingDuration(Duration.ofSeconds(1))
+                .buildHistogramFamily(10);
+        family.update("a", 10);
+
+        Snapshot snapshot = family.getSnapshot("a");
+        family.update("a", 20);
+        assertSame(snapshot, family.getSnapshot("a"));
+        assertMinMax(10, 10, family.getSnapshot("a"));
+
+        Snapshot overflowSnapshot = family.getOverflowSnapshot();
+        assertSame(overflowSnapshot, family.getOverflowSnapshot());
+
+        time.getAndAdd(1000);
+        assertMinMax(10, 20, family.getSnapshot("a"));
+    }
+
+    @Test
+    public void viewShouldRemainValidAfterEviction() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+        Reservoir reservoir = family.asReservoir("a");
+
+        reservoir.update(10);
+        time.getAndAdd(5000);
+        assertEquals(0, reservoir.getSnapshot().size());
+        assertEquals(0, family.getKeyCount());
+
+        reservoir.update(20);
+        assertMinMax(20, 20, reservoir.getSnapshot());
+        assertMinMax(20, 20, family.getSnapshot("a"));
+    }
+
+    @Test
+    public void keysWhichDoNotFitShouldBeAccountedInOverflow() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(2);
+
+        family.update("a", 1);
+        family.update("b", 2);
+        family.update("c", 3);
+        family.update("d", 4);
+
+        assertEquals(2, family.getKeyCount());
+        assertMinMax(1, 1, family.getSnapshot("a"));
+        assertMinMax(2, 2, family.getSnapshot("b"));
+        assertEquals(0, family.getSnapshot("c").size());
+        assertMinMax(3, 4, family.getOverflowSnapshot());
+    }
+
+    @Test
+    public void evictedPlacesShouldBeReusedForNewKeys() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(1);
+
+        family.update("a", 1);
+        time.getAndAdd(5000);
+        family.getSnapshot("a");
+        family.update("b", 2);
+
+        assertEquals(1, family.getKeyCount());
+        assertMinMax(2, 2, family.getSnapshot("b"));
+        assertEquals(0, family.getOverflowSnapshot().size());
+    }
+
+    @Test
+    public void shouldRespectOverflowResolver() {
+        HistogramFamily<String> family = chunkedBuilder()
+                .withHighestTrackableValue(100, OverflowResolver.SKIP)
+                .buildHistogramFamily(10);
+
+        family.update("a", 101);
+        family.update("a", 100);
+        assertMinMax(100, 100, family.getSnapshot("a"));
+    }
+
+    @Test
+    public void timerShouldRecordIntoMember() {
+        HistogramFamily<String> family = chunkedBuilder().buildHistogramFamily(10);
+
+        family.asTimer("a").update(5, TimeUnit.NANOSECONDS);
+        assertMinMax(5, 5, family.getSnapshot("a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void familyShouldRequireChunkedReservoir() {
+        new HdrBuilder().buildHistogramFamily(10);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void familyShouldNotSupportThreadLocalBuffering() {
+        chunkedBuilder().withThreadLocalBuffering(16).buildHistogramFamily(10);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void familyShouldNotSupportOffHeapStorage() {
+        chunkedBuilder().withHighestTrackableValue(1000, OverflowResolver.SKIP).withOffHeapStorage().buildHistogramFamily(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxKeysShouldBePositive() {
+        chunkedBuilder().buildHistogramFamily(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullKeyShouldBeDisallowed() {
+        chunkedBuilder().buildHistogramFamily(10).update(null, 1);
+    }
+
+    @Test(timeout = 32000)
+    public void testThreadSafety() throws InterruptedException {
+        HistogramFamily<String> family = new HdrBuilder()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .buildHistogramFamily(10);
+        HistogramUtil.runInParallel(family.asReservoir("a"), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private HdrBuilder chunkedBuilder() {
+        return new HdrBuilder(clock)
+                .resetReservoirPeriodicallyByChunks(Duration.ofMillis(3000), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE);
+    }
+
+    private static void assertMinMax(long min, long max, Snapshot snapshot) {
+        assertEquals(min, snapshot.getMin());
+        assertEquals(max, snapshot.getMax());
+    }
+
+}
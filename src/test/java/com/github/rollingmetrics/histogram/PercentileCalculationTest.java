@@ -55,7 +55,8 @@ public class PercentileCalculationTest {
         Snapshot snapshot = snapshotTaker.apply(reservoir);
 
         Histogram hdrHistogram = createEquivalentHistogram();
-        assertEquals(hdrHistogram.getStdDeviation(), snapshot.getStdDev());
+        // smart snapshot calculates deviation in single pass, so result can differ by rounding error
+        assertEquals(hdrHistogram.getStdDeviation(), snapshot.getStdDev(), hdrHistogram.getStdDeviation() * 1e-9);
         assertEquals(hdrHistogram.getMinValue(), snapshot.getMin());
         assertEquals(hdrHistogram.getMean(), snapshot.getMean());
         assertEquals(hdrHistogram.getValueAtPercentile(50.0), (long) snapshot.getValue(0.42)); // do not defined percentile should be rounded up to first defined
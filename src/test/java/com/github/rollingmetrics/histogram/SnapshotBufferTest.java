@@ -0,0 +1,162 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram;
+
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.MockExecutor;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SnapshotBufferTest {
+
+    private final AtomicLong time = new AtomicLong(0);
+    private final Clock clock = Clock.mock(time);
+
+    @Test
+    public void bufferShouldContainSameValuesAsSmartSnapshot() {
+        double[] quantiles = {0.5, 0.9, 0.99};
+        ExtendedReservoir reservoir = new HdrBuilder().withPredefinedPercentiles(quantiles).buildExtendedReservoir();
+        for (int i = 1; i <= 100; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        SnapshotBuffer buffer = reservoir.getSnapshot(new SnapshotBuffer(quantiles));
+
+        assertEquals(snapshot.size(), buffer.size());
+        assertEquals(100, buffer.getTotalCount());
+        assertEquals(snapshot.getMin(), buffer.getMin());
+        assertEquals(snapshot.getMax(), buffer.getMax());
+        assertEquals(snapshot.getMean(), buffer.getMean(), 0.0);
+        assertEquals(snapshot.getMedian(), buffer.getMedian(), 0.0);
+        assertEquals(snapshot.getStdDev(), buffer.getStdDev(), 0.0);
+        assertArrayEquals(snapshot.getValues(), buffer.getValues());
+        for (double quantile : new double[] {0.0, 0.3, 0.5, 0.7, 0.9, 0.95, 0.99, 1.0}) {
+            assertEquals(snapshot.getValue(quantile), buffer.getValue(quantile), 0.0);
+        }
+    }
+
+    @Test
+    public void sameBufferShouldBeReusable() {
+        ExtendedReservoir reservoir = chunkedBuilder().buildExtendedReservoir();
+        SnapshotBuffer buffer = new SnapshotBuffer(new double[] {0.5, 1.0});
+
+        reservoir.update(10);
+        assertSame(buffer, reservoir.getSnapshot(buffer));
+        assertEquals(10, buffer.getMax());
+        assertEquals(10.0, buffer.getValueAt(1), 0.0);
+
+        time.set(1000);
+        reservoir.update(20);
+        reservoir.getSnapshot(buffer);
+        assertEquals(20, buffer.getMax());
+        assertEquals(2, buffer.getTotalCount());
+
+        time.set(10_000);
+        reservoir.getSnapshot(buffer);
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getMax());
+        assertEquals(0.0, buffer.getValueAt(1), 0.0);
+        assertEquals(0, buffer.getValues().length);
+    }
+
+    @Test
+    public void quantilesShouldBeSorted() {
+        SnapshotBuffer buffer = new SnapshotBuffer(new double[] {0.99, 0.5, 0.9});
+        assertEquals(3, buffer.getQuantileCount());
+        assertEquals(0.5, buffer.getQuantileAt(0), 0.0);
+        assertEquals(0.9, buffer.getQuantileAt(1), 0.0);
+        assertEquals(0.99, buffer.getQuantileAt(2), 0.0);
+    }
+
+    @Test
+    public void bulkExtractionShouldReuseBuffers() {
+        ExtendedReservoir first = chunkedBuilder().buildExtendedReservoir();
+        ExtendedReservoir second = chunkedBuilder().buildExtendedReservoir();
+        first.update(1);
+        second.update(2);
+        List<ExtendedReservoir> reservoirs = Arrays.asList(first, second);
+
+        SnapshotBuffer[] buffers = SnapshotBuffer.takeSnapshots(reservoirs, null, HdrBuilder.DEFAULT_PERCENTILES);
+        assertEquals(2, buffers.length);
+        assertEquals(1, buffers[0].getMax());
+        assertEquals(2, buffers[1].getMax());
+
+        SnapshotBuffer firstBuffer = buffers[0];
+        first.update(3);
+        SnapshotBuffer[] reused = SnapshotBuffer.takeSnapshots(reservoirs, buffers, HdrBuilder.DEFAULT_PERCENTILES);
+        assertSame(buffers, reused);
+        assertSame(firstBuffer, reused[0]);
+        assertEquals(3, reused[0].getMax());
+    }
+
+    @Test
+    public void bulkExtractionShouldGrowShortArray() {
+        ExtendedReservoir first = chunkedBuilder().buildExtendedReservoir();
+        ExtendedReservoir second = chunkedBuilder().buildExtendedReservoir();
+        second.update(2);
+        SnapshotBuffer existing = new SnapshotBuffer();
+
+        SnapshotBuffer[] buffers = SnapshotBuffer.takeSnapshots(Arrays.asList(first, second), new SnapshotBuffer[] {existing}, HdrBuilder.DEFAULT_PERCENTILES);
+        assertEquals(2, buffers.length);
+        assertSame(existing, buffers[0]);
+        assertEquals(0, buffers[0].size());
+        assertEquals(2, buffers[1].getMax());
+    }
+
+    @Test
+    public void cachingReservoirShouldFillBuffer() {
+        ExtendedReservoir reservoir = chunkedBuilder().withSnapshotCachingDuration(Duration.ofSeconds(1)).buildExtendedReservoir();
+        reservoir.update(42);
+        assertEquals(42, reservoir.getSnapshot(new SnapshotBuffer()).getMax());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullQuantilesShouldBeDisallowed() {
+        new SnapshotBuffer(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyQuantilesShouldBeDisallowed() {
+        new SnapshotBuffer(new double[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantileGreaterThanOneShouldBeDisallowed() {
+        new SnapshotBuffer(new double[] {0.5, 1.1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullBufferShouldBeDisallowed() {
+        new HdrBuilder().buildExtendedReservoir().getSnapshot((SnapshotBuffer) null);
+    }
+
+    private HdrBuilder chunkedBuilder() {
+        return new HdrBuilder(clock)
+                .resetReservoirPeriodicallyByChunks(Duration.ofMillis(3000), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE);
+    }
+
+}
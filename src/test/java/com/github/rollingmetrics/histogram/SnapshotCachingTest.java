@@ -23,6 +23,8 @@ import com.github.rollingmetrics.util.Clock;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static junit.framework.TestCase.assertEquals;
@@ -100,4 +102,43 @@ public class SnapshotCachingTest {
         assertEquals(100, secondNewSnapshot.getMax());
     }
 
+    @Test
+    public void shouldServeExpiredSnapshotWhileRefreshing() {
+        AtomicLong time = new AtomicLong(0);
+        List<Runnable> submittedTasks = new ArrayList<>();
+        Reservoir reservoir = new HdrBuilder(Clock.mock(time))
+                .resetReservoirOnSnapshot()
+                .withBackgroundExecutor(submittedTasks::add)
+                .withSnapshotCachingDuration(Duration.ofMillis(1000), Duration.ofMillis(5000))
+                .buildReservoir();
+        assertTrue(reservoir instanceof SnapshotCachingReservoir);
+
+        reservoir.update(10);
+        Snapshot firstSnapshot = reservoir.getSnapshot();
+
+        time.set(1000);
+        reservoir.update(20);
+        assertSame(firstSnapshot, reservoir.getSnapshot());
+        assertEquals(1, submittedTasks.size());
+
+        submittedTasks.remove(0).run();
+        Snapshot refreshedSnapshot = reservoir.getSnapshot();
+        assertEquals(20, refreshedSnapshot.getMax());
+
+        time.set(7000);
+        reservoir.update(30);
+        assertEquals(30, reservoir.getSnapshot().getMax());
+        assertEquals(0, submittedTasks.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroStalenessShouldBeDisallowed() {
+        new HdrBuilder().withSnapshotCachingDuration(Duration.ofSeconds(1), Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCachingDurationWithStalenessShouldBeDisallowed() {
+        new HdrBuilder().withSnapshotCachingDuration(Duration.ZERO, Duration.ofSeconds(1));
+    }
+
 }
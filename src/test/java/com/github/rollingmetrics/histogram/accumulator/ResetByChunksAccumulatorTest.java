@@ -21,14 +21,18 @@ import com.codahale.metrics.Reservoir;
 import com.codahale.metrics.Snapshot;
 import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.histogram.HdrBuilder;
+import com.github.rollingmetrics.histogram.OverflowResolver;
 import com.github.rollingmetrics.util.MockExecutor;
+import com.github.rollingmetrics.util.RotationScheduler;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
 
 public class ResetByChunksAccumulatorTest {
 
@@ -105,12 +109,122 @@ public class ResetByChunksAccumulatorTest {
         assertEquals(0, snapshot.getMax());
     }
 
+    @Test
+    public void expiredChunksShouldBeExcludedFromSnapshotAfterManyRotations() {
+        AtomicLong time = new AtomicLong(0);
+        HdrBuilder builder = new HdrBuilder(Clock.mock(time));
+        checkManyRotations(time, builder);
+    }
+
+    @Test
+    public void expiredChunksShouldBeExcludedFromSnapshotAfterManyRotationsWithOffHeapStorage() {
+        AtomicLong time = new AtomicLong(0);
+        HdrBuilder builder = new HdrBuilder(Clock.mock(time))
+                .withHighestTrackableValue(1000, OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                .withOffHeapStorage();
+        checkManyRotations(time, builder);
+    }
+
+    @Test
+    public void offHeapStorageShouldKeepValuesOfAllBuckets() {
+        AtomicLong time = new AtomicLong(0);
+        HdrBuilder builder = new HdrBuilder(Clock.mock(time))
+                .withLowestDiscernibleValue(10)
+                .withHighestTrackableValue(3_600_000, OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                .resetReservoirPeriodicallyByChunks(Duration.ofMillis(3000), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .withoutSnapshotOptimization();
+        Reservoir heapReservoir = builder.buildReservoir();
+        Reservoir offHeapReservoir = builder.withOffHeapStorage().buildReservoir();
+
+        for (int second = 0; second < 6; second++) {
+            time.set(second * 1000L);
+            for (long value = second + 1; value <= 3_600_000; value = value * 3 + second) {
+                heapReservoir.update(value);
+                offHeapReservoir.update(value);
+            }
+            Snapshot heapSnapshot = heapReservoir.getSnapshot();
+            Snapshot offHeapSnapshot = offHeapReservoir.getSnapshot();
+            assertTrue(Arrays.equals(heapSnapshot.getValues(), offHeapSnapshot.getValues()));
+            assertEquals(heapSnapshot.getMin(), offHeapSnapshot.getMin());
+            assertEquals(heapSnapshot.getMax(), offHeapSnapshot.getMax());
+        }
+    }
+
+    private static void checkManyRotations(AtomicLong time, HdrBuilder builder) {
+        Reservoir reservoir = builder
+                .resetReservoirPeriodicallyByChunks(Duration.ofMillis(3000), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .withoutSnapshotOptimization()
+                .buildReservoir();
+
+        for (int second = 0; second < 30; second++) {
+            time.set(second * 1000L);
+            reservoir.update(second + 1);
+
+            for (long millis : new long[] {second * 1000L + 500, second * 1000L + 999}) {
+                time.set(millis);
+                // value recorded at second k lives until end of k-th chunk plus 3 chunks in archive
+                long oldestVisibleSecond = Math.max(0, millis / 1000 - 3);
+                Snapshot snapshot = reservoir.getSnapshot();
+                assertEquals(second + 1, snapshot.getMax());
+                assertEquals(oldestVisibleSecond + 1, snapshot.getMin());
+                assertEquals(second - oldestVisibleSecond + 1, snapshot.size());
+            }
+        }
+
+        time.addAndGet(4000);
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test(timeout = 10000)
+    public void idleReservoirShouldBeRotatedByScheduler() throws InterruptedException {
+        AtomicLong time = new AtomicLong(0);
+        RotationScheduler scheduler = new RotationScheduler();
+        try {
+            Reservoir reservoir = new HdrBuilder(Clock.mock(time))
+                    .resetReservoirPeriodicallyByChunks(Duration.ofMillis(3000), 3)
+                    .withRotationScheduler(scheduler)
+                    .withoutSnapshotOptimization()
+                    .buildReservoir();
+
+            reservoir.update(10);
+            time.set(1500);
+            // scheduler rechecks the reservoir after 1000 millis of real time
+            Thread.sleep(1500);
+
+            // without rotation this value would be written into expired chunk
+            reservoir.update(20);
+            time.set(4100);
+            Snapshot snapshot = reservoir.getSnapshot();
+            assertEquals(1, snapshot.size());
+            assertEquals(20, snapshot.getMax());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
     @Test
     public void testToString() {
         new HdrBuilder().resetReservoirPeriodicallyByChunks(Duration.ofSeconds(60), 3)
                 .buildReservoir().toString();
     }
 
+    @Test
+    public void testToStringWithOffHeapStorage() {
+        AtomicLong time = new AtomicLong(0);
+        Reservoir reservoir = new HdrBuilder(Clock.mock(time))
+                .withHighestTrackableValue(1000, OverflowResolver.REDUCE_TO_HIGHEST_TRACKABLE)
+                .withOffHeapStorage()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .buildReservoir();
+        reservoir.update(42);
+        time.set(1000);
+        reservoir.update(43);
+        System.out.println(reservoir.toString());
+    }
+
     @Test(timeout = 32000)
     public void testThatConcurrentThreadsNotHungWithThreeChunks() throws InterruptedException {
         Reservoir reservoir = new HdrBuilder()
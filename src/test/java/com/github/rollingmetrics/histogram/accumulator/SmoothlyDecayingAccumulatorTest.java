@@ -0,0 +1,192 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.accumulator;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.histogram.HdrBuilder;
+import com.github.rollingmetrics.util.Clock;
+import com.github.rollingmetrics.util.MockExecutor;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmoothlyDecayingAccumulatorTest {
+
+    private final AtomicLong time = new AtomicLong(0);
+    private final Clock clock = Clock.mock(time);
+
+    @Test
+    public void oldestChunkShouldBeDecayedSmoothly() {
+        Reservoir reservoir = smoothBuilder().buildReservoir();
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(10);
+        }
+
+        time.set(2999);
+        assertEquals(100, reservoir.getSnapshot().size());
+
+        time.set(3000);
+        assertEquals(100, reservoir.getSnapshot().size());
+
+        time.set(3500);
+        assertEquals(50, reservoir.getSnapshot().size());
+
+        time.set(3900);
+        assertEquals(10, reservoir.getSnapshot().size());
+
+        time.set(4000);
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void percentilesShouldNotJumpAtChunkBoundary() {
+        Reservoir reservoir = smoothBuilder().buildReservoir();
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(200);
+        }
+        time.set(1000);
+        for (int i = 0; i < 100; i++) {
+            reservoir.update(10);
+        }
+
+        time.set(3000);
+        assertEquals(200, reservoir.getSnapshot().getMax());
+        assertEquals(200, reservoir.getSnapshot().size());
+
+        // slow values are fading out gradually instead of disappearing at once
+        time.set(3750);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(125, snapshot.size());
+        assertEquals(200, snapshot.getMax());
+        assertEquals(10, snapshot.getMin());
+
+        time.set(4000);
+        snapshot = reservoir.getSnapshot();
+        assertEquals(100, snapshot.size());
+        assertEquals(10, snapshot.getMax());
+    }
+
+    @Test
+    public void valuesShouldBeAccountedInChunkOfIntervalWhenTheyWereRecorded() {
+        Reservoir reservoir = smoothBuilder().buildReservoir();
+        reservoir.update(10);
+
+        // writer crosses the boundary, so values recorded before are moved to the chunk of first interval
+        time.set(1000);
+        reservoir.update(20);
+
+        time.set(3500);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(20, snapshot.getMax());
+        assertEquals(1, snapshot.size());
+    }
+
+    @Test
+    public void shouldHandleLongIdlePeriod() {
+        Reservoir reservoir = smoothBuilder().buildReservoir();
+        reservoir.update(10);
+
+        time.set(100_000);
+        assertEquals(0, reservoir.getSnapshot().size());
+        reservoir.update(20);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(20, snapshot.getMin());
+    }
+
+    @Test
+    public void valuesWrittenAfterLongIdlePeriodShouldNotBeLostByDeferredRotation() {
+        List<Runnable> submittedTasks = new ArrayList<>();
+        Reservoir reservoir = smoothBuilder()
+                .withBackgroundExecutor(submittedTasks::add)
+                .buildReservoir();
+        reservoir.update(10);
+        assertEquals(1, reservoir.getSnapshot().size());
+
+        // writer observes the boundary after idle period, but rotation is executed only after the write
+        time.set(100_000);
+        reservoir.update(20);
+        assertEquals(1, submittedTasks.size());
+        submittedTasks.get(0).run();
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(20, snapshot.getMin());
+    }
+
+    @Test
+    public void decayingShouldPreserveTotalCount() {
+        Histogram source = new Histogram(2);
+        for (int value = 1; value <= 1000; value++) {
+            source.recordValueWithCount(value, value % 7 + 1);
+        }
+        for (double coefficient = 0.01; coefficient < 1.0; coefficient += 0.01) {
+            Histogram target = new Histogram(2);
+            SmoothlyDecayingAccumulator.addDecayed(target, source, coefficient);
+            double expected = source.getTotalCount() * coefficient;
+            assertTrue(Math.abs(target.getTotalCount() - expected) <= 1.0);
+        }
+    }
+
+    @Test
+    public void footprintShouldBeSmallerThanFootprintOfManyChunks() {
+        HdrBuilder smooth = new HdrBuilder().resetReservoirSmoothlyByChunks(Duration.ofSeconds(60), 6);
+        HdrBuilder chunked = new HdrBuilder().resetReservoirPeriodicallyByChunks(Duration.ofSeconds(60), 60);
+        assertTrue(smooth.getEstimatedFootprintInBytes() * 5 < chunked.getEstimatedFootprintInBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowTooFewChunks() {
+        new HdrBuilder().resetReservoirSmoothlyByChunks(Duration.ofSeconds(60), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowTooManyChunks() {
+        new HdrBuilder().resetReservoirSmoothlyByChunks(Duration.ofSeconds(6000), 61);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowTooShortChunks() {
+        new HdrBuilder().resetReservoirSmoothlyByChunks(Duration.ofMillis(1999), 2);
+    }
+
+    @Test(timeout = 32000)
+    public void testThreadSafety() throws InterruptedException {
+        Reservoir reservoir = new HdrBuilder()
+                .resetReservoirSmoothlyByChunks(Duration.ofSeconds(3), 3)
+                .buildReservoir();
+        HistogramUtil.runInParallel(reservoir, TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private HdrBuilder smoothBuilder() {
+        return new HdrBuilder(clock)
+                .resetReservoirSmoothlyByChunks(Duration.ofMillis(3000), 3)
+                .withBackgroundExecutor(MockExecutor.INSTANCE)
+                .withoutSnapshotOptimization();
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.accumulator;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.github.rollingmetrics.histogram.HdrBuilder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ThreadLocalBufferingAccumulatorTest {
+
+    @Test
+    public void bufferedValuesShouldBeVisibleInSnapshot() {
+        Reservoir reservoir = new HdrBuilder()
+                .withThreadLocalBuffering(100)
+                .withoutSnapshotOptimization()
+                .buildReservoir();
+
+        reservoir.update(10);
+        reservoir.update(20);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(10, snapshot.getMin());
+        assertEquals(20, snapshot.getMax());
+        assertEquals(2, snapshot.size());
+
+        reservoir.update(30);
+        snapshot = reservoir.getSnapshot();
+        assertEquals(30, snapshot.getMax());
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    public void bufferShouldBeDrainedToTargetWhenFull() {
+        RecordingTarget target = new RecordingTarget();
+        ThreadLocalBufferingAccumulator accumulator = new ThreadLocalBufferingAccumulator(target, 3);
+
+        accumulator.recordSingleValueWithExpectedInterval(1, 0);
+        accumulator.recordSingleValueWithExpectedInterval(2, 0);
+        assertEquals(0, target.batches.size());
+
+        accumulator.recordSingleValueWithExpectedInterval(3, 0);
+        assertEquals(1, target.batches.size());
+        assertArrayEquals(new long[] {1, 2, 3}, target.batches.get(0));
+
+        accumulator.recordValues(new long[] {4, 5}, 0, 2, 0);
+        assertEquals(1, target.batches.size());
+
+        // the batch which does not fit into the buffer drains the buffer at first
+        accumulator.recordValues(new long[] {6, 7}, 0, 2, 0);
+        assertArrayEquals(new long[] {4, 5}, target.batches.get(1));
+
+        // big batch is passed to target without copying
+        accumulator.recordValues(new long[] {8, 9, 10, 11}, 0, 4, 0);
+        assertArrayEquals(new long[] {6, 7}, target.batches.get(2));
+        assertArrayEquals(new long[] {8, 9, 10, 11}, target.batches.get(3));
+    }
+
+    @Test
+    public void changeOfExpectedIntervalShouldDrainBuffer() {
+        RecordingTarget target = new RecordingTarget();
+        ThreadLocalBufferingAccumulator accumulator = new ThreadLocalBufferingAccumulator(target, 10);
+
+        accumulator.recordSingleValueWithExpectedInterval(1, 0);
+        accumulator.recordSingleValueWithExpectedInterval(2, 5);
+        assertEquals(1, target.batches.size());
+        assertArrayEquals(new long[] {1}, target.batches.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void valuesOfDeadThreadsShouldNotBeLost() throws InterruptedException {
+        ThreadLocalBufferingAccumulator accumulator = new ThreadLocalBufferingAccumulator(new UniformAccumulator(new Recorder(2)), 100);
+        int footprintWithoutBuffers = accumulator.getEstimatedFootprintInBytes();
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            long value = (i + 1) * 10;
+            threads[i] = new Thread(() -> accumulator.recordSingleValueWithExpectedInterval(value, 0));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Snapshot snapshot = accumulator.getSnapshot(ThreadLocalBufferingAccumulatorTest::takeSnapshot);
+        assertEquals(4, snapshot.size());
+        assertEquals(10, snapshot.getMin());
+        assertEquals(40, snapshot.getMax());
+
+        // buffers of dead threads should be released
+        assertEquals(footprintWithoutBuffers, accumulator.getEstimatedFootprintInBytes());
+    }
+
+    @Test(timeout = 10000)
+    public void discardedAccumulatorShouldBeCollectableWhileWriterThreadIsAlive() throws InterruptedException {
+        ThreadLocalBufferingAccumulator accumulator = new ThreadLocalBufferingAccumulator(new UniformAccumulator(new Recorder(2)), 1000);
+        accumulator.recordSingleValueWithExpectedInterval(42, 0);
+        WeakReference<ThreadLocalBufferingAccumulator> accumulatorRef = new WeakReference<>(accumulator);
+        accumulator = null;
+
+        // current thread stays alive and keeps the buffer in its thread local map
+        while (accumulatorRef.get() != null) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNonPositiveBufferSize() {
+        new ThreadLocalBufferingAccumulator(new RecordingTarget(), 0);
+    }
+
+    @Test
+    public void testToString() {
+        new HdrBuilder().withThreadLocalBuffering(10).buildReservoir().toString();
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        Reservoir reservoir = new HdrBuilder()
+                .resetReservoirPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                .withThreadLocalBuffering(16)
+                .buildReservoir();
+
+        HistogramUtil.runInParallel(reservoir, TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private static Snapshot takeSnapshot(Histogram histogram) {
+        return new com.codahale.metrics.UniformSnapshot(new long[] {histogram.getMinValue(), histogram.getMaxValue()}) {
+            @Override
+            public int size() {
+                return (int) histogram.getTotalCount();
+            }
+        };
+    }
+
+    private static final class RecordingTarget implements Accumulator {
+
+        final List<long[]> batches = new ArrayList<>();
+
+        @Override
+        public void recordSingleValueWithExpectedInterval(long value, long expectedIntervalBetweenValueSamples) {
+            batches.add(new long[] {value});
+        }
+
+        @Override
+        public void recordValues(long[] values, int offset, int length, long expectedIntervalBetweenValueSamples) {
+            long[] batch = new long[length];
+            System.arraycopy(values, offset, batch, 0, length);
+            batches.add(batch);
+        }
+
+        @Override
+        public <T> T getSnapshot(Function<Histogram, T> snapshotTaker) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getEstimatedFootprintInBytes() {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.histogram.util;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PercentileExtractorTest {
+
+    private static final double[] QUANTILES = {0.0, 0.1, 0.5, 0.75, 0.9, 0.95, 0.98, 0.99, 0.999, 0.9999, 1.0};
+
+    @Test
+    public void shouldMatchHdrHistogramForSequentialValues() {
+        Histogram histogram = new Histogram(2);
+        for (int i = 1; i <= 100000; i++) {
+            histogram.recordValue(i);
+        }
+        assertSameAsHdrHistogram(histogram);
+    }
+
+    @Test
+    public void shouldMatchHdrHistogramForRandomValues() {
+        Random random = new Random(42);
+        for (int digits = 1; digits <= 4; digits++) {
+            Histogram histogram = new Histogram(1000, 3600L * 1_000_000_000L, digits);
+            for (int i = 0; i < 10_000; i++) {
+                histogram.recordValueWithCount(1000 + (long) (Math.abs(random.nextGaussian()) * 20_000_000), 1 + random.nextInt(3));
+            }
+            assertSameAsHdrHistogram(histogram);
+        }
+    }
+
+    @Test
+    public void shouldMatchHdrHistogramWhenZeroIsRecorded() {
+        Histogram histogram = new Histogram(2);
+        histogram.recordValueWithCount(0, 10);
+        histogram.recordValue(5);
+        histogram.recordValue(1_000_000);
+        assertSameAsHdrHistogram(histogram);
+    }
+
+    @Test
+    public void shouldMatchHdrHistogramForSingleValue() {
+        Histogram histogram = new Histogram(2);
+        histogram.recordValue(Long.MAX_VALUE / 4);
+        assertSameAsHdrHistogram(histogram);
+    }
+
+    @Test
+    public void extractorShouldBeReusable() {
+        PercentileExtractor extractor = new PercentileExtractor();
+        double[] values = new double[QUANTILES.length];
+
+        Histogram first = new Histogram(2);
+        first.recordValue(1000);
+        extractor.extract(first, QUANTILES, values);
+
+        Histogram second = new Histogram(2);
+        second.recordValue(10);
+        second.recordValue(30);
+        extractor.extract(second, QUANTILES, values);
+        assertEquals(20.0, extractor.getMean(), 0.0);
+        assertEquals(10.0, extractor.getMedian(), 0.0);
+        assertEquals(30.0, values[QUANTILES.length - 1], 0.0);
+    }
+
+    private static void assertSameAsHdrHistogram(Histogram histogram) {
+        PercentileExtractor extractor = new PercentileExtractor();
+        double[] values = new double[QUANTILES.length];
+        extractor.extract(histogram, QUANTILES, values);
+
+        assertEquals(histogram.getMean(), extractor.getMean(), 0.0);
+        assertEquals(histogram.getStdDeviation(), extractor.getStdDeviation(), histogram.getStdDeviation() * 1e-9);
+        assertEquals(histogram.getValueAtPercentile(50.0), extractor.getMedian(), 0.0);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            assertEquals("quantile " + QUANTILES[i], histogram.getValueAtPercentile(QUANTILES[i] * 100.0), values[i], 0.0);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import com.github.rollingmetrics.util.Clock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExponentiallyDecayingHitRatioTest {
+
+    AtomicLong currentTimeMillis = new AtomicLong(0);
+    Clock clock = Clock.mock(currentTimeMillis);
+    HitRatio hitRatio = new ExponentiallyDecayingHitRatio(Duration.ofSeconds(1), clock);
+
+    @Test
+    public void shouldReturnNanWhenNothingREcorded() {
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testRegularUsage() {
+        hitRatio.incrementHitCount(); // 1 - hit, 1 - total
+        assertEquals(1.0, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.incrementMissCount(); // 1 - hit, 2 - total
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.update(2, 3); // 3 - hit, 5 - total
+        assertEquals(0.6, hitRatio.getHitRatio(), 0.0000001);
+
+        hitRatio.update(0, 5); // 3 - hit, 10 - total
+        assertEquals(0.3, hitRatio.getHitRatio(), 0.0000001);
+    }
+
+    @Test
+    public void testDecaying() {
+        hitRatio.update(50, 100);
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0000001);
+
+        // weight of first update is halved
+        currentTimeMillis.set(1000);
+        hitRatio.update(100, 100);
+        assertEquals(125.0 / 150.0, hitRatio.getHitRatio(), 0.0000001);
+
+        // ratio does not depend from time when nothing is written
+        currentTimeMillis.set(5000);
+        assertEquals(125.0 / 150.0, hitRatio.getHitRatio(), 0.0000001);
+
+        // first update is negligible after 20 half-lives
+        currentTimeMillis.set(21_000);
+        hitRatio.update(0, 100);
+        assertEquals(0.0, hitRatio.getHitRatio(), 0.00001);
+    }
+
+    @Test
+    public void shouldKeepPrecisionAcrossRenormalizations() {
+        for (int i = 0; i < 100_000; i++) {
+            currentTimeMillis.set(i);
+            hitRatio.update(1, 4);
+        }
+        assertEquals(0.25, hitRatio.getHitRatio(), 0.0000001);
+    }
+
+    @Test
+    public void shouldAcceptCountsWhichDoNotFitIntoInt() {
+        hitRatio.update(3_000_000_000L, 6_000_000_000L);
+        hitRatio.update(0L, 6_000_000_000L);
+        assertEquals(0.25, hitRatio.getHitRatio(), 0.0000001);
+    }
+
+    @Test
+    public void tesIllegalApiUsageDetection() {
+        HitRationTestUtil.checkIllegalApiUsageDetection(hitRatio);
+        HitRationTestUtil.checkIllegalLongApiUsageDetection(hitRatio);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowZeroHalfLife() {
+        new ExponentiallyDecayingHitRatio(Duration.ZERO);
+    }
+
+    @Test
+    public void testGetHalfLife() {
+        ExponentiallyDecayingHitRatio hitRatio = new ExponentiallyDecayingHitRatio(Duration.ofSeconds(10));
+        assertEquals(Duration.ofSeconds(10), hitRatio.getHalfLife());
+    }
+
+    @Test
+    public void testToString() {
+        System.out.println(hitRatio.toString());
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        HitRationTestUtil.runInParallel(new ExponentiallyDecayingHitRatio(Duration.ofMillis(1)), TimeUnit.SECONDS.toMillis(30));
+    }
+
+}
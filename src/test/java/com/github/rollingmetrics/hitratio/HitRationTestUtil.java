@@ -59,6 +59,29 @@ public class HitRationTestUtil {
         }
     }
 
+    public static void checkIllegalLongApiUsageDetection(HitRatio hitRatio) {
+        try {
+            hitRatio.update(-1L, 3_000_000_000L);
+            fail("negative hit count should be forbidden");
+        } catch (IllegalArgumentException e){
+            // ok
+        }
+
+        try {
+            hitRatio.update(0L, 0L);
+            fail("non-positive totalCount should be forbidden");
+        } catch (IllegalArgumentException e){
+            // ok
+        }
+
+        try {
+            hitRatio.update(6_000_000_000L, 3_000_000_000L);
+            fail("should checkIllegalApiUsageDetection that hitCount <= totalCount");
+        } catch (IllegalArgumentException e){
+            // ok
+        }
+    }
+
     public static void runInParallel(HitRatio hitRatio, long durationMillis) throws InterruptedException {
         AtomicReference<Throwable> errorRef = new AtomicReference<>();
 
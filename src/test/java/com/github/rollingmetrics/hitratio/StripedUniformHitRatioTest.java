@@ -0,0 +1,118 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class StripedUniformHitRatioTest {
+
+    HitRatio hitRatio = new StripedUniformHitRatio();
+
+    @Test
+    public void shouldReturnNanWhenNothingREcorded() {
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testRegularUsage() {
+        hitRatio.incrementHitCount(); // 1 - hit, 1 - total
+        assertEquals(1.0, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.incrementMissCount(); // 1 - hit, 2 - total
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.update(2, 3); // 3 - hit, 5 - total
+        assertEquals(0.6, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.update(0, 5); // 3 - hit, 10 - total
+        assertEquals(0.3, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void shouldNotLosePrecisionWhenTotalExceedsInt() {
+        hitRatio.update(Integer.MAX_VALUE / 2, Integer.MAX_VALUE);
+        hitRatio.update(0, Integer.MAX_VALUE);
+        hitRatio.update(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0001);
+
+        // single miss is still visible
+        hitRatio = new StripedUniformHitRatio();
+        hitRatio.update(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        hitRatio.update(1, 1);
+        hitRatio.update(0, 1);
+        assertEquals((double) (Integer.MAX_VALUE + 1L) / (Integer.MAX_VALUE + 2L), hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void shouldAcceptCountsWhichDoNotFitIntoInt() {
+        hitRatio.update(3_000_000_000L, 6_000_000_000L);
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.update(0L, 6_000_000_000L);
+        assertEquals(0.25, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void tesIllegalApiUsageDetection() {
+        HitRationTestUtil.checkIllegalApiUsageDetection(hitRatio);
+        HitRationTestUtil.checkIllegalLongApiUsageDetection(hitRatio);
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentReaderShouldObserveRatioWithinBounds() throws InterruptedException {
+        AtomicBoolean stopped = new AtomicBoolean();
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(() -> {
+                while (!stopped.get()) {
+                    hitRatio.update(1, 2);
+                }
+            });
+            writers[i].start();
+        }
+        try {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (System.currentTimeMillis() < deadline) {
+                double ratio = hitRatio.getHitRatio();
+                if (!Double.isNaN(ratio)) {
+                    assertTrue("ratio " + ratio + " is out of bounds", ratio >= 0.0 && ratio <= 1.0);
+                }
+            }
+        } finally {
+            stopped.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        // all updates are completed, so ratio should be exact
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        HitRationTestUtil.runInParallel(hitRatio, TimeUnit.SECONDS.toMillis(30));
+    }
+
+}
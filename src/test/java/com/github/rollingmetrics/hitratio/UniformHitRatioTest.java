@@ -60,9 +60,19 @@ public class UniformHitRatioTest {
         assertEquals(0.625, hitRatio.getHitRatio(), 0.0001);
     }
 
+    @Test
+    public void longCountsShouldBeScaledToInt() {
+        hitRatio.update(3_000_000_000L, 6_000_000_000L);
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0001);
+
+        hitRatio.update(0L, 3_000_000_000L);
+        assertEquals(0.25, hitRatio.getHitRatio(), 0.0001);
+    }
+
     @Test
     public void tesIllegalApiUsageDetection() {
         HitRationTestUtil.checkIllegalApiUsageDetection(hitRatio);
+        HitRationTestUtil.checkIllegalLongApiUsageDetection(hitRatio);
     }
 
     @Test(timeout = 32000)
@@ -0,0 +1,112 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.hitratio;
+
+import org.junit.Test;
+
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class WideResetOnSnapshotHitRatioTest {
+
+    HitRatio hitRatio = new WideResetOnSnapshotHitRatio();
+
+    @Test
+    public void shouldReturnNanWhenNothingREcorded() {
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testRegularUsage() {
+        hitRatio.incrementHitCount(); // 1 - hit, 1 - total
+        hitRatio.incrementMissCount(); // 1 - hit, 2 - total
+        hitRatio.update(2, 3); // 3 - hit, 5 - total
+        hitRatio.update(0, 5); // 3 - hit, 10 - total
+        assertEquals(0.3, hitRatio.getHitRatio(), 0.0); // 0 - hit, 0 - total
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0); // 0 - hit, 0 - total
+
+        hitRatio.update(2, 100); // 2 - hit, 100 - total
+        assertEquals(0.02, hitRatio.getHitRatio(), 0.0); // 0 - hit, 0 - total
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0); // 0 - hit, 0 - total
+    }
+
+    @Test
+    public void shouldNotLosePrecisionWhenTotalExceedsInt() {
+        hitRatio.update(Integer.MAX_VALUE / 2, Integer.MAX_VALUE);
+        hitRatio.update(0, Integer.MAX_VALUE);
+        hitRatio.update(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(0.5, hitRatio.getHitRatio(), 0.0001);
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0);
+
+        hitRatio.update(3_000_000_000L, 6_000_000_000L);
+        hitRatio.update(0L, 6_000_000_000L);
+        assertEquals(0.25, hitRatio.getHitRatio(), 0.0);
+        assertEquals(Double.NaN, hitRatio.getHitRatio(), 0.0);
+    }
+
+    @Test(timeout = 32000)
+    public void updatesConcurrentWithResettingShouldNotBeLost() throws InterruptedException {
+        checkThatUpdatesAreNotLost(WideRatio.atomic());
+        checkThatUpdatesAreNotLost(WideRatio.striped());
+    }
+
+    private static void checkThatUpdatesAreNotLost(WideRatio ratio) throws InterruptedException {
+        int writerCount = 4;
+        int updatesPerWriter = 1_000_000;
+        Thread[] writers = new Thread[writerCount];
+        for (int i = 0; i < writerCount; i++) {
+            writers[i] = new Thread(() -> {
+                for (int j = 0; j < updatesPerWriter; j++) {
+                    ratio.update(1, 2);
+                }
+            });
+            writers[i].start();
+        }
+
+        long[] snapshot = new long[2];
+        long reportedHits = 0;
+        long reportedTotal = 0;
+        boolean writersAlive = true;
+        while (writersAlive) {
+            writersAlive = false;
+            for (Thread writer : writers) {
+                writersAlive |= writer.isAlive();
+            }
+            ratio.readAndResetInto(snapshot);
+            reportedHits += snapshot[0];
+            reportedTotal += snapshot[1];
+        }
+
+        assertEquals((long) writerCount * updatesPerWriter, reportedHits);
+        assertEquals(2L * writerCount * updatesPerWriter, reportedTotal);
+    }
+
+    @Test
+    public void tesIllegalApiUsageDetection() {
+        HitRationTestUtil.checkIllegalApiUsageDetection(hitRatio);
+        HitRationTestUtil.checkIllegalLongApiUsageDetection(hitRatio);
+    }
+
+    @Test(timeout = 32000)
+    public void testThatConcurrentThreadsNotHung() throws InterruptedException {
+        HitRationTestUtil.runInParallel(hitRatio, TimeUnit.SECONDS.toMillis(30));
+    }
+
+}
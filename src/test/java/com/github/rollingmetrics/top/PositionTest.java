@@ -20,6 +20,7 @@ package com.github.rollingmetrics.top;
 import org.junit.Test;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
@@ -53,6 +54,44 @@ public class PositionTest {
         assertEquals("SELECT * FROM DUAL", position.getQueryDescription());
     }
 
+    @Test
+    public void lazyDescriptionShouldBeMaterializedOnlyOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<String> desciptionSupplier = () -> {
+            calls.incrementAndGet();
+            return "SELECT * FROM DUAL";
+        };
+        Position position = Position.withLazyDescription(System.currentTimeMillis(), 2, TimeUnit.MILLISECONDS, desciptionSupplier, 1000);
+        assertEquals(0, calls.get());
+
+        assertEquals("SELECT * FROM DUAL", position.getQueryDescription());
+        assertEquals("SELECT * FROM DUAL", position.getQueryDescription());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void lazyDescriptionShouldBeReduced() {
+        Supplier<String> desciptionSupplier = () -> TestData.generateString(2000);
+        Position position = Position.withLazyDescription(System.currentTimeMillis(), 22, TimeUnit.MILLISECONDS, desciptionSupplier, 1000);
+        assertEquals(1000, position.getQueryDescription().length());
+    }
+
+    @Test
+    public void nullLazyDescriptionShouldBeMaterializedAsEmpty() {
+        Position position = Position.withLazyDescription(System.currentTimeMillis(), 22, TimeUnit.MILLISECONDS, () -> null, 1000);
+        assertEquals("", position.getQueryDescription());
+    }
+
+    @Test
+    public void lazyPositionShouldBeEqualToEagerPosition() {
+        long timestamp = System.currentTimeMillis();
+        Position eager = new Position(timestamp, 2, TimeUnit.MILLISECONDS, () -> "SELECT * FROM DUAL", 1000);
+        Position lazy = Position.withLazyDescription(timestamp, 2, TimeUnit.MILLISECONDS, () -> "SELECT * FROM DUAL", 1000);
+        assertEquals(eager, lazy);
+        assertEquals(eager.hashCode(), lazy.hashCode());
+        assertEquals(0, eager.compareTo(lazy));
+    }
+
     @Test
     public void testToString() {
         Position position = new Position(System.currentTimeMillis(), 2, TimeUnit.MILLISECONDS, () -> "SELECT * FROM DUAL", 1000);
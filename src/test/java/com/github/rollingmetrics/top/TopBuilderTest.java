@@ -23,6 +23,10 @@ import com.github.rollingmetrics.util.Clock;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.github.rollingmetrics.top.TestData.first;
@@ -74,6 +78,11 @@ public class TopBuilderTest {
         Top.builder(1).withBackgroundExecutor(null);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRotationSchedulerShouldBeDisallowed() {
+        Top.builder(1).withRotationScheduler(null);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void nullClockShouldBeDisallowed() {
         Top.builder(1).withClock(null);
@@ -175,6 +184,78 @@ public class TopBuilderTest {
         Top.builder(1).withSnapshotCachingDuration(null);
     }
 
+    @Test
+    public void expiredPositionsShouldBeServedWhileRefreshing() {
+        AtomicLong currentTimeMillis = new AtomicLong();
+        Clock clock = Clock.mock(currentTimeMillis);
+        List<Runnable> submittedTasks = new ArrayList<>();
+        Top top = Top.builder(1)
+                .neverResetPositions()
+                .withClock(clock)
+                .withBackgroundExecutor(submittedTasks::add)
+                .withSnapshotCachingDuration(Duration.ofSeconds(10), Duration.ofSeconds(10))
+                .build();
+
+        TopTestUtil.update(top, TestData.first);
+        TopTestUtil.checkOrder(top, TestData.first);
+
+        TopTestUtil.update(top, TestData.second);
+        currentTimeMillis.addAndGet(10_000);
+        TopTestUtil.checkOrder(top, TestData.first);
+        assertEquals(1, submittedTasks.size());
+
+        submittedTasks.remove(0).run();
+        TopTestUtil.checkOrder(top, TestData.second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroStalenessShouldBeDisallowed() {
+        Top.builder(1).withSnapshotCachingDuration(Duration.ofSeconds(1), Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullStalenessShouldBeDisallowed() {
+        Top.builder(1).withSnapshotCachingDuration(Duration.ofSeconds(1), null);
+    }
+
+    @Test
+    public void compactPositionStorageShouldBeApplied() {
+        for (int size = 1; size <= 3; size++) {
+            TopBuilder builder = Top.builder(size)
+                    .withCompactPositionStorage()
+                    .withSnapshotCachingDuration(Duration.ZERO)
+                    .withLatencyThreshold(Duration.ofMillis(100))
+                    .withMaxLengthOfQueryDescription(1000);
+            TopTestUtil.testCommonScenarios(size, builder.neverResetPositions().build(), Duration.ofMillis(100).toNanos(), 1000);
+            TopTestUtil.testCommonScenarios(size, builder.resetAllPositionsOnSnapshot().build(), Duration.ofMillis(100).toNanos(), 1000);
+            TopTestUtil.testCommonScenarios(size, builder.resetAllPositionsPeriodically(Duration.ofDays(1)).build(), Duration.ofMillis(100).toNanos(), 1000);
+            TopTestUtil.testCommonScenarios(size, builder.resetPositionsPeriodicallyByChunks(Duration.ofDays(1), 3).build(), Duration.ofMillis(100).toNanos(), 1000);
+        }
+    }
+
+    @Test
+    public void descriptionShouldNotBeMaterializedByWriter() {
+        for (int size = 1; size <= 3; size++) {
+            for (TopBuilder builder : new TopBuilder[] {Top.builder(size), Top.builder(size).withCompactPositionStorage()}) {
+                Top top = builder
+                        .resetPositionsPeriodicallyByChunks(Duration.ofDays(1), 3)
+                        .withSnapshotCachingDuration(Duration.ZERO)
+                        .build();
+                AtomicInteger calls = new AtomicInteger();
+                top.update(0, 1, TimeUnit.SECONDS, () -> {
+                    calls.incrementAndGet();
+                    return "SELECT * FROM DUAL";
+                });
+                assertEquals(0, calls.get());
+
+                for (int i = 0; i < 3; i++) {
+                    assertEquals("SELECT * FROM DUAL", top.getPositionsInDescendingOrder().get(0).getQueryDescription());
+                }
+                assertEquals(1, calls.get());
+            }
+        }
+    }
+
     @Test
     public void shouldAllowToReplaceSize() {
         Top top = Top.builder(1).withPositionCount(2).build();
@@ -20,6 +20,7 @@ package com.github.rollingmetrics.top.impl;
 import com.github.rollingmetrics.top.Top;
 import com.github.rollingmetrics.util.Clock;
 import com.github.rollingmetrics.util.MockExecutor;
+import com.github.rollingmetrics.util.RotationScheduler;
 import com.github.rollingmetrics.top.TestData;
 import org.junit.Test;
 
@@ -117,6 +118,32 @@ public class ResetByChunksTopTest {
         TopTestUtil.assertEmpty(top);
     }
 
+    @Test(timeout = 10000)
+    public void idleTopShouldBeRotatedByScheduler() throws Exception {
+        AtomicLong currentTimeMillis = new AtomicLong(0L);
+        RotationScheduler scheduler = new RotationScheduler();
+        try {
+            Top top = Top.builder(1)
+                    .resetPositionsPeriodicallyByChunks(Duration.ofSeconds(3), 3)
+                    .withSnapshotCachingDuration(Duration.ZERO)
+                    .withClock(Clock.mock(currentTimeMillis))
+                    .withRotationScheduler(scheduler)
+                    .build();
+
+            TopTestUtil.update(top, TestData.fifth);
+            currentTimeMillis.set(1500L);
+            // scheduler rechecks the top after 1000 millis of real time
+            Thread.sleep(1500L);
+
+            // without rotation this position would be written into expired chunk
+            TopTestUtil.update(top, TestData.first);
+            currentTimeMillis.set(4100L);
+            TopTestUtil.checkOrder(top, TestData.first);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
     @Test
     public void test_size_3() throws Exception {
         AtomicLong currentTimeMillis = new AtomicLong(0L);
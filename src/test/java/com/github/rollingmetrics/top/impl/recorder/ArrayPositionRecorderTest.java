@@ -0,0 +1,121 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.top.impl.recorder;
+
+import com.github.rollingmetrics.top.Position;
+import com.github.rollingmetrics.top.TestData;
+import com.github.rollingmetrics.top.impl.collector.PositionCollector;
+import com.github.rollingmetrics.top.impl.collector.PositionCollectorTestUtil;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+
+
+public class ArrayPositionRecorderTest {
+
+    private PositionRecorder recorder = new ArrayPositionRecorder(2, TestData.THRESHOLD_NANOS, 1000);
+    private PositionCollector collector = PositionCollector.createCollector(2);
+
+    @Test
+    public void test() {
+        PositionRecorderTestUtil.assertEmpty(recorder);
+
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.first);
+
+        PositionRecorderTestUtil.update(recorder, TestData.second);
+        PositionRecorderTestUtil.update(recorder, TestData.second);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.second, TestData.first);
+
+        PositionRecorderTestUtil.update(recorder, TestData.third);
+        PositionRecorderTestUtil.update(recorder, TestData.third);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.third, TestData.second);
+
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.third, TestData.second);
+
+        PositionRecorderTestUtil.update(recorder, TestData.too_fast);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.third, TestData.second);
+    }
+
+    @Test
+    public void testAddInto() {
+        recorder.addInto(collector);
+        PositionCollectorTestUtil.assertEmpty(collector);
+
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        recorder.addInto(collector);
+        PositionCollectorTestUtil.checkOrder(collector, TestData.first);
+
+        PositionRecorderTestUtil.update(recorder, TestData.second);
+        recorder.addInto(collector);
+        PositionCollectorTestUtil.checkOrder(collector, TestData.second, TestData.first);
+    }
+
+    @Test
+    public void testReset() {
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        PositionRecorderTestUtil.update(recorder, TestData.fifth);
+
+        recorder.reset();
+        PositionRecorderTestUtil.assertEmpty(recorder);
+
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+        PositionRecorderTestUtil.checkOrder(recorder, TestData.first);
+    }
+
+    @Test
+    public void testEmptyCopy() {
+        PositionRecorderTestUtil.update(recorder, TestData.first);
+
+        PositionRecorder copy = recorder.createEmptyCopy();
+        PositionRecorderTestUtil.assertEmpty(copy);
+        assertEquals(ArrayPositionRecorder.class, copy.getClass());
+        assertEquals(2, copy.getSize());
+    }
+
+    @Test
+    public void shouldTruncateLongDescription() {
+        PositionRecorder recorder = new ArrayPositionRecorder(2, 0, 10);
+        recorder.update(1, 1, TimeUnit.SECONDS, () -> TestData.generateString(20));
+        assertEquals(10, recorder.getPositionsInDescendingOrder().get(0).getQueryDescription().length());
+    }
+
+    @Test
+    public void shouldBehaveSameAsSkipListRecorder() {
+        Random random = new Random(42);
+        for (int size : new int[] {2, 3, 10, 100}) {
+            PositionRecorder arrayRecorder = new ArrayPositionRecorder(size, 0, 1000);
+            PositionRecorder skipListRecorder = new MultiPositionRecorder(size, 0, 1000);
+            for (int i = 0; i < 10_000; i++) {
+                Position position = new Position(random.nextInt(100), random.nextInt(1000), TimeUnit.MICROSECONDS, "query-" + random.nextInt(3));
+                PositionRecorderTestUtil.update(arrayRecorder, position);
+                PositionRecorderTestUtil.update(skipListRecorder, position);
+                if (i % 1000 == 0) {
+                    assertEquals(skipListRecorder.getPositionsInDescendingOrder(), arrayRecorder.getPositionsInDescendingOrder());
+                }
+            }
+            assertEquals(skipListRecorder.getPositionsInDescendingOrder(), arrayRecorder.getPositionsInDescendingOrder());
+        }
+    }
+
+}
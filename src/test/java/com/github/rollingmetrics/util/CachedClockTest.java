@@ -0,0 +1,70 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class CachedClockTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullResolution() {
+        Clock.cachedMillis(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowZeroResolution() {
+        Clock.cachedMillis(Duration.ZERO);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNegativeResolution() {
+        Clock.cachedMillis(Duration.ofMillis(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowResolutionLessThenMillisecond() {
+        Clock.cachedMillis(Duration.ofNanos(999_999));
+    }
+
+    @Test
+    public void shouldShareClocksWithSameResolution() {
+        assertSame(Clock.cachedMillis(Duration.ofMillis(10)), Clock.cachedMillis(Duration.ofMillis(10)));
+        assertNotSame(Clock.cachedMillis(Duration.ofMillis(10)), Clock.cachedMillis(Duration.ofMillis(20)));
+    }
+
+    @Test(timeout = 10000)
+    public void cachedTimeShouldFollowTheSystemTime() throws InterruptedException {
+        Clock clock = Clock.cachedMillis(Duration.ofMillis(5));
+        long before = System.currentTimeMillis();
+        while (clock.currentTimeMillis() < before + 100) {
+            Thread.sleep(1);
+        }
+        long cachedTime = clock.currentTimeMillis();
+        assertTrue(cachedTime <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testToString() {
+        System.out.println(Clock.cachedMillis(Duration.ofMillis(10)));
+    }
+
+}
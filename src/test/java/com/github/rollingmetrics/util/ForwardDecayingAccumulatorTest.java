@@ -0,0 +1,105 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class ForwardDecayingAccumulatorTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullHalfLife() {
+        new ForwardDecayingAccumulator(null, 1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNonPositiveWidth() {
+        new ForwardDecayingAccumulator(Duration.ofSeconds(1), 0, 0);
+    }
+
+    @Test
+    public void sumsShouldBeDecayedIndependently() {
+        ForwardDecayingAccumulator accumulator = new ForwardDecayingAccumulator(Duration.ofMillis(100), 2, 1000);
+        accumulator.add(0, 8, 1000);
+        accumulator.add(1, 16, 1100);
+
+        double[] snapshot = new double[2];
+        accumulator.readInto(snapshot, 1200);
+        assertEquals(2.0, snapshot[0], 0.0000001);
+        assertEquals(8.0, snapshot[1], 0.0000001);
+    }
+
+    @Test
+    public void sumShouldBeTransferredOnRenormalization() {
+        ForwardDecayingAccumulator accumulator = new ForwardDecayingAccumulator(Duration.ofMillis(1), 1, 0);
+        accumulator.add(0, 1024, 0);
+
+        // the landmark is outdated after RENORMALIZATION_HALF_LIVES, so this write moves it forward
+        accumulator.add(0, 1, ForwardDecayingAccumulator.RENORMALIZATION_HALF_LIVES);
+        double[] snapshot = new double[1];
+        accumulator.readInto(snapshot, ForwardDecayingAccumulator.RENORMALIZATION_HALF_LIVES + 1);
+        assertEquals((1024 * Math.pow(2, -ForwardDecayingAccumulator.RENORMALIZATION_HALF_LIVES) + 1) / 2, snapshot[0], 0.0000001);
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentRenormalizationShouldNotLoseUpdates() throws InterruptedException {
+        int halfLives = ForwardDecayingAccumulator.RENORMALIZATION_HALF_LIVES * 3;
+        int writesPerHalfLife = 10_000;
+        ForwardDecayingAccumulator accumulator = new ForwardDecayingAccumulator(Duration.ofMillis(1), 1, 0);
+
+        AtomicReference<Throwable> errorRef = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        CountDownLatch latch = new CountDownLatch(threads.length);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    double[] snapshot = new double[1];
+                    for (int timeMillis = 0; timeMillis <= halfLives; timeMillis++) {
+                        for (int j = 0; j < writesPerHalfLife; j++) {
+                            accumulator.add(0, 1.0, timeMillis);
+                        }
+                        accumulator.readInto(snapshot, timeMillis);
+                    }
+                } catch (Throwable e) {
+                    errorRef.set(e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+            threads[i].start();
+        }
+        latch.await();
+        if (errorRef.get() != null) {
+            throw new RuntimeException(errorRef.get());
+        }
+
+        double expected = 0.0;
+        for (int timeMillis = 0; timeMillis <= halfLives; timeMillis++) {
+            expected += threads.length * writesPerHalfLife * Math.pow(2, timeMillis - halfLives);
+        }
+        double[] snapshot = new double[1];
+        accumulator.readInto(snapshot, halfLives);
+        assertEquals(expected, snapshot[0], expected * 0.000001);
+    }
+
+}
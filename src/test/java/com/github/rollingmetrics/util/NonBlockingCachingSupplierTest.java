@@ -0,0 +1,256 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NonBlockingCachingSupplierTest {
+
+    private final AtomicLong time = new AtomicLong(0);
+    private final Clock clock = Clock.mock(time);
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final Supplier<Integer> target = invocations::incrementAndGet;
+    private final List<Runnable> submittedTasks = new ArrayList<>();
+
+    private final NonBlockingCachingSupplier<Integer> supplier = new NonBlockingCachingSupplier<>(1000, 5000, clock, submittedTasks::add, target);
+
+    @Test
+    public void firstValueShouldBeTakenByReader() {
+        assertEquals(1, (int) supplier.get());
+        assertEquals(0, submittedTasks.size());
+    }
+
+    @Test
+    public void valueShouldBeCached() {
+        supplier.get();
+        time.set(999);
+        assertEquals(1, (int) supplier.get());
+        assertEquals(1, invocations.get());
+        assertEquals(0, submittedTasks.size());
+    }
+
+    @Test
+    public void expiredValueShouldBeServedWhileRefreshing() {
+        supplier.get();
+
+        time.set(1000);
+        assertEquals(1, (int) supplier.get());
+        assertEquals(1, (int) supplier.get());
+        assertEquals(1, submittedTasks.size());
+        assertEquals(1, invocations.get());
+
+        submittedTasks.remove(0).run();
+        assertEquals(2, (int) supplier.get());
+
+        // refreshed value is cached from the moment of refreshing
+        time.set(1999);
+        assertEquals(2, (int) supplier.get());
+        assertEquals(0, submittedTasks.size());
+    }
+
+    @Test
+    public void tooStaleValueShouldBeTakenByReader() {
+        supplier.get();
+
+        time.set(6000);
+        assertEquals(2, (int) supplier.get());
+        assertEquals(0, submittedTasks.size());
+    }
+
+    @Test
+    public void failedRefreshingShouldNotPreventNextRefreshing() {
+        AtomicInteger calls = new AtomicInteger();
+        NonBlockingCachingSupplier<Integer> failingSupplier = new NonBlockingCachingSupplier<>(1000, 5000, clock, submittedTasks::add, () -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException();
+            }
+            return calls.get();
+        });
+        failingSupplier.get();
+
+        time.set(1000);
+        failingSupplier.get();
+        try {
+            submittedTasks.remove(0).run();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(1, (int) failingSupplier.get());
+        assertEquals(1, submittedTasks.size());
+        submittedTasks.remove(0).run();
+        assertEquals(3, (int) failingSupplier.get());
+    }
+
+    @Test(timeout = 10000)
+    public void readerShouldNotBeBlockedByRefreshing() throws InterruptedException {
+        CountDownLatch refreshingStarted = new CountDownLatch(1);
+        CountDownLatch refreshingAllowed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            NonBlockingCachingSupplier<Integer> slowSupplier = new NonBlockingCachingSupplier<>(1000, 5000, clock, executor, () -> {
+                if (calls.incrementAndGet() > 1) {
+                    refreshingStarted.countDown();
+                    try {
+                        refreshingAllowed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return calls.get();
+            });
+            slowSupplier.get();
+
+            time.set(1000);
+            assertEquals(1, (int) slowSupplier.get());
+            assertTrue(refreshingStarted.await(5, TimeUnit.SECONDS));
+            assertEquals(1, (int) slowSupplier.get());
+
+            refreshingAllowed.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(2, (int) slowSupplier.get());
+        } finally {
+            refreshingAllowed.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void tooStaleValueShouldBeTakenByOnlyOneReader() throws Exception {
+        CountDownLatch takingStarted = new CountDownLatch(1);
+        CountDownLatch takingAllowed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        NonBlockingCachingSupplier<Integer> slowSupplier = new NonBlockingCachingSupplier<>(1000, 5000, clock, submittedTasks::add, () -> {
+            if (calls.incrementAndGet() > 1) {
+                takingStarted.countDown();
+                try {
+                    takingAllowed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return calls.get();
+        });
+        slowSupplier.get();
+
+        time.set(6000);
+        AtomicInteger takenByFirstReader = new AtomicInteger();
+        Thread firstReader = new Thread(() -> takenByFirstReader.set(slowSupplier.get()));
+        AtomicInteger takenBySecondReader = new AtomicInteger();
+        Thread secondReader = new Thread(() -> takenBySecondReader.set(slowSupplier.get()));
+        firstReader.start();
+        try {
+            assertTrue(takingStarted.await(5, TimeUnit.SECONDS));
+
+            // concurrent readers are not stampeding to target supplier, they wait for value instead of getting too stale value
+            secondReader.start();
+            secondReader.join(200);
+            assertTrue(secondReader.isAlive());
+            assertEquals(2, calls.get());
+            assertEquals(0, submittedTasks.size());
+        } finally {
+            takingAllowed.countDown();
+        }
+        firstReader.join();
+        secondReader.join();
+        assertEquals(2, takenByFirstReader.get());
+        assertEquals(2, takenBySecondReader.get());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void tooStaleValueShouldNotBeServedWhileRefreshingIsStuck() {
+        supplier.get();
+
+        time.set(1000);
+        assertEquals(1, (int) supplier.get());
+        // submitted refreshing is never executed, as if background executor is blocked by another task
+        assertEquals(1, submittedTasks.size());
+
+        time.set(5999);
+        assertEquals(1, (int) supplier.get());
+
+        time.set(6000);
+        assertEquals(2, (int) supplier.get());
+        assertEquals(2, (int) supplier.get());
+        assertEquals(1, submittedTasks.size());
+
+        // late refreshing replaces value which was taken by reader
+        time.set(6500);
+        submittedTasks.remove(0).run();
+        assertEquals(3, (int) supplier.get());
+    }
+
+    @Test(timeout = 10000)
+    public void firstValueShouldBeTakenOnceByConcurrentReaders() throws Exception {
+        CountDownLatch takingAllowed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        NonBlockingCachingSupplier<Integer> slowSupplier = new NonBlockingCachingSupplier<>(1000, 5000, clock, submittedTasks::add, () -> {
+            try {
+                takingAllowed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return calls.incrementAndGet();
+        });
+
+        Thread[] readers = new Thread[4];
+        AtomicInteger sumOfValues = new AtomicInteger();
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> sumOfValues.addAndGet(slowSupplier.get()));
+            readers[i].start();
+        }
+        takingAllowed.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(readers.length, sumOfValues.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroStalenessShouldBeDisallowed() {
+        new NonBlockingCachingSupplier<>(1000, 0, clock, MockExecutor.INSTANCE, target);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooBigStalenessShouldBeDisallowed() {
+        new NonBlockingCachingSupplier<>(1000, Long.MAX_VALUE / 2, clock, MockExecutor.INSTANCE, target);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooBigCachingDurationShouldBeDisallowed() {
+        new NonBlockingCachingSupplier<>(Long.MAX_VALUE / 2, 1000, clock, MockExecutor.INSTANCE, target);
+    }
+
+}
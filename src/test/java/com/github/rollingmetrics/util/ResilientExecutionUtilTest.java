@@ -17,6 +17,7 @@
 
 package com.github.rollingmetrics.util;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
@@ -27,7 +28,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class ResilientExecutionUtilTest {
 
@@ -114,4 +117,124 @@ public class ResilientExecutionUtilTest {
         assertEquals(1, executionCount.get());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void reusableTaskShouldBeExecutedOncePerSubmission() {
+        AtomicInteger executionCount = new AtomicInteger();
+        ReusableTask task = new ReusableTask(executionCount::incrementAndGet);
+
+        Executor executor = Runnable::run;
+        for (int i = 1; i <= 3; i++) {
+            util.execute(executor, task);
+            assertEquals(i, executionCount.get());
+        }
+
+        // invocation without submission is ignored
+        task.run();
+        assertEquals(3, executionCount.get());
+    }
+
+    @Test
+    public void reusableTaskShouldBeExecutedInCurrentThreadExactlyOnceWhenExecutorThrowException() {
+        AtomicInteger executionCount = new AtomicInteger();
+        ReusableTask task = new ReusableTask(executionCount::incrementAndGet);
+
+        Executor executor = runnable -> {
+            runnable.run();
+            throw new RejectedExecutionException();
+        };
+        util.execute(executor, task);
+        assertEquals(1, executionCount.get());
+    }
+
+    @Test
+    public void lateExecutionOfRejectedReusableTaskShouldBeIgnored() {
+        AtomicInteger executionCount = new AtomicInteger();
+        ReusableTask task = new ReusableTask(executionCount::incrementAndGet);
+
+        AtomicReference<Runnable> acceptedTask = new AtomicReference<>();
+        Executor executor = runnable -> {
+            acceptedTask.set(runnable);
+            throw new RejectedExecutionException();
+        };
+        util.execute(executor, task);
+        assertEquals(1, executionCount.get());
+
+        acceptedTask.get().run();
+        assertEquals(1, executionCount.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldDisallowReplaceExecutionStrategyWhenExecutorAlreadyCreated() {
+        util.getBackgroundExecutor();
+        util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.sharded(2));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldApplyShardedExecutionStrategy() throws InterruptedException {
+        DaemonThreadFactory factory = new DaemonThreadFactory("sharded");
+        util.setThreadFactory(factory);
+        util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.sharded(3));
+        Executor executor = util.getBackgroundExecutor();
+        assertTrue(executor instanceof ShardedExecutor);
+        assertEquals(3, factory.getCreatedThreads());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<String> threadName = new AtomicReference<>();
+        util.execute(executor, () -> {
+            threadName.set(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        latch.await();
+        assertEquals("sharded", threadName.get());
+
+        util.shutdownBackgroundExecutor();
+        AtomicReference<Thread> executionThread = new AtomicReference<>();
+        util.execute(executor, () -> executionThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), executionThread.get());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldApplySingleThreadExecutionStrategyWithCustomQueueCapacity() throws InterruptedException {
+        util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.singleThread(16));
+        Executor executor = util.getBackgroundExecutor();
+        assertTrue(executor instanceof SingleThreadExecutor);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        util.execute(executor, latch::countDown);
+        latch.await();
+        util.shutdownBackgroundExecutor();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queueCapacityOfSingleThreadExecutionStrategyShouldBePowerOfTwo() {
+        BackgroundExecutionStrategy.singleThread(1000);
+    }
+
+    @Test(timeout = 10000)
+    public void shouldApplyVirtualThreadPerTaskExecutionStrategy() throws InterruptedException {
+        Assume.assumeTrue(VirtualThreadPerTaskExecutor.isSupported());
+        util.setBackgroundExecutionStrategy(BackgroundExecutionStrategy.virtualThreadPerTask());
+        Executor executor = util.getBackgroundExecutor();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Thread> executionThread = new AtomicReference<>();
+        util.execute(executor, () -> {
+            executionThread.set(Thread.currentThread());
+            latch.countDown();
+        });
+        latch.await();
+        assertNotSame(Thread.currentThread(), executionThread.get());
+        assertTrue(executionThread.get().getName().startsWith("metrics-core-hdr-background-worker-"));
+
+        util.shutdownBackgroundExecutor();
+        util.execute(executor, () -> executionThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), executionThread.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void virtualThreadPerTaskExecutionStrategyShouldBeRejectedWhenVirtualThreadsAreNotSupported() {
+        Assume.assumeFalse(VirtualThreadPerTaskExecutor.isSupported());
+        BackgroundExecutionStrategy.virtualThreadPerTask();
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.github.rollingmetrics.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RotationSchedulerTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullTickDuration() {
+        new RotationScheduler(null, 16, new DaemonThreadFactory("test-%d"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowTickDurationLessThenMillisecond() {
+        new RotationScheduler(Duration.ofNanos(999_999), 16, new DaemonThreadFactory("test-%d"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNegativeTickDuration() {
+        new RotationScheduler(Duration.ofMillis(-1), 16, new DaemonThreadFactory("test-%d"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowZeroWheelSize() {
+        new RotationScheduler(Duration.ofMillis(1), 0, new DaemonThreadFactory("test-%d"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullThreadFactory() {
+        new RotationScheduler(Duration.ofMillis(1), 16, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowNullRotatable() {
+        new RotationScheduler().register(null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldDisallowRegistrationAfterShutdown() {
+        RotationScheduler scheduler = new RotationScheduler();
+        scheduler.shutdown();
+        scheduler.register(() -> 1000);
+    }
+
+    @Test(timeout = 10000)
+    public void threadShouldBeCreatedLazily() throws InterruptedException {
+        DaemonThreadFactory threadFactory = new DaemonThreadFactory("test-%d");
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 16, threadFactory);
+        try {
+            assertEquals(0, threadFactory.getCreatedThreads());
+
+            CountDownLatch latch = new CountDownLatch(1);
+            RotationScheduler.Rotatable rotatable = () -> {
+                latch.countDown();
+                return 1000;
+            };
+            scheduler.register(rotatable);
+            scheduler.register(rotatable);
+            latch.await();
+            assertEquals(1, threadFactory.getCreatedThreads());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldRespectRequestedDelays() throws InterruptedException {
+        // wheel is intentionally small in order to check delays which longer than revolution of wheel
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 4, new DaemonThreadFactory("test-%d"));
+        try {
+            List<Long> invocations = new ArrayList<>();
+            CountDownLatch latch = new CountDownLatch(5);
+            RotationScheduler.Rotatable rotatable = () -> {
+                synchronized (invocations) {
+                    invocations.add(System.nanoTime());
+                }
+                latch.countDown();
+                return 50;
+            };
+            scheduler.register(rotatable);
+            latch.await();
+
+            synchronized (invocations) {
+                for (int i = 1; i < invocations.size(); i++) {
+                    long delayMillis = TimeUnit.NANOSECONDS.toMillis(invocations.get(i) - invocations.get(i - 1));
+                    assertTrue("delay " + delayMillis + " is too short", delayMillis >= 45);
+                }
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldRotateAllRegisteredMetrics() throws InterruptedException {
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 64, new DaemonThreadFactory("test-%d"));
+        try {
+            int count = 1000;
+            CountDownLatch latch = new CountDownLatch(count * 3);
+            List<RotationScheduler.Rotatable> rotatables = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long delay = i % 10;
+                RotationScheduler.Rotatable rotatable = () -> {
+                    latch.countDown();
+                    return delay;
+                };
+                rotatables.add(rotatable);
+                scheduler.register(rotatable);
+            }
+            latch.await();
+            assertEquals(count, scheduler.getScheduledCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failedRotationShouldNotStopScheduler() throws InterruptedException {
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 16, new DaemonThreadFactory("test-%d"));
+        try {
+            RotationScheduler.Rotatable failing = () -> {
+                throw new IllegalStateException("test");
+            };
+            scheduler.register(failing);
+
+            CountDownLatch latch = new CountDownLatch(10);
+            RotationScheduler.Rotatable healthy = () -> {
+                latch.countDown();
+                return 1;
+            };
+            scheduler.register(healthy);
+            latch.await();
+            assertEquals(2, scheduler.getScheduledCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void garbageCollectedMetricsShouldBeForgotten() throws InterruptedException {
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 16, new DaemonThreadFactory("test-%d"));
+        try {
+            AtomicLong invocations = new AtomicLong();
+            scheduler.register(new CountingRotatable(invocations));
+            while (invocations.get() == 0) {
+                Thread.sleep(1);
+            }
+            while (scheduler.getScheduledCount() != 0) {
+                System.gc();
+                Thread.sleep(10);
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void shouldStopRotationAfterShutdown() throws InterruptedException {
+        RotationScheduler scheduler = new RotationScheduler(Duration.ofMillis(1), 16, new DaemonThreadFactory("test-%d"));
+        AtomicInteger invocations = new AtomicInteger();
+        RotationScheduler.Rotatable rotatable = () -> {
+            invocations.incrementAndGet();
+            return 1;
+        };
+        scheduler.register(rotatable);
+        while (invocations.get() == 0) {
+            Thread.sleep(1);
+        }
+        scheduler.shutdown();
+        Thread.sleep(50);
+
+        int invocationsAfterShutdown = invocations.get();
+        Thread.sleep(50);
+        assertEquals(invocationsAfterShutdown, invocations.get());
+    }
+
+    private static final class CountingRotatable implements RotationScheduler.Rotatable {
+
+        private final AtomicLong invocations;
+
+        private CountingRotatable(AtomicLong invocations) {
+            this.invocations = invocations;
+        }
+
+        @Override
+        public long rotateIfNeeded() {
+            invocations.incrementAndGet();
+            return 1;
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.github.rollingmetrics.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedExecutorTest {
+
+    private final DaemonThreadFactory threadFactory = new DaemonThreadFactory("xyz-%d");
+    private final ShardedExecutor executor = new ShardedExecutor(threadFactory, 4);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowZeroWorkers() {
+        new ShardedExecutor(threadFactory, 0);
+    }
+
+    @Test
+    public void shouldCreateThreadPerWorker() {
+        assertEquals(4, executor.getWorkerCount());
+        assertEquals(4, threadFactory.getCreatedThreads());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldExecuteSameTaskInSameThread() throws InterruptedException {
+        Set<Thread> executionThreads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        CountDownLatch latch = new CountDownLatch(100);
+        Runnable task = () -> {
+            executionThreads.add(Thread.currentThread());
+            latch.countDown();
+        };
+        for (int i = 0; i < 100; i++) {
+            executor.execute(task);
+        }
+        latch.await();
+
+        assertEquals(1, executionThreads.size());
+        assertTrue(executionThreads.iterator().next().getName().startsWith("xyz-"));
+    }
+
+    @Test(timeout = 10000)
+    public void tasksWithSameShardKeyShouldBeExecutedInSameThread() throws InterruptedException {
+        Object owner = new Object();
+        Set<Thread> executionThreads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            // each task is distinct object, like left and right rotation tasks of chunked accumulator
+            ReusableTask task = new ReusableTask(owner, () -> {
+                executionThreads.add(Thread.currentThread());
+                latch.countDown();
+            });
+            ResilientExecutionUtil.getInstance().execute(executor, task);
+        }
+        latch.await();
+
+        assertEquals(1, executionThreads.size());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldSpreadDifferentTasksAcrossWorkers() throws InterruptedException {
+        Set<Integer> workerIndexes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            workerIndexes.add(ShardedExecutor.workerIndex(new Object(), 4));
+        }
+        assertEquals(4, workerIndexes.size());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldExecuteTaskInCurrentThreadAfterStopping() throws InterruptedException {
+        executor.stopExecutionThreads();
+        executor.stopExecutionThreads();
+
+        AtomicReference<Thread> executionThread = new AtomicReference<>();
+        executor.execute(() -> executionThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), executionThread.get());
+    }
+
+}
@@ -19,10 +19,17 @@ package com.github.rollingmetrics.util;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
 import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
 
 public class SingleThreadExecutorTest {
 
@@ -79,4 +86,123 @@ public class SingleThreadExecutorTest {
         executor.execute(() -> {throw new RuntimeException("test");});
     }
 
-}
\ No newline at end of file
+    @Test(timeout = 30000)
+    public void shouldExecuteAllTasksOfConcurrentProducers() throws InterruptedException {
+        int producerCount = 4;
+        int tasksPerProducer = 50_000;
+        AtomicInteger executedTasks = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(producerCount * tasksPerProducer);
+        Runnable task = () -> {
+            executedTasks.incrementAndGet();
+            latch.countDown();
+        };
+
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            Thread producer = new Thread(() -> {
+                for (int j = 0; j < tasksPerProducer; j++) {
+                    executor.execute(task);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        latch.await();
+        assertEquals(producerCount * tasksPerProducer, executedTasks.get());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldNotExecuteTaskInCurrentThreadWhenQueueIsFull() throws InterruptedException {
+        SingleThreadExecutor smallExecutor = new SingleThreadExecutor(new DaemonThreadFactory("xyz"), 2);
+        CountDownLatch workerStarted = new CountDownLatch(1);
+        CountDownLatch workerReleased = new CountDownLatch(1);
+        smallExecutor.execute(() -> {
+            workerStarted.countDown();
+            try {
+                workerReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        workerStarted.await();
+
+        // much more tasks than capacity of queue are submitted while worker is busy
+        int taskCount = 100;
+        CountDownLatch executedTasks = new CountDownLatch(taskCount);
+        AtomicInteger tasksExecutedByCaller = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        for (int i = 0; i < taskCount; i++) {
+            smallExecutor.execute(() -> {
+                if (Thread.currentThread() == caller) {
+                    tasksExecutedByCaller.incrementAndGet();
+                }
+                executedTasks.countDown();
+            });
+        }
+        assertEquals(0, tasksExecutedByCaller.get());
+        assertEquals(taskCount, executedTasks.getCount());
+
+        workerReleased.countDown();
+        executedTasks.await();
+        assertEquals(0, tasksExecutedByCaller.get());
+        smallExecutor.stopExecutionThread();
+    }
+
+    @Test(timeout = 10000)
+    public void shouldExecuteQueuedTasksBeforeStopping() throws InterruptedException {
+        CountDownLatch workerStarted = new CountDownLatch(1);
+        CountDownLatch workerReleased = new CountDownLatch(1);
+        executor.execute(() -> {
+            workerStarted.countDown();
+            try {
+                workerReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        workerStarted.await();
+
+        AtomicReference<Thread> executionThread = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            executionThread.set(Thread.currentThread());
+            latch.countDown();
+        });
+        executor.stopExecutionThread();
+        workerReleased.countDown();
+        latch.await();
+        assertFalse(Thread.currentThread() == executionThread.get());
+    }
+
+    @Test
+    public void queueShouldBeFifoAndReuseSlots() {
+        SingleThreadExecutor.TaskQueue queue = new SingleThreadExecutor.TaskQueue(4);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // each round passes whole ring, so slots are reused
+        for (int round = 0; round < 3; round++) {
+            Runnable[] tasks = new Runnable[4];
+            for (int i = 0; i < tasks.length; i++) {
+                int taskNumber = round * tasks.length + i;
+                tasks[i] = () -> assertTrue(taskNumber >= 0);
+                assertTrue(queue.offer(tasks[i]));
+            }
+            assertFalse(queue.offer(() -> {}));
+            for (Runnable task : tasks) {
+                assertSame(task, queue.poll());
+            }
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queueCapacityShouldBePowerOfTwo() {
+        new SingleThreadExecutor.TaskQueue(6);
+    }
+
+}
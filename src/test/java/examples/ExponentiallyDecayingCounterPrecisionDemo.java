@@ -0,0 +1,83 @@
+/*
+ *
+ *  Copyright 2016 Vladimir Bukhtoyarov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package examples;
+
+import com.github.rollingmetrics.counter.ExponentiallyDecayingCounter;
+import com.github.rollingmetrics.counter.SmoothlyDecayingRollingCounter;
+import com.github.rollingmetrics.counter.WindowCounter;
+
+import java.time.Duration;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExponentiallyDecayingCounterPrecisionDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        // the counter which storing measurements for last 10 seconds and split counter by 4 chunks
+        final WindowCounter chunkedCounter = new SmoothlyDecayingRollingCounter(Duration.ofSeconds(10), 4);
+        // the counter which has the same mean age of measurements: the mean age of exponential decay is halfLife/ln(2)
+        final WindowCounter decayingCounter = new ExponentiallyDecayingCounter(Duration.ofMillis((long) (5000 * Math.log(2))));
+
+        // report sums each second
+        AtomicLong previousChunkedSumRef = new AtomicLong(Long.MIN_VALUE);
+        AtomicLong previousDecayingSumRef = new AtomicLong(Long.MIN_VALUE);
+        new Timer("report-sum", true).scheduleAtFixedRate(new TimerTask() {
+
+            AtomicInteger measureIndex = new AtomicInteger();
+
+            @Override
+            public void run() {
+                long chunkedSum = chunkedCounter.getSum();
+                long decayingSum = decayingCounter.getSum();
+                String message = String.format("%3d chunked sum = %14d; difPercentage = %8.4f%%; decaying sum = %14d; difPercentage = %8.4f%%",
+                        measureIndex.incrementAndGet(),
+                        chunkedSum, difPercentage(previousChunkedSumRef.getAndSet(chunkedSum), chunkedSum),
+                        decayingSum, difPercentage(previousDecayingSumRef.getAndSet(decayingSum), decayingSum));
+                System.out.println(message);
+            }
+        }, 0, 1000);
+
+        // stop test after one minute
+        AtomicBoolean incrementingStopped = new AtomicBoolean();
+        new Timer("test-finalizer", true).schedule(new TimerTask() {
+            @Override
+            public void run() {
+                incrementingStopped.set(true);
+            }
+        }, TimeUnit.MINUTES.toMillis(1));
+
+        while (!incrementingStopped.get()) {
+            chunkedCounter.add(1);
+            decayingCounter.add(1);
+        }
+
+        Thread.sleep(9000);
+    }
+
+    private static double difPercentage(long previousSum, long sum) {
+        if (previousSum == Long.MIN_VALUE || previousSum == 0) {
+            return 0.0;
+        }
+        return (double) Math.abs(previousSum - sum) / (double) previousSum * 100;
+    }
+
+}